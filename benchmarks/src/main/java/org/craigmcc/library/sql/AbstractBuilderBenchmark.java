@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.sql;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Shared configuration and fixtures for the statement builder benchmarks.
+ * Each benchmark builds a statement with <code>size</code> predicates (or
+ * column/value pairs), against a {@link StubConnection}, and reports the
+ * average time per operation in nanoseconds.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public abstract class AbstractBuilderBenchmark {
+
+    // Static Variables ------------------------------------------------------
+
+    protected static final String TABLE = "customers";
+
+    // Instance Variables ----------------------------------------------------
+
+    /**
+     * <p>Number of predicates (or pairs) in each statement.</p>
+     */
+    @Param({"1", "10", "50"})
+    public int size;
+
+    protected String[] columns;
+    protected Connection connection;
+    protected Object[] values;
+
+    // Public Methods --------------------------------------------------------
+
+    @Setup
+    public void setup() {
+        connection = StubConnection.create();
+        columns = new String[size];
+        values = new Object[size];
+        for (int i = 0; i < size; i++) {
+            columns[i] = "column" + i;
+            switch (i % 3) {
+                case 0:
+                    values[i] = (long) i;
+                    break;
+                case 1:
+                    values[i] = "value" + i;
+                    break;
+                default:
+                    values[i] = i * 1.5;
+            }
+        }
+    }
+
+}
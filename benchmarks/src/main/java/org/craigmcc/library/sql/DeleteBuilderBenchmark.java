@@ -0,0 +1,38 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.sql;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * <p>Benchmarks for {@link DeleteBuilder}, with <code>size</code> WHERE
+ * conditions.</p>
+ */
+public class DeleteBuilderBenchmark extends AbstractBuilderBenchmark {
+
+    @Benchmark
+    public PreparedStatement build() throws SQLException {
+        DeleteBuilder builder = new DeleteBuilder(TABLE);
+        for (int i = 0; i < size; i++) {
+            builder.expression(columns[i], SqlOperator.EQ, values[i]);
+        }
+        return builder.build(connection);
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.sql;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * <p>Benchmarks for {@link SelectBuilder}, with <code>size</code> WHERE
+ * conditions plus ordering and a limit.</p>
+ */
+public class SelectBuilderBenchmark extends AbstractBuilderBenchmark {
+
+    private CompiledStatement compiled;
+    private final SelectBuilder reused = new SelectBuilder(TABLE);
+
+    @Setup
+    public void compile() {
+        compiled = conditions(new SelectBuilder(TABLE).bind()).compile();
+    }
+
+    /**
+     * <p>Build with every value rendered inline (a distinct SQL text per value).</p>
+     */
+    @Benchmark
+    public PreparedStatement inline() throws SQLException {
+        return conditions(new SelectBuilder(TABLE)).build(connection);
+    }
+
+    /**
+     * <p>Build with every value bound as a "?" parameter.</p>
+     */
+    @Benchmark
+    public PreparedStatement bound() throws SQLException {
+        return conditions(new SelectBuilder(TABLE).bind()).build(connection);
+    }
+
+    /**
+     * <p>Build from a template compiled once in setup.</p>
+     */
+    @Benchmark
+    public PreparedStatement compiled() throws SQLException {
+        return compiled.build(connection, values);
+    }
+
+    /**
+     * <p>Build with every value bound, recycling one builder via <code>reset()</code>.</p>
+     */
+    @Benchmark
+    public PreparedStatement reused() throws SQLException {
+        return conditions(reused.reset().bind()).build(connection);
+    }
+
+    private SelectBuilder conditions(SelectBuilder builder) {
+        for (int i = 0; i < size; i++) {
+            builder.expression(columns[i], SqlOperator.EQ, values[i]);
+        }
+        return builder
+                .orderBy(columns[0], SqlDirection.ASC)
+                .limit(100);
+    }
+
+}
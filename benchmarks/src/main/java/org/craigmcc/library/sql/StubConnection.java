@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.sql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+
+/**
+ * <p>Factory for a JDBC <code>Connection</code> that does no work at all.
+ * Every <code>prepareStatement()</code> call returns the same inert
+ * <code>PreparedStatement</code>, whose methods return <code>null</code>,
+ * zero, or <code>false</code>, so that benchmarks measure only the cost
+ * of the code under test.</p>
+ */
+final class StubConnection {
+
+    // Static Variables ------------------------------------------------------
+
+    private static final InvocationHandler INERT = (proxy, method, args) -> {
+        Class<?> type = method.getReturnType();
+        if (method.getName().equals("equals")) {
+            return proxy == args[0];
+        } else if (method.getName().equals("hashCode")) {
+            return System.identityHashCode(proxy);
+        } else if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == double.class) {
+            return 0.0;
+        } else if (type == float.class) {
+            return 0.0f;
+        } else if (type == short.class) {
+            return (short) 0;
+        } else if (type == byte.class) {
+            return (byte) 0;
+        }
+        return null;
+    };
+
+    // Constructors ----------------------------------------------------------
+
+    private StubConnection() {
+    }
+
+    // Static Methods --------------------------------------------------------
+
+    /**
+     * <p>Return a new stub connection.</p>
+     */
+    static Connection create() {
+        PreparedStatement statement = (PreparedStatement) Proxy.newProxyInstance(
+                StubConnection.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, INERT);
+        return (Connection) Proxy.newProxyInstance(
+                StubConnection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                (proxy, method, args) -> method.getName().equals("prepareStatement")
+                        ? statement : INERT.invoke(proxy, method, args));
+    }
+
+}
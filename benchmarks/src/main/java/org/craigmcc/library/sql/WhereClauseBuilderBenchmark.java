@@ -0,0 +1,36 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.sql;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * <p>Benchmarks for {@link WhereClauseBuilder}, with <code>size</code>
+ * conditions.  This lives in the same package as the builder because
+ * the builder is package private.</p>
+ */
+public class WhereClauseBuilderBenchmark extends AbstractBuilderBenchmark {
+
+    @Benchmark
+    public String build() {
+        WhereClauseBuilder builder = new WhereClauseBuilder();
+        for (int i = 0; i < size; i++) {
+            builder.where(columns[i], SqlOperator.EQ, values[i]);
+        }
+        return builder.build();
+    }
+
+}
@@ -16,35 +16,126 @@
 package org.craigmcc.library.model;
 
 import javax.validation.constraints.NotNull;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * <p>Default implementations for convenience methods in the {@link ModelJdbc}
  * interface.</p>
  *
+ * <p>Unless a subclass overrides <code>populateNext()</code>, rows are mapped
+ * by a {@link RowMapper} for its {@link Model} class, and
+ * <code>populateAll()</code> resolves the mapper once for the whole
+ * <code>ResultSet</code>.  The class is either passed to the constructor, or
+ * taken from the type argument of the subclass declaration (as in
+ * <code>CustomerJdbc extends AbstractModelJdbc&lt;Customer&gt;</code>).  If
+ * a subclass does override <code>populateNext()</code>,
+ * <code>populateAll()</code> calls it for each row.</p>
+ *
  * @param <M> The {@link Model} class for which this module defines APIs
  */
 public abstract class AbstractModelJdbc<M extends Model> implements ModelJdbc<M>, Constants {
 
+    // Instance Variables ----------------------------------------------------
+
+    private final boolean mapped;
+    private final Class<M> type;
+
+    // Constructors ----------------------------------------------------------
+
+    /**
+     * <p>Create an instance for the {@link Model} class named by the type
+     * argument of the subclass declaration.</p>
+     *
+     * @throws IllegalStateException if the subclass neither overrides
+     *  <code>populateNext()</code> nor declares a concrete type argument
+     */
+    public AbstractModelJdbc() {
+        this(null);
+    }
+
+    /**
+     * <p>Create an instance that maps rows to the specified {@link Model}
+     * class with a {@link RowMapper}, unless the subclass overrides
+     * <code>populateNext()</code>.</p>
+     *
+     * @param type {@link Model} class to be mapped
+     *
+     * @throws IllegalStateException if <code>type</code> is <code>null</code>,
+     *  and the subclass neither overrides <code>populateNext()</code> nor
+     *  declares a concrete type argument
+     */
+    public AbstractModelJdbc(Class<M> type) {
+        this.type = (type != null) ? type : typeArgument();
+        this.mapped = !overridesPopulateNext();
+        if (mapped && (this.type == null)) {
+            throw new IllegalStateException(getClass().getName() +
+                    " must implement populateNext() or pass its Model class to the constructor");
+        }
+    }
+
     // Public Methods --------------------------------------------------------
 
+    /**
+     * <p>Map all remaining rows of the specified <code>ResultSet</code> into
+     * {@link Model} objects.  If {@link StatementMetrics} are enabled, and
+     * the <code>ResultSet</code> was returned by an instrumented statement,
+     * the number of rows and the elapsed time are recorded against the shape
+     * of that statement.</p>
+     *
+     * @param resultSet <code>ResultSet</code> to be mapped
+     *
+     * @return List of mapped {@link Model} objects
+     *
+     * @throws SQLException if a JDBC error occurs
+     */
     public @NotNull List<M> populateAll(@NotNull ResultSet resultSet)
             throws SQLException {
-        List<M> results = new ArrayList<>();
-        while (true) {
-            M result = populateNext(resultSet);
-            if (result == null) {
-                return results;
-            } else {
-                results.add(result);
-            }
+        StatementMetrics.Shape shape = StatementMetrics.isEnabled()
+                ? StatementMetrics.populated(resultSet)
+                : null;
+        if (shape == null) {
+            return populateRows(resultSet);
         }
+        long start = System.nanoTime();
+        List<M> results = populateRows(resultSet);
+        shape.getMap().record(System.nanoTime() - start);
+        shape.getRows().record(results.size());
+        return results;
+    }
 
+    /**
+     * <p>Advance to the next row of the specified <code>ResultSet</code>, and
+     * return a {@link Model} object mapped from it by a {@link RowMapper}, or
+     * <code>null</code> if there are no more rows.  Subclasses whose
+     * {@link Model} class is not known (see the constructors) must override
+     * this method.</p>
+     *
+     * @param resultSet The <code>ResultSet</code> to be processed
+     *
+     * @throws SQLException If a JDBC exception occurs
+     * @throws UnsupportedOperationException If the {@link Model} class
+     *  is not known
+     */
+    @Override
+    public M populateNext(@NotNull ResultSet resultSet)
+            throws SQLException {
+        if (type == null) {
+            throw new UnsupportedOperationException(getClass().getName() +
+                    " must implement populateNext() or pass its Model class to the constructor");
+        }
+        if (!resultSet.next()) {
+            return null;
+        }
+        return RowMapper.of(type, resultSet).map(resultSet);
     }
 
     // Protected Methods -----------------------------------------------------
@@ -52,7 +143,9 @@ public abstract class AbstractModelJdbc<M extends Model> implements ModelJdbc<M>
     /**
      * <p>Populate the standard {@link Model} fields from the current row
      * of the specified <code>ResultSet</code>, ignoring any fields that are
-     * not present.</p>
+     * not present.  Columns are located through the {@link ColumnLayout} of
+     * the <code>ResultSet</code>, which is resolved once and then reused for
+     * every row, so missing columns cost nothing.</p>
      *
      * @param model The {@link Model} object being populated
      * @param resultSet The <code>ResultSet</code> from which to extract
@@ -63,23 +156,86 @@ public abstract class AbstractModelJdbc<M extends Model> implements ModelJdbc<M>
     protected void populateModel(@NotNull Model model,
                                  @NotNull ResultSet resultSet)
             throws SQLException {
-        try {
-            model.setId(resultSet.getLong(ID_COLUMN));
-        } catch (SQLException e) {
-            // Ignore
+        ColumnLayout layout = ColumnLayout.of(resultSet);
+        int index = layout.indexOf(ID_COLUMN);
+        if (index > 0) {
+            model.setId(resultSet.getLong(index));
+        }
+        index = layout.indexOf(PUBLISHED_COLUMN);
+        if (index > 0) {
+            model.setPublished(Codecs.read(resultSet, index, LocalDateTime.class));
+        }
+        index = layout.indexOf(UPDATED_COLUMN);
+        if (index > 0) {
+            model.setUpdated(Codecs.read(resultSet, index, LocalDateTime.class));
+        }
+    }
+
+    // Private Methods -------------------------------------------------------
+
+    /**
+     * <p>Return <code>true</code> if some subclass (below this class)
+     * declares its own <code>populateNext()</code>.</p>
+     */
+    private boolean overridesPopulateNext() {
+        for (Class<?> clazz = getClass(); clazz != AbstractModelJdbc.class; clazz = clazz.getSuperclass()) {
+            try {
+                clazz.getDeclaredMethod("populateNext", ResultSet.class);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // Keep looking
+            }
+        }
+        return false;
+    }
+
+    private @NotNull List<M> populateRows(@NotNull ResultSet resultSet)
+            throws SQLException {
+        List<M> results = new ArrayList<>();
+        if (mapped) {
+            RowMapper<M> mapper = RowMapper.of(type, resultSet);
+            while (resultSet.next()) {
+                results.add(mapper.map(resultSet));
+            }
+            return results;
         }
-        try {
-            model.setPublished(resultSet.getTimestamp(PUBLISHED_COLUMN)
-                    .toLocalDateTime());
-        } catch (SQLException e) {
-            // Ignore
+        while (true) {
+            M result = populateNext(resultSet);
+            if (result == null) {
+                return results;
+            } else {
+                results.add(result);
+            }
+        }
+
+    }
+
+    /**
+     * <p>Return the {@link Model} class bound to the type parameter of this
+     * class by the class hierarchy of this instance (following type
+     * variables through intermediate generic subclasses), or
+     * <code>null</code> if it is not bound to a concrete class.</p>
+     */
+    @SuppressWarnings("unchecked")
+    private Class<M> typeArgument() {
+        Map<TypeVariable<?>, Type> bindings = new HashMap<>();
+        for (Class<?> clazz = getClass(); clazz != AbstractModelJdbc.class; clazz = clazz.getSuperclass()) {
+            Type superclass = clazz.getGenericSuperclass();
+            if (!(superclass instanceof ParameterizedType)) {
+                continue;
+            }
+            TypeVariable<?>[] variables = clazz.getSuperclass().getTypeParameters();
+            Type[] arguments = ((ParameterizedType) superclass).getActualTypeArguments();
+            for (int i = 0; i < variables.length; i++) {
+                Type argument = arguments[i];
+                bindings.put(variables[i], bindings.getOrDefault(argument, argument));
+            }
         }
-        try {
-            model.setUpdated(resultSet.getTimestamp(UPDATED_COLUMN)
-                    .toLocalDateTime());
-        } catch (SQLException e) {
-            // Ignore
+        Type argument = bindings.get(AbstractModelJdbc.class.getTypeParameters()[0]);
+        if (argument instanceof ParameterizedType) {
+            argument = ((ParameterizedType) argument).getRawType();
         }
+        return (argument instanceof Class) ? (Class<M>) argument : null;
     }
 
 }
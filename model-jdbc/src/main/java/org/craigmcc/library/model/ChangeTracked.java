@@ -0,0 +1,31 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.model;
+
+/**
+ * <p>Marker interface for {@link Model} classes whose objects keep a
+ * snapshot of their column values as loaded, so that updates made through
+ * <code>ModelJdbc.updateChanged()</code> can send only the columns that have
+ * changed, and can be skipped entirely if nothing changed.  Snapshots are taken by {@link RowMapper} and by the code
+ * generated for {@link JdbcTable} classes; hand written
+ * <code>populateNext()</code> implementations should call
+ * <code>Model.snapshot()</code> for each column they read.</p>
+ *
+ * <p>Change tracking costs a small map per loaded object, so it is only
+ * enabled for classes that implement this interface.</p>
+ */
+public interface ChangeTracked {
+}
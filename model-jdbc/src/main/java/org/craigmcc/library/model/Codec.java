@@ -0,0 +1,69 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.model;
+
+import javax.validation.constraints.NotNull;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * <p>Binds values of a particular Java type to <code>PreparedStatement</code>
+ * parameters, and reads them back from <code>ResultSet</code> columns, using
+ * the most specific JDBC methods available for that type.  Codecs are
+ * looked up by type through {@link Codecs}.</p>
+ *
+ * @param <T> The Java type handled by this codec
+ */
+public interface Codec<T> {
+
+    /**
+     * <p>Bind the specified (non-null) value to the specified parameter.</p>
+     *
+     * @param statement <code>PreparedStatement</code> to be updated
+     * @param index One-relative parameter index
+     * @param value Value to be bound
+     *
+     * @throws SQLException if a JDBC error occurs
+     */
+    void bind(@NotNull PreparedStatement statement, int index, @NotNull T value)
+            throws SQLException;
+
+    /**
+     * <p>Read the value of the specified column from the current row,
+     * returning <code>null</code> if it is SQL NULL.</p>
+     *
+     * @param resultSet <code>ResultSet</code> positioned on a row
+     * @param index One-relative column index
+     *
+     * @throws SQLException if a JDBC error occurs
+     */
+    T read(@NotNull ResultSet resultSet, int index)
+            throws SQLException;
+
+    /**
+     * <p>Read the value of the specified column from the current row,
+     * returning <code>null</code> if it is SQL NULL.</p>
+     *
+     * @param resultSet <code>ResultSet</code> positioned on a row
+     * @param column Column label
+     *
+     * @throws SQLException if a JDBC error occurs
+     */
+    T read(@NotNull ResultSet resultSet, @NotNull String column)
+            throws SQLException;
+
+}
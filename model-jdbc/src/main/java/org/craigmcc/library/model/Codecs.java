@@ -0,0 +1,510 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.model;
+
+import javax.validation.constraints.NotNull;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>Registry of {@link Codec} instances by Java type.  Built in codecs
+ * cover the boxed primitives, <code>String</code>, <code>BigDecimal</code>,
+ * <code>byte[]</code>, the <code>java.time</code> types, <code>UUID</code>,
+ * and enums (bound and read by name).  Any other type falls back to
+ * <code>setObject()</code> and <code>getObject()</code>.</p>
+ *
+ * <p>The codec for each type is resolved once (walking superclasses and
+ * interfaces if there is no exact registration) and then cached, so binding
+ * a value costs a single lookup rather than type inference by the JDBC
+ * driver.  Application specific codecs can be added with
+ * <code>register()</code>, which replaces any cached resolution for
+ * that type.</p>
+ */
+public final class Codecs {
+
+    // Static Variables ------------------------------------------------------
+
+    private static final Map<Class<?>, Codec<?>> registered = new ConcurrentHashMap<>();
+
+    private static final ClassValue<Codec<?>> resolved = new ClassValue<Codec<?>>() {
+        @Override
+        protected Codec<?> computeValue(Class<?> type) {
+            return resolve(type);
+        }
+    };
+
+    /**
+     * <p>Fallback codec that leaves type handling to the JDBC driver.</p>
+     */
+    public static final Codec<Object> OBJECT = new Codec<Object>() {
+        @Override
+        public void bind(PreparedStatement statement, int index, Object value) throws SQLException {
+            statement.setObject(index, value);
+        }
+        @Override
+        public Object read(ResultSet resultSet, int index) throws SQLException {
+            return resultSet.getObject(index);
+        }
+        @Override
+        public Object read(ResultSet resultSet, String column) throws SQLException {
+            return resultSet.getObject(column);
+        }
+    };
+
+    static {
+        register(BigDecimal.class, new Codec<BigDecimal>() {
+            @Override
+            public void bind(PreparedStatement statement, int index, BigDecimal value) throws SQLException {
+                statement.setBigDecimal(index, value);
+            }
+            @Override
+            public BigDecimal read(ResultSet resultSet, int index) throws SQLException {
+                return resultSet.getBigDecimal(index);
+            }
+            @Override
+            public BigDecimal read(ResultSet resultSet, String column) throws SQLException {
+                return resultSet.getBigDecimal(column);
+            }
+        });
+        register(Boolean.class, new Codec<Boolean>() {
+            @Override
+            public void bind(PreparedStatement statement, int index, Boolean value) throws SQLException {
+                statement.setBoolean(index, value);
+            }
+            @Override
+            public Boolean read(ResultSet resultSet, int index) throws SQLException {
+                boolean value = resultSet.getBoolean(index);
+                return resultSet.wasNull() ? null : value;
+            }
+            @Override
+            public Boolean read(ResultSet resultSet, String column) throws SQLException {
+                boolean value = resultSet.getBoolean(column);
+                return resultSet.wasNull() ? null : value;
+            }
+        });
+        register(byte[].class, new Codec<byte[]>() {
+            @Override
+            public void bind(PreparedStatement statement, int index, byte[] value) throws SQLException {
+                statement.setBytes(index, value);
+            }
+            @Override
+            public byte[] read(ResultSet resultSet, int index) throws SQLException {
+                return resultSet.getBytes(index);
+            }
+            @Override
+            public byte[] read(ResultSet resultSet, String column) throws SQLException {
+                return resultSet.getBytes(column);
+            }
+        });
+        register(Double.class, new Codec<Double>() {
+            @Override
+            public void bind(PreparedStatement statement, int index, Double value) throws SQLException {
+                statement.setDouble(index, value);
+            }
+            @Override
+            public Double read(ResultSet resultSet, int index) throws SQLException {
+                double value = resultSet.getDouble(index);
+                return resultSet.wasNull() ? null : value;
+            }
+            @Override
+            public Double read(ResultSet resultSet, String column) throws SQLException {
+                double value = resultSet.getDouble(column);
+                return resultSet.wasNull() ? null : value;
+            }
+        });
+        register(Float.class, new Codec<Float>() {
+            @Override
+            public void bind(PreparedStatement statement, int index, Float value) throws SQLException {
+                statement.setFloat(index, value);
+            }
+            @Override
+            public Float read(ResultSet resultSet, int index) throws SQLException {
+                float value = resultSet.getFloat(index);
+                return resultSet.wasNull() ? null : value;
+            }
+            @Override
+            public Float read(ResultSet resultSet, String column) throws SQLException {
+                float value = resultSet.getFloat(column);
+                return resultSet.wasNull() ? null : value;
+            }
+        });
+        register(Instant.class, new Codec<Instant>() {
+            @Override
+            public void bind(PreparedStatement statement, int index, Instant value) throws SQLException {
+                statement.setObject(index, value.atOffset(ZoneOffset.UTC));
+            }
+            @Override
+            public Instant read(ResultSet resultSet, int index) throws SQLException {
+                OffsetDateTime value = resultSet.getObject(index, OffsetDateTime.class);
+                return (value != null) ? value.toInstant() : null;
+            }
+            @Override
+            public Instant read(ResultSet resultSet, String column) throws SQLException {
+                OffsetDateTime value = resultSet.getObject(column, OffsetDateTime.class);
+                return (value != null) ? value.toInstant() : null;
+            }
+        });
+        register(Integer.class, new Codec<Integer>() {
+            @Override
+            public void bind(PreparedStatement statement, int index, Integer value) throws SQLException {
+                statement.setInt(index, value);
+            }
+            @Override
+            public Integer read(ResultSet resultSet, int index) throws SQLException {
+                int value = resultSet.getInt(index);
+                return resultSet.wasNull() ? null : value;
+            }
+            @Override
+            public Integer read(ResultSet resultSet, String column) throws SQLException {
+                int value = resultSet.getInt(column);
+                return resultSet.wasNull() ? null : value;
+            }
+        });
+        register(LocalDate.class, new TemporalCodec<>(LocalDate.class));
+        register(LocalDateTime.class, new TemporalCodec<LocalDateTime>(LocalDateTime.class) {
+            @Override
+            LocalDateTime legacy(Timestamp value) {
+                return value.toLocalDateTime();
+            }
+        });
+        register(LocalTime.class, new TemporalCodec<>(LocalTime.class));
+        register(Long.class, new Codec<Long>() {
+            @Override
+            public void bind(PreparedStatement statement, int index, Long value) throws SQLException {
+                statement.setLong(index, value);
+            }
+            @Override
+            public Long read(ResultSet resultSet, int index) throws SQLException {
+                long value = resultSet.getLong(index);
+                return resultSet.wasNull() ? null : value;
+            }
+            @Override
+            public Long read(ResultSet resultSet, String column) throws SQLException {
+                long value = resultSet.getLong(column);
+                return resultSet.wasNull() ? null : value;
+            }
+        });
+        register(OffsetDateTime.class, new TemporalCodec<>(OffsetDateTime.class));
+        register(Short.class, new Codec<Short>() {
+            @Override
+            public void bind(PreparedStatement statement, int index, Short value) throws SQLException {
+                statement.setShort(index, value);
+            }
+            @Override
+            public Short read(ResultSet resultSet, int index) throws SQLException {
+                short value = resultSet.getShort(index);
+                return resultSet.wasNull() ? null : value;
+            }
+            @Override
+            public Short read(ResultSet resultSet, String column) throws SQLException {
+                short value = resultSet.getShort(column);
+                return resultSet.wasNull() ? null : value;
+            }
+        });
+        register(String.class, new Codec<String>() {
+            @Override
+            public void bind(PreparedStatement statement, int index, String value) throws SQLException {
+                statement.setString(index, value);
+            }
+            @Override
+            public String read(ResultSet resultSet, int index) throws SQLException {
+                return resultSet.getString(index);
+            }
+            @Override
+            public String read(ResultSet resultSet, String column) throws SQLException {
+                return resultSet.getString(column);
+            }
+        });
+        registered.put(boolean.class, registered.get(Boolean.class));
+        registered.put(double.class, registered.get(Double.class));
+        registered.put(float.class, registered.get(Float.class));
+        registered.put(int.class, registered.get(Integer.class));
+        registered.put(long.class, registered.get(Long.class));
+        registered.put(short.class, registered.get(Short.class));
+        register(UUID.class, new Codec<UUID>() {
+            @Override
+            public void bind(PreparedStatement statement, int index, UUID value) throws SQLException {
+                statement.setObject(index, value);
+            }
+            @Override
+            public UUID read(ResultSet resultSet, int index) throws SQLException {
+                return toUUID(resultSet.getObject(index));
+            }
+            @Override
+            public UUID read(ResultSet resultSet, String column) throws SQLException {
+                return toUUID(resultSet.getObject(column));
+            }
+        });
+    }
+
+    // Constructors ----------------------------------------------------------
+
+    private Codecs() {
+    }
+
+    // Static Methods --------------------------------------------------------
+
+    /**
+     * <p>Bind the specified value to the specified parameter, using the
+     * codec for its runtime type.  A <code>null</code> value is bound
+     * with <code>setObject()</code>, as it always has been.</p>
+     *
+     * @param statement <code>PreparedStatement</code> to be updated
+     * @param index One-relative parameter index
+     * @param value Value to be bound (may be <code>null</code>)
+     *
+     * @throws SQLException if a JDBC error occurs
+     */
+    @SuppressWarnings("unchecked")
+    public static void bind(@NotNull PreparedStatement statement, int index, Object value)
+            throws SQLException {
+        if (value == null) {
+            statement.setObject(index, null);
+        } else {
+            ((Codec<Object>) resolved.get(value.getClass())).bind(statement, index, value);
+        }
+    }
+
+    /**
+     * <p>Return the codec for the specified type.  This is never
+     * <code>null</code>; types without a more specific codec get
+     * {@link #OBJECT} (or a codec that reads by <code>getObject()</code>
+     * with the requested type).</p>
+     *
+     * @param type Java type to be bound or read
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Codec<T> forType(@NotNull Class<T> type) {
+        return (Codec<T>) resolved.get(type);
+    }
+
+    /**
+     * <p>Read the specified column of the current row as the specified type.</p>
+     *
+     * @param resultSet <code>ResultSet</code> positioned on a row
+     * @param index One-relative column index
+     * @param type Java type to be returned
+     *
+     * @throws SQLException if a JDBC error occurs
+     */
+    public static <T> T read(@NotNull ResultSet resultSet, int index,
+                             @NotNull Class<T> type)
+            throws SQLException {
+        return forType(type).read(resultSet, index);
+    }
+
+    /**
+     * <p>Read the specified column of the current row as the specified type.</p>
+     *
+     * @param resultSet <code>ResultSet</code> positioned on a row
+     * @param column Column label
+     * @param type Java type to be returned
+     *
+     * @throws SQLException if a JDBC error occurs
+     */
+    public static <T> T read(@NotNull ResultSet resultSet, @NotNull String column,
+                             @NotNull Class<T> type)
+            throws SQLException {
+        return forType(type).read(resultSet, column);
+    }
+
+    /**
+     * <p>Register the codec to be used for the specified type (and any
+     * subtypes without a more specific registration), replacing any
+     * previous registration.  Call this at startup, because subtypes that
+     * were already resolved keep the codec they were resolved to.</p>
+     *
+     * @param type Java type handled by the codec
+     * @param codec Codec to be used
+     */
+    public static <T> void register(@NotNull Class<T> type, @NotNull Codec<T> codec) {
+        registered.put(type, codec);
+        resolved.remove(type);
+    }
+
+    // Private Methods -------------------------------------------------------
+
+    /**
+     * <p>Find the codec for the specified type, preferring an exact
+     * registration, then enums, then the nearest registered superclass
+     * or interface.</p>
+     *
+     * @param type Java type to be resolved
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static Codec<?> resolve(Class<?> type) {
+        Codec<?> codec = registered.get(type);
+        if (codec != null) {
+            return codec;
+        }
+        if (Enum.class.isAssignableFrom(type) && (type != Enum.class)) {
+            Class<?> enumType = type.isEnum() ? type : type.getSuperclass();
+            return new EnumCodec(enumType);
+        }
+        for (Class<?> current = type.getSuperclass(); current != null; current = current.getSuperclass()) {
+            codec = registered.get(current);
+            if (codec != null) {
+                return codec;
+            }
+        }
+        for (Class<?> iface : type.getInterfaces()) {
+            codec = registered.get(iface);
+            if (codec != null) {
+                return codec;
+            }
+        }
+        return (type == Object.class) ? OBJECT : new TypedObjectCodec<>(type);
+    }
+
+    private static UUID toUUID(Object value) {
+        if ((value == null) || (value instanceof UUID)) {
+            return (UUID) value;
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            long high = 0;
+            long low = 0;
+            for (int i = 0; i < 8; i++) {
+                high = (high << 8) | (bytes[i] & 0xff);
+                low = (low << 8) | (bytes[i + 8] & 0xff);
+            }
+            return new UUID(high, low);
+        } else {
+            return UUID.fromString(value.toString());
+        }
+    }
+
+    // Support Classes -------------------------------------------------------
+
+    /**
+     * <p>Codec for an enum type, stored as the name of the constant.</p>
+     */
+    private static final class EnumCodec<E extends Enum<E>> implements Codec<E> {
+
+        private EnumCodec(Class<E> type) {
+            this.type = type;
+        }
+
+        private final Class<E> type;
+
+        @Override
+        public void bind(PreparedStatement statement, int index, E value) throws SQLException {
+            statement.setString(index, value.name());
+        }
+
+        @Override
+        public E read(ResultSet resultSet, int index) throws SQLException {
+            String value = resultSet.getString(index);
+            return (value != null) ? Enum.valueOf(type, value) : null;
+        }
+
+        @Override
+        public E read(ResultSet resultSet, String column) throws SQLException {
+            String value = resultSet.getString(column);
+            return (value != null) ? Enum.valueOf(type, value) : null;
+        }
+
+    }
+
+    /**
+     * <p>Codec for a <code>java.time</code> type, bound and read with the
+     * JDBC 4.2 typed <code>setObject()</code> and <code>getObject()</code>
+     * methods, so that no intermediate <code>java.sql</code> objects are
+     * created.  Drivers without JDBC 4.2 support can be accommodated by
+     * overriding <code>legacy()</code>.</p>
+     */
+    private static class TemporalCodec<T> implements Codec<T> {
+
+        private TemporalCodec(Class<T> type) {
+            this.type = type;
+        }
+
+        private final Class<T> type;
+
+        @Override
+        public void bind(PreparedStatement statement, int index, T value) throws SQLException {
+            statement.setObject(index, value);
+        }
+
+        @Override
+        public T read(ResultSet resultSet, int index) throws SQLException {
+            try {
+                return resultSet.getObject(index, type);
+            } catch (SQLFeatureNotSupportedException e) {
+                Timestamp value = resultSet.getTimestamp(index);
+                return (value != null) ? legacy(value) : null;
+            }
+        }
+
+        @Override
+        public T read(ResultSet resultSet, String column) throws SQLException {
+            try {
+                return resultSet.getObject(column, type);
+            } catch (SQLFeatureNotSupportedException e) {
+                Timestamp value = resultSet.getTimestamp(column);
+                return (value != null) ? legacy(value) : null;
+            }
+        }
+
+        T legacy(Timestamp value) throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException("No legacy conversion to " + type.getName());
+        }
+
+    }
+
+    /**
+     * <p>Codec for types without a registration, bound with
+     * <code>setObject()</code> and read with the typed
+     * <code>getObject()</code>.</p>
+     */
+    private static final class TypedObjectCodec<T> implements Codec<T> {
+
+        private TypedObjectCodec(Class<T> type) {
+            this.type = type;
+        }
+
+        private final Class<T> type;
+
+        @Override
+        public void bind(PreparedStatement statement, int index, T value) throws SQLException {
+            statement.setObject(index, value);
+        }
+
+        @Override
+        public T read(ResultSet resultSet, int index) throws SQLException {
+            return resultSet.getObject(index, type);
+        }
+
+        @Override
+        public T read(ResultSet resultSet, String column) throws SQLException {
+            return resultSet.getObject(column, type);
+        }
+
+    }
+
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.model;
+
+import javax.validation.constraints.NotNull;
+import java.lang.ref.WeakReference;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>Immutable description of the columns returned by a query, resolved from
+ * its <code>ResultSetMetaData</code>, so that values can be read by index
+ * rather than by name.  Layouts are cached by <em>shape</em> (the ordered
+ * list of column labels), so each distinct SELECT list is only analyzed once,
+ * and the most recently resolved layout is remembered for each thread, so
+ * reading consecutive rows of the same <code>ResultSet</code> does not touch
+ * the metadata at all.</p>
+ *
+ * <p><strong>EXAMPLE:</strong></p>
+ *
+ * <code>
+ *     ColumnLayout layout = ColumnLayout.of(resultSet);
+ *     int index = layout.indexOf("firstName");
+ *     if (index &gt; 0) {
+ *         model.setFirstName(resultSet.getString(index));
+ *     }
+ * </code>
+ *
+ * <p><strong>USAGE NOTES:</strong></p>
+ * <ul>
+ *     <li>Column labels are matched ignoring case, and if the same label
+ *         appears more than once, the first occurrence is used, just as it
+ *         would be by the name based <code>ResultSet</code> getters.</li>
+ *     <li>Indexes are one-relative, as JDBC expects, with zero meaning that
+ *         the column is not present.</li>
+ * </ul>
+ */
+public final class ColumnLayout {
+
+    // Static Variables ------------------------------------------------------
+
+    /**
+     * <p>Maximum number of shapes that are cached.  If a query generator
+     * produces more distinct shapes than this, the cache is cleared and
+     * starts over, rather than growing without bound.</p>
+     */
+    public static final int MAXIMUM_SHAPES = 1024;
+
+    private static final ThreadLocal<Resolved> last = new ThreadLocal<>();
+
+    private static final Map<String, ColumnLayout> shapes = new ConcurrentHashMap<>();
+
+    // Instance Variables ----------------------------------------------------
+
+    private final Map<String, Integer> indexes;
+    private final String[] labels;
+    private final String shape;
+
+    // Constructors ----------------------------------------------------------
+
+    private ColumnLayout(String shape, String[] labels) {
+        this.labels = labels;
+        this.shape = shape;
+        this.indexes = new HashMap<>(labels.length * 2);
+        for (int i = 0; i < labels.length; i++) {
+            indexes.putIfAbsent(labels[i].toLowerCase(Locale.ROOT), i + 1);
+        }
+    }
+
+    // Static Methods --------------------------------------------------------
+
+    /**
+     * <p>Return the layout of the specified <code>ResultSet</code>, reusing
+     * the layout resolved by the previous call on this thread if it was for
+     * the same <code>ResultSet</code>.</p>
+     *
+     * @param resultSet <code>ResultSet</code> whose layout is required
+     *
+     * @throws SQLException if a JDBC error occurs
+     */
+    public static @NotNull ColumnLayout of(@NotNull ResultSet resultSet)
+            throws SQLException {
+        Resolved resolved = last.get();
+        if ((resolved != null) && (resolved.resultSet.get() == resultSet)) {
+            return resolved.layout;
+        }
+        ColumnLayout layout = of(resultSet.getMetaData());
+        last.set(new Resolved(resultSet, layout));
+        return layout;
+    }
+
+    /**
+     * <p>Return the (possibly cached) layout described by the specified
+     * <code>ResultSetMetaData</code>.</p>
+     *
+     * @param metaData Metadata describing the columns of a query
+     *
+     * @throws SQLException if a JDBC error occurs
+     */
+    public static @NotNull ColumnLayout of(@NotNull ResultSetMetaData metaData)
+            throws SQLException {
+        String[] labels = new String[metaData.getColumnCount()];
+        StringBuilder sb = new StringBuilder(labels.length * 12);
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = metaData.getColumnLabel(i + 1);
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(labels[i]);
+        }
+        String shape = sb.toString();
+        ColumnLayout layout = shapes.get(shape);
+        if (layout == null) {
+            if (shapes.size() >= MAXIMUM_SHAPES) {
+                shapes.clear();
+            }
+            layout = new ColumnLayout(shape, labels);
+            ColumnLayout previous = shapes.putIfAbsent(shape, layout);
+            if (previous != null) {
+                layout = previous;
+            }
+        }
+        return layout;
+    }
+
+    // Public Methods --------------------------------------------------------
+
+    /**
+     * <p>Return <code>true</code> if the specified column is present.</p>
+     *
+     * @param column Column label to look up
+     */
+    public boolean contains(@NotNull String column) {
+        return indexOf(column) > 0;
+    }
+
+    /**
+     * <p>Return the label of the column at the specified (one-relative)
+     * index.</p>
+     *
+     * @param index One-relative column index
+     */
+    public @NotNull String getLabel(int index) {
+        return labels[index - 1];
+    }
+
+    /**
+     * <p>Return the shape of this layout, which is the column labels
+     * separated by commas.</p>
+     */
+    public @NotNull String getShape() {
+        return shape;
+    }
+
+    /**
+     * <p>Return the one-relative index of the specified column, or zero if
+     * it is not present.</p>
+     *
+     * @param column Column label to look up
+     */
+    public int indexOf(@NotNull String column) {
+        Integer index = indexes.get(column); // Avoids folding lower case names
+        if (index == null) {
+            index = indexes.get(column.toLowerCase(Locale.ROOT));
+        }
+        return (index != null) ? index : 0;
+    }
+
+    /**
+     * <p>Return the number of columns in this layout.</p>
+     */
+    public int size() {
+        return labels.length;
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnLayout{" + shape + "}";
+    }
+
+    // Support Classes -------------------------------------------------------
+
+    /**
+     * <p>Most recently resolved layout for a thread.  The <code>ResultSet</code>
+     * is weakly referenced so that it is never kept alive by this cache.</p>
+     */
+    private static class Resolved {
+
+        private Resolved(ResultSet resultSet, ColumnLayout layout) {
+            this.layout = layout;
+            this.resultSet = new WeakReference<>(resultSet);
+        }
+
+        private final ColumnLayout layout;
+        private final WeakReference<ResultSet> resultSet;
+
+    }
+
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Thread safe, fixed size histogram of non-negative <code>long</code>
+ * values (typically elapsed nanoseconds, or row counts), in the style of an
+ * HDR histogram.  Values below <code>2 * SUB_BUCKETS</code> are counted
+ * exactly.  Larger values are counted in log-linear buckets, splitting each
+ * power of two range into <code>SUB_BUCKETS</code> equal sub-buckets, so that
+ * percentiles are reported to within about 6% of the true value.  Values
+ * larger than <code>MAX_VALUE</code> (about 18 minutes, in nanoseconds) are
+ * counted in the highest bucket.</p>
+ *
+ * <p>All of the memory is allocated when the histogram is created, and
+ * <code>record()</code> neither allocates nor locks, so it is safe to call on
+ * the hot path of every statement execution.  Readers see a weakly consistent
+ * view of concurrent updates, which is acceptable for monitoring.</p>
+ */
+public final class Histogram {
+
+    // Static Variables ------------------------------------------------------
+
+    /**
+     * <p>Largest value that is distinguished from larger ones.</p>
+     */
+    public static final long MAX_VALUE = (1L << 40) - 1;
+
+    /**
+     * <p>Number of sub-buckets per power of two range.</p>
+     */
+    public static final int SUB_BUCKETS = 16;
+
+    private static final int SUB_BUCKET_BITS = 4;
+
+    private static final int BUCKETS = index(MAX_VALUE) + 1;
+
+    // Instance Variables ----------------------------------------------------
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final LongAdder total = new LongAdder();
+
+    // Public Methods --------------------------------------------------------
+
+    /**
+     * <p>Return the number of values recorded.</p>
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * <p>Return the largest value recorded, or zero if there are none.</p>
+     */
+    public long getMax() {
+        long value = max.get();
+        return (value == Long.MIN_VALUE) ? 0 : value;
+    }
+
+    /**
+     * <p>Return the mean of the values recorded, or zero if there are none.</p>
+     */
+    public double getMean() {
+        long count = getCount();
+        return (count == 0) ? 0.0 : ((double) total.sum()) / count;
+    }
+
+    /**
+     * <p>Return the smallest value recorded, or zero if there are none.</p>
+     */
+    public long getMin() {
+        long value = min.get();
+        return (value == Long.MAX_VALUE) ? 0 : value;
+    }
+
+    /**
+     * <p>Return the sum of the values recorded.</p>
+     */
+    public long getTotal() {
+        return total.sum();
+    }
+
+    /**
+     * <p>Return the value at or below which the specified percentage of the
+     * recorded values fall, or zero if there are none.  The result is the
+     * highest value that would be counted in the same bucket, but never more
+     * than the largest value actually recorded.</p>
+     *
+     * @param percentile Percentile (from 0.0 to 100.0) to be returned
+     *
+     * @throws IllegalArgumentException if <code>percentile</code> is out
+     *  of range
+     */
+    public long getValueAtPercentile(double percentile) {
+        if ((percentile < 0.0) || (percentile > 100.0)) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil((percentile / 100.0) * count));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulative += snapshot[i];
+            if (cumulative >= target) {
+                return Math.min(highest(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * <p>Record the specified value.  Negative values are recorded as zero.</p>
+     *
+     * @param value Value to be recorded
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.getAndIncrement(index(Math.min(value, MAX_VALUE)));
+        total.add(value);
+        long current;
+        while (value > (current = max.get())) {
+            if (max.compareAndSet(current, value)) {
+                break;
+            }
+        }
+        while (value < (current = min.get())) {
+            if (min.compareAndSet(current, value)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * <p>Discard all recorded values.</p>
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        max.set(Long.MIN_VALUE);
+        min.set(Long.MAX_VALUE);
+        total.reset();
+    }
+
+    /**
+     * <p>Return an immutable summary of the current contents of this
+     * histogram.</p>
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(getCount(), getMin(), getMax(), getMean(),
+                getValueAtPercentile(50.0), getValueAtPercentile(90.0),
+                getValueAtPercentile(99.0), getValueAtPercentile(99.9));
+    }
+
+    @Override
+    public String toString() {
+        return "Histogram{count=" + getCount() +
+                ", min=" + getMin() +
+                ", max=" + getMax() +
+                ", mean=" + getMean() +
+                "}";
+    }
+
+    // Private Methods -------------------------------------------------------
+
+    /**
+     * <p>Return the highest value counted in the bucket at the specified
+     * index.</p>
+     *
+     * @param index Bucket index
+     */
+    private static long highest(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index / SUB_BUCKETS) - 1;
+        long top = (index % SUB_BUCKETS) + SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+
+    /**
+     * <p>Return the index of the bucket in which the specified value is
+     * counted.</p>
+     *
+     * @param value Non-negative value no larger than <code>MAX_VALUE</code>
+     */
+    private static int index(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        return (shift * SUB_BUCKETS) + (int) (value >>> shift);
+    }
+
+    // Support Classes -------------------------------------------------------
+
+    /**
+     * <p>Immutable summary of a {@link Histogram}, suitable for export over
+     * JMX as a composite value.</p>
+     */
+    public static final class Snapshot {
+
+        private final long count;
+        private final long max;
+        private final double mean;
+        private final long min;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+        private final long p999;
+
+        public Snapshot(long count, long min, long max, double mean,
+                        long p50, long p90, long p99, long p999) {
+            this.count = count;
+            this.max = max;
+            this.mean = mean;
+            this.min = min;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.p999 = p999;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public long getMin() {
+            return min;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP90() {
+            return p90;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+
+        public long getP999() {
+            return p999;
+        }
+
+        @Override
+        public String toString() {
+            return "{count=" + count +
+                    ", min=" + min +
+                    ", p50=" + p50 +
+                    ", p90=" + p90 +
+                    ", p99=" + p99 +
+                    ", p999=" + p999 +
+                    ", max=" + max +
+                    "}";
+        }
+
+    }
+
+}
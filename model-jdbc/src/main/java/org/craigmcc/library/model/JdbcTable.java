@@ -0,0 +1,55 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.model;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>Marks a concrete {@link Model} class for which the model processor
+ * (in the <code>processor</code> module) generates a {@link ModelJdbc}
+ * implementation at compile time.  The generated class is named after
+ * the model class with a <code>Jdbc</code> suffix, is placed in the same
+ * package, and maps the standard {@link Model} columns plus every field
+ * annotated with {@link JdbcColumn}.</p>
+ *
+ * <p><strong>EXAMPLE:</strong></p>
+ *
+ * <code>
+ *     &#64;JdbcTable("customers")
+ *     public class Customer extends Model&lt;Customer&gt; {
+ *         &#64;JdbcColumn("first_name")
+ *         private String firstName;
+ *         ...
+ *     }
+ * </code>
+ *
+ * <p>will generate <code>CustomerJdbc extends AbstractModelJdbc&lt;Customer&gt;</code>.</p>
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface JdbcTable {
+
+    /**
+     * <p>Name of the database table for this model.</p>
+     */
+    String value();
+
+}
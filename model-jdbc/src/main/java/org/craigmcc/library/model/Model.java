@@ -23,6 +23,10 @@ import org.eclipse.microprofile.openapi.annotations.media.Schema;
 
 import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * <p>Abstract base class for model objects.</p>
@@ -40,6 +44,12 @@ public abstract class Model<M> implements Cloneable, Constants, Serializable {
     @Schema(description = "Date and time this model object was most recently updated.")
     private LocalDateTime updated;
 
+    /**
+     * <p>Column values as loaded from the database (keyed by lower case
+     * column name), or <code>null</code> if changes are not being tracked.</p>
+     */
+    private transient Map<String, Object> snapshot;
+
     // Static Variables ------------------------------------------------------
 
     // Property Methods ------------------------------------------------------
@@ -70,10 +80,25 @@ public abstract class Model<M> implements Cloneable, Constants, Serializable {
 
 // Public Methods --------------------------------------------------------
 
+    /**
+     * <p>Discard the snapshot of loaded column values, so that every column
+     * is considered to have changed.  Call this once an update has been
+     * committed if the committed values cannot be recorded again with
+     * <code>snapshot()</code>, because the snapshot no longer reflects the
+     * database.</p>
+     */
+    public void clearSnapshot() {
+        snapshot = null;
+    }
+
     @Override
     public M clone() {
         try {
-            return (M) super.clone();
+            Model<M> clone = (Model<M>) super.clone();
+            if (snapshot != null) {
+                clone.snapshot = new HashMap<>(snapshot);
+            }
+            return (M) clone;
         } catch (CloneNotSupportedException e) {
             return null;
         }
@@ -103,6 +128,35 @@ public abstract class Model<M> implements Cloneable, Constants, Serializable {
                 .isEquals();
     }
 
+    /**
+     * <p>Return <code>true</code> if the specified column should be
+     * considered to have changed since this object was loaded, because
+     * there is no snapshot value for it, or the snapshot value is not equal
+     * (as defined by <code>Objects.deepEquals()</code>) to the specified
+     * current value.</p>
+     *
+     * @param column Column name (case is ignored)
+     * @param value Current value for the column
+     */
+    public boolean isChanged(String column, Object value) {
+        if (snapshot == null) {
+            return true;
+        }
+        String key = column.toLowerCase(Locale.ROOT);
+        if (!snapshot.containsKey(key)) {
+            return true;
+        }
+        return !Objects.deepEquals(snapshot.get(key), value);
+    }
+
+    /**
+     * <p>Return <code>true</code> if a snapshot of loaded column values is
+     * being kept for this object.</p>
+     */
+    public boolean isTracked() {
+        return snapshot != null;
+    }
+
     @Override
     public int hashCode() {
         return new HashCodeBuilder()
@@ -111,6 +165,24 @@ public abstract class Model<M> implements Cloneable, Constants, Serializable {
                 .toHashCode();
     }
 
+    /**
+     * <p>Record the value of the specified column as it was loaded from the
+     * database, starting a snapshot if necessary.  This is called by loaders
+     * (such as {@link RowMapper}) for classes that implement
+     * {@link ChangeTracked}.  Mutable values (such as arrays) are recorded
+     * by reference, so they must be replaced rather than modified in place
+     * for changes to be detected.</p>
+     *
+     * @param column Column name (case is ignored)
+     * @param value Value as loaded
+     */
+    public void snapshot(String column, Object value) {
+        if (snapshot == null) {
+            snapshot = new HashMap<>();
+        }
+        snapshot.put(column.toLowerCase(Locale.ROOT), value);
+    }
+
     @Override
     public String toString() {
         return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
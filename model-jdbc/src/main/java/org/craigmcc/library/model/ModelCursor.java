@@ -0,0 +1,261 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.model;
+
+import javax.sql.DataSource;
+import javax.validation.constraints.NotNull;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * <p>Lazily evaluated, forward-only iterator over the {@link Model} objects
+ * represented by the rows of a <code>ResultSet</code>.  Unlike
+ * <code>populateAll()</code>, only the current row is held in memory, so
+ * a cursor can be used to process any number of rows in constant space
+ * (subject to the JDBC driver honoring the fetch size).</p>
+ *
+ * <p>A cursor owns its <code>ResultSet</code>, plus any other resources
+ * (typically the <code>PreparedStatement</code> and <code>Connection</code>)
+ * it was created with, and closes all of them (in that order) when it is
+ * closed, or when the last row has been returned.</p>
+ *
+ * <p><strong>EXAMPLE:</strong></p>
+ *
+ * <code>
+ *     try (Stream&lt;Customer&gt; customers = ModelCursor.open(dataSource,
+ *             customerJdbc::findAll, customerJdbc, 500).stream()) {
+ *         customers.forEach(customer -&gt; ...);
+ *     }
+ * </code>
+ *
+ * <p><strong>USAGE NOTES:</strong></p>
+ * <ul>
+ *     <li>Be sure to close the cursor (or its stream) if you stop before
+ *         the last row, ideally with try-with-resources.</li>
+ *     <li>Since <code>Iterator</code> methods cannot throw checked exceptions,
+ *         an <code>SQLException</code> encountered while reading a row is
+ *         rethrown as an <code>IllegalStateException</code> wrapping it,
+ *         after the cursor has been closed.</li>
+ *     <li>Some drivers (for example PostgreSQL) only honor the fetch size
+ *         when auto commit is disabled on the connection.</li>
+ * </ul>
+ *
+ * @param <M> The {@link Model} class returned by this cursor
+ */
+public class ModelCursor<M extends Model> implements AutoCloseable, Iterator<M> {
+
+    // Instance Variables ----------------------------------------------------
+
+    private boolean closed = false;
+    private final ModelJdbc<M> jdbc;
+    private M next = null;
+    private final AutoCloseable[] resources;
+    private final ResultSet resultSet;
+
+    // Constructors ----------------------------------------------------------
+
+    /**
+     * <p>Create a cursor over the specified <code>ResultSet</code>.</p>
+     *
+     * @param jdbc {@link ModelJdbc} used to populate each row
+     * @param resultSet <code>ResultSet</code> positioned before the first row
+     * @param resources Additional resources to close (in order) after the
+     *                  <code>ResultSet</code> is closed
+     */
+    public ModelCursor(@NotNull ModelJdbc<M> jdbc,
+                       @NotNull ResultSet resultSet,
+                       @NotNull AutoCloseable... resources) {
+        this.jdbc = jdbc;
+        this.resultSet = resultSet;
+        this.resources = resources.clone();
+    }
+
+    // Static Methods --------------------------------------------------------
+
+    /**
+     * <p>Acquire a connection from the specified <code>DataSource</code>,
+     * create and execute a query with the specified factory, and return a
+     * cursor over the results that will close the statement and connection
+     * when it is closed or exhausted.  If anything fails before the cursor
+     * is returned, all resources acquired so far are closed.</p>
+     *
+     * @param dataSource <code>DataSource</code> providing the connection
+     * @param factory Factory for the query (for example, a method reference
+     *                to <code>findAll()</code> on a {@link ModelJdbc})
+     * @param jdbc {@link ModelJdbc} used to populate each row
+     * @param fetchSize Number of rows the driver should fetch per round trip,
+     *                  or zero to use the driver's default
+     *
+     * @return A cursor over the query results
+     *
+     * @throws SQLException if a JDBC error occurs
+     */
+    public static <M extends Model> ModelCursor<M> open(@NotNull DataSource dataSource,
+                                                        @NotNull StatementFactory factory,
+                                                        @NotNull ModelJdbc<M> jdbc,
+                                                        int fetchSize)
+            throws SQLException {
+        Connection connection = dataSource.getConnection();
+        PreparedStatement statement = null;
+        try {
+            statement = factory.create(connection);
+            if (fetchSize > 0) {
+                statement.setFetchSize(fetchSize);
+            }
+            ResultSet resultSet = statement.executeQuery();
+            return new ModelCursor<>(jdbc, resultSet, statement, connection);
+        } catch (SQLException | RuntimeException e) {
+            if (statement != null) {
+                closeQuietly(statement, e);
+            }
+            closeQuietly(connection, e);
+            throw e;
+        }
+    }
+
+    // Public Methods --------------------------------------------------------
+
+    /**
+     * <p>Close the <code>ResultSet</code> and any additional resources for
+     * this cursor.  Calling this method more than once has no effect.</p>
+     *
+     * @throws SQLException if a JDBC error occurs while closing
+     */
+    @Override
+    public void close() throws SQLException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        next = null;
+        Exception failure = null;
+        try {
+            resultSet.close();
+        } catch (SQLException e) {
+            failure = e;
+        }
+        for (AutoCloseable resource : resources) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure instanceof SQLException) {
+            throw (SQLException) failure;
+        } else if (failure != null) {
+            throw new SQLException(failure.getMessage(), failure);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        } else if (closed) {
+            return false;
+        }
+        try {
+            next = jdbc.populateNext(resultSet);
+            if (next == null) {
+                close();
+            }
+        } catch (SQLException e) {
+            closeQuietly(this, e);
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        return next != null;
+    }
+
+    /**
+     * <p>Return <code>true</code> if this cursor has been closed.</p>
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public M next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        M result = next;
+        next = null;
+        return result;
+    }
+
+    /**
+     * <p>Return a sequential <code>Stream</code> over the remaining rows of
+     * this cursor.  Closing the stream closes this cursor.</p>
+     */
+    public Stream<M> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+                Spliterator.NONNULL | Spliterator.ORDERED), false)
+                .onClose(() -> {
+                    try {
+                        close();
+                    } catch (SQLException e) {
+                        throw new IllegalStateException(e.getMessage(), e);
+                    }
+                });
+    }
+
+    // Private Methods -------------------------------------------------------
+
+    /**
+     * <p>Close the specified resource, recording any exception as
+     * suppressed by the original failure.</p>
+     *
+     * @param resource Resource to be closed
+     * @param failure Original failure being reported
+     */
+    private static void closeQuietly(AutoCloseable resource, Exception failure) {
+        try {
+            resource.close();
+        } catch (Exception e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    // Public Classes --------------------------------------------------------
+
+    /**
+     * <p>Factory for the <code>PreparedStatement</code> to be executed by
+     * <code>open()</code>.  The signature matches <code>findAll()</code>
+     * on {@link ModelJdbc}, and <code>build()</code> on the SQL statement
+     * builders, so method references to either can be used.</p>
+     */
+    @FunctionalInterface
+    public interface StatementFactory {
+
+        @NotNull PreparedStatement create(@NotNull Connection connection)
+                throws SQLException;
+
+    }
+
+}
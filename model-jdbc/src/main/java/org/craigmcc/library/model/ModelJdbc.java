@@ -15,11 +15,15 @@
  */
 package org.craigmcc.library.model;
 
+import org.craigmcc.library.shared.model.InList;
+
 import javax.validation.constraints.NotNull;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -62,6 +66,47 @@ public interface ModelJdbc<M extends Model> extends Jdbc {
     @NotNull PreparedStatement findAll(@NotNull Connection connection)
             throws SQLException;
 
+    /**
+     * <p>Create a <code>PreparedStatement</code> that will retrieve
+     * the model objects with any of the specified primary keys.  The
+     * default implementation selects all columns of the table returned by
+     * <code>getTable()</code> with an IN-list on the primary key column,
+     * padded to the next power of two as described for
+     * <code>InList</code>, and throws
+     * <code>UnsupportedOperationException</code> if there is no table.</p>
+     *
+     * @param connection <code>Connection</code> to provide the statement
+     * @param ids Primary keys for the {@link Model} objects to be retrieved
+     *
+     * @return <code>PreparedStatement</code> ready to be executed
+     *
+     * @throws SQLException if a JDBC error occurs
+     */
+    default @NotNull PreparedStatement findAllById(@NotNull Connection connection,
+                                                   @NotNull Collection<Long> ids)
+            throws SQLException {
+        String table = getTable();
+        if (table == null) {
+            throw new UnsupportedOperationException("findAllById() requires getTable() or" +
+                    " an override of findAllById() in " + getClass().getName());
+        }
+        List<Long> padded = InList.pad(new ArrayList<>(ids));
+        StringBuilder sql = new StringBuilder("SELECT * FROM ").append(table)
+                .append(" WHERE ").append(Constants.ID_COLUMN).append(" IN (");
+        if (padded.isEmpty()) {
+            sql.append("NULL");
+        }
+        for (int i = 0; i < padded.size(); i++) {
+            sql.append((i > 0) ? ", ?" : "?");
+        }
+        sql.append(") ORDER BY ").append(Constants.ID_COLUMN);
+        PreparedStatement statement = connection.prepareStatement(sql.toString());
+        for (int i = 0; i < padded.size(); i++) {
+            Codecs.bind(statement, i + 1, padded.get(i));
+        }
+        return statement;
+    }
+
     /**
      * <p>Create a <code>PreparedStatement</code> that will retrieve
      * the model object with the specified primary key.</p>
@@ -77,6 +122,17 @@ public interface ModelJdbc<M extends Model> extends Jdbc {
                                         @NotNull Long id)
             throws SQLException;
 
+    /**
+     * <p>Return the name of the table for this model type, or
+     * <code>null</code> if it is not known.  This is used by the default
+     * implementations of statement factories such as
+     * <code>findAllById()</code>.  The default implementation returns
+     * <code>null</code>.</p>
+     */
+    default String getTable() {
+        return null;
+    }
+
     /**
      * <p>Create a <code>PreparedStatement</code> that will insert
      * a new model object into the underlying table.  The first
@@ -119,6 +175,53 @@ public interface ModelJdbc<M extends Model> extends Jdbc {
     @NotNull List<M> populateAll(@NotNull ResultSet resultSet)
             throws SQLException;
 
+    /**
+     * <p>Return a {@link ModelCursor} that lazily copies values from each
+     * remaining row of the specified <code>ResultSet</code> into a newly
+     * created {@link Model} object, as <code>populateNext()</code> does,
+     * without accumulating them in memory.  Closing the cursor closes the
+     * <code>ResultSet</code> and then the specified resources.</p>
+     *
+     * @param resultSet <code>ResultSet</code> from which to acquire
+     *                  returned column values
+     * @param resources Additional resources (typically the statement and
+     *                  connection) to close along with the cursor
+     *
+     * @return A cursor over the {@link Model} objects for the remaining rows
+     */
+    default @NotNull ModelCursor<M> populateCursor(@NotNull ResultSet resultSet,
+                                                   @NotNull AutoCloseable... resources) {
+        return new ModelCursor<>(this, resultSet, resources);
+    }
+
+    /**
+     * <p>Copy values from the next row of the specified
+     * <code>ResultSet</code> of values returned by an insert or update
+     * (see <code>returning()</code> on the SQL statement builders, or
+     * <code>getGeneratedKeys()</code>) into the specified existing
+     * {@link Model} object, ignoring any columns that do not match one of
+     * its properties.  The default implementation uses a {@link RowMapper}
+     * for the class of the object.</p>
+     *
+     * @param resultSet <code>ResultSet</code> of returned column values
+     * @param model {@link Model} object that was written
+     *
+     * @return <code>true</code> if a row was copied, or <code>false</code>
+     *  if the <code>ResultSet</code> has no next row
+     *
+     * @throws SQLException if a JDBC error occurs
+     */
+    @SuppressWarnings("unchecked")
+    default boolean populateReturned(@NotNull ResultSet resultSet,
+                                     @NotNull M model)
+            throws SQLException {
+        if (!resultSet.next()) {
+            return false;
+        }
+        RowMapper.of((Class<M>) model.getClass(), resultSet).apply(resultSet, model);
+        return true;
+    }
+
     /**
      * <p>Copy values from the next row of the specified
      * <code>ResultSet</code> into a newly created {@link Model}
@@ -143,6 +246,38 @@ public interface ModelJdbc<M extends Model> extends Jdbc {
     M populateNext(@NotNull ResultSet resultSet)
             throws SQLException;
 
+    /**
+     * <p>Record the current column values of the specified {@link Model}
+     * object as its snapshot (see {@link ChangeTracked}), once an update or
+     * upsert of it has been committed, so that a later update sends only
+     * the columns changed after that.  The default implementation calls
+     * <code>clearSnapshot()</code> instead, so that every column is
+     * considered to have changed; implementations that know the columns
+     * of the model (such as generated ones) override it.</p>
+     *
+     * @param model {@link Model} object whose values have been committed
+     */
+    default void snapshot(@NotNull M model) {
+        model.clearSnapshot();
+    }
+
+    /**
+     * <p>Create a <code>PreparedStatement</code> that will insert the
+     * specified model object, or update the existing row with the same
+     * key, in a single statement (typically with <code>UpsertBuilder</code>
+     * from the SQL module).</p>
+     *
+     * @param connection <code>Connection</code> to provide the statement
+     * @param model {@link Model} object to be inserted or updated
+     *
+     * @return <code>PreparedStatement</code> ready to be executed
+     *
+     * @throws SQLException if a JDBC error occurs
+     */
+    @NotNull PreparedStatement upsert(@NotNull Connection connection,
+                                      @NotNull M model)
+            throws SQLException;
+
     /**
      * <p>Create a <code>PreparedStatement</code> that will update
      * an existing model object in the underlying table.</p>
@@ -158,4 +293,26 @@ public interface ModelJdbc<M extends Model> extends Jdbc {
                                       @NotNull M model)
             throws SQLException;
 
+    /**
+     * <p>Create a <code>PreparedStatement</code> that will update only the
+     * columns of an existing model object that have changed since its
+     * snapshot was taken (see {@link ChangeTracked}), or return
+     * <code>null</code> if nothing has changed.  The default implementation
+     * returns the statement from <code>update()</code>, which sets every
+     * column.</p>
+     *
+     * @param connection <code>Connection</code> to provide the statement
+     * @param model {@link Model} object to be updated
+     *
+     * @return <code>PreparedStatement</code> ready to be executed, or
+     *  <code>null</code> if there is nothing to update
+     *
+     * @throws SQLException if a JDBC error occurs
+     */
+    default PreparedStatement updateChanged(@NotNull Connection connection,
+                                            @NotNull M model)
+            throws SQLException {
+        return update(connection, model);
+    }
+
 }
@@ -19,12 +19,29 @@ import org.craigmcc.library.shared.exception.BadRequest;
 import org.craigmcc.library.shared.exception.InternalServerError;
 import org.craigmcc.library.shared.exception.NotFound;
 import org.craigmcc.library.shared.exception.NotUnique;
+import org.craigmcc.library.shared.model.FindResults;
 
+import javax.sql.DataSource;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import javax.validation.constraints.NotNull;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * <p>Abstract base class for persistent storage of {@link Model} objects, and related
@@ -32,6 +49,14 @@ import java.util.Set;
  */
 public abstract class ModelService<M extends Model> {
 
+    // Static Variables ------------------------------------------------------
+
+    /**
+     * <p>Default maximum number of primary keys looked up per query
+     * by <code>findAllById()</code>.</p>
+     */
+    public static final int DEFAULT_FIND_CHUNK_SIZE = 512;
+
     // Public Methods --------------------------------------------------------
 
     /**
@@ -49,7 +74,15 @@ public abstract class ModelService<M extends Model> {
             throws InternalServerError, NotFound;
 
     /**
-     * <p>Retrieve and return the specified {@link Model} object by identifier.</p>
+     * <p>Retrieve and return the specified {@link Model} object by identifier.
+     * If a {@link UnitOfWork} is bound to the calling thread and
+     * <code>getModelClass()</code> is available, the default implementation
+     * first returns the object from its identity map, if present.  Otherwise,
+     * it executes the statement returned by <code>findById()</code> on
+     * <code>getJdbc()</code>, on a connection from
+     * <code>getDataSource()</code>, and registers the result with the unit of
+     * work (if any).  It throws <code>UnsupportedOperationException</code> if
+     * either of those is missing.</p>
      *
      * @param id Primary key of the specified {@link Model} object.
      *
@@ -58,8 +91,35 @@ public abstract class ModelService<M extends Model> {
      * @throws InternalServerError If a server level error has occurred.
      * @throws NotFound If no object with the specified primary key can be found.
      */
-    public abstract @NotNull M find(@NotNull Long id)
-            throws InternalServerError, NotFound;
+    public @NotNull M find(@NotNull Long id)
+            throws InternalServerError, NotFound {
+        UnitOfWork unit = UnitOfWork.current();
+        Class<M> type = getModelClass();
+        if ((unit != null) && (type != null)) {
+            M model = unit.lookup(type, id);
+            if (model != null) {
+                return model;
+            }
+        }
+        ModelJdbc<M> jdbc = getJdbc();
+        DataSource dataSource = getDataSource();
+        if ((jdbc == null) || (dataSource == null)) {
+            throw new UnsupportedOperationException("find() requires getDataSource() and" +
+                    " getJdbc() or an override of find() in " + getClass().getName());
+        }
+        M model;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = jdbc.findById(connection, id);
+             ResultSet resultSet = statement.executeQuery()) {
+            model = jdbc.populateNext(resultSet);
+        } catch (SQLException e) {
+            throw new InternalServerError(e);
+        }
+        if (model == null) {
+            throw new NotFound("id: Missing id " + id);
+        }
+        return (unit != null) ? unit.register(model) : model;
+    }
 
     /**
      * <p>Retrieve and return all {@link Model} objects of the specified type.</p>
@@ -71,6 +131,70 @@ public abstract class ModelService<M extends Model> {
     public abstract @NotNull List<M> findAll()
             throws InternalServerError;
 
+    /**
+     * <p>Retrieve the {@link Model} objects with the specified primary keys,
+     * splitting large sets of keys into chunks of at most
+     * <code>findChunkSize()</code> keys, each retrieved by one call to
+     * <code>findChunk()</code>.  Duplicate and <code>null</code> keys are
+     * ignored.  Keys that do not match any object are reported in the
+     * results, rather than causing a <code>NotFound</code> exception.</p>
+     *
+     * @param ids Primary keys of the {@link Model} objects to retrieve.
+     *
+     * @return The matching {@link Model} objects, and the missing keys.
+     *
+     * @throws InternalServerError If a server level error has occurred.
+     */
+    public @NotNull FindResults<M> findAllById(@NotNull Collection<Long> ids)
+            throws InternalServerError {
+        Set<Long> requested = new LinkedHashSet<>(ids);
+        requested.remove(null);
+        Map<Long, M> matched = new HashMap<>();
+        List<Long> chunk = new ArrayList<>(Math.min(requested.size(), findChunkSize()));
+        for (Long id : requested) {
+            chunk.add(id);
+            if (chunk.size() == findChunkSize()) {
+                for (M model : findChunk(chunk)) {
+                    matched.put(model.getId(), model);
+                }
+                chunk.clear();
+            }
+        }
+        if (chunk.size() > 0) {
+            for (M model : findChunk(chunk)) {
+                matched.put(model.getId(), model);
+            }
+        }
+        Map<Long, M> found = new LinkedHashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : requested) {
+            M model = matched.get(id);
+            if (model != null) {
+                found.put(id, model);
+            } else {
+                missing.add(id);
+            }
+        }
+        return new FindResults<>(found, missing);
+    }
+
+    /**
+     * <p>Return a lazily evaluated <code>Stream</code> of all {@link Model}
+     * objects of the specified type.  The default implementation simply
+     * streams the results of <code>findAll()</code>; JDBC based services
+     * should override it to return the stream of a {@link ModelCursor}, so
+     * that rows are read on demand.  Callers must close the stream (ideally
+     * with try-with-resources) to release any underlying resources.</p>
+     *
+     * @return Stream of the matching {@link Model} objects.
+     *
+     * @throws InternalServerError If a server level error has occurred.
+     */
+    public @NotNull Stream<M> findAllStream()
+            throws InternalServerError {
+        return findAll().stream();
+    }
+
     /**
      * <p>Insert and return the specified {@link Model} object.</p>
      *
@@ -101,8 +225,406 @@ public abstract class ModelService<M extends Model> {
     public abstract @NotNull M update(@NotNull Long id, @NotNull M model)
             throws BadRequest, InternalServerError, NotFound, NotUnique;
 
+    /**
+     * <p>Update and return each of the specified {@link Model} objects, as
+     * done for a {@link UnitOfWork} commit.  If <code>getDataSource()</code>
+     * and <code>getJdbc()</code> are both available, the default
+     * implementation executes all of the updates as JDBC batches, in a single
+     * transaction, with <code>updateAll(connection, jdbc, models)</code>;
+     * otherwise, it calls <code>update()</code> once per object, and services
+     * should override it.</p>
+     *
+     * @param models The {@link Model} objects to be updated.
+     *
+     * @return The {@link Model} objects with <code>updated</code> field updated,
+     *  in the same order.
+     *
+     * @throws BadRequest If a validation error has occurred.
+     * @throws InternalServerError If a server level error has occurred.
+     * @throws NotFound If no object with a specified primary key can be found.
+     * @throws NotUnique If a uniqueness constraint has been violated.
+     */
+    public @NotNull List<M> updateAll(@NotNull List<M> models)
+            throws BadRequest, InternalServerError, NotFound, NotUnique {
+        ModelJdbc<M> jdbc = getJdbc();
+        DataSource dataSource = getDataSource();
+        if ((jdbc != null) && (dataSource != null)) {
+            try (Connection connection = dataSource.getConnection()) {
+                return updateAll(connection, jdbc, models);
+            } catch (SQLException e) {
+                throw new InternalServerError(e);
+            }
+        }
+        List<M> results = new ArrayList<>(models.size());
+        for (M model : models) {
+            results.add(update(model.getId(), model));
+        }
+        return results;
+    }
+
+    /**
+     * <p>Update the specified {@link Model} object if it has a primary key
+     * and an object with that key exists, and otherwise insert it, and
+     * return it.  This is <strong>not</strong> atomic: the update and the
+     * insert are separate operations, so two callers saving a new object
+     * with the same key at the same time can both fall through to
+     * <code>insert()</code> (and one of them will then see
+     * <code>NotUnique</code>, or a duplicate row will be created if there is
+     * no uniqueness constraint).  Use <code>upsert()</code> for an atomic
+     * insert-or-update; this method is only a fallback for services that
+     * cannot provide one.</p>
+     *
+     * @param model The {@link Model} object to be inserted or updated.
+     *
+     * @return The inserted or updated {@link Model} object.
+     *
+     * @throws BadRequest If a validation error has occurred.
+     * @throws InternalServerError If a server level error has occurred.
+     * @throws NotUnique If a uniqueness constraint has been violated.
+     */
+    public @NotNull M updateOrInsert(@NotNull M model)
+            throws BadRequest, InternalServerError, NotUnique {
+        if (model.getId() != null) {
+            try {
+                return update(model.getId(), model);
+            } catch (NotFound e) {
+                // Fall through to insert
+            }
+        }
+        return insert(model);
+    }
+
+    /**
+     * <p>Insert the specified {@link Model} object, or update the existing
+     * row with the same key, in a single atomic statement, and return it.
+     * The default implementation calls <code>upsert(connection, jdbc, model)</code>
+     * on a connection from <code>getDataSource()</code> with the
+     * {@link ModelJdbc} from <code>getJdbc()</code>, and throws
+     * <code>UnsupportedOperationException</code> if either is missing.</p>
+     *
+     * @param model The {@link Model} object to be inserted or updated.
+     *
+     * @return The inserted or updated {@link Model} object.
+     *
+     * @throws BadRequest If a validation error has occurred.
+     * @throws InternalServerError If a server level error has occurred.
+     * @throws NotUnique If a uniqueness constraint has been violated.
+     */
+    public @NotNull M upsert(@NotNull M model)
+            throws BadRequest, InternalServerError, NotUnique {
+        ModelJdbc<M> jdbc = getJdbc();
+        DataSource dataSource = getDataSource();
+        if ((jdbc == null) || (dataSource == null)) {
+            throw new UnsupportedOperationException("upsert() requires getDataSource() and" +
+                    " getJdbc() or an override of upsert() in " + getClass().getName());
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            return upsert(connection, jdbc, model);
+        } catch (SQLException e) {
+            throw new InternalServerError(e);
+        }
+    }
+
     // Protected Methods -----------------------------------------------------
 
+    /**
+     * <p>Retrieve the {@link Model} objects matching one chunk of primary
+     * keys for <code>findAllById()</code>, in any order, omitting keys that
+     * do not match.  If <code>getDataSource()</code> and
+     * <code>getJdbc()</code> are both available, the default implementation
+     * executes a single IN-list query with
+     * <code>findChunk(connection, jdbc, ids)</code>; otherwise, it calls
+     * <code>find()</code> once per key, and services should override it.</p>
+     *
+     * @param ids Primary keys to retrieve (at most <code>findChunkSize()</code>).
+     *
+     * @return The matching {@link Model} objects.
+     *
+     * @throws InternalServerError If a server level error has occurred.
+     */
+    protected @NotNull List<M> findChunk(@NotNull List<Long> ids)
+            throws InternalServerError {
+        ModelJdbc<M> jdbc = getJdbc();
+        DataSource dataSource = getDataSource();
+        if ((jdbc != null) && (dataSource != null)) {
+            try (Connection connection = dataSource.getConnection()) {
+                return findChunk(connection, jdbc, ids);
+            } catch (SQLException e) {
+                throw new InternalServerError(e);
+            }
+        }
+        List<M> results = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            try {
+                results.add(find(id));
+            } catch (NotFound e) {
+                // Reported as missing by findAllById()
+            }
+        }
+        return results;
+    }
+
+    /**
+     * <p>Retrieve the {@link Model} objects matching the specified primary
+     * keys, by executing the statement returned by <code>findAllById()</code>
+     * on the specified {@link ModelJdbc}.  This is used by
+     * <code>findChunk(List)</code>.</p>
+     *
+     * @param connection <code>Connection</code> on which to execute the query.
+     * @param jdbc {@link ModelJdbc} for this {@link Model} type.
+     * @param ids Primary keys to retrieve.
+     *
+     * @return The matching {@link Model} objects.
+     *
+     * @throws InternalServerError If a server level error has occurred.
+     */
+    protected @NotNull List<M> findChunk(@NotNull Connection connection,
+                                         @NotNull ModelJdbc<M> jdbc,
+                                         @NotNull List<Long> ids)
+            throws InternalServerError {
+        try (PreparedStatement statement = jdbc.findAllById(connection, ids);
+             ResultSet resultSet = statement.executeQuery()) {
+            return jdbc.populateAll(resultSet);
+        } catch (SQLException e) {
+            throw new InternalServerError(e);
+        }
+    }
+
+    /**
+     * <p>Return the maximum number of primary keys that
+     * <code>findAllById()</code> passes to each <code>findChunk()</code>
+     * call.  The default is {@link #DEFAULT_FIND_CHUNK_SIZE}.</p>
+     */
+    protected int findChunkSize() {
+        return DEFAULT_FIND_CHUNK_SIZE;
+    }
+
+    /**
+     * <p>Return the <code>DataSource</code> from which the default
+     * implementations in this class acquire connections when they use
+     * <code>getJdbc()</code>, or <code>null</code> if there is none.
+     * Connections are closed (returning them to a pool, if any) when each
+     * call completes.  The default implementation returns
+     * <code>null</code>.</p>
+     */
+    protected DataSource getDataSource() {
+        return null;
+    }
+
+    /**
+     * <p>Return the {@link ModelJdbc} for this {@link Model} type, used
+     * along with <code>getDataSource()</code> by the default implementations
+     * in this class, or <code>null</code> if there is none.  The default
+     * implementation returns <code>null</code>.</p>
+     */
+    protected ModelJdbc<M> getJdbc() {
+        return null;
+    }
+
+    /**
+     * <p>Return the {@link Model} class managed by this service, used by
+     * <code>find()</code> to consult the identity map of the current
+     * {@link UnitOfWork}, or <code>null</code> if it is not known.  The
+     * default implementation returns <code>null</code>.</p>
+     */
+    protected Class<M> getModelClass() {
+        return null;
+    }
+
+    /**
+     * <p>Execute the statement returned by <code>insert()</code> on the
+     * specified {@link ModelJdbc}, and copy the values it returns (the
+     * generated primary key, plus any columns requested with
+     * <code>returning()</code> on the SQL statement builders) into the
+     * specified {@link Model} object, so that no separate SELECT is needed.
+     * Returned values are read from the rows produced by the statement if
+     * there are any, and otherwise from its generated keys.  Drivers label
+     * generated keys inconsistently (for example <code>GENERATED_KEY</code>
+     * or <code>SCOPE_IDENTITY</code>), so if no generated key column is
+     * labelled with the primary key column name, the primary key is taken
+     * from the first column.  This is a convenience for implementing
+     * <code>insert(M)</code>.</p>
+     *
+     * @param connection <code>Connection</code> on which to execute the insert.
+     * @param jdbc {@link ModelJdbc} for this {@link Model} type.
+     * @param model The {@link Model} object to be inserted.
+     *
+     * @return The inserted {@link Model} object.
+     *
+     * @throws InternalServerError If a server level error has occurred, or
+     *  the insert did not return the primary key.
+     */
+    protected @NotNull M insert(@NotNull Connection connection,
+                                @NotNull ModelJdbc<M> jdbc,
+                                @NotNull M model)
+            throws InternalServerError {
+        try (PreparedStatement statement = jdbc.insert(connection, model)) {
+            boolean rows = statement.execute();
+            ResultSet returned = rows ? statement.getResultSet() : statement.getGeneratedKeys();
+            if (returned == null) {
+                throw new InternalServerError("id: No values returned by insert");
+            }
+            try (ResultSet resultSet = returned) {
+                if (!jdbc.populateReturned(resultSet, model)) {
+                    throw new InternalServerError("id: No row returned by insert");
+                }
+                if (!rows && !hasIdColumn(resultSet.getMetaData())) {
+                    model.setId(resultSet.getLong(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw new InternalServerError(e);
+        }
+        return model;
+    }
+
+    /**
+     * <p>Execute the statement returned by <code>updateChanged()</code> on
+     * the specified {@link ModelJdbc} (if anything has changed), and copy the values it returns (if
+     * <code>returning()</code> was requested on the SQL statement builders,
+     * for a dialect that returns rows) into the specified {@link Model}
+     * object, so that no separate SELECT is needed.  The snapshot of the
+     * object is retaken with <code>snapshot()</code> on the
+     * {@link ModelJdbc} on success.  This is a convenience for
+     * implementing <code>update(Long, M)</code>.</p>
+     *
+     * @param connection <code>Connection</code> on which to execute the update.
+     * @param jdbc {@link ModelJdbc} for this {@link Model} type.
+     * @param model The {@link Model} object to be updated.
+     *
+     * @return The updated {@link Model} object.
+     *
+     * @throws InternalServerError If a server level error has occurred.
+     * @throws NotFound If no object with the specified primary key can be found.
+     */
+    protected @NotNull M update(@NotNull Connection connection,
+                                @NotNull ModelJdbc<M> jdbc,
+                                @NotNull M model)
+            throws InternalServerError, NotFound {
+        boolean found;
+        try (PreparedStatement statement = jdbc.updateChanged(connection, model)) {
+            if (statement == null) {
+                return model;
+            } else if (statement.execute()) {
+                try (ResultSet resultSet = statement.getResultSet()) {
+                    found = jdbc.populateReturned(resultSet, model);
+                }
+            } else {
+                found = statement.getUpdateCount() > 0;
+            }
+        } catch (SQLException e) {
+            throw new InternalServerError(e);
+        }
+        if (!found) {
+            throw new NotFound("id: Missing id " + model.getId());
+        }
+        jdbc.snapshot(model);
+        return model;
+    }
+
+    /**
+     * <p>Execute the statements returned by <code>updateChanged()</code> on
+     * the specified {@link ModelJdbc} for each of the specified {@link Model}
+     * objects, on one connection in a single transaction that is rolled back
+     * if any update fails.  Statements with the same SQL text are prepared
+     * once, and each object's parameters are added to it with
+     * <code>addBatch()</code>, so that there is one
+     * <code>executeBatch()</code> round trip per distinct SQL text rather than
+     * one per object.  Objects for which <code>updateChanged()</code> returns
+     * <code>null</code> (because nothing changed) are skipped, and the
+     * snapshot of every object is retaken with <code>snapshot()</code> on
+     * the {@link ModelJdbc} once the transaction commits.  This is used by
+     * <code>updateAll(List)</code>.</p>
+     *
+     * @param connection <code>Connection</code> on which to execute the updates.
+     * @param jdbc {@link ModelJdbc} for this {@link Model} type.
+     * @param models The {@link Model} objects to be updated.
+     *
+     * @return The updated {@link Model} objects, in the same order.
+     *
+     * @throws InternalServerError If a server level error has occurred.
+     * @throws NotFound If no object with a specified primary key can be found.
+     */
+    protected @NotNull List<M> updateAll(@NotNull Connection connection,
+                                         @NotNull ModelJdbc<M> jdbc,
+                                         @NotNull List<M> models)
+            throws InternalServerError, NotFound {
+        Map<String, PreparedStatement> statements = new LinkedHashMap<>();
+        Map<PreparedStatement, List<M>> batches = new LinkedHashMap<>();
+        Connection batching = batching(connection, statements);
+        try {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                for (M model : models) {
+                    PreparedStatement statement = jdbc.updateChanged(batching, model);
+                    if (statement != null) {
+                        statement.addBatch();
+                        batches.computeIfAbsent(statement, s -> new ArrayList<>()).add(model);
+                    }
+                }
+                for (Map.Entry<PreparedStatement, List<M>> batch : batches.entrySet()) {
+                    int[] counts = batch.getKey().executeBatch();
+                    for (int i = 0; i < counts.length; i++) {
+                        if (counts[i] == 0) {
+                            throw new NotFound("id: Missing id " + batch.getValue().get(i).getId());
+                        }
+                    }
+                }
+                connection.commit();
+                for (M model : models) {
+                    jdbc.snapshot(model);
+                }
+            } catch (NotFound | SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+                for (PreparedStatement statement : statements.values()) {
+                    statement.close();
+                }
+            }
+        } catch (SQLException e) {
+            throw new InternalServerError(e);
+        }
+        return models;
+    }
+
+    /**
+     * <p>Execute the statement returned by <code>upsert()</code> on the
+     * specified {@link ModelJdbc}, which inserts the specified {@link Model}
+     * object or updates the existing row with the same key in a single
+     * round trip.  The snapshot of the object is retaken with
+     * <code>snapshot()</code> on the {@link ModelJdbc} on success.  An
+     * object without a primary key cannot match an existing row, so it is
+     * inserted with <code>insert(connection, jdbc, model)</code> instead,
+     * which reads back the generated key.  This is used by
+     * <code>upsert(M)</code>.</p>
+     *
+     * @param connection <code>Connection</code> on which to execute the upsert.
+     * @param jdbc {@link ModelJdbc} for this {@link Model} type.
+     * @param model The {@link Model} object to be inserted or updated.
+     *
+     * @return The inserted or updated {@link Model} object.
+     *
+     * @throws InternalServerError If a server level error has occurred.
+     */
+    protected @NotNull M upsert(@NotNull Connection connection,
+                                @NotNull ModelJdbc<M> jdbc,
+                                @NotNull M model)
+            throws InternalServerError {
+        if (model.getId() == null) {
+            return insert(connection, jdbc, model);
+        }
+        try (PreparedStatement statement = jdbc.upsert(connection, model)) {
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new InternalServerError(e);
+        }
+        jdbc.snapshot(model);
+        return model;
+    }
+
     protected String formatMessage(ConstraintViolationException e) {
         StringBuffer sb = new StringBuffer();
         for (ConstraintViolation constraintViolation : e.getConstraintViolations()) {
@@ -125,4 +647,62 @@ public abstract class ModelService<M extends Model> {
         return sb.toString();
     }
 
+    // Private Methods -------------------------------------------------------
+
+    /**
+     * <p>Return a view of the specified connection whose
+     * <code>prepareStatement()</code> methods return the same statement for
+     * the same SQL text, recorded in the specified map, so that the
+     * parameters bound by each {@link ModelJdbc} call can be added to one
+     * batch.  All other calls are passed through to the connection.</p>
+     *
+     * @param connection Connection to be wrapped
+     * @param statements Statements prepared so far, keyed by SQL text
+     */
+    private static Connection batching(Connection connection,
+                                       Map<String, PreparedStatement> statements) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                    if (method.getName().equals("prepareStatement")) {
+                        PreparedStatement statement = statements.get((String) args[0]);
+                        if (statement == null) {
+                            statement = (PreparedStatement) invoke(method, connection, args);
+                            statements.put((String) args[0], statement);
+                        }
+                        return statement;
+                    }
+                    return invoke(method, connection, args);
+                });
+    }
+
+    /**
+     * <p>Return <code>true</code> if any column of the specified results is
+     * labelled with the primary key column name.</p>
+     *
+     * @param metaData Metadata of the results to be checked
+     *
+     * @throws SQLException if a JDBC error occurs
+     */
+    private boolean hasIdColumn(ResultSetMetaData metaData) throws SQLException {
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            if (Constants.ID_COLUMN.equalsIgnoreCase(metaData.getColumnLabel(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * <p>Invoke the specified method on the specified target, rethrowing
+     * the exception thrown by the method itself (rather than the reflective
+     * wrapper) if it fails.</p>
+     */
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
 }
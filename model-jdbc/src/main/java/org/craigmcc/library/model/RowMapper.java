@@ -0,0 +1,393 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.model;
+
+import javax.validation.constraints.NotNull;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * <p>Mapper that creates and populates {@link Model} objects from the rows of
+ * a <code>ResultSet</code>, specialized for one {@link Model} class and one
+ * {@link ColumnLayout}.  Each column whose label matches a bean property of
+ * the class (ignoring case) is read by index with the {@link Codec} for the
+ * property type, and passed to the property setter.</p>
+ *
+ * <p>All of the analysis happens once, when the mapper is created: the
+ * constructor and setters are bound with <code>LambdaMetafactory</code> (or
+ * with method handles, if the class is not accessible to this library),
+ * and the column indexes and codecs are precomputed, so mapping a row
+ * involves no reflection and no name lookups.  Mappers are cached by class
+ * and shape, so <code>of()</code> is cheap to call for every query.</p>
+ *
+ * <p><strong>EXAMPLE:</strong></p>
+ *
+ * <code>
+ *     RowMapper&lt;Customer&gt; mapper = RowMapper.of(Customer.class, resultSet);
+ *     while (resultSet.next()) {
+ *         customers.add(mapper.map(resultSet));
+ *     }
+ * </code>
+ *
+ * <p><strong>USAGE NOTES:</strong></p>
+ * <ul>
+ *     <li>The {@link Model} class must be concrete, with a public
+ *         no-arguments constructor.</li>
+ *     <li>Columns that do not match a property are ignored, and properties
+ *         without a matching column are left at their initial values.</li>
+ *     <li>A SQL <code>NULL</code> is passed to setters of object types, but
+ *         setters of primitive types are not called, leaving the initial
+ *         value.</li>
+ *     <li>For classes that implement {@link ChangeTracked}, the value of
+ *         each mapped column is also recorded in the snapshot of the
+ *         new object.</li>
+ *     <li>Subclasses of {@link AbstractModelJdbc} that do not override
+ *         <code>populateNext()</code> use a mapper for it and for
+ *         <code>populateAll()</code> automatically.</li>
+ * </ul>
+ *
+ * @param <M> The {@link Model} class being mapped
+ */
+public final class RowMapper<M> {
+
+    // Static Variables ------------------------------------------------------
+
+    private static final ClassValue<Map<String, RowMapper<?>>> mappers =
+            new ClassValue<Map<String, RowMapper<?>>>() {
+                @Override
+                protected Map<String, RowMapper<?>> computeValue(Class<?> type) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
+    private static final ClassValue<Map<String, Property>> properties =
+            new ClassValue<Map<String, Property>>() {
+                @Override
+                protected Map<String, Property> computeValue(Class<?> type) {
+                    return introspect(type);
+                }
+            };
+
+    // Instance Variables ----------------------------------------------------
+
+    private final Codec<?>[] codecs;
+    private final Supplier<M> factory;
+    private final int[] indexes;
+    private final String[] labels;
+    private final ColumnLayout layout;
+    private final boolean[] primitives;
+    private final BiConsumer<Object, Object>[] setters;
+    private final boolean tracked;
+    private final Class<M> type;
+
+    // Constructors ----------------------------------------------------------
+
+    @SuppressWarnings("unchecked")
+    private RowMapper(Class<M> type, ColumnLayout layout) {
+        this.type = type;
+        this.layout = layout;
+        this.factory = factory(type);
+        this.tracked = ChangeTracked.class.isAssignableFrom(type) &&
+                Model.class.isAssignableFrom(type);
+        Map<String, Property> available = properties.get(type);
+        List<Property> matched = new ArrayList<>(layout.size());
+        List<Integer> columns = new ArrayList<>(layout.size());
+        for (int i = 1; i <= layout.size(); i++) {
+            Property property = available.get(layout.getLabel(i).toLowerCase(Locale.ROOT));
+            if ((property != null) && (layout.indexOf(layout.getLabel(i)) == i)) {
+                matched.add(property);
+                columns.add(i);
+            }
+        }
+        this.codecs = new Codec<?>[matched.size()];
+        this.indexes = new int[matched.size()];
+        this.labels = new String[matched.size()];
+        this.primitives = new boolean[matched.size()];
+        this.setters = new BiConsumer[matched.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            Property property = matched.get(i);
+            codecs[i] = Codecs.forType(property.type);
+            indexes[i] = columns.get(i);
+            labels[i] = layout.getLabel(indexes[i]);
+            primitives[i] = property.type.isPrimitive();
+            setters[i] = property.setter;
+        }
+    }
+
+    // Static Methods --------------------------------------------------------
+
+    /**
+     * <p>Return the (possibly cached) mapper for the specified {@link Model}
+     * class and column layout.</p>
+     *
+     * @param type {@link Model} class to be mapped
+     * @param layout Column layout of the rows to be mapped
+     *
+     * @throws IllegalArgumentException if the class is abstract, or does not
+     *  have a public no-arguments constructor
+     */
+    @SuppressWarnings("unchecked")
+    public static @NotNull <M> RowMapper<M> of(@NotNull Class<M> type,
+                                               @NotNull ColumnLayout layout) {
+        Map<String, RowMapper<?>> cache = mappers.get(type);
+        RowMapper<?> mapper = cache.get(layout.getShape());
+        if (mapper == null) {
+            if (cache.size() >= ColumnLayout.MAXIMUM_SHAPES) {
+                cache.clear();
+            }
+            mapper = new RowMapper<>(type, layout);
+            RowMapper<?> previous = cache.putIfAbsent(layout.getShape(), mapper);
+            if (previous != null) {
+                mapper = previous;
+            }
+        }
+        return (RowMapper<M>) mapper;
+    }
+
+    /**
+     * <p>Return the (possibly cached) mapper for the specified {@link Model}
+     * class and the layout of the specified <code>ResultSet</code>.</p>
+     *
+     * @param type {@link Model} class to be mapped
+     * @param resultSet <code>ResultSet</code> whose rows are to be mapped
+     *
+     * @throws IllegalArgumentException if the class is abstract, or does not
+     *  have a public no-arguments constructor
+     * @throws SQLException if a JDBC error occurs
+     */
+    public static @NotNull <M> RowMapper<M> of(@NotNull Class<M> type,
+                                               @NotNull ResultSet resultSet)
+            throws SQLException {
+        return of(type, ColumnLayout.of(resultSet));
+    }
+
+    // Public Methods --------------------------------------------------------
+
+    /**
+     * <p>Copy the mapped columns of the current row of the specified
+     * <code>ResultSet</code>, which must have the layout this mapper was
+     * created for, into the specified existing object.  This is used to
+     * apply the values returned by an INSERT or UPDATE (for example, with
+     * a <code>RETURNING</code> clause) to the object that was written.</p>
+     *
+     * @param resultSet <code>ResultSet</code> positioned on a row
+     * @param model Object to be populated
+     *
+     * @return The specified object
+     *
+     * @throws SQLException if a JDBC error occurs
+     */
+    public @NotNull M apply(@NotNull ResultSet resultSet, @NotNull M model)
+            throws SQLException {
+        for (int i = 0; i < indexes.length; i++) {
+            Object value = codecs[i].read(resultSet, indexes[i]);
+            if ((value != null) || !primitives[i]) {
+                setters[i].accept(model, value);
+            }
+            if (tracked) {
+                ((Model<?>) model).snapshot(labels[i], value);
+            }
+        }
+        return model;
+    }
+
+    /**
+     * <p>Return the layout this mapper was created for.</p>
+     */
+    public @NotNull ColumnLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * <p>Return the number of columns that are mapped to properties.</p>
+     */
+    public int getMappedCount() {
+        return indexes.length;
+    }
+
+    /**
+     * <p>Create and return a new object populated from the current row of
+     * the specified <code>ResultSet</code>, which must have the layout this
+     * mapper was created for.</p>
+     *
+     * @param resultSet <code>ResultSet</code> positioned on a row
+     *
+     * @throws SQLException if a JDBC error occurs
+     */
+    public @NotNull M map(@NotNull ResultSet resultSet)
+            throws SQLException {
+        return apply(resultSet, factory.get());
+    }
+
+    @Override
+    public String toString() {
+        return "RowMapper{type=" + type.getName() + ", layout=" + layout + "}";
+    }
+
+    // Private Methods -------------------------------------------------------
+
+    /**
+     * <p>Bind the public no-arguments constructor of the specified class.</p>
+     */
+    @SuppressWarnings("unchecked")
+    private static <M> Supplier<M> factory(Class<M> type) {
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            throw new IllegalArgumentException("Class " + type.getName() +
+                    " is abstract and cannot be instantiated");
+        }
+        MethodHandle constructor;
+        try {
+            constructor = MethodHandles.publicLookup()
+                    .findConstructor(type, MethodType.methodType(void.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("Class " + type.getName() +
+                    " does not have a public no-arguments constructor", e);
+        }
+        try {
+            CallSite site = LambdaMetafactory.metafactory(MethodHandles.lookup(),
+                    "get",
+                    MethodType.methodType(Supplier.class),
+                    MethodType.methodType(Object.class),
+                    constructor,
+                    MethodType.methodType(type));
+            return (Supplier<M>) site.getTarget().invoke();
+        } catch (Throwable t) {
+            MethodHandle generic = constructor.asType(MethodType.methodType(Object.class));
+            return () -> {
+                try {
+                    return (M) generic.invokeExact();
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new IllegalStateException(e);
+                }
+            };
+        }
+    }
+
+    /**
+     * <p>Find the public setters of the specified class, keyed by lower
+     * case property name, and bind each of them.  If a property has more
+     * than one setter, the one matching the getter type is preferred.</p>
+     */
+    private static Map<String, Property> introspect(Class<?> type) {
+        Map<String, Property> results = new HashMap<>();
+        for (Method method : type.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers()) ||
+                    (method.getParameterCount() != 1) ||
+                    (method.getName().length() < 4) ||
+                    !method.getName().startsWith("set")) {
+                continue;
+            }
+            String name = method.getName().substring(3);
+            Class<?> parameter = method.getParameterTypes()[0];
+            Property existing = results.get(name.toLowerCase(Locale.ROOT));
+            if ((existing != null) && (getter(type, name) != parameter)) {
+                continue;
+            }
+            BiConsumer<Object, Object> setter = setter(type, method);
+            if (setter != null) {
+                results.put(name.toLowerCase(Locale.ROOT), new Property(parameter, setter));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * <p>Return the type of the getter for the specified property name,
+     * or <code>null</code> if there is none.</p>
+     */
+    private static Class<?> getter(Class<?> type, String name) {
+        for (String prefix : new String[] { "get", "is" }) {
+            try {
+                return type.getMethod(prefix + name).getReturnType();
+            } catch (NoSuchMethodException e) {
+                // Try the next prefix
+            }
+        }
+        return null;
+    }
+
+    /**
+     * <p>Bind the specified setter as a <code>BiConsumer</code>, or return
+     * <code>null</code> if it is not accessible.</p>
+     */
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object> setter(Class<?> type, Method method) {
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.publicLookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+        Class<?> parameter = method.getParameterTypes()[0];
+        try {
+            CallSite site = LambdaMetafactory.metafactory(MethodHandles.lookup(),
+                    "accept",
+                    MethodType.methodType(BiConsumer.class),
+                    MethodType.methodType(void.class, Object.class, Object.class),
+                    handle,
+                    MethodType.methodType(void.class, type,
+                            MethodType.methodType(parameter).wrap().returnType()));
+            return (BiConsumer<Object, Object>) site.getTarget().invoke();
+        } catch (Throwable t) {
+            MethodHandle generic = handle.asType(
+                    MethodType.methodType(void.class, Object.class, Object.class));
+            return (model, value) -> {
+                try {
+                    generic.invokeExact(model, value);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new IllegalStateException(e);
+                }
+            };
+        }
+    }
+
+    // Support Classes -------------------------------------------------------
+
+    /**
+     * <p>Bound setter for one property.</p>
+     */
+    private static class Property {
+
+        private Property(Class<?> type, BiConsumer<Object, Object> setter) {
+            this.setter = setter;
+            this.type = type;
+        }
+
+        private final BiConsumer<Object, Object> setter;
+        private final Class<?> type;
+
+    }
+
+}
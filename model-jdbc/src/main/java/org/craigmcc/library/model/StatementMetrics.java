@@ -0,0 +1,552 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.model;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.validation.constraints.NotNull;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>Process-wide registry of latency and throughput metrics for each
+ * distinct SQL text ("shape") generated by the statement builders.  For
+ * each shape, a {@link Histogram} is kept for:</p>
+ * <ul>
+ *     <li><strong>build</strong> - Nanoseconds to render the SQL text and
+ *         bind the parameter values.</li>
+ *     <li><strong>prepare</strong> - Nanoseconds to obtain the
+ *         <code>PreparedStatement</code> from the connection (or
+ *         statement cache).</li>
+ *     <li><strong>execute</strong> - Nanoseconds spent in the
+ *         <code>execute*()</code> methods of the statement.</li>
+ *     <li><strong>rows</strong> - Number of rows mapped into model objects
+ *         by <code>AbstractModelJdbc.populateAll()</code>.</li>
+ *     <li><strong>map</strong> - Nanoseconds spent in
+ *         <code>populateAll()</code>, including fetching the rows.</li>
+ * </ul>
+ *
+ * <p>Recording is disabled by default, and costs a single volatile read per
+ * statement while disabled.  When enabled, the builders return a wrapper
+ * around each <code>PreparedStatement</code> that times its executions, and
+ * remembers (per thread, and weakly, so that an abandoned result is not kept
+ * reachable) which shape produced the most recent <code>ResultSet</code>, so
+ * that <code>populateAll()</code> can attribute its rows to it.  The wrapper
+ * is a plain {@link DelegatingPreparedStatement}, so methods other than
+ * <code>execute*()</code> cost one extra virtual call.  Recording a value
+ * into a {@link Histogram} never allocates.</p>
+ *
+ * <p>Metrics can be pulled with <code>getShape()</code>,
+ * <code>getShapes()</code> or <code>getSummaries()</code>, or over JMX
+ * after calling <code>registerMBean()</code>.  To bound the memory used, at
+ * most <code>MAX_SHAPES</code> shapes are tracked individually, and any
+ * further shapes are combined under <code>OTHER_SHAPE</code>.</p>
+ */
+public final class StatementMetrics {
+
+    // Static Variables ------------------------------------------------------
+
+    /**
+     * <p>Maximum number of distinct SQL shapes tracked individually.</p>
+     */
+    public static final int MAX_SHAPES = 1_000;
+
+    /**
+     * <p>JMX object name under which <code>registerMBean()</code> registers
+     * the metrics.</p>
+     */
+    public static final String OBJECT_NAME = "org.craigmcc.library:type=StatementMetrics";
+
+    /**
+     * <p>Shape under which metrics are combined once <code>MAX_SHAPES</code>
+     * shapes are being tracked.</p>
+     */
+    public static final String OTHER_SHAPE = "(other)";
+
+    private static final ThreadLocal<Current> current =
+            ThreadLocal.withInitial(Current::new);
+
+    private static volatile boolean enabled = false;
+
+    private static final Shape other = new Shape(OTHER_SHAPE);
+
+    private static final ConcurrentHashMap<String, Shape> shapes =
+            new ConcurrentHashMap<>();
+
+    // Constructors ----------------------------------------------------------
+
+    private StatementMetrics() {
+    }
+
+    // Public Methods --------------------------------------------------------
+
+    /**
+     * <p>Stop recording metrics.  Metrics recorded so far are retained.</p>
+     */
+    public static void disable() {
+        enabled = false;
+    }
+
+    /**
+     * <p>Start recording metrics.</p>
+     */
+    public static void enable() {
+        enabled = true;
+    }
+
+    /**
+     * <p>Return the metrics for the specified SQL text, or <code>null</code>
+     * if none have been recorded.</p>
+     *
+     * @param sql The SQL text for which to return metrics
+     */
+    public static Shape getShape(@NotNull String sql) {
+        return OTHER_SHAPE.equals(sql) ? other : shapes.get(sql);
+    }
+
+    /**
+     * <p>Return the number of distinct SQL shapes tracked individually
+     * (not counting <code>OTHER_SHAPE</code>).</p>
+     */
+    public static int getShapeCount() {
+        return shapes.size();
+    }
+
+    /**
+     * <p>Return the metrics for all SQL shapes recorded so far (including
+     * <code>OTHER_SHAPE</code> if any shapes were combined under it).  The
+     * returned metrics continue to be updated.</p>
+     */
+    public static List<Shape> getShapes() {
+        List<Shape> results = new ArrayList<>(shapes.values());
+        if (other.getExecute().getCount() > 0 || other.getBuild().getCount() > 0) {
+            results.add(other);
+        }
+        return results;
+    }
+
+    /**
+     * <p>Return an immutable summary of the metrics for all SQL shapes
+     * recorded so far.</p>
+     */
+    public static List<Summary> getSummaries() {
+        List<Summary> results = new ArrayList<>();
+        for (Shape shape : getShapes()) {
+            results.add(shape.summary());
+        }
+        return results;
+    }
+
+    /**
+     * <p>Wrap the specified statement, if it is not <code>null</code>, so
+     * that its executions are recorded against the specified shape, and so
+     * that <code>ResultSet</code>s it returns can be attributed to that shape
+     * by <code>populated()</code>.</p>
+     *
+     * @param statement The statement to be wrapped
+     * @param shape The shape against which to record executions
+     *
+     * @return The wrapped statement
+     */
+    public static PreparedStatement instrument(PreparedStatement statement,
+                                               @NotNull Shape shape) {
+        if (statement == null) {
+            return null;
+        }
+        return new Instrumented(statement, shape);
+    }
+
+    /**
+     * <p>Return <code>true</code> if metrics are being recorded.</p>
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * <p>Return the shape that produced the specified <code>ResultSet</code>,
+     * if it was returned by an instrumented statement on this thread, or
+     * <code>null</code> otherwise.  The association is cleared, so that the
+     * rows are only counted once.</p>
+     *
+     * @param resultSet <code>ResultSet</code> whose rows are being mapped
+     */
+    public static Shape populated(@NotNull ResultSet resultSet) {
+        Current state = current.get();
+        if ((state.resultSet == null) || (state.resultSet.get() != resultSet)) {
+            return null;
+        }
+        Shape shape = state.shape;
+        state.resultSet = null;
+        state.shape = null;
+        return shape;
+    }
+
+    /**
+     * <p>Register the JMX management interface for these metrics with the
+     * platform MBean server, under <code>OBJECT_NAME</code>, if it is not
+     * already registered.</p>
+     *
+     * @throws IllegalStateException if registration fails
+     */
+    public static void registerMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(new Bean(), new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // Already registered
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register " + OBJECT_NAME, e);
+        }
+    }
+
+    /**
+     * <p>Discard the metrics for all SQL shapes.</p>
+     */
+    public static void reset() {
+        shapes.clear();
+        other.reset();
+    }
+
+    /**
+     * <p>Return the metrics for the specified SQL text, creating them if
+     * necessary.  Once <code>MAX_SHAPES</code> shapes are tracked, the
+     * metrics for <code>OTHER_SHAPE</code> are returned for new shapes.</p>
+     *
+     * @param sql The SQL text for which to return metrics
+     */
+    public static Shape shape(@NotNull String sql) {
+        Shape shape = shapes.get(sql);
+        if (shape != null) {
+            return shape;
+        }
+        if (shapes.size() >= MAX_SHAPES) {
+            return other;
+        }
+        return shapes.computeIfAbsent(sql, Shape::new);
+    }
+
+    /**
+     * <p>Unregister the JMX management interface for these metrics, if it
+     * is registered.</p>
+     *
+     * @throws IllegalStateException if unregistration fails
+     */
+    public static void unregisterMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(new ObjectName(OBJECT_NAME));
+        } catch (InstanceNotFoundException e) {
+            // Not registered
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot unregister " + OBJECT_NAME, e);
+        }
+    }
+
+    // Support Classes -------------------------------------------------------
+
+    /**
+     * <p>JMX management implementation.</p>
+     */
+    private static class Bean implements StatementMetricsMXBean {
+
+        @Override
+        public int getShapeCount() {
+            return getShapes().size();
+        }
+
+        @Override
+        public List<Summary> getShapes() {
+            return getSummaries();
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        @Override
+        public void reset() {
+            StatementMetrics.reset();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            StatementMetrics.enabled = enabled;
+        }
+
+    }
+
+    /**
+     * <p>Per-thread record of the most recent <code>ResultSet</code> returned
+     * by an instrumented statement.  The <code>ResultSet</code> is held
+     * weakly, so that one that is never passed to <code>populated()</code>
+     * does not stay reachable from the thread.</p>
+     */
+    private static class Current {
+        private WeakReference<ResultSet> resultSet;
+        private Shape shape;
+    }
+
+    /**
+     * <p>Statement wrapper that times the <code>execute*()</code> methods of
+     * the wrapped statement, and remembers the <code>ResultSet</code>s that
+     * it returns.  The variants that take SQL text are not timed, since a
+     * <code>PreparedStatement</code> is required to reject them.</p>
+     */
+    private static final class Instrumented extends DelegatingPreparedStatement {
+
+        private Instrumented(PreparedStatement statement, Shape shape) {
+            super(statement);
+            this.shape = shape;
+        }
+
+        private final Shape shape;
+
+        @Override
+        public boolean execute() throws SQLException {
+            long start = System.nanoTime();
+            try {
+                return delegate.execute();
+            } finally {
+                shape.execute.record(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public int[] executeBatch() throws SQLException {
+            long start = System.nanoTime();
+            try {
+                return delegate.executeBatch();
+            } finally {
+                shape.execute.record(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public long[] executeLargeBatch() throws SQLException {
+            long start = System.nanoTime();
+            try {
+                return delegate.executeLargeBatch();
+            } finally {
+                shape.execute.record(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public long executeLargeUpdate() throws SQLException {
+            long start = System.nanoTime();
+            try {
+                return delegate.executeLargeUpdate();
+            } finally {
+                shape.execute.record(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public ResultSet executeQuery() throws SQLException {
+            long start = System.nanoTime();
+            try {
+                return remember(delegate.executeQuery());
+            } finally {
+                shape.execute.record(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public int executeUpdate() throws SQLException {
+            long start = System.nanoTime();
+            try {
+                return delegate.executeUpdate();
+            } finally {
+                shape.execute.record(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public ResultSet getGeneratedKeys() throws SQLException {
+            return remember(delegate.getGeneratedKeys());
+        }
+
+        @Override
+        public ResultSet getResultSet() throws SQLException {
+            return remember(delegate.getResultSet());
+        }
+
+        private ResultSet remember(ResultSet resultSet) {
+            if (resultSet != null) {
+                Current state = current.get();
+                state.resultSet = new WeakReference<>(resultSet);
+                state.shape = shape;
+            }
+            return resultSet;
+        }
+
+    }
+
+    /**
+     * <p>Metrics for a single SQL shape.</p>
+     */
+    public static final class Shape {
+
+        private final Histogram build = new Histogram();
+        private final Histogram execute = new Histogram();
+        private final Histogram map = new Histogram();
+        private final Histogram prepare = new Histogram();
+        private final Histogram rows = new Histogram();
+        private final String sql;
+
+        private Shape(String sql) {
+            this.sql = sql;
+        }
+
+        /**
+         * <p>Return the nanoseconds spent rendering SQL and binding
+         * parameters.</p>
+         */
+        public Histogram getBuild() {
+            return build;
+        }
+
+        /**
+         * <p>Return the nanoseconds spent executing the statement.</p>
+         */
+        public Histogram getExecute() {
+            return execute;
+        }
+
+        /**
+         * <p>Return the nanoseconds spent mapping rows into models.</p>
+         */
+        public Histogram getMap() {
+            return map;
+        }
+
+        /**
+         * <p>Return the nanoseconds spent preparing the statement.</p>
+         */
+        public Histogram getPrepare() {
+            return prepare;
+        }
+
+        /**
+         * <p>Return the number of rows mapped per result.</p>
+         */
+        public Histogram getRows() {
+            return rows;
+        }
+
+        /**
+         * <p>Return the SQL text for this shape.</p>
+         */
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * <p>Return an immutable summary of these metrics.</p>
+         */
+        public Summary summary() {
+            return new Summary(sql, build.snapshot(), prepare.snapshot(),
+                    execute.snapshot(), rows.snapshot(), map.snapshot());
+        }
+
+        @Override
+        public String toString() {
+            return summary().toString();
+        }
+
+        private void reset() {
+            build.reset();
+            execute.reset();
+            map.reset();
+            prepare.reset();
+            rows.reset();
+        }
+
+    }
+
+    /**
+     * <p>Immutable summary of the metrics for a single SQL shape, suitable
+     * for export over JMX as a composite value.</p>
+     */
+    public static final class Summary {
+
+        private final Histogram.Snapshot build;
+        private final Histogram.Snapshot execute;
+        private final Histogram.Snapshot map;
+        private final Histogram.Snapshot prepare;
+        private final Histogram.Snapshot rows;
+        private final String sql;
+
+        public Summary(String sql, Histogram.Snapshot build, Histogram.Snapshot prepare,
+                       Histogram.Snapshot execute, Histogram.Snapshot rows,
+                       Histogram.Snapshot map) {
+            this.build = build;
+            this.execute = execute;
+            this.map = map;
+            this.prepare = prepare;
+            this.rows = rows;
+            this.sql = sql;
+        }
+
+        public Histogram.Snapshot getBuild() {
+            return build;
+        }
+
+        public Histogram.Snapshot getExecute() {
+            return execute;
+        }
+
+        public Histogram.Snapshot getMap() {
+            return map;
+        }
+
+        public Histogram.Snapshot getPrepare() {
+            return prepare;
+        }
+
+        public Histogram.Snapshot getRows() {
+            return rows;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        @Override
+        public String toString() {
+            return "StatementMetrics.Summary{sql=" + sql +
+                    ", build=" + build +
+                    ", prepare=" + prepare +
+                    ", execute=" + execute +
+                    ", rows=" + rows +
+                    ", map=" + map +
+                    "}";
+        }
+
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.model;
+
+import java.util.List;
+
+/**
+ * <p>JMX management interface for {@link StatementMetrics}, registered by
+ * <code>StatementMetrics.registerMBean()</code>.</p>
+ */
+public interface StatementMetricsMXBean {
+
+    /**
+     * <p>Return the number of distinct SQL shapes with metrics.</p>
+     */
+    int getShapeCount();
+
+    /**
+     * <p>Return a summary of the metrics for each SQL shape.</p>
+     */
+    List<StatementMetrics.Summary> getShapes();
+
+    /**
+     * <p>Return <code>true</code> if metrics are being recorded.</p>
+     */
+    boolean isEnabled();
+
+    /**
+     * <p>Discard the metrics for all SQL shapes.</p>
+     */
+    void reset();
+
+    /**
+     * <p>Start or stop recording metrics.</p>
+     *
+     * @param enabled Should metrics be recorded?
+     */
+    void setEnabled(boolean enabled);
+
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.model;
+
+import org.craigmcc.library.shared.exception.BadRequest;
+import org.craigmcc.library.shared.exception.InternalServerError;
+import org.craigmcc.library.shared.exception.NotFound;
+import org.craigmcc.library.shared.exception.NotUnique;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Request (or transaction) scoped unit of work for JDBC based
+ * {@link ModelService} implementations.  It provides an <em>identity map</em>,
+ * keyed by {@link Model} class and primary key, so that loading the same row
+ * more than once returns the same instance without another query, and it
+ * defers updates until <code>commit()</code>, when all of the pending updates
+ * for each service are flushed together by one call to
+ * <code>updateAll()</code> (which, by default, sends them as one JDBC batch
+ * per distinct SQL text).  While a unit of work is bound to the calling
+ * thread, <code>ModelService.find()</code> also returns objects from its
+ * identity map, for services that provide <code>getModelClass()</code>.</p>
+ *
+ * <p><strong>EXAMPLE:</strong></p>
+ *
+ * <code>
+ *     try (UnitOfWork unit = UnitOfWork.begin()) {
+ *         Customer customer = unit.find(customerService, Customer.class, id);
+ *         customer.setName("Fred");
+ *         unit.update(customerService, customer);
+ *         ...
+ *         Customer same = unit.find(customerService, Customer.class, id); // No query
+ *         unit.commit();
+ *     }
+ * </code>
+ *
+ * <p><strong>USAGE NOTES:</strong></p>
+ * <ul>
+ *     <li>A unit of work is not thread safe.  <code>begin()</code> binds it to
+ *         the calling thread, where it can be retrieved by
+ *         <code>current()</code> until it is closed.</li>
+ *     <li>Objects are identified by their concrete class and primary key, which
+ *         matches the semantics of <code>Model.equals()</code>, so always pass
+ *         the concrete class to <code>find()</code>.</li>
+ *     <li>Closing a unit of work without calling <code>commit()</code>
+ *         discards any pending updates.</li>
+ *     <li>Objects in the identity map are shared by all callers within the
+ *         unit of work, and are not refreshed from the database unless they
+ *         are evicted first.</li>
+ * </ul>
+ */
+public class UnitOfWork implements AutoCloseable {
+
+    // Static Variables ------------------------------------------------------
+
+    private static final ThreadLocal<UnitOfWork> CURRENT = new ThreadLocal<>();
+
+    // Instance Variables ----------------------------------------------------
+
+    private final Map<Class<?>, Map<Long, Model>> identities = new HashMap<>();
+    private final Map<ModelService<?>, Map<Long, Model>> pending = new LinkedHashMap<>();
+
+    // Static Methods --------------------------------------------------------
+
+    /**
+     * <p>Create a new unit of work and bind it to the calling thread.</p>
+     *
+     * @return The new unit of work
+     *
+     * @throws IllegalStateException if a unit of work is already bound
+     *  to the calling thread
+     */
+    public static @NotNull UnitOfWork begin() {
+        if (CURRENT.get() != null) {
+            throw new IllegalStateException("A UnitOfWork is already active on this thread");
+        }
+        UnitOfWork unit = new UnitOfWork();
+        CURRENT.set(unit);
+        return unit;
+    }
+
+    /**
+     * <p>Return the unit of work bound to the calling thread, or
+     * <code>null</code> if there is none.</p>
+     */
+    public static UnitOfWork current() {
+        return CURRENT.get();
+    }
+
+    // Public Methods --------------------------------------------------------
+
+    /**
+     * <p>Discard the identity map and any pending updates, and unbind this
+     * unit of work from the calling thread if it is bound there.</p>
+     */
+    @Override
+    public void close() {
+        identities.clear();
+        pending.clear();
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * <p>Flush all pending updates, grouped by the service they were
+     * registered with (in registration order), by calling
+     * <code>updateAll()</code> once per service.  The objects returned by
+     * each service replace the previous entries in the identity map.  If a
+     * service fails, the updates for it and for any later services remain
+     * pending.</p>
+     *
+     * @throws BadRequest If a validation error has occurred.
+     * @throws InternalServerError If a server level error has occurred.
+     * @throws NotFound If an object to be updated can no longer be found.
+     * @throws NotUnique If a uniqueness constraint has been violated.
+     */
+    public void commit()
+            throws BadRequest, InternalServerError, NotFound, NotUnique {
+        Iterator<Map.Entry<ModelService<?>, Map<Long, Model>>> entries =
+                pending.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<ModelService<?>, Map<Long, Model>> entry = entries.next();
+            for (Model model : flush(entry.getKey(), entry.getValue())) {
+                identities(model.getClass()).put(model.getId(), model);
+            }
+            entries.remove();
+        }
+    }
+
+    /**
+     * <p>Remove the specified {@link Model} object from the identity map,
+     * and discard any pending update for it, so that the next
+     * <code>find()</code> will query the database again.</p>
+     *
+     * @param model The {@link Model} object to evict
+     */
+    public void evict(@NotNull Model model) {
+        Map<Long, Model> map = identities.get(model.getClass());
+        if (map != null) {
+            map.remove(model.getId());
+        }
+        for (Map<Long, Model> updates : pending.values()) {
+            Model update = updates.get(model.getId());
+            if ((update != null) && update.getClass().equals(model.getClass())) {
+                updates.remove(model.getId());
+            }
+        }
+    }
+
+    /**
+     * <p>Return the {@link Model} object with the specified class and primary
+     * key from the identity map if it is present.  Otherwise, retrieve it
+     * with <code>find()</code> on the specified service, and add it to the
+     * identity map before returning it.</p>
+     *
+     * @param service {@link ModelService} used to retrieve a missing object.
+     * @param type Concrete {@link Model} class of the object.
+     * @param id Primary key of the object.
+     *
+     * @return The matching {@link Model} object.
+     *
+     * @throws InternalServerError If a server level error has occurred.
+     * @throws NotFound If no object with the specified primary key can be found.
+     */
+    public @NotNull <M extends Model> M find(@NotNull ModelService<M> service,
+                                             @NotNull Class<M> type,
+                                             @NotNull Long id)
+            throws InternalServerError, NotFound {
+        M model = lookup(type, id);
+        if (model == null) {
+            model = register(service.find(id));
+        }
+        return model;
+    }
+
+    /**
+     * <p>Return the number of updates waiting for <code>commit()</code>.</p>
+     */
+    public int getPendingCount() {
+        int count = 0;
+        for (Map<Long, Model> updates : pending.values()) {
+            count += updates.size();
+        }
+        return count;
+    }
+
+    /**
+     * <p>Return the {@link Model} object with the specified class and primary
+     * key from the identity map, or <code>null</code> if it is not present.</p>
+     *
+     * @param type Concrete {@link Model} class of the object.
+     * @param id Primary key of the object.
+     */
+    public <M extends Model> M lookup(@NotNull Class<M> type, @NotNull Long id) {
+        Map<Long, Model> map = identities.get(type);
+        return (map != null) ? type.cast(map.get(id)) : null;
+    }
+
+    /**
+     * <p>Add the specified {@link Model} object (typically just loaded or
+     * inserted) to the identity map, unless an equal object (same class and
+     * primary key) is already present, in which case that object is returned
+     * instead so that callers always share one instance.</p>
+     *
+     * @param model The {@link Model} object to register
+     *
+     * @return The registered instance for this class and primary key
+     *
+     * @throws IllegalArgumentException if the object has no primary key
+     */
+    @SuppressWarnings("unchecked")
+    public @NotNull <M extends Model> M register(@NotNull M model) {
+        if (model.getId() == null) {
+            throw new IllegalArgumentException("Cannot register a model without an id");
+        }
+        Model existing = identities(model.getClass()).putIfAbsent(model.getId(), model);
+        return (existing != null) ? (M) existing : model;
+    }
+
+    /**
+     * <p>Register the specified {@link Model} object in the identity map,
+     * replacing any other instance with the same class and primary key,
+     * and defer its update until <code>commit()</code>.  Registering the
+     * same object more than once results in a single update.</p>
+     *
+     * @param service {@link ModelService} that will perform the update.
+     * @param model The {@link Model} object to be updated.
+     *
+     * @throws IllegalArgumentException if the object has no primary key
+     */
+    public <M extends Model> void update(@NotNull ModelService<M> service,
+                                         @NotNull M model) {
+        if (model.getId() == null) {
+            throw new IllegalArgumentException("Cannot update a model without an id");
+        }
+        identities(model.getClass()).put(model.getId(), model);
+        pending.computeIfAbsent(service, s -> new LinkedHashMap<>())
+                .put(model.getId(), model);
+    }
+
+    // Private Methods -------------------------------------------------------
+
+    @SuppressWarnings("unchecked")
+    private <M extends Model> List<M> flush(ModelService<M> service,
+                                            Map<Long, Model> updates)
+            throws BadRequest, InternalServerError, NotFound, NotUnique {
+        if (updates.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return service.updateAll(new ArrayList<>((Collection<M>) updates.values()));
+    }
+
+    private Map<Long, Model> identities(Class<?> type) {
+        return identities.computeIfAbsent(type, t -> new HashMap<>());
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.model;
+
+import org.craigmcc.library.shared.exception.InternalServerError;
+import org.craigmcc.library.shared.exception.NotFound;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThrows;
+
+public class AsyncModelServiceUnitTest {
+
+    private AsyncModelService<ModelCursorUnitTest.TestModel> async;
+
+    @After
+    public void after() {
+        if (async != null) {
+            async.close();
+        }
+    }
+
+    @Test
+    public void concurrencyLimited() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        ModelServiceUnitTest.TestService service = new ModelServiceUnitTest.TestService(0) {
+            @Override
+            public ModelCursorUnitTest.TestModel find(Long id) throws NotFound {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                return super.find(id);
+            }
+        };
+        async = new AsyncModelService<>(service, 2);
+        List<CompletableFuture<ModelCursorUnitTest.TestModel>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(async.find((long) (i % 5) + 1));
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((async.getActiveCount() < 2) && (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(5);
+        }
+        System.out.println("concurrencyLimited: virtual=" + async.isVirtual() +
+                " active=" + async.getActiveCount() + " queued=" + async.getQueueLength());
+        assertThat(async.getActiveCount(), is(2));
+        release.countDown();
+        for (CompletableFuture<ModelCursorUnitTest.TestModel> future : futures) {
+            AsyncModelService.await(future);
+        }
+        assertThat(peak.get(), is(2));
+        assertThat(async.getActiveCount(), is(0));
+    }
+
+    @Test
+    public void closedRejectsCalls() throws Exception {
+        async = new AsyncModelService<>(new ModelServiceUnitTest.TestService(0), 1);
+        async.close();
+        assertThrows(InternalServerError.class,
+                () -> AsyncModelService.await(async.find(1L)));
+    }
+
+    @Test
+    public void find() throws Exception {
+        async = new AsyncModelService<>(new ModelServiceUnitTest.TestService(0), 4);
+        ModelCursorUnitTest.TestModel model = AsyncModelService.await(async.find(3L));
+        System.out.println("find: " + model.getId() + " virtual=" + async.isVirtual() +
+                " available=" + AsyncModelService.isVirtualThreadsAvailable());
+        assertThat(model.getId(), is(3L));
+        assertThat(AsyncModelService.await(async.findAll()).size(), is(5));
+        assertThat(async.isVirtual(), is(AsyncModelService.isVirtualThreadsAvailable()));
+    }
+
+    @Test
+    public void findNotFound() throws Exception {
+        async = new AsyncModelService<>(new ModelServiceUnitTest.TestService(0), 4);
+        CompletableFuture<ModelCursorUnitTest.TestModel> future = async.find(99L);
+        assertThrows(NotFound.class,
+                () -> AsyncModelService.await(future));
+        Throwable cause = future.handle((model, e) -> e).get();
+        assertThat(cause, instanceOf(NotFound.class));
+        assertThrows(NotFound.class,
+                () -> AsyncModelService.await(future.thenApply(model -> model.getId())));
+    }
+
+    @Test
+    public void invalidConcurrency() throws Exception {
+        assertThrows(IllegalArgumentException.class,
+                () -> new AsyncModelService<>(new ModelServiceUnitTest.TestService(0), 0));
+    }
+
+    @Test
+    public void suppliedExecutor() throws Exception {
+        List<Runnable> tasks = new ArrayList<>();
+        async = new AsyncModelService<>(new ModelServiceUnitTest.TestService(0), 1, tasks::add);
+        CompletableFuture<ModelCursorUnitTest.TestModel> future = async.update(2L, new ModelCursorUnitTest.TestModel());
+        assertThat(future.isDone(), is(false));
+        assertThat(async.isVirtual(), is(false));
+        tasks.get(0).run();
+        assertThat(future.isDone(), is(true));
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.model;
+
+import org.craigmcc.library.shared.exception.NotFound;
+import org.craigmcc.library.shared.model.FindResults;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThrows;
+
+public class CachingModelServiceUnitTest {
+
+    private final ModelServiceUnitTest.TestService service =
+            new ModelServiceUnitTest.TestService(0);
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws Exception {
+        CachingModelService<ModelCursorUnitTest.TestModel> cache =
+                new CachingModelService<>(service).maximumSize(2);
+        cache.find(1L);
+        cache.find(2L);
+        cache.find(1L);
+        cache.find(3L); // Evicts 2
+        cache.find(1L);
+        cache.find(2L);
+        System.out.println("evictsLeastRecentlyUsed: " + cache.getStatistics());
+        assertThat(cache.size(), is(2));
+        assertThat(service.finds, is(4));
+        assertThat(cache.getStatistics().getEvictions(), is(2L));
+    }
+
+    @Test
+    public void expiresAfterWrite() throws Exception {
+        long[] now = { 0L };
+        CachingModelService<ModelCursorUnitTest.TestModel> cache =
+                new CachingModelService<ModelCursorUnitTest.TestModel>(service) {
+                    @Override
+                    protected long nanoTime() {
+                        return now[0];
+                    }
+                }.expireAfterWrite(5, TimeUnit.SECONDS);
+        cache.find(1L);
+        now[0] = TimeUnit.SECONDS.toNanos(4);
+        cache.find(1L);
+        assertThat(service.finds, is(1));
+        now[0] = TimeUnit.SECONDS.toNanos(5);
+        cache.find(1L);
+        assertThat(service.finds, is(2));
+    }
+
+    @Test
+    public void findAllByIdUsesCache() throws Exception {
+        ModelServiceUnitTest.TestService chunked = new ModelServiceUnitTest.TestService(10);
+        CachingModelService<ModelCursorUnitTest.TestModel> cache =
+                new CachingModelService<>(chunked);
+        cache.find(2L);
+        FindResults<ModelCursorUnitTest.TestModel> results =
+                cache.findAllById(Arrays.asList(1L, 2L, 3L, 9L));
+        System.out.println("findAllByIdUsesCache: " + results + " chunks=" + chunked.chunks);
+        assertThat(results.getFound().keySet(), contains(1L, 2L, 3L));
+        assertThat(results.getMissing(), contains(9L));
+        assertThat(chunked.chunks.get(chunked.chunks.size() - 1), contains(1L, 3L, 9L));
+        cache.findAllById(Arrays.asList(1L, 3L));
+        assertThat(chunked.chunks.size(), is(1));
+        assertThat(cache.getStatistics().getHits(), is(3L));
+    }
+
+    @Test
+    public void findReturnsCopies() throws Exception {
+        CachingModelService<ModelCursorUnitTest.TestModel> cache =
+                new CachingModelService<>(service);
+        ModelCursorUnitTest.TestModel first = cache.find(3L);
+        ModelCursorUnitTest.TestModel second = cache.find(3L);
+        System.out.println("findReturnsCopies: " + cache.getStatistics());
+        assertThat(second, not(sameInstance(first)));
+        assertThat(second, not(sameInstance(service.find(3L))));
+        assertThat(second.getId(), is(3L));
+        first.setId(99L);
+        assertThat(cache.find(3L).getId(), is(3L));
+        assertThat(service.finds, is(2)); // Includes the direct call above
+        assertThat(cache.getStatistics().getHits(), is(2L));
+        assertThat(cache.getStatistics().getMisses(), is(1L));
+        assertThat(cache.getStatistics().getLoads(), is(1L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void invalidateDuringLoad() throws Exception {
+        CachingModelService<ModelCursorUnitTest.TestModel>[] holder = new CachingModelService[1];
+        ModelServiceUnitTest.TestService loading = new ModelServiceUnitTest.TestService(0) {
+            @Override
+            public ModelCursorUnitTest.TestModel find(Long id) throws NotFound {
+                holder[0].invalidate(id == 1L ? 1L : 5L);
+                return super.find(id);
+            }
+        };
+        CachingModelService<ModelCursorUnitTest.TestModel> cache = new CachingModelService<>(loading);
+        holder[0] = cache;
+        cache.find(1L); // Invalidated while loading, so not cached
+        cache.find(2L); // Only an unrelated key was invalidated
+        System.out.println("invalidateDuringLoad: " + cache.getStatistics());
+        assertThat(cache.size(), is(1));
+        cache.find(2L);
+        assertThat(loading.finds, is(2));
+        cache.find(1L);
+        assertThat(loading.finds, is(3));
+    }
+
+    @Test
+    public void missNotCached() throws Exception {
+        CachingModelService<ModelCursorUnitTest.TestModel> cache =
+                new CachingModelService<>(service);
+        assertThrows(NotFound.class, () -> cache.find(42L));
+        assertThrows(NotFound.class, () -> cache.find(42L));
+        assertThat(cache.size(), is(0));
+        assertThat(cache.getStatistics().getMisses(), is(2L));
+    }
+
+    @Test
+    public void updateInvalidates() throws Exception {
+        CachingModelService<ModelCursorUnitTest.TestModel> cache =
+                new CachingModelService<>(service);
+        ModelCursorUnitTest.TestModel model = cache.find(4L);
+        cache.update(4L, model);
+        cache.find(4L);
+        assertThat(service.finds, is(2));
+        cache.updateAll(Arrays.asList(model));
+        cache.find(4L);
+        assertThat(service.finds, is(3));
+        assertThat(service.updates.size(), is(1));
+    }
+
+}
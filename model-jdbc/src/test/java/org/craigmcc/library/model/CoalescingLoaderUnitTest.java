@@ -0,0 +1,241 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.model;
+
+import org.craigmcc.library.shared.exception.InternalServerError;
+import org.craigmcc.library.shared.exception.NotFound;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CoalescingLoaderUnitTest {
+
+    @Test
+    public void concurrentRequestsCoalesced() throws Exception {
+        ModelServiceUnitTest.TestService service = new ModelServiceUnitTest.TestService(100);
+        try (CoalescingLoader<ModelCursorUnitTest.TestModel> loader =
+                     new CoalescingLoader<>(service).window(200, TimeUnit.MILLISECONDS)) {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<>();
+            List<Long> results = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                long id = (i % 5) + 1;
+                Thread thread = new Thread(() -> {
+                    try {
+                        start.await();
+                        Long found = loader.find(id).getId();
+                        synchronized (results) {
+                            results.add(found);
+                        }
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            System.out.println("concurrentRequestsCoalesced: requests=" + loader.getRequests() +
+                    " batches=" + loader.getBatches() + " chunks=" + service.chunks);
+            assertThat(results.size(), is(20));
+            assertThat(loader.getRequests(), is(20L));
+            assertThat(loader.getBatches(), is(1L));
+            assertThat(service.chunks.get(0).size(), is(5));
+        }
+    }
+
+    @Test
+    public void concurrentRequestsOneQueryPerBatch() throws Exception {
+        String url = "jdbc:h2:mem:coalescing;DB_CLOSE_DELAY=-1";
+        try (Connection connection = DriverManager.getConnection(url);
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE tests (id BIGINT PRIMARY KEY," +
+                    " published TIMESTAMP, updated TIMESTAMP)");
+            statement.execute("INSERT INTO tests (id) VALUES (1), (2), (3), (4), (5)");
+        }
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenAnswer(invocation -> DriverManager.getConnection(url));
+        AtomicInteger queries = new AtomicInteger();
+        ModelServiceUnitTest.TestJdbc jdbc = new ModelServiceUnitTest.TestJdbc(null) {
+            @Override
+            public PreparedStatement findAllById(Connection connection, Collection<Long> ids)
+                    throws SQLException {
+                queries.incrementAndGet();
+                return super.findAllById(connection, ids);
+            }
+            @Override
+            public String getTable() {
+                return "tests";
+            }
+        };
+        ModelServiceUnitTest.JdbcService service = new ModelServiceUnitTest.JdbcService(dataSource, jdbc);
+        try (CoalescingLoader<ModelCursorUnitTest.TestModel> loader =
+                     new CoalescingLoader<>(service).window(200, TimeUnit.MILLISECONDS)) {
+            CountDownLatch start = new CountDownLatch(1);
+            List<CompletableFuture<ModelCursorUnitTest.TestModel>> futures = new ArrayList<>();
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                long id = (i % 6) + 1;
+                Thread thread = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    CompletableFuture<ModelCursorUnitTest.TestModel> future = loader.load(id);
+                    synchronized (futures) {
+                        futures.add(future);
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            int found = 0;
+            for (CompletableFuture<ModelCursorUnitTest.TestModel> future : futures) {
+                try {
+                    future.get(5, TimeUnit.SECONDS);
+                    found++;
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof NotFound);
+                }
+            }
+            System.out.println("concurrentRequestsOneQueryPerBatch: batches=" + loader.getBatches() +
+                    " queries=" + queries);
+            assertThat(found, is(17));
+            assertThat(loader.getBatches(), is(1L));
+            assertThat(queries.get(), is(1));
+        }
+    }
+
+    @Test
+    public void loadAfterClose() throws Exception {
+        ModelServiceUnitTest.TestService service = new ModelServiceUnitTest.TestService(100);
+        CoalescingLoader<ModelCursorUnitTest.TestModel> loader = new CoalescingLoader<>(service);
+        loader.close();
+        CompletableFuture<ModelCursorUnitTest.TestModel> future = loader.load(1L);
+        assertThat(future.isDone(), is(true));
+        ExecutionException e = assertThrows(ExecutionException.class, future::get);
+        assertTrue(e.getCause() instanceof InternalServerError);
+        assertThrows(InternalServerError.class, () -> loader.find(1L));
+        assertThat(service.chunks.size(), is(0));
+    }
+
+    @Test
+    public void maxBatchSizeFlushes() throws Exception {
+        ModelServiceUnitTest.TestService service = new ModelServiceUnitTest.TestService(100);
+        try (CoalescingLoader<ModelCursorUnitTest.TestModel> loader =
+                     new CoalescingLoader<>(service, Runnable::run)
+                             .window(1, TimeUnit.HOURS)
+                             .maxBatchSize(2)) {
+            CompletableFuture<ModelCursorUnitTest.TestModel> first = loader.load(1L);
+            assertThat(first.isDone(), is(false));
+            CompletableFuture<ModelCursorUnitTest.TestModel> second = loader.load(2L);
+            assertThat(first.isDone(), is(true));
+            assertThat(second.get().getId(), is(2L));
+            assertThat(loader.getBatches(), is(1L));
+        }
+    }
+
+    @Test
+    public void maxQueriesBounded() throws Exception {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        ModelServiceUnitTest.TestService service = new ModelServiceUnitTest.TestService(100) {
+            @Override
+            protected List<ModelCursorUnitTest.TestModel> findChunk(List<Long> ids)
+                    throws InternalServerError {
+                peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                active.decrementAndGet();
+                synchronized (this) {
+                    return super.findChunk(ids);
+                }
+            }
+        };
+        try (CoalescingLoader<ModelCursorUnitTest.TestModel> loader =
+                     new CoalescingLoader<>(service).maxBatchSize(1).maxQueries(2)) {
+            List<CompletableFuture<ModelCursorUnitTest.TestModel>> futures = new ArrayList<>();
+            for (long id = 1; id <= 5; id++) {
+                futures.add(loader.load(id));
+            }
+            for (CompletableFuture<ModelCursorUnitTest.TestModel> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+            System.out.println("maxQueriesBounded: batches=" + loader.getBatches() + " peak=" + peak);
+            assertThat(loader.getBatches(), is(5L));
+            assertTrue(peak.get() <= 2);
+        }
+        assertThrows(IllegalStateException.class,
+                () -> new CoalescingLoader<>(service, Runnable::run).maxQueries(2));
+    }
+
+    @Test
+    public void missingCompletesWithNotFound() throws Exception {
+        ModelServiceUnitTest.TestService service = new ModelServiceUnitTest.TestService(100);
+        try (CoalescingLoader<ModelCursorUnitTest.TestModel> loader =
+                     new CoalescingLoader<>(service, Runnable::run)
+                             .window(1, TimeUnit.HOURS)) {
+            CompletableFuture<ModelCursorUnitTest.TestModel> found = loader.load(3L);
+            CompletableFuture<ModelCursorUnitTest.TestModel> missing = loader.load(99L);
+            loader.flush();
+            assertThat(found.get().getId(), is(3L));
+            ExecutionException e = assertThrows(ExecutionException.class, missing::get);
+            assertTrue(e.getCause() instanceof NotFound);
+        }
+    }
+
+    @Test
+    public void missingThrowsNotFound() throws Exception {
+        ModelServiceUnitTest.TestService service = new ModelServiceUnitTest.TestService(100);
+        try (CoalescingLoader<ModelCursorUnitTest.TestModel> loader =
+                     new CoalescingLoader<>(service).window(1, TimeUnit.MILLISECONDS)) {
+            assertThat(loader.find(4L).getId(), is(4L));
+            assertThrows(NotFound.class, () -> loader.find(98L));
+        }
+    }
+
+}
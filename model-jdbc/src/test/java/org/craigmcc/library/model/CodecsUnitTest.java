@@ -0,0 +1,137 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CodecsUnitTest {
+
+    public enum Color { RED, GREEN }
+
+    private PreparedStatement statement;
+    private ResultSet resultSet;
+
+    @Before
+    public void before() {
+        statement = mock(PreparedStatement.class);
+        resultSet = mock(ResultSet.class);
+    }
+
+    @Test
+    public void bindSpecialized() throws Exception {
+        LocalDateTime now = LocalDateTime.of(2020, 1, 2, 3, 4, 5);
+        UUID uuid = UUID.randomUUID();
+        Codecs.bind(statement, 1, 123L);
+        Codecs.bind(statement, 2, "Fred");
+        Codecs.bind(statement, 3, 45);
+        Codecs.bind(statement, 4, now);
+        Codecs.bind(statement, 5, Color.GREEN);
+        Codecs.bind(statement, 6, uuid);
+        Codecs.bind(statement, 7, new BigDecimal("1.50"));
+        Codecs.bind(statement, 8, null);
+        verify(statement).setLong(1, 123L);
+        verify(statement).setString(2, "Fred");
+        verify(statement).setInt(3, 45);
+        verify(statement).setObject(4, now);
+        verify(statement).setString(5, "GREEN");
+        verify(statement).setObject(6, uuid);
+        verify(statement).setBigDecimal(7, new BigDecimal("1.50"));
+        verify(statement).setObject(8, null);
+    }
+
+    @Test
+    public void forTypeCached() {
+        assertThat(Codecs.forType(Long.class), sameInstance(Codecs.forType(Long.class)));
+        assertThat(Codecs.forType(long.class), sameInstance(Codecs.forType(Long.class)));
+        assertThat(Codecs.forType(Color.class), sameInstance(Codecs.forType(Color.class)));
+        assertThat(Codecs.forType(Object.class), sameInstance(Codecs.OBJECT));
+    }
+
+    @Test
+    public void readEnum() throws Exception {
+        when(resultSet.getString("color")).thenReturn("RED");
+        assertThat(Codecs.read(resultSet, "color", Color.class), is(Color.RED));
+    }
+
+    @Test
+    public void readLocalDateTime() throws Exception {
+        LocalDateTime now = LocalDateTime.of(2020, 1, 2, 3, 4, 5);
+        when(resultSet.getObject("published", LocalDateTime.class)).thenReturn(now);
+        assertThat(Codecs.read(resultSet, "published", LocalDateTime.class), is(now));
+    }
+
+    @Test
+    public void readLocalDateTimeLegacy() throws Exception {
+        LocalDateTime now = LocalDateTime.of(2020, 1, 2, 3, 4, 5);
+        when(resultSet.getObject("published", LocalDateTime.class))
+                .thenThrow(new SQLFeatureNotSupportedException());
+        when(resultSet.getTimestamp("published")).thenReturn(Timestamp.valueOf(now));
+        assertThat(Codecs.read(resultSet, "published", LocalDateTime.class), is(now));
+    }
+
+    @Test
+    public void readNullLong() throws Exception {
+        when(resultSet.getLong("id")).thenReturn(0L);
+        when(resultSet.wasNull()).thenReturn(true);
+        assertThat(Codecs.read(resultSet, "id", Long.class), is(nullValue()));
+    }
+
+    @Test
+    public void readUUID() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        when(resultSet.getObject("key")).thenReturn(uuid.toString());
+        assertThat(Codecs.read(resultSet, "key", UUID.class), is(uuid));
+    }
+
+    @Test
+    public void register() throws Exception {
+        Codecs.register(StringBuilder.class, new Codec<StringBuilder>() {
+            @Override
+            public void bind(PreparedStatement statement, int index, StringBuilder value) throws SQLException {
+                statement.setString(index, value.toString());
+            }
+            @Override
+            public StringBuilder read(ResultSet resultSet, int index) throws SQLException {
+                return new StringBuilder(resultSet.getString(index));
+            }
+            @Override
+            public StringBuilder read(ResultSet resultSet, String column) throws SQLException {
+                return new StringBuilder(resultSet.getString(column));
+            }
+        });
+        Codecs.bind(statement, 1, new StringBuilder("Wilma"));
+        verify(statement).setString(1, "Wilma");
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ColumnLayoutUnitTest {
+
+    private ResultSetMetaData metaData;
+    private ResultSet resultSet;
+
+    @Before
+    public void before() throws Exception {
+        metaData = mock(ResultSetMetaData.class);
+        when(metaData.getColumnCount()).thenReturn(3);
+        when(metaData.getColumnLabel(1)).thenReturn("ID");
+        when(metaData.getColumnLabel(2)).thenReturn("firstName");
+        when(metaData.getColumnLabel(3)).thenReturn("id");
+        resultSet = mock(ResultSet.class);
+        when(resultSet.getMetaData()).thenReturn(metaData);
+    }
+
+    @Test
+    public void indexOf() throws Exception {
+        ColumnLayout layout = ColumnLayout.of(metaData);
+        System.out.println("indexOf: " + layout);
+        assertThat(layout.size(), is(3));
+        assertThat(layout.getShape(), is("ID,firstName,id"));
+        assertThat(layout.indexOf("ID"), is(1));
+        assertThat(layout.indexOf("id"), is(1));
+        assertThat(layout.indexOf("FIRSTNAME"), is(2));
+        assertThat(layout.indexOf("lastName"), is(0));
+        assertThat(layout.contains("firstName"), is(true));
+        assertThat(layout.getLabel(2), is("firstName"));
+    }
+
+    @Test
+    public void ofCachesShape() throws Exception {
+        ResultSetMetaData other = mock(ResultSetMetaData.class);
+        when(other.getColumnCount()).thenReturn(3);
+        when(other.getColumnLabel(1)).thenReturn("ID");
+        when(other.getColumnLabel(2)).thenReturn("firstName");
+        when(other.getColumnLabel(3)).thenReturn("id");
+        assertThat(ColumnLayout.of(other), sameInstance(ColumnLayout.of(metaData)));
+    }
+
+    @Test
+    public void ofReusesResultSet() throws Exception {
+        ColumnLayout first = ColumnLayout.of(resultSet);
+        ColumnLayout second = ColumnLayout.of(resultSet);
+        assertThat(second, sameInstance(first));
+        verify(resultSet, times(1)).getMetaData();
+    }
+
+    @Test
+    public void populateModelByIndex() throws Exception {
+        ResultSetMetaData partial = mock(ResultSetMetaData.class);
+        when(partial.getColumnCount()).thenReturn(2);
+        when(partial.getColumnLabel(1)).thenReturn("name");
+        when(partial.getColumnLabel(2)).thenReturn("id");
+        ResultSet rows = mock(ResultSet.class);
+        when(rows.getMetaData()).thenReturn(partial);
+        when(rows.getLong(2)).thenReturn(11L, 12L);
+        TestJdbc jdbc = new TestJdbc();
+        ModelCursorUnitTest.TestModel first = new ModelCursorUnitTest.TestModel();
+        jdbc.populateModel(first, rows);
+        ModelCursorUnitTest.TestModel second = new ModelCursorUnitTest.TestModel();
+        jdbc.populateModel(second, rows);
+        System.out.println("populateModelByIndex: " + first + ", " + second);
+        assertThat(first.getId(), is(11L));
+        assertThat(second.getId(), is(12L));
+        assertThat(second.getPublished(), nullValue());
+        verify(rows, times(1)).getMetaData();
+        verify(rows, never()).getLong(anyString());
+    }
+
+    // Support Classes -------------------------------------------------------
+
+    private static class TestJdbc extends AbstractModelJdbc<ModelCursorUnitTest.TestModel> {
+        @Override
+        public PreparedStatement delete(Connection connection, Long id) {
+            return null;
+        }
+        @Override
+        public PreparedStatement findAll(Connection connection) {
+            return null;
+        }
+        @Override
+        public PreparedStatement findById(Connection connection, Long id) {
+            return null;
+        }
+        @Override
+        public PreparedStatement insert(Connection connection, ModelCursorUnitTest.TestModel model) {
+            return null;
+        }
+        @Override
+        public ModelCursorUnitTest.TestModel populateNext(ResultSet resultSet) throws SQLException {
+            return null;
+        }
+        @Override
+        public PreparedStatement update(Connection connection, ModelCursorUnitTest.TestModel model) {
+            return null;
+        }
+
+        @Override
+        public PreparedStatement upsert(Connection connection, ModelCursorUnitTest.TestModel model) {
+            return null;
+        }
+    }
+
+}
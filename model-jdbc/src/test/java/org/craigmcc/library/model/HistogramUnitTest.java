@@ -0,0 +1,99 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.model;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThrows;
+
+public class HistogramUnitTest {
+
+    @Test
+    public void empty() throws Exception {
+        Histogram histogram = new Histogram();
+        System.out.println("empty: " + histogram);
+        assertThat(histogram.getCount(), is(0L));
+        assertThat(histogram.getMax(), is(0L));
+        assertThat(histogram.getMean(), is(0.0));
+        assertThat(histogram.getMin(), is(0L));
+        assertThat(histogram.getValueAtPercentile(99.0), is(0L));
+    }
+
+    @Test
+    public void largeValues() throws Exception {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 1_000_000; value++) {
+            histogram.record(value * 1_000);
+        }
+        System.out.println("largeValues: " + histogram.snapshot());
+        assertThat(histogram.getCount(), is(1_000_000L));
+        assertThat(histogram.getMin(), is(1_000L));
+        assertThat(histogram.getMax(), is(1_000_000_000L));
+        assertWithin(histogram.getValueAtPercentile(50.0), 500_000_000L);
+        assertWithin(histogram.getValueAtPercentile(90.0), 900_000_000L);
+        assertWithin(histogram.getValueAtPercentile(99.0), 990_000_000L);
+        assertThat(histogram.getValueAtPercentile(100.0), is(1_000_000_000L));
+    }
+
+    @Test
+    public void outOfRange() throws Exception {
+        Histogram histogram = new Histogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        System.out.println("outOfRange: " + histogram);
+        assertThat(histogram.getMin(), is(0L));
+        assertThat(histogram.getMax(), is(Long.MAX_VALUE));
+        assertThat(histogram.getValueAtPercentile(50.0), is(0L));
+        assertThrows(IllegalArgumentException.class,
+                () -> histogram.getValueAtPercentile(100.1));
+    }
+
+    @Test
+    public void reset() throws Exception {
+        Histogram histogram = new Histogram();
+        histogram.record(10);
+        histogram.record(20);
+        histogram.reset();
+        assertThat(histogram.getCount(), is(0L));
+        assertThat(histogram.getMax(), is(0L));
+        assertThat(histogram.getTotal(), is(0L));
+    }
+
+    @Test
+    public void smallValues() throws Exception {
+        Histogram histogram = new Histogram();
+        for (long value = 0; value < 10; value++) {
+            histogram.record(value);
+        }
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        System.out.println("smallValues: " + snapshot);
+        assertThat(snapshot.getCount(), is(10L));
+        assertThat(snapshot.getMin(), is(0L));
+        assertThat(snapshot.getMax(), is(9L));
+        assertThat(snapshot.getMean(), is(4.5));
+        assertThat(snapshot.getP50(), is(4L));
+        assertThat(snapshot.getP90(), is(8L));
+        assertThat(histogram.getTotal(), is(45L));
+    }
+
+    private static void assertWithin(long actual, long expected) {
+        assertThat(Math.abs(actual - expected), lessThanOrEqualTo(expected / Histogram.SUB_BUCKETS));
+    }
+
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.model;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ModelCursorUnitTest {
+
+    public static class TestModel extends Model<TestModel> {
+        @Override
+        public void copy(TestModel that) {
+            this.setId(that.getId());
+        }
+    }
+
+    private Connection connection;
+    private PreparedStatement statement;
+    private ResultSet resultSet;
+
+    private final ModelJdbc<TestModel> jdbc = new AbstractModelJdbc<TestModel>() {
+        @Override
+        public PreparedStatement delete(Connection connection, Long id) {
+            return null;
+        }
+        @Override
+        public PreparedStatement findAll(Connection connection) {
+            return null;
+        }
+        @Override
+        public PreparedStatement findById(Connection connection, Long id) {
+            return null;
+        }
+        @Override
+        public PreparedStatement insert(Connection connection, TestModel model) {
+            return null;
+        }
+        @Override
+        public TestModel populateNext(ResultSet resultSet) throws SQLException {
+            if (!resultSet.next()) {
+                return null;
+            }
+            TestModel model = new TestModel();
+            model.setId(resultSet.getLong(ID_COLUMN));
+            return model;
+        }
+        @Override
+        public PreparedStatement update(Connection connection, TestModel model) {
+            return null;
+        }
+
+        @Override
+        public PreparedStatement upsert(Connection connection, TestModel model) {
+            return null;
+        }
+    };
+
+    @Before
+    public void before() throws Exception {
+        connection = mock(Connection.class);
+        statement = mock(PreparedStatement.class);
+        resultSet = mock(ResultSet.class);
+    }
+
+    @Test
+    public void cursorClosedWhenExhausted() throws Exception {
+        when(resultSet.next()).thenReturn(true, true, false);
+        when(resultSet.getLong(Constants.ID_COLUMN)).thenReturn(1L, 2L);
+        ModelCursor<TestModel> cursor = jdbc.populateCursor(resultSet, statement, connection);
+        int count = 0;
+        while (cursor.hasNext()) {
+            TestModel model = cursor.next();
+            System.out.println("cursorClosedWhenExhausted: " + model.getId());
+            count++;
+        }
+        assertThat(count, is(2));
+        assertThat(cursor.isClosed(), is(true));
+        verify(resultSet).close();
+        verify(statement).close();
+        verify(connection).close();
+    }
+
+    @Test
+    public void cursorClosedOnce() throws Exception {
+        ModelCursor<TestModel> cursor = jdbc.populateCursor(resultSet, statement, connection);
+        cursor.close();
+        cursor.close();
+        assertThat(cursor.hasNext(), is(false));
+        verify(resultSet, times(1)).close();
+        verify(resultSet, never()).next();
+        verify(connection, times(1)).close();
+    }
+
+    @Test
+    public void cursorClosedOnFailure() throws Exception {
+        when(resultSet.next()).thenThrow(new SQLException("Boom"));
+        ModelCursor<TestModel> cursor = jdbc.populateCursor(resultSet, statement, connection);
+        assertThrows(IllegalStateException.class, cursor::hasNext);
+        assertThat(cursor.isClosed(), is(true));
+        verify(statement).close();
+        verify(connection).close();
+    }
+
+    @Test
+    public void streamClosedEarly() throws Exception {
+        when(resultSet.next()).thenReturn(true, true, true, false);
+        when(resultSet.getLong(Constants.ID_COLUMN)).thenReturn(1L, 2L, 3L);
+        List<Long> ids;
+        try (Stream<TestModel> stream = jdbc.populateCursor(resultSet, statement, connection).stream()) {
+            ids = stream.limit(2).map(TestModel::getId).collect(Collectors.toList());
+        }
+        System.out.println("streamClosedEarly: " + ids);
+        assertThat(ids.size(), is(2));
+        assertThat(ids.get(1), is(2L));
+        verify(resultSet).close();
+        verify(statement).close();
+        verify(connection).close();
+    }
+
+    @Test
+    public void openAppliesFetchSize() throws Exception {
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(false);
+        ModelCursor<TestModel> cursor = ModelCursor.open(dataSource, c -> statement, jdbc, 500);
+        verify(statement).setFetchSize(500);
+        assertThat(cursor.hasNext(), is(false));
+        verify(connection).close();
+    }
+
+    @Test
+    public void openClosesOnFailure() throws Exception {
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(statement.executeQuery()).thenThrow(new SQLException("Boom"));
+        assertThrows(SQLException.class,
+                () -> ModelCursor.open(dataSource, c -> statement, jdbc, 0));
+        verify(statement, never()).setFetchSize(Mockito.anyInt());
+        verify(statement).close();
+        verify(connection).close();
+    }
+
+}
@@ -0,0 +1,450 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.model;
+
+import org.craigmcc.library.shared.exception.BadRequest;
+import org.craigmcc.library.shared.exception.InternalServerError;
+import org.craigmcc.library.shared.exception.NotFound;
+import org.craigmcc.library.shared.exception.NotUnique;
+import org.craigmcc.library.shared.model.FindResults;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ModelServiceUnitTest {
+
+    @Test
+    public void findAllByIdChunked() throws Exception {
+        TestService service = new TestService(2);
+        FindResults<ModelCursorUnitTest.TestModel> results =
+                service.findAllById(Arrays.asList(5L, 1L, 99L, 3L, 1L, null, 4L));
+        System.out.println("findAllByIdChunked: " + results + " chunks=" + service.chunks);
+        assertThat(results.getFound().keySet(), contains(5L, 1L, 3L, 4L));
+        assertThat(results.getMissing(), contains(99L));
+        assertThat(service.chunks.size(), is(3));
+        assertThat(service.chunks.get(0), contains(5L, 1L));
+        assertThat(service.chunks.get(2), contains(4L));
+    }
+
+    @Test
+    public void findAllByIdDefaultChunk() throws Exception {
+        TestService service = new TestService(0);
+        FindResults<ModelCursorUnitTest.TestModel> results =
+                service.findAllById(Arrays.asList(2L, 7L));
+        System.out.println("findAllByIdDefaultChunk: " + results);
+        assertThat(results.getFound().keySet(), contains(2L));
+        assertThat(results.getMissing(), contains(7L));
+    }
+
+    @Test
+    public void findAllByIdDefaultJdbc() throws Exception {
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ResultSet resultSet = returned(2L);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        TestJdbc jdbc = new TestJdbc(statement) {
+            @Override
+            public String getTable() {
+                return "tests";
+            }
+        };
+        JdbcService service = new JdbcService(connection, jdbc);
+        FindResults<ModelCursorUnitTest.TestModel> results =
+                service.findAllById(Arrays.asList(2L, 7L, 9L));
+        System.out.println("findAllByIdDefaultJdbc: " + results);
+        assertThat(results.getFound().keySet(), contains(2L));
+        assertThat(results.getMissing(), contains(7L, 9L));
+        verify(connection).prepareStatement("SELECT * FROM tests WHERE id IN (?, ?, ?, ?) ORDER BY id");
+        verify(connection).close();
+    }
+
+    @Test
+    public void findAllByIdEmpty() throws Exception {
+        TestService service = new TestService(2);
+        FindResults<ModelCursorUnitTest.TestModel> results =
+                service.findAllById(new ArrayList<>());
+        assertThat(results.getFound().size(), is(0));
+        assertThat(results.getMissing().size(), is(0));
+        assertThat(service.chunks.size(), is(0));
+    }
+
+    @Test
+    public void findAllByIdStatement() throws Exception {
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        TestJdbc jdbc = new TestJdbc(statement) {
+            @Override
+            public String getTable() {
+                return "tests";
+            }
+        };
+        assertThat(jdbc.findAllById(connection, Arrays.asList(3L, 1L, 2L)), is(statement));
+        verify(connection).prepareStatement("SELECT * FROM tests WHERE id IN (?, ?, ?, ?) ORDER BY id");
+        verify(statement).setLong(1, 3L);
+        verify(statement).setLong(3, 2L);
+        verify(statement).setLong(4, 2L);
+        assertThrows(UnsupportedOperationException.class,
+                () -> new TestJdbc(statement).findAllById(connection, Arrays.asList(1L)));
+    }
+
+    @Test
+    public void insertReturning() throws Exception {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ResultSet resultSet = returned(42L);
+        when(statement.execute()).thenReturn(true);
+        when(statement.getResultSet()).thenReturn(resultSet);
+        ModelCursorUnitTest.TestModel model = new ModelCursorUnitTest.TestModel();
+        new TestService(0).insert(mock(Connection.class), new TestJdbc(statement), model);
+        System.out.println("insertReturning: " + model.getId());
+        assertThat(model.getId(), is(42L));
+        verify(statement, never()).getGeneratedKeys();
+        verify(resultSet).close();
+        verify(statement).close();
+    }
+
+    @Test
+    public void insertReturningGeneratedKeys() throws Exception {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ResultSet resultSet = returned(43L);
+        when(statement.execute()).thenReturn(false);
+        when(statement.getGeneratedKeys()).thenReturn(resultSet);
+        ModelCursorUnitTest.TestModel model = new ModelCursorUnitTest.TestModel();
+        new TestService(0).insert(mock(Connection.class), new TestJdbc(statement), model);
+        assertThat(model.getId(), is(43L));
+        verify(resultSet).close();
+    }
+
+    @Test
+    public void insertReturningGeneratedKeysLabelled() throws Exception {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ResultSet resultSet = returned("GENERATED_KEY", 46L);
+        when(statement.execute()).thenReturn(false);
+        when(statement.getGeneratedKeys()).thenReturn(resultSet);
+        ModelCursorUnitTest.TestModel model = new ModelCursorUnitTest.TestModel();
+        new TestService(0).insert(mock(Connection.class), new TestJdbc(statement), model);
+        System.out.println("insertReturningGeneratedKeysLabelled: " + model.getId());
+        assertThat(model.getId(), is(46L));
+    }
+
+    @Test
+    public void insertReturningNothing() throws Exception {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ResultSet resultSet = returned(47L);
+        when(resultSet.next()).thenReturn(false);
+        when(statement.execute()).thenReturn(false);
+        when(statement.getGeneratedKeys()).thenReturn(resultSet);
+        ModelCursorUnitTest.TestModel model = new ModelCursorUnitTest.TestModel();
+        assertThrows(InternalServerError.class,
+                () -> new TestService(0).insert(mock(Connection.class), new TestJdbc(statement), model));
+        verify(resultSet).close();
+        verify(statement).close();
+    }
+
+    @Test
+    public void updateReturning() throws Exception {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ResultSet resultSet = returned(44L);
+        when(statement.execute()).thenReturn(true);
+        when(statement.getResultSet()).thenReturn(resultSet);
+        ModelCursorUnitTest.TestModel model = new ModelCursorUnitTest.TestModel();
+        model.setId(1L);
+        new TestService(0).update(mock(Connection.class), new TestJdbc(statement), model);
+        assertThat(model.getId(), is(44L));
+        verify(statement, never()).getUpdateCount();
+    }
+
+    @Test
+    public void updateReturningNotFound() throws Exception {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(statement.execute()).thenReturn(false);
+        when(statement.getUpdateCount()).thenReturn(0);
+        ModelCursorUnitTest.TestModel model = new ModelCursorUnitTest.TestModel();
+        model.setId(1L);
+        assertThrows(NotFound.class,
+                () -> new TestService(0).update(mock(Connection.class), new TestJdbc(statement), model));
+        verify(statement).close();
+    }
+
+    @Test
+    public void upsertStatement() throws Exception {
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(statement.executeUpdate()).thenReturn(1);
+        ModelCursorUnitTest.TestModel model = new ModelCursorUnitTest.TestModel();
+        model.setId(7L);
+        assertThat(new JdbcService(connection, new TestJdbc(statement)).upsert(model), is(model));
+        verify(statement).executeUpdate();
+        verify(statement, never()).getGeneratedKeys();
+        verify(statement).close();
+        verify(connection).close();
+    }
+
+    @Test
+    public void upsertStatementInsert() throws Exception {
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ResultSet resultSet = returned(45L);
+        when(statement.execute()).thenReturn(false);
+        when(statement.getGeneratedKeys()).thenReturn(resultSet);
+        ModelCursorUnitTest.TestModel model = new ModelCursorUnitTest.TestModel();
+        new JdbcService(connection, new TestJdbc(statement)).upsert(model);
+        System.out.println("upsertStatementInsert: " + model.getId());
+        assertThat(model.getId(), is(45L));
+        verify(statement, never()).executeUpdate();
+        verify(connection).close();
+    }
+
+    @Test
+    public void upsertWithoutJdbc() throws Exception {
+        assertThrows(UnsupportedOperationException.class,
+                () -> new TestService(0).upsert(new ModelCursorUnitTest.TestModel()));
+    }
+
+    // Static Methods --------------------------------------------------------
+
+    static ResultSet returned(long id) throws Exception {
+        return returned("id", id);
+    }
+
+    static ResultSet returned(String label, long id) throws Exception {
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(metaData.getColumnCount()).thenReturn(1);
+        when(metaData.getColumnLabel(1)).thenReturn(label);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.getMetaData()).thenReturn(metaData);
+        when(resultSet.next()).thenReturn(true, false);
+        when(resultSet.getLong(1)).thenReturn(id);
+        return resultSet;
+    }
+
+    // Support Classes -------------------------------------------------------
+
+    /**
+     * <p>Service that provides the specified <code>DataSource</code> (or a
+     * mock one for the specified connection) and {@link ModelJdbc} to the
+     * default implementations in {@link ModelService}.</p>
+     */
+    static class JdbcService extends ModelService<ModelCursorUnitTest.TestModel> {
+
+        JdbcService(Connection connection, ModelJdbc<ModelCursorUnitTest.TestModel> jdbc)
+                throws SQLException {
+            this(mock(DataSource.class), jdbc);
+            when(dataSource.getConnection()).thenReturn(connection);
+        }
+
+        JdbcService(DataSource dataSource, ModelJdbc<ModelCursorUnitTest.TestModel> jdbc) {
+            this.dataSource = dataSource;
+            this.jdbc = jdbc;
+        }
+
+        private final DataSource dataSource;
+        private final ModelJdbc<ModelCursorUnitTest.TestModel> jdbc;
+
+        @Override
+        public ModelCursorUnitTest.TestModel delete(Long id) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<ModelCursorUnitTest.TestModel> findAll() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ModelCursorUnitTest.TestModel insert(ModelCursorUnitTest.TestModel model) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ModelCursorUnitTest.TestModel update(Long id, ModelCursorUnitTest.TestModel model) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected DataSource getDataSource() {
+            return dataSource;
+        }
+
+        @Override
+        protected ModelJdbc<ModelCursorUnitTest.TestModel> getJdbc() {
+            return jdbc;
+        }
+
+        @Override
+        protected Class<ModelCursorUnitTest.TestModel> getModelClass() {
+            return ModelCursorUnitTest.TestModel.class;
+        }
+
+    }
+
+    /**
+     * <p>JDBC support that returns the specified statement for inserts and
+     * updates.</p>
+     */
+    static class TestJdbc extends AbstractModelJdbc<ModelCursorUnitTest.TestModel> {
+
+        TestJdbc(PreparedStatement statement) {
+            super(ModelCursorUnitTest.TestModel.class);
+            this.statement = statement;
+        }
+
+        private final PreparedStatement statement;
+
+        @Override
+        public PreparedStatement delete(Connection connection, Long id) {
+            return null;
+        }
+
+        @Override
+        public PreparedStatement findAll(Connection connection) {
+            return null;
+        }
+
+        @Override
+        public PreparedStatement findById(Connection connection, Long id) {
+            return null;
+        }
+
+        @Override
+        public PreparedStatement insert(Connection connection, ModelCursorUnitTest.TestModel model) {
+            return statement;
+        }
+
+        @Override
+        public PreparedStatement update(Connection connection, ModelCursorUnitTest.TestModel model) {
+            return statement;
+        }
+
+        @Override
+        public PreparedStatement upsert(Connection connection, ModelCursorUnitTest.TestModel model) {
+            return statement;
+        }
+
+    }
+
+    /**
+     * <p>Service backed by a map, with ids 1 through 5 present.  If a chunk
+     * size is specified, chunks are recorded and looked up directly;
+     * otherwise the default (per-id) <code>findChunk()</code> is used.</p>
+     */
+    static class TestService extends ModelService<ModelCursorUnitTest.TestModel> {
+
+        TestService(int chunkSize) {
+            this.chunkSize = chunkSize;
+            for (long id = 1; id <= 5; id++) {
+                ModelCursorUnitTest.TestModel model = new ModelCursorUnitTest.TestModel();
+                model.setId(id);
+                models.put(id, model);
+            }
+        }
+
+        final List<List<Long>> chunks = new ArrayList<>();
+        int finds = 0;
+        final List<List<Long>> updates = new ArrayList<>();
+        private final int chunkSize;
+        private final Map<Long, ModelCursorUnitTest.TestModel> models = new HashMap<>();
+
+        @Override
+        public ModelCursorUnitTest.TestModel delete(Long id) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ModelCursorUnitTest.TestModel find(Long id) throws NotFound {
+            finds++;
+            ModelCursorUnitTest.TestModel model = models.get(id);
+            if (model == null) {
+                throw new NotFound("id: Missing id " + id);
+            }
+            return model;
+        }
+
+        @Override
+        public List<ModelCursorUnitTest.TestModel> findAll() {
+            return new ArrayList<>(models.values());
+        }
+
+        @Override
+        public ModelCursorUnitTest.TestModel insert(ModelCursorUnitTest.TestModel model) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ModelCursorUnitTest.TestModel update(Long id, ModelCursorUnitTest.TestModel model)
+                throws NotFound {
+            if (!models.containsKey(id)) {
+                throw new NotFound("id: Missing id " + id);
+            }
+            models.put(id, model);
+            return model;
+        }
+
+        @Override
+        public List<ModelCursorUnitTest.TestModel> updateAll(List<ModelCursorUnitTest.TestModel> models)
+                throws BadRequest, InternalServerError, NotFound, NotUnique {
+            List<Long> ids = new ArrayList<>();
+            for (ModelCursorUnitTest.TestModel model : models) {
+                ids.add(model.getId());
+            }
+            updates.add(ids);
+            return super.updateAll(models);
+        }
+
+        @Override
+        protected List<ModelCursorUnitTest.TestModel> findChunk(List<Long> ids) throws InternalServerError {
+            if (chunkSize == 0) {
+                return super.findChunk(ids);
+            }
+            chunks.add(new ArrayList<>(ids));
+            List<ModelCursorUnitTest.TestModel> results = new ArrayList<>();
+            for (Long id : ids) {
+                if (models.containsKey(id)) {
+                    results.add(models.get(id));
+                }
+            }
+            return results;
+        }
+
+        @Override
+        protected int findChunkSize() {
+            return (chunkSize > 0) ? chunkSize : super.findChunkSize();
+        }
+
+    }
+
+}
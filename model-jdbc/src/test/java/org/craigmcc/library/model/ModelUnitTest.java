@@ -19,8 +19,12 @@ import nl.jqno.equalsverifier.EqualsVerifier;
 import nl.jqno.equalsverifier.Warning;
 import org.junit.Test;
 
+import java.time.LocalDateTime;
+
 import static org.craigmcc.library.model.Constants.PUBLISHED_COLUMN;
 import static org.craigmcc.library.model.Constants.UPDATED_COLUMN;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
 
 public class ModelUnitTest {
 
@@ -33,4 +37,25 @@ public class ModelUnitTest {
                 .verify();
     }
 
+    @Test
+    public void snapshotChanges() {
+        ModelCursorUnitTest.TestModel model = new ModelCursorUnitTest.TestModel();
+        LocalDateTime published = LocalDateTime.of(2020, 1, 2, 3, 4, 5);
+        assertThat(model.isTracked(), is(false));
+        assertThat(model.isChanged(PUBLISHED_COLUMN, published), is(true));
+        model.snapshot("PUBLISHED", published);
+        model.snapshot("data", new byte[] { 1, 2 });
+        assertThat(model.isTracked(), is(true));
+        assertThat(model.isChanged(PUBLISHED_COLUMN, published), is(false));
+        assertThat(model.isChanged(PUBLISHED_COLUMN, published.plusSeconds(1)), is(true));
+        assertThat(model.isChanged("data", new byte[] { 1, 2 }), is(false));
+        assertThat(model.isChanged(UPDATED_COLUMN, null), is(true));
+        ModelCursorUnitTest.TestModel clone = model.clone();
+        clone.snapshot(UPDATED_COLUMN, null);
+        assertThat(clone.isChanged(UPDATED_COLUMN, null), is(false));
+        assertThat(model.isChanged(UPDATED_COLUMN, null), is(true));
+        model.clearSnapshot();
+        assertThat(model.isChanged(PUBLISHED_COLUMN, published), is(true));
+    }
+
 }
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RowMapperUnitTest {
+
+    private ResultSet resultSet;
+
+    @Before
+    public void before() throws Exception {
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(metaData.getColumnCount()).thenReturn(4);
+        when(metaData.getColumnLabel(1)).thenReturn("id");
+        when(metaData.getColumnLabel(2)).thenReturn("NAME");
+        when(metaData.getColumnLabel(3)).thenReturn("points");
+        when(metaData.getColumnLabel(4)).thenReturn("other");
+        resultSet = mock(ResultSet.class);
+        when(resultSet.getMetaData()).thenReturn(metaData);
+        when(resultSet.next()).thenReturn(true, true, false);
+        when(resultSet.getLong(1)).thenReturn(1L, 2L);
+        when(resultSet.getString(2)).thenReturn("Fred", (String) null);
+        when(resultSet.getInt(3)).thenReturn(10, 20);
+        when(resultSet.wasNull()).thenReturn(false);
+    }
+
+    @Test
+    public void mapRows() throws Exception {
+        RowMapper<Person> mapper = RowMapper.of(Person.class, resultSet);
+        System.out.println("mapRows: " + mapper);
+        assertThat(mapper.getMappedCount(), is(3));
+        Person first = mapper.map(resultSet);
+        Person second = mapper.map(resultSet);
+        assertThat(first.getId(), is(1L));
+        assertThat(first.getName(), is("Fred"));
+        assertThat(first.getPoints(), is(10));
+        assertThat(second.getId(), is(2L));
+        assertThat(second.getName(), nullValue());
+        assertThat(second.getPoints(), is(20));
+        verify(resultSet, never()).getString(anyString());
+    }
+
+    @Test
+    public void mapperCached() throws Exception {
+        assertThat(RowMapper.of(Person.class, resultSet),
+                sameInstance(RowMapper.of(Person.class, ColumnLayout.of(resultSet))));
+    }
+
+    @Test
+    public void mapTracked() throws Exception {
+        TrackedPerson person = RowMapper.of(TrackedPerson.class, resultSet).map(resultSet);
+        System.out.println("mapTracked: " + person);
+        assertThat(person.isTracked(), is(true));
+        assertThat(person.isChanged("name", "Fred"), is(false));
+        assertThat(person.isChanged("points", 10), is(false));
+        assertThat(person.isChanged("points", 11), is(true));
+        assertThat(RowMapper.of(Person.class, resultSet).map(resultSet).isTracked(), is(false));
+    }
+
+    @Test
+    public void noConstructor() throws Exception {
+        assertThrows(IllegalArgumentException.class,
+                () -> RowMapper.of(Model.class, resultSet));
+    }
+
+    @Test
+    public void populateAllWithMapper() throws Exception {
+        PersonJdbc jdbc = new PersonJdbc();
+        List<Person> results = jdbc.populateAll(resultSet);
+        System.out.println("populateAllWithMapper: " + results);
+        assertThat(results.size(), is(2));
+        assertThat(results.get(1).getId(), is(2L));
+        assertThat(jdbc.populateNext(resultSet), nullValue());
+    }
+
+    @Test
+    public void populateReturned() throws Exception {
+        PersonJdbc jdbc = new PersonJdbc();
+        Person person = new Person();
+        person.setName("Wilma");
+        person.setPoints(99);
+        assertThat(jdbc.populateReturned(resultSet, person), is(true));
+        System.out.println("populateReturned: " + person);
+        assertThat(person.getId(), is(1L));
+        assertThat(person.getName(), is("Fred"));
+        assertThat(person.getPoints(), is(10));
+        assertThat(jdbc.populateReturned(resultSet, person), is(true));
+        assertThat(person.getName(), nullValue());
+        assertThat(jdbc.populateReturned(resultSet, person), is(false));
+        assertThat(person.getId(), is(2L));
+    }
+
+    @Test
+    public void populateAllWithOverride() throws Exception {
+        AbstractModelJdbc<Person> jdbc = new PersonJdbc() {
+            @Override
+            public Person populateNext(ResultSet resultSet) throws SQLException {
+                Person person = super.populateNext(resultSet);
+                if (person != null) {
+                    person.setPoints(person.getPoints() * 2);
+                }
+                return person;
+            }
+        };
+        List<Person> results = jdbc.populateAll(resultSet);
+        System.out.println("populateAllWithOverride: " + results);
+        assertThat(results.size(), is(2));
+        assertThat(results.get(0).getPoints(), is(20));
+        assertThat(results.get(1).getPoints(), is(40));
+    }
+
+    @Test
+    public void populateNextWithoutType() throws Exception {
+        AbstractModelJdbc<Person> jdbc = new PersonJdbc() {
+        };
+        AbstractModelJdbc<Person> inferred = new UntypedJdbc<Person>() {
+        };
+        assertThat(jdbc.populateNext(resultSet).getName(), is("Fred"));
+        assertThat(inferred.populateNext(resultSet).getName(), nullValue());
+        assertThrows(IllegalStateException.class,
+                () -> new UntypedJdbc<Person>());
+    }
+
+    // Support Classes -------------------------------------------------------
+
+    public static class Person extends Model<Person> {
+
+        private String name;
+        private int points;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getPoints() {
+            return points;
+        }
+
+        public void setPoints(int points) {
+            this.points = points;
+        }
+
+        @Override
+        public void copy(Person that) {
+            this.name = that.name;
+            this.points = that.points;
+        }
+
+    }
+
+    public static class TrackedPerson extends Person implements ChangeTracked {
+    }
+
+    private static class PersonJdbc extends AbstractModelJdbc<Person> {
+
+        PersonJdbc() {
+            super(Person.class);
+        }
+
+        @Override
+        public PreparedStatement delete(Connection connection, Long id) {
+            return null;
+        }
+
+        @Override
+        public PreparedStatement findAll(Connection connection) {
+            return null;
+        }
+
+        @Override
+        public PreparedStatement findById(Connection connection, Long id) {
+            return null;
+        }
+
+        @Override
+        public PreparedStatement insert(Connection connection, Person model) {
+            return null;
+        }
+
+        @Override
+        public PreparedStatement update(Connection connection, Person model) {
+            return null;
+        }
+
+        @Override
+        public PreparedStatement upsert(Connection connection, Person model) {
+            return null;
+        }
+
+    }
+
+
+    private static class UntypedJdbc<M extends Model> extends AbstractModelJdbc<M> {
+
+        @Override
+        public PreparedStatement delete(Connection connection, Long id) {
+            return null;
+        }
+
+        @Override
+        public PreparedStatement findAll(Connection connection) {
+            return null;
+        }
+
+        @Override
+        public PreparedStatement findById(Connection connection, Long id) {
+            return null;
+        }
+
+        @Override
+        public PreparedStatement insert(Connection connection, M model) {
+            return null;
+        }
+
+        @Override
+        public PreparedStatement update(Connection connection, M model) {
+            return null;
+        }
+
+        @Override
+        public PreparedStatement upsert(Connection connection, M model) {
+            return null;
+        }
+
+    }
+
+}
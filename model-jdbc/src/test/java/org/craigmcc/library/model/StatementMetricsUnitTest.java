@@ -0,0 +1,146 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.model;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class StatementMetricsUnitTest {
+
+    private static final String SQL = "SELECT * FROM metricstable";
+
+    private ResultSet resultSet;
+    private PreparedStatement statement;
+
+    @Before
+    public void before() throws Exception {
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(metaData.getColumnCount()).thenReturn(1);
+        when(metaData.getColumnLabel(1)).thenReturn("id");
+        resultSet = mock(ResultSet.class);
+        when(resultSet.getMetaData()).thenReturn(metaData);
+        when(resultSet.next()).thenReturn(true, true, true, false);
+        when(resultSet.getLong(1)).thenReturn(1L, 2L, 3L);
+        statement = mock(PreparedStatement.class);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        StatementMetrics.reset();
+        StatementMetrics.enable();
+    }
+
+    @After
+    public void after() throws Exception {
+        StatementMetrics.disable();
+        StatementMetrics.reset();
+        StatementMetrics.unregisterMBean();
+    }
+
+    @Test
+    public void instrumentExecuteUpdate() throws Exception {
+        when(statement.executeUpdate()).thenReturn(2);
+        StatementMetrics.Shape shape = StatementMetrics.shape(SQL);
+        PreparedStatement instrumented = StatementMetrics.instrument(statement, shape);
+        assertThat(instrumented.executeUpdate(), is(2));
+        assertThat(instrumented.isWrapperFor(DelegatingPreparedStatement.class), is(true));
+        assertThat(shape.getExecute().getCount(), is(1L));
+        assertThat(StatementMetrics.populated(resultSet), nullValue());
+    }
+
+    @Test
+    public void instrumentNull() throws Exception {
+        assertThat(StatementMetrics.instrument(null, StatementMetrics.shape(SQL)), nullValue());
+    }
+
+    @Test
+    public void jmx() throws Exception {
+        StatementMetrics.shape(SQL).getExecute().record(1_000);
+        StatementMetrics.registerMBean();
+        StatementMetrics.registerMBean();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(StatementMetrics.OBJECT_NAME);
+        assertThat(server.getAttribute(name, "ShapeCount"), is(1));
+        assertThat(server.getAttribute(name, "Enabled"), is(true));
+        CompositeData[] shapes = (CompositeData[]) server.getAttribute(name, "Shapes");
+        System.out.println("jmx: " + shapes[0]);
+        assertThat(shapes.length, is(1));
+        assertThat(shapes[0].get("sql"), is(SQL));
+        assertThat(((CompositeData) shapes[0].get("execute")).get("count"), is(1L));
+        server.invoke(name, "reset", null, null);
+        assertThat(server.getAttribute(name, "ShapeCount"), is(0));
+    }
+
+    @Test
+    public void populateAllRecordsRows() throws Exception {
+        StatementMetrics.Shape shape = StatementMetrics.shape(SQL);
+        PreparedStatement instrumented = StatementMetrics.instrument(statement, shape);
+        ResultSet returned = instrumented.executeQuery();
+        assertThat(returned, sameInstance(resultSet));
+        List<ModelCursorUnitTest.TestModel> results =
+                new ModelServiceUnitTest.TestJdbc(statement).populateAll(returned);
+        System.out.println("populateAllRecordsRows: " + shape);
+        assertThat(results.size(), is(3));
+        assertThat(shape.getExecute().getCount(), is(1L));
+        assertThat(shape.getMap().getCount(), is(1L));
+        assertThat(shape.getRows().getCount(), is(1L));
+        assertThat(shape.getRows().getMax(), is(3L));
+        assertThat(StatementMetrics.populated(returned), nullValue());
+    }
+
+    @Test
+    public void populateAllUninstrumented() throws Exception {
+        StatementMetrics.Shape shape = StatementMetrics.shape(SQL);
+        new ModelServiceUnitTest.TestJdbc(statement).populateAll(statement.executeQuery());
+        assertThat(shape.getMap().getCount(), is(0L));
+        assertThat(shape.getRows().getCount(), is(0L));
+    }
+
+    @Test
+    public void pullApi() throws Exception {
+        StatementMetrics.Shape shape = StatementMetrics.shape(SQL);
+        assertThat(StatementMetrics.shape(SQL), sameInstance(shape));
+        assertThat(StatementMetrics.getShape(SQL), sameInstance(shape));
+        PreparedStatement instrumented = StatementMetrics.instrument(statement, shape);
+        instrumented.setLong(1, 123L);
+        instrumented.executeQuery();
+        instrumented.close();
+        verify(statement).setLong(1, 123L);
+        verify(statement).close();
+        List<StatementMetrics.Summary> summaries = StatementMetrics.getSummaries();
+        System.out.println("pullApi: " + summaries);
+        assertThat(summaries.size(), is(1));
+        assertThat(summaries.get(0).getSql(), is(SQL));
+        assertThat(summaries.get(0).getExecute().getCount(), is(1L));
+        assertThat(summaries.get(0).getBuild().getCount(), is(0L));
+    }
+
+}
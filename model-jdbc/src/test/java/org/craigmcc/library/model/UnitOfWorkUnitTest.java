@@ -0,0 +1,284 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.model;
+
+import org.craigmcc.library.shared.exception.NotFound;
+import org.junit.After;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UnitOfWorkUnitTest {
+
+    private final ModelServiceUnitTest.TestService service =
+            new ModelServiceUnitTest.TestService(0);
+
+    @After
+    public void after() {
+        UnitOfWork unit = UnitOfWork.current();
+        if (unit != null) {
+            unit.close();
+        }
+    }
+
+    @Test
+    public void beginAndClose() throws Exception {
+        assertThat(UnitOfWork.current(), nullValue());
+        try (UnitOfWork unit = UnitOfWork.begin()) {
+            assertThat(UnitOfWork.current(), sameInstance(unit));
+            assertThrows(IllegalStateException.class, UnitOfWork::begin);
+        }
+        assertThat(UnitOfWork.current(), nullValue());
+    }
+
+    @Test
+    public void closeDiscardsUpdates() throws Exception {
+        try (UnitOfWork unit = UnitOfWork.begin()) {
+            unit.update(service, unit.find(service, ModelCursorUnitTest.TestModel.class, 1L));
+            assertThat(unit.getPendingCount(), is(1));
+        }
+        assertThat(service.updates.size(), is(0));
+    }
+
+    @Test
+    public void commitBatchesUpdates() throws Exception {
+        try (UnitOfWork unit = UnitOfWork.begin()) {
+            ModelCursorUnitTest.TestModel first =
+                    unit.find(service, ModelCursorUnitTest.TestModel.class, 3L);
+            ModelCursorUnitTest.TestModel second =
+                    unit.find(service, ModelCursorUnitTest.TestModel.class, 1L);
+            unit.update(service, first);
+            unit.update(service, second);
+            unit.update(service, first);
+            assertThat(service.updates.size(), is(0));
+            unit.commit();
+            System.out.println("commitBatchesUpdates: " + service.updates);
+            assertThat(service.updates.size(), is(1));
+            assertThat(service.updates.get(0), contains(3L, 1L));
+            assertThat(unit.getPendingCount(), is(0));
+            unit.commit();
+            assertThat(service.updates.size(), is(1));
+        }
+    }
+
+    @Test
+    public void commitBatchesStatements() throws Exception {
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeBatch()).thenReturn(new int[] { 1, 1, 1 });
+        ModelServiceUnitTest.JdbcService jdbcService =
+                new ModelServiceUnitTest.JdbcService(connection, new SqlJdbc());
+        try (UnitOfWork unit = UnitOfWork.begin()) {
+            for (long id = 1; id <= 3; id++) {
+                ModelCursorUnitTest.TestModel model = new ModelCursorUnitTest.TestModel();
+                model.setId(id);
+                unit.update(jdbcService, model);
+            }
+            unit.commit();
+            assertThat(unit.getPendingCount(), is(0));
+        }
+        verify(connection).prepareStatement(SqlJdbc.UPDATE_SQL);
+        verify(statement, times(3)).addBatch();
+        verify(statement).executeBatch();
+        verify(statement, never()).executeUpdate();
+        verify(connection).commit();
+        verify(statement).close();
+        verify(connection).close();
+    }
+
+    @Test
+    public void commitBatchNotFound() throws Exception {
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeBatch()).thenReturn(new int[] { 1, 0 });
+        ModelServiceUnitTest.JdbcService jdbcService =
+                new ModelServiceUnitTest.JdbcService(connection, new SqlJdbc());
+        try (UnitOfWork unit = UnitOfWork.begin()) {
+            for (long id = 1; id <= 2; id++) {
+                ModelCursorUnitTest.TestModel model = new ModelCursorUnitTest.TestModel();
+                model.setId(id);
+                unit.update(jdbcService, model);
+            }
+            NotFound e = assertThrows(NotFound.class, unit::commit);
+            System.out.println("commitBatchNotFound: " + e.getMessage());
+            assertThat(e.getMessage(), is("id: Missing id 2"));
+            assertThat(unit.getPendingCount(), is(2));
+        }
+        verify(connection).rollback();
+        verify(connection, never()).commit();
+        verify(statement).close();
+    }
+
+    @Test
+    public void commitFailureKeepsPending() throws Exception {
+        ModelCursorUnitTest.TestModel model = new ModelCursorUnitTest.TestModel();
+        model.setId(99L);
+        try (UnitOfWork unit = UnitOfWork.begin()) {
+            unit.update(service, model);
+            assertThrows(NotFound.class, unit::commit);
+            assertThat(unit.getPendingCount(), is(1));
+        }
+    }
+
+    @Test
+    public void evictRequeries() throws Exception {
+        try (UnitOfWork unit = UnitOfWork.begin()) {
+            ModelCursorUnitTest.TestModel model =
+                    unit.find(service, ModelCursorUnitTest.TestModel.class, 2L);
+            unit.update(service, model);
+            unit.evict(model);
+            assertThat(unit.lookup(ModelCursorUnitTest.TestModel.class, 2L), nullValue());
+            assertThat(unit.getPendingCount(), is(0));
+            unit.find(service, ModelCursorUnitTest.TestModel.class, 2L);
+            assertThat(service.finds, is(2));
+        }
+    }
+
+    @Test
+    public void findUsesIdentityMap() throws Exception {
+        try (UnitOfWork unit = UnitOfWork.begin()) {
+            ModelCursorUnitTest.TestModel first =
+                    unit.find(service, ModelCursorUnitTest.TestModel.class, 4L);
+            ModelCursorUnitTest.TestModel second =
+                    unit.find(service, ModelCursorUnitTest.TestModel.class, 4L);
+            System.out.println("findUsesIdentityMap: " + first);
+            assertThat(second, sameInstance(first));
+            assertThat(service.finds, is(1));
+        }
+    }
+
+    @Test
+    public void findUsesCurrentUnit() throws Exception {
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ResultSet resultSet = ModelServiceUnitTest.returned(4L);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        ModelServiceUnitTest.JdbcService jdbcService =
+                new ModelServiceUnitTest.JdbcService(connection, new SqlJdbc());
+        ModelCursorUnitTest.TestModel registered = new ModelCursorUnitTest.TestModel();
+        registered.setId(3L);
+        try (UnitOfWork unit = UnitOfWork.begin()) {
+            unit.register(registered);
+            assertThat(jdbcService.find(3L), sameInstance(registered));
+            verify(connection, never()).prepareStatement(anyString());
+            ModelCursorUnitTest.TestModel loaded = jdbcService.find(4L);
+            assertThat(loaded.getId(), is(4L));
+            assertThat(unit.lookup(ModelCursorUnitTest.TestModel.class, 4L), sameInstance(loaded));
+            assertThat(jdbcService.find(4L), sameInstance(loaded));
+        }
+        verify(connection).prepareStatement(SqlJdbc.FIND_BY_ID_SQL);
+    }
+
+    @Test
+    public void registerReturnsExisting() throws Exception {
+        try (UnitOfWork unit = UnitOfWork.begin()) {
+            ModelCursorUnitTest.TestModel loaded =
+                    unit.find(service, ModelCursorUnitTest.TestModel.class, 5L);
+            ModelCursorUnitTest.TestModel copy = new ModelCursorUnitTest.TestModel();
+            copy.setId(5L);
+            assertThat(copy, not(sameInstance(loaded)));
+            assertThat(unit.register(copy), sameInstance(loaded));
+            assertThrows(IllegalArgumentException.class,
+                    () -> unit.register(new ModelCursorUnitTest.TestModel()));
+        }
+    }
+
+    @Test
+    public void updateThenFind() throws Exception {
+        ModelCursorUnitTest.TestModel model = new ModelCursorUnitTest.TestModel();
+        model.setId(2L);
+        try (UnitOfWork unit = UnitOfWork.begin()) {
+            unit.update(service, model);
+            assertThat(unit.find(service, ModelCursorUnitTest.TestModel.class, 2L),
+                    sameInstance(model));
+            assertThat(service.finds, is(0));
+        }
+    }
+
+    // Support Classes -------------------------------------------------------
+
+    /**
+     * <p>JDBC support that prepares real SQL text for <code>findById()</code>
+     * and <code>update()</code>.</p>
+     */
+    private static class SqlJdbc extends AbstractModelJdbc<ModelCursorUnitTest.TestModel> {
+
+        static final String FIND_BY_ID_SQL = "SELECT * FROM tests WHERE id = ?";
+        static final String UPDATE_SQL = "UPDATE tests SET updated = ? WHERE id = ?";
+
+        SqlJdbc() {
+            super(ModelCursorUnitTest.TestModel.class);
+        }
+
+        @Override
+        public PreparedStatement delete(Connection connection, Long id) {
+            return null;
+        }
+
+        @Override
+        public PreparedStatement findAll(Connection connection) {
+            return null;
+        }
+
+        @Override
+        public PreparedStatement findById(Connection connection, Long id) throws SQLException {
+            PreparedStatement statement = connection.prepareStatement(FIND_BY_ID_SQL);
+            statement.setLong(1, id);
+            return statement;
+        }
+
+        @Override
+        public PreparedStatement insert(Connection connection, ModelCursorUnitTest.TestModel model) {
+            return null;
+        }
+
+        @Override
+        public PreparedStatement update(Connection connection, ModelCursorUnitTest.TestModel model)
+                throws SQLException {
+            PreparedStatement statement = connection.prepareStatement(UPDATE_SQL);
+            statement.setObject(1, model.getUpdated());
+            statement.setLong(2, model.getId());
+            return statement;
+        }
+
+        @Override
+        public PreparedStatement upsert(Connection connection, ModelCursorUnitTest.TestModel model) {
+            return null;
+        }
+
+    }
+
+}
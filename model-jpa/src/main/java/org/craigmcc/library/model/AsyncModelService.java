@@ -0,0 +1,411 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.model;
+
+import org.craigmcc.library.shared.exception.BadRequest;
+import org.craigmcc.library.shared.exception.InternalServerError;
+import org.craigmcc.library.shared.exception.NotFound;
+import org.craigmcc.library.shared.exception.NotUnique;
+import org.craigmcc.library.shared.model.FindResults;
+
+import javax.validation.constraints.NotNull;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * <p>Asynchronous facade over a {@link ModelService}, whose operations
+ * return <code>CompletableFuture</code>s instead of blocking the calling
+ * thread.  Each call runs on its own virtual thread when the Java runtime
+ * supports them, and at most <code>maxConcurrency</code> calls run against
+ * the underlying service at once (typically the size of the connection
+ * pool).  Callers beyond that limit wait in a fair queue, which costs very
+ * little on virtual threads.  On runtimes without virtual threads, a fixed
+ * pool of <code>maxConcurrency</code> daemon threads is used instead.</p>
+ *
+ * <p>Futures are completed exceptionally with the same exceptions that the
+ * underlying service throws (<code>BadRequest</code>, <code>NotFound</code>,
+ * and so on), unwrapped.  Use <code>await()</code> to wait for a result and
+ * have those exceptions rethrown as checked exceptions.</p>
+ *
+ * <p><strong>EXAMPLE:</strong></p>
+ *
+ * <code>
+ *     AsyncModelService&lt;Customer&gt; customers =
+ *         new AsyncModelService&lt;&gt;(customerService, 20);
+ *     ...
+ *     customers.find(id)
+ *         .thenAccept(customer -&gt; ...);
+ *     ...
+ *     Customer customer = AsyncModelService.await(customers.find(id));
+ * </code>
+ *
+ * <p>Call <code>close()</code> when done, to release the threads owned by
+ * this service (unless an executor was supplied).</p>
+ *
+ * @param <M> The {@link Model} class being managed
+ */
+public class AsyncModelService<M extends Model> implements AutoCloseable {
+
+    // Static Variables ------------------------------------------------------
+
+    private static final Method VIRTUAL_EXECUTOR = virtualExecutorMethod();
+
+    // Instance Variables ----------------------------------------------------
+
+    private final Executor executor;
+    private final int maxConcurrency;
+    private final ExecutorService ownedExecutor;
+    private final Semaphore permits;
+    private final ModelService<M> service;
+    private final boolean virtual;
+
+    // Constructors ----------------------------------------------------------
+
+    /**
+     * <p>Create a service that runs calls on virtual threads if available,
+     * or else on its own pool of <code>maxConcurrency</code> daemon
+     * threads.</p>
+     *
+     * @param service {@link ModelService} to which calls are delegated
+     * @param maxConcurrency Maximum number of calls running at once
+     */
+    public AsyncModelService(@NotNull ModelService<M> service, int maxConcurrency) {
+        this(service, maxConcurrency, null);
+    }
+
+    /**
+     * <p>Create a service that runs calls on the specified executor.</p>
+     *
+     * @param service {@link ModelService} to which calls are delegated
+     * @param maxConcurrency Maximum number of calls running at once
+     * @param executor Executor on which to run calls, or <code>null</code>
+     *                 to use virtual threads (or the service's own threads)
+     */
+    public AsyncModelService(@NotNull ModelService<M> service, int maxConcurrency,
+                             Executor executor) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1");
+        }
+        this.service = service;
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency, true);
+        if (executor != null) {
+            this.executor = executor;
+            this.ownedExecutor = null;
+            this.virtual = false;
+        } else {
+            ExecutorService owned = newVirtualExecutor();
+            this.virtual = (owned != null);
+            if (owned == null) {
+                owned = Executors.newFixedThreadPool(maxConcurrency, runnable -> {
+                    Thread thread = new Thread(runnable, "AsyncModelService-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            this.executor = owned;
+            this.ownedExecutor = owned;
+        }
+    }
+
+    // Static Methods --------------------------------------------------------
+
+    /**
+     * <p>Wait for the specified future to complete, and return its result.
+     * If it completed exceptionally, rethrow the exception that caused it
+     * (wrapping anything other than the exceptions declared here in an
+     * <code>InternalServerError</code>).</p>
+     *
+     * @param future Future returned by this service
+     *
+     * @return The result of the future
+     *
+     * @throws BadRequest If a validation error has occurred.
+     * @throws InternalServerError If a server level error has occurred, or
+     *  the calling thread was interrupted.
+     * @throws NotFound If no object with a specified primary key can be found.
+     * @throws NotUnique If a uniqueness constraint has been violated.
+     */
+    public static <T> T await(@NotNull CompletableFuture<T> future)
+            throws BadRequest, InternalServerError, NotFound, NotUnique {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalServerError(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            while ((cause instanceof CompletionException) && (cause.getCause() != null)) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof BadRequest) {
+                throw (BadRequest) cause;
+            } else if (cause instanceof InternalServerError) {
+                throw (InternalServerError) cause;
+            } else if (cause instanceof NotFound) {
+                throw (NotFound) cause;
+            } else if (cause instanceof NotUnique) {
+                throw (NotUnique) cause;
+            } else {
+                throw new InternalServerError(cause);
+            }
+        }
+    }
+
+    /**
+     * <p>Return <code>true</code> if the Java runtime supports virtual
+     * threads.</p>
+     */
+    public static boolean isVirtualThreadsAvailable() {
+        return VIRTUAL_EXECUTOR != null;
+    }
+
+    // Public Methods --------------------------------------------------------
+
+    /**
+     * <p>Release the threads owned by this service.  Calls that are already
+     * running are allowed to complete, but new calls are rejected.</p>
+     */
+    @Override
+    public void close() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    /**
+     * <p>Delete the specified {@link Model} object, as described for
+     * <code>ModelService.delete()</code>.</p>
+     *
+     * @param id Primary key of the specified {@link Model} object.
+     *
+     * @return Future for the deleted {@link Model} object.
+     */
+    public @NotNull CompletableFuture<M> delete(@NotNull Long id) {
+        return submit(() -> service.delete(id));
+    }
+
+    /**
+     * <p>Find the specified {@link Model} object, as described for
+     * <code>ModelService.find()</code>.</p>
+     *
+     * @param id Primary key of the specified {@link Model} object.
+     *
+     * @return Future for the matching {@link Model} object.
+     */
+    public @NotNull CompletableFuture<M> find(@NotNull Long id) {
+        return submit(() -> service.find(id));
+    }
+
+    /**
+     * <p>Find all {@link Model} objects, as described for
+     * <code>ModelService.findAll()</code>.</p>
+     *
+     * @return Future for the list of matching {@link Model} objects.
+     */
+    public @NotNull CompletableFuture<List<M>> findAll() {
+        return submit(service::findAll);
+    }
+
+    /**
+     * <p>Find the {@link Model} objects with the specified primary keys, as
+     * described for <code>ModelService.findAllById()</code>.</p>
+     *
+     * @param ids Primary keys of the {@link Model} objects to retrieve.
+     *
+     * @return Future for the matching {@link Model} objects, and the missing keys.
+     */
+    public @NotNull CompletableFuture<FindResults<M>> findAllById(@NotNull Collection<Long> ids) {
+        return submit(() -> service.findAllById(ids));
+    }
+
+    /**
+     * <p>Return the number of calls that are currently running against the
+     * underlying service.</p>
+     */
+    public int getActiveCount() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    /**
+     * <p>Return the maximum number of calls that may run against the
+     * underlying service at once.</p>
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * <p>Return an estimate of the number of calls that are waiting for
+     * one of the running calls to complete.</p>
+     */
+    public int getQueueLength() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * <p>Insert the specified {@link Model} object, as described for
+     * <code>ModelService.insert()</code>.</p>
+     *
+     * @param model The {@link Model} object to be inserted.
+     *
+     * @return Future for the inserted {@link Model} object.
+     */
+    public @NotNull CompletableFuture<M> insert(@NotNull M model) {
+        return submit(() -> service.insert(model));
+    }
+
+    /**
+     * <p>Return <code>true</code> if calls run on virtual threads owned by
+     * this service.</p>
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * <p>Update the specified {@link Model} object, as described for
+     * <code>ModelService.update()</code>.</p>
+     *
+     * @param id Primary key of the specified {@link Model} object.
+     * @param model The {@link Model} object to be updated.
+     *
+     * @return Future for the updated {@link Model} object.
+     */
+    public @NotNull CompletableFuture<M> update(@NotNull Long id, @NotNull M model) {
+        return submit(() -> service.update(id, model));
+    }
+
+    /**
+     * <p>Update or insert the specified {@link Model} object, as described
+     * (including the lack of atomicity) for
+     * <code>ModelService.updateOrInsert()</code>.</p>
+     *
+     * @param model The {@link Model} object to be inserted or updated.
+     *
+     * @return Future for the inserted or updated {@link Model} object.
+     */
+    public @NotNull CompletableFuture<M> updateOrInsert(@NotNull M model) {
+        return submit(() -> service.updateOrInsert(model));
+    }
+
+    /**
+     * <p>Insert the specified {@link Model} object, or update the existing
+     * row with the same key, atomically, as described for
+     * <code>ModelService.upsert()</code>.</p>
+     *
+     * @param model The {@link Model} object to be inserted or updated.
+     *
+     * @return Future for the inserted or updated {@link Model} object.
+     */
+    public @NotNull CompletableFuture<M> upsert(@NotNull M model) {
+        return submit(() -> service.upsert(model));
+    }
+
+    // Private Methods -------------------------------------------------------
+
+    /**
+     * <p>Return a new virtual thread per task executor, or <code>null</code>
+     * if the Java runtime does not support virtual threads.</p>
+     */
+    private static ExecutorService newVirtualExecutor() {
+        if (VIRTUAL_EXECUTOR == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) VIRTUAL_EXECUTOR.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * <p>Run the specified call on the executor once a permit is available,
+     * and return a future for its result.</p>
+     *
+     * @param call Call to the underlying service
+     */
+    private <T> CompletableFuture<T> submit(Call<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    future.completeExceptionally(new InternalServerError(e));
+                    return;
+                }
+                // Release the permit before completing, so that dependent
+                // stages run by complete() do not hold it
+                T result = null;
+                Throwable failure = null;
+                try {
+                    result = call.call();
+                } catch (Throwable e) {
+                    failure = e;
+                } finally {
+                    permits.release();
+                }
+                if (failure != null) {
+                    future.completeExceptionally(failure);
+                } else {
+                    future.complete(result);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new InternalServerError(e));
+        }
+        return future;
+    }
+
+    /**
+     * <p>Look up <code>Executors.newVirtualThreadPerTaskExecutor()</code>,
+     * which only exists on Java runtimes that support virtual threads, so
+     * that this class can also be compiled for and run on older ones.</p>
+     */
+    private static Method virtualExecutorMethod() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            ExecutorService probe = (ExecutorService) method.invoke(null);
+            probe.shutdown();
+            return method;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Support Classes -------------------------------------------------------
+
+    /**
+     * <p>Call to the underlying service that may throw any of its
+     * exceptions.</p>
+     */
+    @FunctionalInterface
+    private interface Call<T> {
+        T call() throws Exception;
+    }
+
+}
@@ -0,0 +1,583 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.model;
+
+import org.craigmcc.library.shared.exception.BadRequest;
+import org.craigmcc.library.shared.exception.InternalServerError;
+import org.craigmcc.library.shared.exception.NotFound;
+import org.craigmcc.library.shared.exception.NotUnique;
+import org.craigmcc.library.shared.model.FindResults;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * <p>Decorator for a {@link ModelService} that adds a read-through cache,
+ * keyed by primary key, in front of <code>find()</code> and
+ * <code>findAllById()</code>.  The cache is bounded by a maximum number of
+ * entries (evicting the least recently used entry first), and entries may
+ * optionally expire a fixed time after they were loaded.  All other calls
+ * are passed through to the decorated service, with <code>update()</code>
+ * and <code>delete()</code> invalidating the affected entry.</p>
+ *
+ * <p>Entries are spread by primary key over up to <code>SEGMENTS</code>
+ * independently locked segments, each of which keeps its own share of the
+ * maximum size in least recently used order, so that concurrent hits on
+ * different keys rarely contend.  While an object is being loaded, its
+ * segment holds a placeholder for the key; invalidating the key removes
+ * the placeholder, and the loaded object is then not cached (because it
+ * may already be stale), without affecting loads of other keys.</p>
+ *
+ * <p><strong>EXAMPLE:</strong></p>
+ *
+ * <code>
+ *     ModelService&lt;Customer&gt; customerService =
+ *       new CachingModelService&lt;&gt;(new CustomerService())
+ *         .maximumSize(5000)
+ *         .expireAfterWrite(10, TimeUnit.MINUTES);
+ * </code>
+ *
+ * <p><strong>USAGE NOTES:</strong></p>
+ * <ul>
+ *     <li>Configure the cache before first use; it is then safe for use by
+ *         any number of threads, and is intended to be shared process-wide
+ *         (one instance per {@link Model} type).</li>
+ *     <li>Cached objects are never handed out directly.  Each call returns
+ *         its own copy (made by <code>Model.clone()</code>), so callers may
+ *         modify the results without corrupting the cache.</li>
+ *     <li>Eviction is least recently used within each segment, so with
+ *         more than one segment the entry evicted is not always the least
+ *         recently used entry overall.  Caches with a maximum size below
+ *         <code>2 * SEGMENT_SIZE</code> use a single segment.</li>
+ *     <li>Only changes made through this decorator invalidate the cache.
+ *         Use <code>invalidate()</code> or <code>invalidateAll()</code> if
+ *         rows may be changed by other means, or configure an expiration
+ *         time to bound how stale an entry can become.</li>
+ * </ul>
+ *
+ * @param <M> The {@link Model} class being cached
+ */
+public class CachingModelService<M extends Model> extends ModelService<M> {
+
+    // Static Variables ------------------------------------------------------
+
+    /**
+     * <p>Default maximum number of cached entries.</p>
+     */
+    public static final int DEFAULT_MAXIMUM_SIZE = 10_000;
+
+    /**
+     * <p>Maximum number of segments (a power of two).</p>
+     */
+    public static final int SEGMENTS = 16;
+
+    /**
+     * <p>Minimum number of entries per segment, which determines how many
+     * segments smaller caches use.</p>
+     */
+    public static final int SEGMENT_SIZE = 64;
+
+    // Instance Variables ----------------------------------------------------
+
+    private final ModelService<M> delegate;
+    private final LongAdder evictions = new LongAdder();
+    private long expireNanos = 0L;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private int maximumSize = DEFAULT_MAXIMUM_SIZE;
+    private final LongAdder misses = new LongAdder();
+    private Segment<M>[] segments = segments(DEFAULT_MAXIMUM_SIZE);
+
+    // Constructors ----------------------------------------------------------
+
+    /**
+     * <p>Create a cache in front of the specified service.</p>
+     *
+     * @param delegate {@link ModelService} whose results are cached
+     */
+    public CachingModelService(@NotNull ModelService<M> delegate) {
+        this.delegate = delegate;
+    }
+
+    // Public Methods --------------------------------------------------------
+
+    @Override
+    public @NotNull M delete(@NotNull Long id)
+            throws InternalServerError, NotFound {
+        try {
+            return delegate.delete(id);
+        } finally {
+            invalidate(id);
+        }
+    }
+
+    /**
+     * <p>Set the time after which an entry expires, measured from when it
+     * was loaded.  A duration of zero (the default) means that entries never
+     * expire, and are only removed by eviction or invalidation.</p>
+     *
+     * @param duration Time to keep each entry, or zero for no expiration
+     * @param unit Time unit of the duration
+     *
+     * @return This cache
+     */
+    public CachingModelService<M> expireAfterWrite(long duration, @NotNull TimeUnit unit) {
+        if (duration < 0) {
+            throw new IllegalArgumentException("duration must not be negative");
+        }
+        this.expireNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    @Override
+    public @NotNull M find(@NotNull Long id)
+            throws InternalServerError, NotFound {
+        M model = lookup(id);
+        if (model != null) {
+            hits.increment();
+            return copy(model);
+        }
+        misses.increment();
+        long started = nanoTime();
+        Entry<M> placeholder = reserve(id);
+        try {
+            model = delegate.find(id);
+        } catch (InternalServerError | NotFound | RuntimeException e) {
+            release(id, placeholder);
+            throw e;
+        }
+        loaded(started, 1);
+        store(placeholder, model);
+        return copy(model);
+    }
+
+    @Override
+    public @NotNull List<M> findAll()
+            throws InternalServerError {
+        return delegate.findAll();
+    }
+
+    @Override
+    public @NotNull Stream<M> findAllStream()
+            throws InternalServerError {
+        return delegate.findAllStream();
+    }
+
+    /**
+     * <p>Return a snapshot of the statistics for this cache.</p>
+     */
+    public @NotNull Statistics getStatistics() {
+        return new Statistics(hits.sum(), misses.sum(), loads.sum(),
+                loadNanos.sum(), evictions.sum());
+    }
+
+    @Override
+    public @NotNull M insert(@NotNull M model)
+            throws BadRequest, InternalServerError, NotUnique {
+        return delegate.insert(model);
+    }
+
+    /**
+     * <p>Remove the entry for the specified primary key, if any.</p>
+     *
+     * @param id Primary key of the entry to remove
+     */
+    public void invalidate(@NotNull Long id) {
+        Segment<M> segment = segment(id);
+        synchronized (segment) {
+            segment.entries.remove(id);
+        }
+    }
+
+    /**
+     * <p>Remove all entries from this cache.</p>
+     */
+    public void invalidateAll() {
+        for (Segment<M> segment : segments) {
+            synchronized (segment) {
+                segment.entries.clear();
+            }
+        }
+    }
+
+    /**
+     * <p>Set the maximum number of entries in this cache, discarding any
+     * existing entries.  When the share of a segment is exceeded, its least
+     * recently used entry is evicted.  Default is
+     * <code>DEFAULT_MAXIMUM_SIZE</code>.</p>
+     *
+     * @param maximumSize Maximum number of entries
+     *
+     * @return This cache
+     */
+    public CachingModelService<M> maximumSize(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("maximumSize must be at least 1");
+        }
+        this.maximumSize = maximumSize;
+        this.segments = segments(maximumSize);
+        return this;
+    }
+
+    /**
+     * <p>Return the number of entries currently in this cache, which may
+     * include expired entries that have not yet been removed, and
+     * placeholders for objects that are being loaded.</p>
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<M> segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public @NotNull M update(@NotNull Long id, @NotNull M model)
+            throws BadRequest, InternalServerError, NotFound, NotUnique {
+        try {
+            return delegate.update(id, model);
+        } finally {
+            invalidate(id);
+        }
+    }
+
+    @Override
+    public @NotNull List<M> updateAll(@NotNull List<M> models)
+            throws BadRequest, InternalServerError, NotFound, NotUnique {
+        try {
+            return delegate.updateAll(models);
+        } finally {
+            for (M model : models) {
+                invalidate(model.getId());
+            }
+        }
+    }
+
+    /**
+     * <p>Update or insert the specified {@link Model} object through the
+     * delegate.  Because the row that is affected is identified by its key
+     * columns, rather than necessarily by the primary key of the specified
+     * object, all entries are invalidated.</p>
+     */
+    @Override
+    public @NotNull M updateOrInsert(@NotNull M model)
+            throws BadRequest, InternalServerError, NotUnique {
+        try {
+            return delegate.updateOrInsert(model);
+        } finally {
+            invalidateAll();
+        }
+    }
+
+    /**
+     * <p>Upsert the specified {@link Model} object through the delegate.
+     * As for <code>updateOrInsert()</code>, all entries are invalidated.</p>
+     */
+    @Override
+    public @NotNull M upsert(@NotNull M model)
+            throws BadRequest, InternalServerError, NotUnique {
+        try {
+            return delegate.upsert(model);
+        } finally {
+            invalidateAll();
+        }
+    }
+
+    // Protected Methods -----------------------------------------------------
+
+    /**
+     * <p>Return cached copies of the objects for any of the specified keys
+     * that are present, and retrieve the rest with a single call to
+     * <code>findAllById()</code> on the decorated service.</p>
+     */
+    @Override
+    protected @NotNull List<M> findChunk(@NotNull List<Long> ids)
+            throws InternalServerError {
+        List<M> results = new ArrayList<>(ids.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            M model = lookup(id);
+            if (model != null) {
+                hits.increment();
+                results.add(copy(model));
+            } else {
+                misses.increment();
+                missing.add(id);
+            }
+        }
+        if (missing.size() > 0) {
+            long started = nanoTime();
+            List<Entry<M>> placeholders = new ArrayList<>(missing.size());
+            for (Long id : missing) {
+                placeholders.add(reserve(id));
+            }
+            FindResults<M> found;
+            try {
+                found = delegate.findAllById(missing);
+            } catch (InternalServerError | RuntimeException e) {
+                for (int i = 0; i < missing.size(); i++) {
+                    release(missing.get(i), placeholders.get(i));
+                }
+                throw e;
+            }
+            loaded(started, found.getFound().size());
+            for (int i = 0; i < missing.size(); i++) {
+                M model = found.getFound().get(missing.get(i));
+                if (model != null) {
+                    store(placeholders.get(i), model);
+                    results.add(copy(model));
+                } else {
+                    release(missing.get(i), placeholders.get(i));
+                }
+            }
+        }
+        return results;
+    }
+
+    @Override
+    protected int findChunkSize() {
+        return delegate.findChunkSize();
+    }
+
+    /**
+     * <p>Return the current value of the time source used for expiration
+     * and load time statistics, in nanoseconds.</p>
+     */
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+
+    // Private Methods -------------------------------------------------------
+
+    @SuppressWarnings("unchecked")
+    private M copy(M model) {
+        return (M) model.clone();
+    }
+
+    private void loaded(long started, int count) {
+        loads.add(count);
+        loadNanos.add(nanoTime() - started);
+    }
+
+    private M lookup(Long id) {
+        Segment<M> segment = segment(id);
+        synchronized (segment) {
+            Entry<M> entry = segment.entries.get(id);
+            if ((entry == null) || (entry.model == null)) {
+                return null;
+            }
+            if ((expireNanos > 0) && (nanoTime() - entry.loaded >= expireNanos)) {
+                segment.entries.remove(id);
+                return null;
+            }
+            return entry.model;
+        }
+    }
+
+    private void put(Entry<M> entry) {
+        Segment<M> segment = segment(entry.id);
+        synchronized (segment) {
+            segment.entries.put(entry.id, entry);
+            Iterator<Map.Entry<Long, Entry<M>>> eldest = segment.entries.entrySet().iterator();
+            while (segment.entries.size() > segment.maximumSize) {
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * <p>Remove the specified placeholder, if it is still present, after
+     * the load it was reserved for has failed or found nothing.</p>
+     */
+    private void release(Long id, Entry<M> placeholder) {
+        Segment<M> segment = segment(id);
+        synchronized (segment) {
+            segment.entries.remove(id, placeholder);
+        }
+    }
+
+    /**
+     * <p>Insert (or replace) a placeholder for the specified key, before
+     * the object for it is loaded, and return it.</p>
+     */
+    private Entry<M> reserve(Long id) {
+        Entry<M> placeholder = new Entry<>(id, null, 0L);
+        put(placeholder);
+        return placeholder;
+    }
+
+    private Segment<M> segment(Long id) {
+        int hash = id.hashCode();
+        Segment<M>[] current = segments;
+        return current[(hash ^ (hash >>> 16)) & (current.length - 1)];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <M> Segment<M>[] segments(int maximumSize) {
+        int count = Math.min(SEGMENTS, Math.max(1, Integer.highestOneBit(maximumSize / SEGMENT_SIZE)));
+        Segment<M>[] segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment<>((maximumSize + count - 1) / count);
+        }
+        return segments;
+    }
+
+    /**
+     * <p>Cache a private copy of the specified object in place of the
+     * specified placeholder, unless the placeholder has been removed by an
+     * invalidation (or eviction) since the load started, in which case the
+     * object may already be stale.</p>
+     */
+    private void store(Entry<M> placeholder, M model) {
+        Entry<M> entry = new Entry<>(placeholder.id, copy(model), nanoTime());
+        Segment<M> segment = segment(placeholder.id);
+        synchronized (segment) {
+            if (segment.entries.get(placeholder.id) == placeholder) {
+                segment.entries.put(placeholder.id, entry);
+            }
+        }
+    }
+
+    // Support Classes -------------------------------------------------------
+
+    /**
+     * <p>Cached object, or a placeholder (with a <code>null</code> model)
+     * for an object that is being loaded.</p>
+     */
+    private static class Entry<M> {
+
+        private Entry(Long id, M model, long loaded) {
+            this.id = id;
+            this.loaded = loaded;
+            this.model = model;
+        }
+
+        private final Long id;
+        private final long loaded;
+        private final M model;
+
+    }
+
+    /**
+     * <p>Independently locked share of the entries, in access order.</p>
+     */
+    private static class Segment<M> {
+
+        private Segment(int maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        private final LinkedHashMap<Long, Entry<M>> entries =
+                new LinkedHashMap<>(16, 0.75f, true);
+        private final int maximumSize;
+
+    }
+
+    /**
+     * <p>Immutable snapshot of the statistics for a {@link CachingModelService}.</p>
+     */
+    public static final class Statistics {
+
+        private Statistics(long hits, long misses, long loads,
+                           long loadNanos, long evictions) {
+            this.evictions = evictions;
+            this.hits = hits;
+            this.loadNanos = loadNanos;
+            this.loads = loads;
+            this.misses = misses;
+        }
+
+        private final long evictions;
+        private final long hits;
+        private final long loadNanos;
+        private final long loads;
+        private final long misses;
+
+        /**
+         * <p>Return the average time, in nanoseconds, spent loading each
+         * object from the decorated service.</p>
+         */
+        public double getAverageLoadNanos() {
+            return (loads == 0) ? 0.0 : ((double) loadNanos) / loads;
+        }
+
+        /**
+         * <p>Return the number of entries evicted because the cache was full.</p>
+         */
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /**
+         * <p>Return the fraction of lookups that were satisfied from the cache.</p>
+         */
+        public double getHitRate() {
+            long requests = hits + misses;
+            return (requests == 0) ? 0.0 : ((double) hits) / requests;
+        }
+
+        /**
+         * <p>Return the number of lookups satisfied from the cache.</p>
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * <p>Return the total time, in nanoseconds, spent loading objects
+         * from the decorated service.</p>
+         */
+        public long getLoadNanos() {
+            return loadNanos;
+        }
+
+        /**
+         * <p>Return the number of objects loaded from the decorated service.</p>
+         */
+        public long getLoads() {
+            return loads;
+        }
+
+        /**
+         * <p>Return the number of lookups not satisfied from the cache.</p>
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        @Override
+        public String toString() {
+            return "Statistics{hits=" + hits + ", misses=" + misses +
+                    ", loads=" + loads + ", loadNanos=" + loadNanos +
+                    ", evictions=" + evictions + "}";
+        }
+
+    }
+
+}
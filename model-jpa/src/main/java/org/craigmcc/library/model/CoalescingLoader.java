@@ -0,0 +1,375 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.model;
+
+import org.craigmcc.library.shared.exception.InternalServerError;
+import org.craigmcc.library.shared.exception.NotFound;
+import org.craigmcc.library.shared.model.FindResults;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Loader that coalesces concurrent lookups by primary key into batched
+ * calls to <code>findAllById()</code> on a {@link ModelService}.  Requests
+ * are collected for a short window (measured from the first request of a
+ * batch), or until <code>maxBatchSize</code> distinct keys are pending,
+ * whichever comes first.  A single batched query is then issued, and each
+ * caller's future is completed with its own {@link Model} object, or with a
+ * <code>NotFound</code> exception if there was no match.  Concurrent requests
+ * for the same key in one batch share a single future.</p>
+ *
+ * <p><strong>EXAMPLE:</strong></p>
+ *
+ * <code>
+ *     CoalescingLoader&lt;Customer&gt; loader = new CoalescingLoader&lt;&gt;(customerService)
+ *         .window(2, TimeUnit.MILLISECONDS)
+ *         .maxBatchSize(200);
+ *     ...
+ *     Customer customer = loader.find(id); // Or loader.load(id) for a future
+ * </code>
+ *
+ * <p><strong>USAGE NOTES:</strong></p>
+ * <ul>
+ *     <li>Configure the loader before first use; it is then safe for use by
+ *         any number of threads.</li>
+ *     <li>Each batch costs one query per <code>findChunk()</code> call on the
+ *         service, which is the default when the service provides
+ *         <code>getEntityManager()</code> and <code>getModelClass()</code>;
+ *         otherwise, the service should override <code>findChunk()</code>.</li>
+ *     <li>Each lookup waits for up to one window before its query is sent,
+ *         so choose a window that is small relative to the query time.</li>
+ *     <li>Unless an executor is supplied, at most <code>maxQueries</code>
+ *         batched queries run at once (so that a burst of batches cannot
+ *         start more threads than the connection pool can serve); further
+ *         batches wait in a queue for a free thread.</li>
+ *     <li>Call <code>close()</code> when done, to release the threads used
+ *         to time windows and run queries (unless an executor was supplied,
+ *         in which case only the timer thread is released).  Lookups
+ *         requested after <code>close()</code> fail with
+ *         <code>InternalServerError</code>.</li>
+ *     <li>Objects are shared by every caller that asked for the same key in
+ *         the same batch, so callers that intend to modify them should work
+ *         on a copy.</li>
+ * </ul>
+ *
+ * @param <M> The {@link Model} class being loaded
+ */
+public class CoalescingLoader<M extends Model> implements AutoCloseable {
+
+    // Static Variables ------------------------------------------------------
+
+    /**
+     * <p>Default maximum number of distinct keys per batch.</p>
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 128;
+
+    /**
+     * <p>Default maximum number of batched queries run at once on the
+     * loader's own threads.</p>
+     */
+    public static final int DEFAULT_MAX_QUERIES = 8;
+
+    /**
+     * <p>Default time (in microseconds) to collect requests for a batch.</p>
+     */
+    public static final long DEFAULT_WINDOW_MICROS = 2_000;
+
+    // Instance Variables ----------------------------------------------------
+
+    private final AtomicLong batches = new AtomicLong();
+    private boolean closed = false;
+    private final Executor executor;
+    private final ThreadPoolExecutor ownedExecutor;
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private Map<Long, CompletableFuture<M>> pending = new LinkedHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final ScheduledExecutorService scheduler;
+    private final ModelService<M> service;
+    private ScheduledFuture<?> timer = null;
+    private long windowMicros = DEFAULT_WINDOW_MICROS;
+
+    // Constructors ----------------------------------------------------------
+
+    /**
+     * <p>Create a loader that runs its queries on its own (daemon) threads.</p>
+     *
+     * @param service {@link ModelService} used to look up batches
+     */
+    public CoalescingLoader(@NotNull ModelService<M> service) {
+        this(service, null);
+    }
+
+    /**
+     * <p>Create a loader that runs its queries on the specified executor.</p>
+     *
+     * @param service {@link ModelService} used to look up batches
+     * @param executor Executor on which to run batched queries, or
+     *                 <code>null</code> to use the loader's own threads
+     */
+    public CoalescingLoader(@NotNull ModelService<M> service, Executor executor) {
+        this.service = service;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "CoalescingLoader-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (executor != null) {
+            this.executor = executor;
+            this.ownedExecutor = null;
+        } else {
+            this.ownedExecutor = new ThreadPoolExecutor(DEFAULT_MAX_QUERIES, DEFAULT_MAX_QUERIES,
+                    60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "CoalescingLoader-query");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.ownedExecutor.allowCoreThreadTimeOut(true);
+            this.executor = ownedExecutor;
+        }
+    }
+
+    // Public Methods --------------------------------------------------------
+
+    /**
+     * <p>Send any pending requests immediately, and release the threads
+     * owned by this loader.  Later requests fail immediately.</p>
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        flush();
+        scheduler.shutdown();
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    /**
+     * <p>Look up the {@link Model} object with the specified primary key,
+     * waiting for the batch containing it to complete.</p>
+     *
+     * @param id Primary key of the specified {@link Model} object.
+     *
+     * @return The matching {@link Model} object.
+     *
+     * @throws InternalServerError If a server level error has occurred.
+     * @throws NotFound If no object with the specified primary key can be found.
+     */
+    public @NotNull M find(@NotNull Long id)
+            throws InternalServerError, NotFound {
+        try {
+            return load(id).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalServerError(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof NotFound) {
+                throw (NotFound) cause;
+            } else if (cause instanceof InternalServerError) {
+                throw (InternalServerError) cause;
+            } else {
+                throw new InternalServerError(cause);
+            }
+        }
+    }
+
+    /**
+     * <p>Send any pending requests now, without waiting for the window
+     * to expire.</p>
+     */
+    public void flush() {
+        Map<Long, CompletableFuture<M>> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+            if (timer != null) {
+                timer.cancel(false);
+                timer = null;
+            }
+        }
+        batches.incrementAndGet();
+        try {
+            executor.execute(() -> execute(batch));
+        } catch (RuntimeException e) {
+            for (CompletableFuture<M> future : batch.values()) {
+                future.completeExceptionally(new InternalServerError(e));
+            }
+        }
+    }
+
+    /**
+     * <p>Return the number of batched queries sent so far.</p>
+     */
+    public long getBatches() {
+        return batches.get();
+    }
+
+    /**
+     * <p>Return the number of lookups requested so far.</p>
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * <p>Request the {@link Model} object with the specified primary key,
+     * returning a future that will be completed with it when the batch
+     * containing it completes.  The future is completed exceptionally with
+     * <code>NotFound</code> if there is no match, or with
+     * <code>InternalServerError</code> if the batched query fails or this
+     * loader has been closed.</p>
+     *
+     * @param id Primary key of the specified {@link Model} object.
+     *
+     * @return Future for the matching {@link Model} object.
+     */
+    public @NotNull CompletableFuture<M> load(@NotNull Long id) {
+        requests.incrementAndGet();
+        boolean full;
+        CompletableFuture<M> future;
+        synchronized (this) {
+            if (closed) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(new InternalServerError(
+                        new IllegalStateException("CoalescingLoader has been closed")));
+                return future;
+            }
+            future = pending.get(id);
+            if (future == null) {
+                future = new CompletableFuture<>();
+                pending.put(id, future);
+            }
+            full = pending.size() >= maxBatchSize;
+            if (!full && (timer == null)) {
+                timer = scheduler.schedule(this::flush, windowMicros, TimeUnit.MICROSECONDS);
+            }
+        }
+        if (full) {
+            flush();
+        }
+        return future;
+    }
+
+    /**
+     * <p>Set the maximum number of distinct keys per batch.  A batch is sent
+     * as soon as it reaches this size.  Default is
+     * {@link #DEFAULT_MAX_BATCH_SIZE}.</p>
+     *
+     * @param maxBatchSize Maximum keys per batch
+     *
+     * @return This loader
+     */
+    public CoalescingLoader<M> maxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be at least 1");
+        }
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    /**
+     * <p>Set the maximum number of batched queries that run at once on the
+     * loader's own threads.  Default is {@link #DEFAULT_MAX_QUERIES}.</p>
+     *
+     * @param maxQueries Maximum concurrent queries
+     *
+     * @return This loader
+     *
+     * @throws IllegalStateException if an executor was supplied
+     */
+    public CoalescingLoader<M> maxQueries(int maxQueries) {
+        if (maxQueries < 1) {
+            throw new IllegalArgumentException("maxQueries must be at least 1");
+        }
+        if (ownedExecutor == null) {
+            throw new IllegalStateException("maxQueries does not apply to a supplied executor");
+        }
+        if (maxQueries > ownedExecutor.getMaximumPoolSize()) {
+            ownedExecutor.setMaximumPoolSize(maxQueries);
+            ownedExecutor.setCorePoolSize(maxQueries);
+        } else {
+            ownedExecutor.setCorePoolSize(maxQueries);
+            ownedExecutor.setMaximumPoolSize(maxQueries);
+        }
+        return this;
+    }
+
+    /**
+     * <p>Set how long requests are collected, from the first request of a
+     * batch, before the batch is sent.  Default is
+     * {@link #DEFAULT_WINDOW_MICROS} microseconds.</p>
+     *
+     * @param window Length of the window
+     * @param unit Time unit of the window
+     *
+     * @return This loader
+     */
+    public CoalescingLoader<M> window(long window, @NotNull TimeUnit unit) {
+        if (window < 0) {
+            throw new IllegalArgumentException("window must not be negative");
+        }
+        this.windowMicros = unit.toMicros(window);
+        return this;
+    }
+
+    // Private Methods -------------------------------------------------------
+
+    /**
+     * <p>Look up one batch of keys, and complete each caller's future.</p>
+     *
+     * @param batch Futures for the batch, keyed by primary key
+     */
+    private void execute(Map<Long, CompletableFuture<M>> batch) {
+        FindResults<M> results;
+        try {
+            results = service.findAllById(new ArrayList<>(batch.keySet()));
+        } catch (InternalServerError | RuntimeException e) {
+            for (CompletableFuture<M> future : batch.values()) {
+                future.completeExceptionally(e);
+            }
+            return;
+        }
+        for (Map.Entry<Long, CompletableFuture<M>> entry : batch.entrySet()) {
+            M model = results.getFound().get(entry.getKey());
+            if (model != null) {
+                entry.getValue().complete(model);
+            } else {
+                entry.getValue().completeExceptionally(
+                        new NotFound("id: Missing id " + entry.getKey()));
+            }
+        }
+    }
+
+}
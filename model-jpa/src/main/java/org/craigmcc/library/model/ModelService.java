@@ -19,12 +19,25 @@ import org.craigmcc.library.shared.exception.BadRequest;
 import org.craigmcc.library.shared.exception.InternalServerError;
 import org.craigmcc.library.shared.exception.NotFound;
 import org.craigmcc.library.shared.exception.NotUnique;
+import org.craigmcc.library.shared.model.FindResults;
+import org.craigmcc.library.shared.model.InList;
 
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.LockModeType;
 import javax.persistence.PersistenceException;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * <p>Abstract base class for persistent storage of {@link Model} objects, and related
@@ -32,6 +45,14 @@ import java.util.List;
  */
 public abstract class ModelService<M extends Model> {
 
+    // Static Variables ------------------------------------------------------
+
+    /**
+     * <p>Default maximum number of primary keys looked up per query
+     * by <code>findAllById()</code>.</p>
+     */
+    public static final int DEFAULT_FIND_CHUNK_SIZE = 512;
+
     // Public Methods --------------------------------------------------------
 
     /**
@@ -71,6 +92,71 @@ public abstract class ModelService<M extends Model> {
     public abstract @NotNull List<M> findAll()
             throws InternalServerError;
 
+    /**
+     * <p>Retrieve the {@link Model} objects with the specified primary keys,
+     * splitting large sets of keys into chunks of at most
+     * <code>findChunkSize()</code> keys, each retrieved by one call to
+     * <code>findChunk()</code>.  Duplicate and <code>null</code> keys are
+     * ignored.  Keys that do not match any object are reported in the
+     * results, rather than causing a <code>NotFound</code> exception.</p>
+     *
+     * @param ids Primary keys of the {@link Model} objects to retrieve.
+     *
+     * @return The matching {@link Model} objects, and the missing keys.
+     *
+     * @throws InternalServerError If a server level error has occurred.
+     */
+    public @NotNull FindResults<M> findAllById(@NotNull Collection<Long> ids)
+            throws InternalServerError {
+        Set<Long> requested = new LinkedHashSet<>(ids);
+        requested.remove(null);
+        Map<Long, M> matched = new HashMap<>();
+        List<Long> chunk = new ArrayList<>(Math.min(requested.size(), findChunkSize()));
+        for (Long id : requested) {
+            chunk.add(id);
+            if (chunk.size() == findChunkSize()) {
+                for (M model : findChunk(chunk)) {
+                    matched.put(model.getId(), model);
+                }
+                chunk.clear();
+            }
+        }
+        if (chunk.size() > 0) {
+            for (M model : findChunk(chunk)) {
+                matched.put(model.getId(), model);
+            }
+        }
+        Map<Long, M> found = new LinkedHashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : requested) {
+            M model = matched.get(id);
+            if (model != null) {
+                found.put(id, model);
+            } else {
+                missing.add(id);
+            }
+        }
+        return new FindResults<>(found, missing);
+    }
+
+    /**
+     * <p>Return a lazily evaluated <code>Stream</code> of all {@link Model}
+     * objects of the specified type.  The default implementation simply
+     * streams the results of <code>findAll()</code>; JPA based services
+     * may override it to return <code>getResultStream()</code> from their
+     * query, so that rows are read on demand.  Callers must close the stream
+     * (ideally with try-with-resources) to release any underlying
+     * resources.</p>
+     *
+     * @return Stream of the matching {@link Model} objects.
+     *
+     * @throws InternalServerError If a server level error has occurred.
+     */
+    public @NotNull Stream<M> findAllStream()
+            throws InternalServerError {
+        return findAll().stream();
+    }
+
     /**
      * <p>Insert and return the specified {@link Model} object.</p>
      *
@@ -101,8 +187,205 @@ public abstract class ModelService<M extends Model> {
     public abstract @NotNull M update(@NotNull Long id, @NotNull M model)
             throws BadRequest, InternalServerError, NotFound, NotUnique;
 
+    /**
+     * <p>Update and return each of the specified {@link Model} objects.
+     * The default implementation
+     * calls <code>update()</code> once per object; services that can merge
+     * all of the objects in a single transaction should override it.</p>
+     *
+     * @param models The {@link Model} objects to be updated.
+     *
+     * @return The {@link Model} objects with <code>updated</code> field updated,
+     *  in the same order.
+     *
+     * @throws BadRequest If a validation error has occurred.
+     * @throws InternalServerError If a server level error has occurred.
+     * @throws NotFound If no object with a specified primary key can be found.
+     * @throws NotUnique If a uniqueness constraint has been violated.
+     */
+    public @NotNull List<M> updateAll(@NotNull List<M> models)
+            throws BadRequest, InternalServerError, NotFound, NotUnique {
+        List<M> results = new ArrayList<>(models.size());
+        for (M model : models) {
+            results.add(update(model.getId(), model));
+        }
+        return results;
+    }
+
+    /**
+     * <p>Update the specified {@link Model} object if it has a primary key
+     * and an object with that key exists, and otherwise insert it, and
+     * return it.  This is <strong>not</strong> atomic: the update and the
+     * insert are separate operations, so two callers saving a new object
+     * with the same key at the same time can both fall through to
+     * <code>insert()</code> (and one of them will then see
+     * <code>NotUnique</code>, or a duplicate row will be created if there is
+     * no uniqueness constraint).  Use <code>upsert()</code> for an atomic
+     * insert-or-update; this method is only a fallback for services that
+     * cannot provide one.</p>
+     *
+     * @param model The {@link Model} object to be inserted or updated.
+     *
+     * @return The inserted or updated {@link Model} object.
+     *
+     * @throws BadRequest If a validation error has occurred.
+     * @throws InternalServerError If a server level error has occurred.
+     * @throws NotUnique If a uniqueness constraint has been violated.
+     */
+    public @NotNull M updateOrInsert(@NotNull M model)
+            throws BadRequest, InternalServerError, NotUnique {
+        if (model.getId() != null) {
+            try {
+                return update(model.getId(), model);
+            } catch (NotFound e) {
+                // Fall through to insert
+            }
+        }
+        return insert(model);
+    }
+
+    /**
+     * <p>Insert the specified {@link Model} object, or update the existing
+     * row with the same key, atomically, and return the managed result.
+     * The default implementation uses the <code>EntityManager</code> from
+     * <code>getEntityManager()</code> to lock the existing row (if any) with
+     * <code>PESSIMISTIC_WRITE</code> and merge the object in a single
+     * transaction, so that concurrent updates of the same row are
+     * serialized.  If a concurrent caller inserts the same key first, the
+     * insert fails on the key constraint, and the object is then merged into
+     * the row that won.  It throws <code>UnsupportedOperationException</code>
+     * if <code>getEntityManager()</code> or <code>getModelClass()</code>
+     * returns <code>null</code>.</p>
+     *
+     * @param model The {@link Model} object to be inserted or updated.
+     *
+     * @return The inserted or updated {@link Model} object.
+     *
+     * @throws BadRequest If a validation error has occurred.
+     * @throws InternalServerError If a server level error has occurred.
+     * @throws NotUnique If a uniqueness constraint has been violated.
+     */
+    public @NotNull M upsert(@NotNull M model)
+            throws BadRequest, InternalServerError, NotUnique {
+        EntityManager entityManager = getEntityManager();
+        Class<M> type = getModelClass();
+        if ((entityManager == null) || (type == null)) {
+            throw new UnsupportedOperationException("upsert() requires getEntityManager() and" +
+                    " getModelClass() or an override of upsert() in " + getClass().getName());
+        }
+        try {
+            return upsert(entityManager, type, model);
+        } catch (PersistenceException e) {
+            if (model.getId() == null) {
+                handlePersistenceException(e);
+            }
+        }
+        try {
+            return upsert(entityManager, type, model);
+        } catch (PersistenceException e) {
+            handlePersistenceException(e);
+            throw new InternalServerError(e);
+        }
+    }
+
     // Protected Methods -----------------------------------------------------
 
+    /**
+     * <p>Retrieve the {@link Model} objects matching one chunk of primary
+     * keys for <code>findAllById()</code>, in any order, omitting keys that
+     * do not match.  If <code>getEntityManager()</code> and
+     * <code>getModelClass()</code> are both available, the default
+     * implementation executes a single <code>WHERE m.id IN :ids</code> query
+     * with <code>findChunk(entityManager, type, ids)</code>; otherwise, it
+     * calls <code>find()</code> once per key, and services should override
+     * it.</p>
+     *
+     * @param ids Primary keys to retrieve (at most <code>findChunkSize()</code>).
+     *
+     * @return The matching {@link Model} objects.
+     *
+     * @throws InternalServerError If a server level error has occurred.
+     */
+    protected @NotNull List<M> findChunk(@NotNull List<Long> ids)
+            throws InternalServerError {
+        EntityManager entityManager = getEntityManager();
+        Class<M> type = getModelClass();
+        if ((entityManager != null) && (type != null)) {
+            return findChunk(entityManager, type, ids);
+        }
+        List<M> results = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            try {
+                results.add(find(id));
+            } catch (NotFound e) {
+                // Reported as missing by findAllById()
+            }
+        }
+        return results;
+    }
+
+    /**
+     * <p>Retrieve the {@link Model} objects of the specified entity type
+     * matching the specified primary keys, with a single JPQL query using
+     * an IN-list.  The list of keys is padded to the next power of two (by
+     * repeating the last key) so that the persistence provider only has to
+     * translate and cache a few distinct SQL texts.  This is used by
+     * <code>findChunk(List)</code>.</p>
+     *
+     * @param entityManager <code>EntityManager</code> used to run the query.
+     * @param type Entity class for this {@link Model} type.
+     * @param ids Primary keys to retrieve.
+     *
+     * @return The matching {@link Model} objects.
+     *
+     * @throws InternalServerError If a server level error has occurred.
+     */
+    protected @NotNull List<M> findChunk(@NotNull EntityManager entityManager,
+                                         @NotNull Class<M> type,
+                                         @NotNull List<Long> ids)
+            throws InternalServerError {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String entity = entityManager.getMetamodel().entity(type).getName();
+        try {
+            return entityManager.createQuery("SELECT m FROM " + entity +
+                    " m WHERE m.id IN :ids", type)
+                    .setParameter("ids", InList.pad(ids))
+                    .getResultList();
+        } catch (PersistenceException e) {
+            throw new InternalServerError(e);
+        }
+    }
+
+    /**
+     * <p>Return the maximum number of primary keys that
+     * <code>findAllById()</code> passes to each <code>findChunk()</code>
+     * call.  The default is {@link #DEFAULT_FIND_CHUNK_SIZE}.</p>
+     */
+    protected int findChunkSize() {
+        return DEFAULT_FIND_CHUNK_SIZE;
+    }
+
+    /**
+     * <p>Return the <code>EntityManager</code> used by the default
+     * implementations in this class, or <code>null</code> if there is none.
+     * The default implementation returns <code>null</code>.</p>
+     */
+    protected EntityManager getEntityManager() {
+        return null;
+    }
+
+    /**
+     * <p>Return the entity class for this {@link Model} type, used along
+     * with <code>getEntityManager()</code> by the default implementations in
+     * this class, or <code>null</code> if it is not known.  The default
+     * implementation returns <code>null</code>.</p>
+     */
+    protected Class<M> getModelClass() {
+        return null;
+    }
+
     protected String formatMessage(ConstraintViolationException e) {
         StringBuffer sb = new StringBuffer();
         for (ConstraintViolation constraintViolation : e.getConstraintViolations()) {
@@ -124,4 +407,40 @@ public abstract class ModelService<M extends Model> {
         }
     }
 
+    // Private Methods -------------------------------------------------------
+
+    /**
+     * <p>Lock the existing row for the specified {@link Model} object (if it
+     * has a primary key and the row exists), and merge the object, in a
+     * single transaction that is rolled back if it fails.  If a transaction
+     * is already active, it is joined instead.</p>
+     */
+    private M upsert(EntityManager entityManager, Class<M> type, M model) {
+        EntityTransaction transaction = entityManager.getTransaction();
+        boolean owner = !transaction.isActive();
+        if (owner) {
+            transaction.begin();
+        }
+        try {
+            M result;
+            if (model.getId() == null) {
+                entityManager.persist(model);
+                result = model;
+            } else {
+                entityManager.find(type, model.getId(), LockModeType.PESSIMISTIC_WRITE);
+                result = entityManager.merge(model);
+            }
+            entityManager.flush();
+            if (owner) {
+                transaction.commit();
+            }
+            return result;
+        } catch (RuntimeException e) {
+            if (owner && transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        }
+    }
+
 }
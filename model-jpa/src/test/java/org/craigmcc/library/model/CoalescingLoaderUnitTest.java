@@ -0,0 +1,231 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.model;
+
+import org.craigmcc.library.shared.exception.InternalServerError;
+import org.craigmcc.library.shared.exception.NotFound;
+import org.junit.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CoalescingLoaderUnitTest {
+
+    @Test
+    public void concurrentRequestsCoalesced() throws Exception {
+        ModelServiceUnitTest.TestService service = new ModelServiceUnitTest.TestService(100);
+        try (CoalescingLoader<ModelServiceUnitTest.TestModel> loader =
+                     new CoalescingLoader<>(service).window(200, TimeUnit.MILLISECONDS)) {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<>();
+            List<Long> results = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                long id = (i % 5) + 1;
+                Thread thread = new Thread(() -> {
+                    try {
+                        start.await();
+                        Long found = loader.find(id).getId();
+                        synchronized (results) {
+                            results.add(found);
+                        }
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            System.out.println("concurrentRequestsCoalesced: requests=" + loader.getRequests() +
+                    " batches=" + loader.getBatches() + " chunks=" + service.chunks);
+            assertThat(results.size(), is(20));
+            assertThat(loader.getRequests(), is(20L));
+            assertThat(loader.getBatches(), is(1L));
+            assertThat(service.chunks.get(0).size(), is(5));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void concurrentRequestsOneQueryPerBatch() throws Exception {
+        List<ModelServiceUnitTest.TestModel> models = new ArrayList<>();
+        for (long id = 1; id <= 5; id++) {
+            ModelServiceUnitTest.TestModel model = new ModelServiceUnitTest.TestModel();
+            model.setId(id);
+            models.add(model);
+        }
+        TypedQuery<ModelServiceUnitTest.TestModel> query = mock(TypedQuery.class);
+        when(query.setParameter(anyString(), any())).thenReturn(query);
+        when(query.getResultList()).thenReturn(models);
+        EntityManager entityManager = ModelServiceUnitTest.entityManager(query);
+        ModelServiceUnitTest.EntityManagerService service =
+                new ModelServiceUnitTest.EntityManagerService(entityManager);
+        try (CoalescingLoader<ModelServiceUnitTest.TestModel> loader =
+                     new CoalescingLoader<>(service).window(200, TimeUnit.MILLISECONDS)) {
+            CountDownLatch start = new CountDownLatch(1);
+            List<CompletableFuture<ModelServiceUnitTest.TestModel>> futures = new ArrayList<>();
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                long id = (i % 6) + 1;
+                Thread thread = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    CompletableFuture<ModelServiceUnitTest.TestModel> future = loader.load(id);
+                    synchronized (futures) {
+                        futures.add(future);
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            int found = 0;
+            for (CompletableFuture<ModelServiceUnitTest.TestModel> future : futures) {
+                try {
+                    future.get(5, TimeUnit.SECONDS);
+                    found++;
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof NotFound);
+                }
+            }
+            System.out.println("concurrentRequestsOneQueryPerBatch: batches=" + loader.getBatches());
+            assertThat(found, is(17));
+            assertThat(loader.getBatches(), is(1L));
+            verify(entityManager, times(1)).createQuery(anyString(), eq(ModelServiceUnitTest.TestModel.class));
+            assertThat(service.finds, is(0));
+        }
+    }
+
+    @Test
+    public void loadAfterClose() throws Exception {
+        ModelServiceUnitTest.TestService service = new ModelServiceUnitTest.TestService(100);
+        CoalescingLoader<ModelServiceUnitTest.TestModel> loader = new CoalescingLoader<>(service);
+        loader.close();
+        CompletableFuture<ModelServiceUnitTest.TestModel> future = loader.load(1L);
+        assertThat(future.isDone(), is(true));
+        ExecutionException e = assertThrows(ExecutionException.class, future::get);
+        assertTrue(e.getCause() instanceof InternalServerError);
+        assertThrows(InternalServerError.class, () -> loader.find(1L));
+        assertThat(service.chunks.size(), is(0));
+    }
+
+    @Test
+    public void maxBatchSizeFlushes() throws Exception {
+        ModelServiceUnitTest.TestService service = new ModelServiceUnitTest.TestService(100);
+        try (CoalescingLoader<ModelServiceUnitTest.TestModel> loader =
+                     new CoalescingLoader<>(service, Runnable::run)
+                             .window(1, TimeUnit.HOURS)
+                             .maxBatchSize(2)) {
+            CompletableFuture<ModelServiceUnitTest.TestModel> first = loader.load(1L);
+            assertThat(first.isDone(), is(false));
+            CompletableFuture<ModelServiceUnitTest.TestModel> second = loader.load(2L);
+            assertThat(first.isDone(), is(true));
+            assertThat(second.get().getId(), is(2L));
+            assertThat(loader.getBatches(), is(1L));
+        }
+    }
+
+    @Test
+    public void maxQueriesBounded() throws Exception {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        ModelServiceUnitTest.TestService service = new ModelServiceUnitTest.TestService(100) {
+            @Override
+            protected List<ModelServiceUnitTest.TestModel> findChunk(List<Long> ids)
+                    throws InternalServerError {
+                peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                active.decrementAndGet();
+                synchronized (this) {
+                    return super.findChunk(ids);
+                }
+            }
+        };
+        try (CoalescingLoader<ModelServiceUnitTest.TestModel> loader =
+                     new CoalescingLoader<>(service).maxBatchSize(1).maxQueries(2)) {
+            List<CompletableFuture<ModelServiceUnitTest.TestModel>> futures = new ArrayList<>();
+            for (long id = 1; id <= 5; id++) {
+                futures.add(loader.load(id));
+            }
+            for (CompletableFuture<ModelServiceUnitTest.TestModel> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+            System.out.println("maxQueriesBounded: batches=" + loader.getBatches() + " peak=" + peak);
+            assertThat(loader.getBatches(), is(5L));
+            assertTrue(peak.get() <= 2);
+        }
+        assertThrows(IllegalStateException.class,
+                () -> new CoalescingLoader<>(service, Runnable::run).maxQueries(2));
+    }
+
+    @Test
+    public void missingCompletesWithNotFound() throws Exception {
+        ModelServiceUnitTest.TestService service = new ModelServiceUnitTest.TestService(100);
+        try (CoalescingLoader<ModelServiceUnitTest.TestModel> loader =
+                     new CoalescingLoader<>(service, Runnable::run)
+                             .window(1, TimeUnit.HOURS)) {
+            CompletableFuture<ModelServiceUnitTest.TestModel> found = loader.load(3L);
+            CompletableFuture<ModelServiceUnitTest.TestModel> missing = loader.load(99L);
+            loader.flush();
+            assertThat(found.get().getId(), is(3L));
+            ExecutionException e = assertThrows(ExecutionException.class, missing::get);
+            assertTrue(e.getCause() instanceof NotFound);
+        }
+    }
+
+    @Test
+    public void missingThrowsNotFound() throws Exception {
+        ModelServiceUnitTest.TestService service = new ModelServiceUnitTest.TestService(100);
+        try (CoalescingLoader<ModelServiceUnitTest.TestModel> loader =
+                     new CoalescingLoader<>(service).window(1, TimeUnit.MILLISECONDS)) {
+            assertThat(loader.find(4L).getId(), is(4L));
+            assertThrows(NotFound.class, () -> loader.find(98L));
+        }
+    }
+
+}
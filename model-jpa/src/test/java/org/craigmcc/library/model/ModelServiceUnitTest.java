@@ -0,0 +1,237 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.model;
+
+import org.craigmcc.library.shared.exception.BadRequest;
+import org.craigmcc.library.shared.exception.InternalServerError;
+import org.craigmcc.library.shared.exception.NotFound;
+import org.craigmcc.library.shared.exception.NotUnique;
+import org.craigmcc.library.shared.model.FindResults;
+import org.junit.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.Metamodel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ModelServiceUnitTest {
+
+    @Test
+    public void findAllByIdChunked() throws Exception {
+        TestService service = new TestService(2);
+        FindResults<TestModel> results =
+                service.findAllById(Arrays.asList(5L, 1L, 99L, 3L, 1L, null, 4L));
+        System.out.println("findAllByIdChunked: " + results.getFound().keySet() + " chunks=" + service.chunks);
+        assertThat(results.getFound().keySet(), contains(5L, 1L, 3L, 4L));
+        assertThat(results.getMissing(), contains(99L));
+        assertThat(service.chunks.size(), is(3));
+        assertThat(service.chunks.get(0), contains(5L, 1L));
+        assertThat(service.chunks.get(2), contains(4L));
+    }
+
+    @Test
+    public void findAllByIdDefaultChunk() throws Exception {
+        TestService service = new TestService(0);
+        FindResults<TestModel> results = service.findAllById(Arrays.asList(2L, 7L));
+        assertThat(results.getFound().keySet(), contains(2L));
+        assertThat(results.getMissing(), contains(7L));
+        assertThat(service.finds, is(2));
+    }
+
+    @Test
+    public void findAllByIdEmpty() throws Exception {
+        TestService service = new TestService(2);
+        FindResults<TestModel> results = service.findAllById(new ArrayList<>());
+        assertThat(results.getFound().size(), is(0));
+        assertThat(results.getMissing().size(), is(0));
+        assertThat(service.chunks.size(), is(0));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void findAllByIdEntityManager() throws Exception {
+        TestModel model = new TestModel();
+        model.setId(3L);
+        TypedQuery<TestModel> query = mock(TypedQuery.class);
+        when(query.setParameter(anyString(), any()))
+                .thenReturn(query);
+        when(query.getResultList()).thenReturn(Collections.singletonList(model));
+        EntityManager entityManager = entityManager(query);
+        TestService service = new EntityManagerService(entityManager);
+        FindResults<TestModel> results = service.findAllById(Arrays.asList(3L, 8L, 9L));
+        System.out.println("findAllByIdEntityManager: " + results.getFound().keySet() +
+                " missing=" + results.getMissing());
+        assertThat(results.getFound().keySet(), contains(3L));
+        assertThat(results.getMissing(), contains(8L, 9L));
+        assertThat(service.finds, is(0));
+        verify(entityManager).createQuery("SELECT m FROM TestModel m WHERE m.id IN :ids", TestModel.class);
+        verify(query).setParameter("ids", Arrays.asList(3L, 8L, 9L, 9L));
+    }
+
+    // Static Methods --------------------------------------------------------
+
+    @SuppressWarnings("unchecked")
+    static EntityManager entityManager(TypedQuery<TestModel> query) {
+        EntityType<TestModel> entity = mock(EntityType.class);
+        when(entity.getName()).thenReturn("TestModel");
+        Metamodel metamodel = mock(Metamodel.class);
+        when(metamodel.entity(TestModel.class)).thenReturn(entity);
+        EntityManager entityManager = mock(EntityManager.class);
+        when(entityManager.getMetamodel()).thenReturn(metamodel);
+        when(entityManager.createQuery(anyString(), eq(TestModel.class))).thenReturn(query);
+        return entityManager;
+    }
+
+    // Support Classes -------------------------------------------------------
+
+    /**
+     * <p>Service that provides the specified <code>EntityManager</code> to
+     * the default implementations in {@link ModelService}.</p>
+     */
+    static class EntityManagerService extends TestService {
+
+        EntityManagerService(EntityManager entityManager) {
+            super(0);
+            this.entityManager = entityManager;
+        }
+
+        private final EntityManager entityManager;
+
+        @Override
+        protected EntityManager getEntityManager() {
+            return entityManager;
+        }
+
+        @Override
+        protected Class<TestModel> getModelClass() {
+            return TestModel.class;
+        }
+
+    }
+
+    public static class TestModel extends Model<TestModel> {
+        @Override
+        public void copy(TestModel that) {
+            this.setId(that.getId());
+        }
+    }
+
+    /**
+     * <p>Service backed by a map, with ids 1 through 5 present.  If a chunk
+     * size is specified, chunks are recorded and looked up directly;
+     * otherwise the default <code>findChunk()</code> is used.</p>
+     */
+    static class TestService extends ModelService<TestModel> {
+
+        TestService(int chunkSize) {
+            this.chunkSize = chunkSize;
+            for (long id = 1; id <= 5; id++) {
+                TestModel model = new TestModel();
+                model.setId(id);
+                models.put(id, model);
+            }
+        }
+
+        final List<List<Long>> chunks = new ArrayList<>();
+        int finds = 0;
+        final List<List<Long>> updates = new ArrayList<>();
+        private final int chunkSize;
+        private final Map<Long, TestModel> models = new HashMap<>();
+
+        @Override
+        public TestModel delete(Long id) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public TestModel find(Long id) throws NotFound {
+            finds++;
+            TestModel model = models.get(id);
+            if (model == null) {
+                throw new NotFound("id: Missing id " + id);
+            }
+            return model;
+        }
+
+        @Override
+        public List<TestModel> findAll() {
+            return new ArrayList<>(models.values());
+        }
+
+        @Override
+        public TestModel insert(TestModel model) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public TestModel update(Long id, TestModel model) throws NotFound {
+            if (!models.containsKey(id)) {
+                throw new NotFound("id: Missing id " + id);
+            }
+            models.put(id, model);
+            return model;
+        }
+
+        @Override
+        public List<TestModel> updateAll(List<TestModel> models)
+                throws BadRequest, InternalServerError, NotFound, NotUnique {
+            List<Long> ids = new ArrayList<>();
+            for (TestModel model : models) {
+                ids.add(model.getId());
+            }
+            updates.add(ids);
+            return super.updateAll(models);
+        }
+
+        @Override
+        protected List<TestModel> findChunk(List<Long> ids) throws InternalServerError {
+            if (chunkSize == 0) {
+                return super.findChunk(ids);
+            }
+            chunks.add(new ArrayList<>(ids));
+            List<TestModel> results = new ArrayList<>();
+            for (Long id : ids) {
+                if (models.containsKey(id)) {
+                    results.add(models.get(id));
+                }
+            }
+            return results;
+        }
+
+        @Override
+        protected int findChunkSize() {
+            return (chunkSize > 0) ? chunkSize : super.findChunkSize();
+        }
+
+    }
+
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.pool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>Physical connection managed by a {@link PooledDataSource}, along with
+ * the bookkeeping the pool needs for it.  Each time it is borrowed, the
+ * caller receives a new proxy handle, whose <code>close()</code> returns
+ * the connection to the pool (once), and which refuses to be used after
+ * that.  The statements created through a handle (and their result sets)
+ * are wrapped as well, so that they report the handle from
+ * <code>getConnection()</code>, refuse to be used once the handle has been
+ * closed, and are closed by the pool when the handle is closed.  Therefore,
+ * a stale handle (or statement) cannot affect the next borrower of the same
+ * physical connection.</p>
+ */
+final class PooledConnection {
+
+    // Static Variables ------------------------------------------------------
+
+    private static final int DIRTY_CATALOG = 1;
+    private static final int DIRTY_ISOLATION = 2;
+    private static final int DIRTY_READ_ONLY = 4;
+    private static final int DIRTY_SCHEMA = 8;
+
+    // Instance Variables ----------------------------------------------------
+
+    // Timestamps are System.nanoTime() values (via the pool's nanoTime())
+    volatile boolean broken = false;
+    volatile long borrowedNanos;
+    volatile Throwable borrowTrace = null;
+    final long createdNanos;
+    private int dirty = 0; // Only touched by the borrower, then by reset()
+    volatile long lastUsedNanos;
+    volatile long lastValidatedNanos;
+    volatile boolean leakReported = false;
+    private String originalCatalog;
+    private int originalIsolation;
+    private boolean originalReadOnly;
+    private String originalSchema;
+    final Connection physical;
+    private final PooledDataSource pool;
+
+    // Constructors ----------------------------------------------------------
+
+    PooledConnection(PooledDataSource pool, Connection physical, long now) {
+        this.pool = pool;
+        this.physical = physical;
+        this.createdNanos = now;
+        this.lastUsedNanos = now;
+        this.lastValidatedNanos = now;
+    }
+
+    // Package Methods -------------------------------------------------------
+
+    /**
+     * <p>Mark this connection as borrowed, and return a new handle for it.</p>
+     *
+     * @param now Current time
+     * @param trace Stack trace of the borrower (for leak reports), or
+     *              <code>null</code>
+     */
+    Connection borrow(long now, Throwable trace) {
+        borrowedNanos = now;
+        borrowTrace = trace;
+        leakReported = false;
+        Handle handle = new Handle();
+        handle.proxy = (Connection) Proxy.newProxyInstance(PooledConnection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, handle);
+        return handle.proxy;
+    }
+
+    /**
+     * <p>Close the physical connection, ignoring any errors.</p>
+     */
+    void destroy() {
+        try {
+            physical.close();
+        } catch (SQLException e) {
+            // Nothing more can be done with it
+        }
+    }
+
+    /**
+     * <p>Restore the state that a borrower may have changed, rolling back
+     * any transaction that was left open, and return <code>true</code> if
+     * the connection can be reused.  Read only mode, transaction isolation,
+     * catalog and schema are restored to the values they had before the
+     * borrower first changed them.</p>
+     */
+    boolean reset() {
+        if (broken) {
+            return false;
+        }
+        try {
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            if ((dirty & DIRTY_READ_ONLY) != 0) {
+                physical.setReadOnly(originalReadOnly);
+            }
+            if ((dirty & DIRTY_ISOLATION) != 0) {
+                physical.setTransactionIsolation(originalIsolation);
+            }
+            if ((dirty & DIRTY_CATALOG) != 0) {
+                physical.setCatalog(originalCatalog);
+            }
+            if ((dirty & DIRTY_SCHEMA) != 0) {
+                physical.setSchema(originalSchema);
+            }
+            dirty = 0;
+            physical.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * <p>Return <code>true</code> if the physical connection responds within
+     * the specified number of seconds.</p>
+     *
+     * @param timeout Validation timeout in seconds
+     */
+    boolean validate(int timeout) {
+        try {
+            return physical.isValid(timeout);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    // Private Methods -------------------------------------------------------
+
+    /**
+     * <p>Mark the physical connection as broken if the specified exception
+     * reports a connection exception (SQL state class <code>08</code>).</p>
+     *
+     * @param cause Exception thrown by the physical connection or one of
+     *              its statements or result sets
+     */
+    private void check(Throwable cause) {
+        if ((cause instanceof SQLException) && (((SQLException) cause).getSQLState() != null) &&
+                ((SQLException) cause).getSQLState().startsWith("08")) {
+            broken = true;
+        }
+    }
+
+    /**
+     * <p>Remember the original value of the state about to be changed by the
+     * specified setter, the first time it is changed during a borrow.</p>
+     *
+     * @param name Name of the <code>Connection</code> setter being called
+     *
+     * @throws SQLException if the original value cannot be retrieved
+     */
+    private void remember(String name) throws SQLException {
+        switch (name) {
+            case "setCatalog":
+                if ((dirty & DIRTY_CATALOG) == 0) {
+                    originalCatalog = physical.getCatalog();
+                    dirty |= DIRTY_CATALOG;
+                }
+                break;
+            case "setReadOnly":
+                if ((dirty & DIRTY_READ_ONLY) == 0) {
+                    originalReadOnly = physical.isReadOnly();
+                    dirty |= DIRTY_READ_ONLY;
+                }
+                break;
+            case "setSchema":
+                if ((dirty & DIRTY_SCHEMA) == 0) {
+                    originalSchema = physical.getSchema();
+                    dirty |= DIRTY_SCHEMA;
+                }
+                break;
+            case "setTransactionIsolation":
+                if ((dirty & DIRTY_ISOLATION) == 0) {
+                    originalIsolation = physical.getTransactionIsolation();
+                    dirty |= DIRTY_ISOLATION;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    // Support Classes -------------------------------------------------------
+
+    /**
+     * <p>Invocation handler for one borrowed handle.  Calls are passed to the
+     * physical connection, except for those that manage the handle itself.
+     * Statements are wrapped (see {@link Delegate}) and tracked until they
+     * are closed.  An <code>SQLException</code> with a connection exception
+     * state (class <code>08</code>) marks the physical connection as broken,
+     * so that it is discarded instead of being returned to the pool.</p>
+     */
+    private final class Handle implements InvocationHandler {
+
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+        private Connection proxy;
+        private final Set<Statement> statements = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (closed.compareAndSet(false, true)) {
+                        closeStatements();
+                        pool.release(PooledConnection.this);
+                    }
+                    return null;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "isClosed":
+                    return closed.get() || physical.isClosed();
+                case "isWrapperFor":
+                    return ((Class<?>) args[0]).isInstance(physical) || physical.isWrapperFor((Class<?>) args[0]);
+                case "toString":
+                    return "PooledConnection{" + physical + (closed.get() ? ", closed" : "") + "}";
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(physical)) {
+                        return physical;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            if (closed.get()) {
+                throw new SQLException("Connection has already been returned to the pool", "08003");
+            }
+            Object result;
+            try {
+                remember(name);
+                result = method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                check(e.getCause());
+                throw e.getCause();
+            }
+            if (result instanceof Statement) {
+                statements.add((Statement) result);
+                return Proxy.newProxyInstance(PooledConnection.class.getClassLoader(),
+                        new Class<?>[] { method.getReturnType() },
+                        new Delegate(this, result, this.proxy));
+            }
+            return result;
+        }
+
+        /**
+         * <p>Close the statements that the borrower left open.</p>
+         */
+        private void closeStatements() {
+            for (Statement statement : new ArrayList<>(statements)) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    check(e);
+                }
+            }
+            statements.clear();
+        }
+
+    }
+
+    /**
+     * <p>Invocation handler for a statement (or result set) created through
+     * a handle.  It reports the handle (or statement) proxy as its parent,
+     * wraps the result sets it returns, refuses to be used after the handle
+     * has been closed, and marks the physical connection as broken on a
+     * connection exception.</p>
+     */
+    private final class Delegate implements InvocationHandler {
+
+        private final Handle handle;
+        private final Object parent;
+        private final Object target;
+
+        private Delegate(Handle handle, Object target, Object parent) {
+            this.handle = handle;
+            this.target = target;
+            this.parent = parent;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (target instanceof Statement) {
+                        handle.statements.remove(target);
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "getConnection":
+                case "getStatement":
+                    if (method.getParameterCount() == 0) {
+                        return parent;
+                    }
+                    break;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "isClosed":
+                    if (handle.closed.get()) {
+                        return true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            if (handle.closed.get() && !"close".equals(method.getName())) {
+                throw new SQLException("Connection has already been returned to the pool", "08003");
+            }
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                check(e.getCause());
+                throw e.getCause();
+            }
+            if ((result instanceof ResultSet) && (target instanceof Statement)) {
+                return Proxy.newProxyInstance(PooledConnection.class.getClassLoader(),
+                        new Class<?>[] { ResultSet.class },
+                        new Delegate(handle, result, proxy));
+            }
+            return result;
+        }
+
+    }
+
+}
@@ -0,0 +1,766 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.pool;
+
+import javax.sql.DataSource;
+import javax.validation.constraints.NotNull;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Lightweight <code>DataSource</code> that pools the connections of a
+ * target <code>DataSource</code> (or JDBC URL).  It is designed to be
+ * borrowed from by large numbers of virtual threads:</p>
+ * <ul>
+ *     <li>Borrowing and returning do not take any locks.  Idle connections
+ *         are kept in a concurrent deque, and the number of borrowed
+ *         connections is bounded by a fair semaphore, so callers that have
+ *         to wait for a connection are served in FIFO order, and park
+ *         without occupying a carrier thread.</li>
+ *     <li>Connections are not validated when they are borrowed.  Instead, a
+ *         background housekeeper validates connections that have been idle
+ *         for at least <code>validationInterval</code>, and closes those that
+ *         have been idle for longer than <code>idleTimeout</code>.  A
+ *         connection on which a connection exception (SQL state class
+ *         <code>08</code>) is reported is discarded when it is returned.</li>
+ *     <li>Statistics (see <code>getStatistics()</code>) include the time
+ *         spent waiting for, and using, connections.  If a
+ *         <code>leakThreshold</code> is set, connections that are held for
+ *         longer than that are counted, and reported (with the stack trace
+ *         of the borrower) to the <code>java.util.logging</code> logger for
+ *         this package.</li>
+ * </ul>
+ *
+ * <p><strong>EXAMPLE:</strong></p>
+ *
+ * <code>
+ *     PooledDataSource dataSource = new PooledDataSource(url, username, password)
+ *         .maxSize(20)
+ *         .borrowTimeout(5, TimeUnit.SECONDS)
+ *         .leakThreshold(1, TimeUnit.MINUTES);
+ *     ...
+ *     try (Connection connection = dataSource.getConnection()) {
+ *         ...
+ *     } // Returns the connection to the pool
+ * </code>
+ *
+ * <p><strong>USAGE NOTES:</strong></p>
+ * <ul>
+ *     <li>Configure the pool before first use; it is then safe for use by
+ *         any number of threads.</li>
+ *     <li>When a connection is returned, any transaction that was left open
+ *         is rolled back, auto-commit is restored, and read only mode,
+ *         transaction isolation, catalog and schema are restored if the
+ *         borrower changed them.</li>
+ *     <li>Statements created through a borrowed connection are wrapped, so
+ *         that <code>getConnection()</code> returns the borrowed connection
+ *         (not the physical one), and a connection exception reported by a
+ *         statement also causes the connection to be discarded.  Statements
+ *         left open by the borrower are closed when the connection is
+ *         returned.</li>
+ *     <li>Call <code>close()</code> when done, to close the idle connections
+ *         and stop the housekeeper.  Borrowed connections are closed when
+ *         they are returned.</li>
+ * </ul>
+ */
+public class PooledDataSource implements DataSource, AutoCloseable {
+
+    // Static Variables ------------------------------------------------------
+
+    /**
+     * <p>Default maximum time (in milliseconds) to wait for a connection.</p>
+     */
+    public static final long DEFAULT_BORROW_TIMEOUT_MILLIS = 30_000;
+
+    /**
+     * <p>Default time (in milliseconds) between housekeeping passes.</p>
+     */
+    public static final long DEFAULT_HOUSEKEEPING_MILLIS = 5_000;
+
+    /**
+     * <p>Default time (in milliseconds) after which an idle connection
+     * is closed.</p>
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 600_000;
+
+    /**
+     * <p>Default maximum number of connections.</p>
+     */
+    public static final int DEFAULT_MAX_SIZE = 10;
+
+    /**
+     * <p>Default time (in milliseconds) that a connection may be idle
+     * before it is validated again.</p>
+     */
+    public static final long DEFAULT_VALIDATION_INTERVAL_MILLIS = 30_000;
+
+    /**
+     * <p>Default time (in seconds) to wait for a connection to respond
+     * to validation.</p>
+     */
+    public static final int DEFAULT_VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private static final Logger LOG = Logger.getLogger(PooledDataSource.class.getPackage().getName());
+
+    // Instance Variables ----------------------------------------------------
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder borrows = new LongAdder();
+    private long borrowTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_BORROW_TIMEOUT_MILLIS);
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed = false;
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong destroyed = new AtomicLong();
+    private final Factory factory;
+    private long housekeepingNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_HOUSEKEEPING_MILLIS);
+    private ScheduledExecutorService housekeeper = null;
+    private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private long idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_IDLE_TIMEOUT_MILLIS);
+    private long leakThresholdNanos = 0;
+    private final AtomicLong leaks = new AtomicLong();
+    private PrintWriter logWriter = null;
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private int maxSize = DEFAULT_MAX_SIZE;
+    private Semaphore permits = null;
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private final DataSource target;
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder usageNanos = new LongAdder();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private long validationIntervalNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_VALIDATION_INTERVAL_MILLIS);
+    private int validationTimeout = DEFAULT_VALIDATION_TIMEOUT_SECONDS;
+    private final LongAdder waitNanos = new LongAdder();
+
+    // Constructors ----------------------------------------------------------
+
+    /**
+     * <p>Create a pool of connections from the specified target.</p>
+     *
+     * @param target <code>DataSource</code> that creates physical connections
+     */
+    public PooledDataSource(@NotNull DataSource target) {
+        this.target = target;
+        this.factory = target::getConnection;
+    }
+
+    /**
+     * <p>Create a pool of connections to the specified JDBC URL, created
+     * by <code>DriverManager</code>.</p>
+     *
+     * @param url JDBC URL of the database
+     * @param username Username, or <code>null</code> if not required
+     * @param password Password, or <code>null</code> if not required
+     */
+    public PooledDataSource(@NotNull String url, String username, String password) {
+        this.target = null;
+        if (username != null) {
+            this.factory = () -> DriverManager.getConnection(url, username, password);
+        } else {
+            this.factory = () -> DriverManager.getConnection(url);
+        }
+    }
+
+    // Public Methods --------------------------------------------------------
+
+    /**
+     * <p>Set the maximum time to wait for a connection before
+     * <code>getConnection()</code> fails with an
+     * <code>SQLTransientConnectionException</code>.  Default is
+     * {@link #DEFAULT_BORROW_TIMEOUT_MILLIS} milliseconds.</p>
+     *
+     * @param timeout Maximum time to wait
+     * @param unit Time unit of the timeout
+     *
+     * @return This pool
+     */
+    public PooledDataSource borrowTimeout(long timeout, @NotNull TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout must not be negative");
+        }
+        this.borrowTimeoutNanos = unit.toNanos(timeout);
+        return this;
+    }
+
+    /**
+     * <p>Close the idle connections, and stop the housekeeper.  Connections
+     * that are currently borrowed are closed when they are returned, and no
+     * further connections may be borrowed.</p>
+     */
+    @Override
+    public void close() {
+        closed = true;
+        ScheduledExecutorService scheduler;
+        synchronized (started) {
+            scheduler = housekeeper;
+        }
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    /**
+     * <p>Borrow a connection from the pool, creating a new one if none is
+     * idle and the pool is not at its maximum size, or else waiting (in FIFO
+     * order) for one to be returned.  Close the returned connection to return
+     * it to the pool.</p>
+     *
+     * @throws SQLException if the pool is closed, a new connection cannot be
+     *  created, or the calling thread is interrupted
+     * @throws SQLTransientConnectionException if no connection becomes
+     *  available within the borrow timeout
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Pool has been closed");
+        }
+        start();
+        long start = nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(borrowTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+        long now = nanoTime();
+        long waited = now - start;
+        waitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        if (!acquired) {
+            timeouts.increment();
+            throw new SQLTransientConnectionException("No connection available within " +
+                    TimeUnit.NANOSECONDS.toMillis(borrowTimeoutNanos) + " milliseconds (maxSize=" + maxSize + ")");
+        }
+        try {
+            if (closed) {
+                throw new SQLException("Pool has been closed");
+            }
+            PooledConnection pooled = idle.pollFirst();
+            if (pooled == null) {
+                pooled = new PooledConnection(this, factory.create(), now);
+                created.incrementAndGet();
+            }
+            Throwable trace = null;
+            if (leakThresholdNanos > 0) {
+                trace = new Throwable("Connection borrowed by " + Thread.currentThread());
+                borrowed.add(pooled);
+            }
+            active.incrementAndGet();
+            borrows.increment();
+            return pooled.borrow(now, trace);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * <p>Not supported, because every connection in the pool uses the same
+     * credentials.</p>
+     *
+     * @throws SQLFeatureNotSupportedException always
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pooled connections all use the configured credentials");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return logWriter;
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return (target != null) ? target.getLoginTimeout() : DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() {
+        return LOG;
+    }
+
+    /**
+     * <p>Return a snapshot of the statistics for this pool.</p>
+     */
+    public @NotNull Statistics getStatistics() {
+        return new Statistics(active.get(), idle.size(),
+                (permits != null) ? permits.getQueueLength() : 0,
+                borrows.sum(), timeouts.sum(), created.get(), destroyed.get(),
+                validationFailures.get(), leaks.get(),
+                waitNanos.sum(), maxWaitNanos.get(), usageNanos.sum());
+    }
+
+    /**
+     * <p>Run one housekeeping pass now: close connections that have been
+     * idle for longer than <code>idleTimeout</code>, validate those that have
+     * been idle for at least <code>validationInterval</code> (closing them
+     * if they fail), and report borrowed connections that have been held for
+     * longer than <code>leakThreshold</code>.  This is normally called by the
+     * housekeeper thread.</p>
+     */
+    public void housekeeping() {
+        long now = nanoTime();
+        for (PooledConnection pooled : idle) {
+            long idleNanos = now - pooled.lastUsedNanos;
+            if ((idleTimeoutNanos > 0) && (idleNanos >= idleTimeoutNanos)) {
+                if (idle.remove(pooled)) {
+                    destroy(pooled);
+                }
+            } else if ((validationIntervalNanos > 0) &&
+                    (now - Math.max(pooled.lastUsedNanos, pooled.lastValidatedNanos) >= validationIntervalNanos) &&
+                    !closed && permits.tryAcquire()) {
+                // Holding a permit keeps the number of connections within maxSize
+                try {
+                    if (idle.remove(pooled)) {
+                        if (pooled.validate(validationTimeout)) {
+                            pooled.lastValidatedNanos = nanoTime();
+                            idle.offerLast(pooled);
+                        } else {
+                            validationFailures.incrementAndGet();
+                            destroy(pooled);
+                        }
+                    }
+                } finally {
+                    permits.release();
+                }
+            }
+        }
+        if (leakThresholdNanos > 0) {
+            for (PooledConnection pooled : borrowed) {
+                if (!pooled.leakReported && (now - pooled.borrowedNanos >= leakThresholdNanos)) {
+                    pooled.leakReported = true;
+                    leaks.incrementAndGet();
+                    LOG.log(Level.WARNING, "Connection has been borrowed for " +
+                            TimeUnit.NANOSECONDS.toMillis(now - pooled.borrowedNanos) +
+                            " milliseconds without being returned", pooled.borrowTrace);
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>Set the time between housekeeping passes, or zero to not run the
+     * housekeeper (in which case <code>housekeeping()</code> must be called
+     * by the application).  Default is {@link #DEFAULT_HOUSEKEEPING_MILLIS}
+     * milliseconds.</p>
+     *
+     * @param period Time between passes
+     * @param unit Time unit of the period
+     *
+     * @return This pool
+     */
+    public PooledDataSource housekeepingPeriod(long period, @NotNull TimeUnit unit) {
+        if (period < 0) {
+            throw new IllegalArgumentException("period must not be negative");
+        }
+        this.housekeepingNanos = unit.toNanos(period);
+        return this;
+    }
+
+    /**
+     * <p>Set the time after which an idle connection is closed, or zero to
+     * keep idle connections open indefinitely.  Default is
+     * {@link #DEFAULT_IDLE_TIMEOUT_MILLIS} milliseconds.</p>
+     *
+     * @param timeout Maximum idle time
+     * @param unit Time unit of the timeout
+     *
+     * @return This pool
+     */
+    public PooledDataSource idleTimeout(long timeout, @NotNull TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout must not be negative");
+        }
+        this.idleTimeoutNanos = unit.toNanos(timeout);
+        return this;
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || ((target != null) && target.isWrapperFor(iface));
+    }
+
+    /**
+     * <p>Set the time after which a borrowed connection that has not been
+     * returned is reported as a possible leak, or zero (the default) to
+     * disable leak detection.  When enabled, the stack trace of each
+     * borrower is captured, which has a small cost.</p>
+     *
+     * @param threshold Maximum time a connection is expected to be held
+     * @param unit Time unit of the threshold
+     *
+     * @return This pool
+     */
+    public PooledDataSource leakThreshold(long threshold, @NotNull TimeUnit unit) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("threshold must not be negative");
+        }
+        this.leakThresholdNanos = unit.toNanos(threshold);
+        return this;
+    }
+
+    /**
+     * <p>Set the maximum number of connections, which is also the maximum
+     * number that may be borrowed at once.  Default is
+     * {@link #DEFAULT_MAX_SIZE}.</p>
+     *
+     * @param maxSize Maximum number of connections
+     *
+     * @return This pool
+     */
+    public PooledDataSource maxSize(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        }
+        if (started.get()) {
+            throw new IllegalStateException("maxSize cannot be changed after the pool has been used");
+        }
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter logWriter) throws SQLException {
+        this.logWriter = logWriter;
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        if (target != null) {
+            target.setLoginTimeout(seconds);
+        } else {
+            DriverManager.setLoginTimeout(seconds);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PooledDataSource{maxSize=" + maxSize + ", closed=" + closed +
+                ", statistics=" + getStatistics() + "}";
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        } else if (target != null) {
+            return target.unwrap(iface);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    /**
+     * <p>Set the time that a connection may be idle before it is validated
+     * again by the housekeeper, or zero to never validate idle connections.
+     * Default is {@link #DEFAULT_VALIDATION_INTERVAL_MILLIS} milliseconds.</p>
+     *
+     * @param interval Idle time before validation
+     * @param unit Time unit of the interval
+     *
+     * @return This pool
+     */
+    public PooledDataSource validationInterval(long interval, @NotNull TimeUnit unit) {
+        if (interval < 0) {
+            throw new IllegalArgumentException("interval must not be negative");
+        }
+        this.validationIntervalNanos = unit.toNanos(interval);
+        return this;
+    }
+
+    /**
+     * <p>Set the time to wait for a connection to respond to validation.
+     * Default is {@link #DEFAULT_VALIDATION_TIMEOUT_SECONDS} seconds.</p>
+     *
+     * @param seconds Validation timeout in seconds
+     *
+     * @return This pool
+     */
+    public PooledDataSource validationTimeout(int seconds) {
+        if (seconds < 0) {
+            throw new IllegalArgumentException("seconds must not be negative");
+        }
+        this.validationTimeout = seconds;
+        return this;
+    }
+
+    // Package Methods -------------------------------------------------------
+
+    /**
+     * <p>Return the specified connection to the pool (or close it, if it
+     * cannot be reused or the pool has been closed), and let the next
+     * waiting borrower proceed.</p>
+     *
+     * @param pooled Connection being returned
+     */
+    void release(PooledConnection pooled) {
+        long now = nanoTime();
+        usageNanos.add(now - pooled.borrowedNanos);
+        if (leakThresholdNanos > 0) {
+            borrowed.remove(pooled);
+        }
+        pooled.borrowTrace = null;
+        active.decrementAndGet();
+        try {
+            if (closed || !pooled.reset()) {
+                destroy(pooled);
+            } else {
+                pooled.lastUsedNanos = now;
+                idle.offerFirst(pooled);
+                if (closed && idle.remove(pooled)) {
+                    destroy(pooled);
+                }
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    // Protected Methods -----------------------------------------------------
+
+    /**
+     * <p>Return the current value of the clock used for timing, in
+     * nanoseconds.  Tests may override this to control time.</p>
+     */
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+
+    // Private Methods -------------------------------------------------------
+
+    /**
+     * <p>Close the specified physical connection.</p>
+     *
+     * @param pooled Connection to be closed
+     */
+    private void destroy(PooledConnection pooled) {
+        destroyed.incrementAndGet();
+        pooled.destroy();
+    }
+
+    /**
+     * <p>Allocate the permits, and start the housekeeper, on first use.</p>
+     */
+    private void start() {
+        if (started.get()) {
+            return;
+        }
+        synchronized (started) {
+            if (permits != null) {
+                return;
+            }
+            permits = new Semaphore(maxSize, true);
+            if (housekeepingNanos > 0) {
+                housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "PooledDataSource-housekeeper");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                housekeeper.scheduleWithFixedDelay(this::housekeeping,
+                        housekeepingNanos, housekeepingNanos, TimeUnit.NANOSECONDS);
+            }
+            started.set(true);
+        }
+    }
+
+    // Support Classes -------------------------------------------------------
+
+    /**
+     * <p>Creates new physical connections.</p>
+     */
+    @FunctionalInterface
+    private interface Factory {
+        Connection create() throws SQLException;
+    }
+
+    /**
+     * <p>Immutable snapshot of the statistics for a {@link PooledDataSource}.</p>
+     */
+    public static final class Statistics {
+
+        private Statistics(int active, int idle, int waiting, long borrows, long timeouts,
+                           long created, long destroyed, long validationFailures, long leaks,
+                           long waitNanos, long maxWaitNanos, long usageNanos) {
+            this.active = active;
+            this.borrows = borrows;
+            this.created = created;
+            this.destroyed = destroyed;
+            this.idle = idle;
+            this.leaks = leaks;
+            this.maxWaitNanos = maxWaitNanos;
+            this.timeouts = timeouts;
+            this.usageNanos = usageNanos;
+            this.validationFailures = validationFailures;
+            this.waitNanos = waitNanos;
+            this.waiting = waiting;
+        }
+
+        private final int active;
+        private final long borrows;
+        private final long created;
+        private final long destroyed;
+        private final int idle;
+        private final long leaks;
+        private final long maxWaitNanos;
+        private final long timeouts;
+        private final long usageNanos;
+        private final long validationFailures;
+        private final long waitNanos;
+        private final int waiting;
+
+        /**
+         * <p>Return the number of connections currently borrowed.</p>
+         */
+        public int getActive() {
+            return active;
+        }
+
+        /**
+         * <p>Return the average time, in nanoseconds, that a returned
+         * connection was held by its borrower.</p>
+         */
+        public double getAverageUsageNanos() {
+            long returns = borrows - active;
+            return (returns <= 0) ? 0.0 : ((double) usageNanos) / returns;
+        }
+
+        /**
+         * <p>Return the average time, in nanoseconds, spent waiting for
+         * a connection (including waits that timed out).</p>
+         */
+        public double getAverageWaitNanos() {
+            long requests = borrows + timeouts;
+            return (requests == 0) ? 0.0 : ((double) waitNanos) / requests;
+        }
+
+        /**
+         * <p>Return the number of connections successfully borrowed.</p>
+         */
+        public long getBorrows() {
+            return borrows;
+        }
+
+        /**
+         * <p>Return the number of physical connections created.</p>
+         */
+        public long getCreated() {
+            return created;
+        }
+
+        /**
+         * <p>Return the number of physical connections closed.</p>
+         */
+        public long getDestroyed() {
+            return destroyed;
+        }
+
+        /**
+         * <p>Return the number of idle connections.</p>
+         */
+        public int getIdle() {
+            return idle;
+        }
+
+        /**
+         * <p>Return the number of borrowed connections reported as possible
+         * leaks.</p>
+         */
+        public long getLeaks() {
+            return leaks;
+        }
+
+        /**
+         * <p>Return the longest time, in nanoseconds, spent waiting for
+         * a connection.</p>
+         */
+        public long getMaxWaitNanos() {
+            return maxWaitNanos;
+        }
+
+        /**
+         * <p>Return the number of requests that timed out waiting for
+         * a connection.</p>
+         */
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        /**
+         * <p>Return the total time, in nanoseconds, that returned connections
+         * were held by their borrowers.</p>
+         */
+        public long getUsageNanos() {
+            return usageNanos;
+        }
+
+        /**
+         * <p>Return the number of idle connections that failed validation.</p>
+         */
+        public long getValidationFailures() {
+            return validationFailures;
+        }
+
+        /**
+         * <p>Return an estimate of the number of callers waiting for
+         * a connection.</p>
+         */
+        public int getWaiting() {
+            return waiting;
+        }
+
+        /**
+         * <p>Return the total time, in nanoseconds, spent waiting for
+         * connections.</p>
+         */
+        public long getWaitNanos() {
+            return waitNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Statistics{active=" + active + ", idle=" + idle + ", waiting=" + waiting +
+                    ", borrows=" + borrows + ", timeouts=" + timeouts +
+                    ", created=" + created + ", destroyed=" + destroyed +
+                    ", validationFailures=" + validationFailures + ", leaks=" + leaks +
+                    ", waitNanos=" + waitNanos + ", maxWaitNanos=" + maxWaitNanos +
+                    ", usageNanos=" + usageNanos + "}";
+        }
+
+    }
+
+}
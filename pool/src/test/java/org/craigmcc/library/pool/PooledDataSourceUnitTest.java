@@ -0,0 +1,295 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.pool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PooledDataSourceUnitTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+    private final List<Connection> physicals = new ArrayList<>();
+    private PooledDataSource pool;
+    private DataSource target;
+
+    @Before
+    public void before() throws Exception {
+        target = mock(DataSource.class);
+        for (int i = 0; i < 3; i++) {
+            Connection physical = mock(Connection.class);
+            when(physical.getAutoCommit()).thenReturn(true);
+            when(physical.isValid(PooledDataSource.DEFAULT_VALIDATION_TIMEOUT_SECONDS)).thenReturn(true);
+            physicals.add(physical);
+        }
+        when(target.getConnection()).thenReturn(physicals.get(0), physicals.get(1), physicals.get(2));
+        pool = new PooledDataSource(target) {
+            @Override
+            protected long nanoTime() {
+                return clock.get();
+            }
+        }.housekeepingPeriod(0, TimeUnit.SECONDS);
+    }
+
+    @After
+    public void after() {
+        pool.close();
+    }
+
+    @Test
+    public void borrowAndReturn() throws Exception {
+        Connection first = pool.getConnection();
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(5));
+        first.close();
+        Connection second = pool.getConnection();
+        System.out.println("borrowAndReturn: " + pool);
+        assertThat(second, not(sameInstance(first)));
+        assertThat(second.unwrap(Connection.class), sameInstance(physicals.get(0)));
+        assertThat(pool.getStatistics().getActive(), is(1));
+        assertThat(pool.getStatistics().getBorrows(), is(2L));
+        assertThat(pool.getStatistics().getCreated(), is(1L));
+        assertThat(pool.getStatistics().getUsageNanos(), is(TimeUnit.MILLISECONDS.toNanos(5)));
+        second.close();
+        assertThat(pool.getStatistics().getIdle(), is(1));
+    }
+
+    @Test
+    public void brokenConnectionDiscarded() throws Exception {
+        when(physicals.get(0).createStatement()).thenThrow(new SQLException("Link failure", "08S01"));
+        Connection connection = pool.getConnection();
+        assertThrows(SQLException.class, connection::createStatement);
+        connection.close();
+        assertThat(pool.getStatistics().getIdle(), is(0));
+        assertThat(pool.getStatistics().getDestroyed(), is(1L));
+        verify(physicals.get(0)).close();
+    }
+
+    @Test
+    public void brokenStatementDiscarded() throws Exception {
+        Statement physical = mock(Statement.class);
+        when(physical.executeQuery("SELECT 1")).thenThrow(new SQLException("Link failure", "08S01"));
+        when(physicals.get(0).createStatement()).thenReturn(physical);
+        Connection connection = pool.getConnection();
+        Statement statement = connection.createStatement();
+        assertThrows(SQLException.class, () -> statement.executeQuery("SELECT 1"));
+        connection.close();
+        assertThat(pool.getStatistics().getDestroyed(), is(1L));
+        verify(physicals.get(0)).close();
+    }
+
+    @Test
+    public void closedHandleRejected() throws Exception {
+        Connection connection = pool.getConnection();
+        connection.close();
+        connection.close();
+        assertThat(connection.isClosed(), is(true));
+        assertThrows(SQLException.class, connection::createStatement);
+        assertThat(pool.getStatistics().getIdle(), is(1));
+        assertThat(pool.getStatistics().getActive(), is(0));
+    }
+
+    @Test
+    public void closedPool() throws Exception {
+        Connection borrowed = pool.getConnection();
+        pool.getConnection().close();
+        pool.close();
+        verify(physicals.get(1)).close();
+        assertThrows(SQLException.class, () -> pool.getConnection());
+        borrowed.close();
+        verify(physicals.get(0)).close();
+        assertThat(pool.getStatistics().getDestroyed(), is(2L));
+    }
+
+    @Test
+    public void housekeepingIdleTimeout() throws Exception {
+        pool.idleTimeout(1, TimeUnit.MINUTES);
+        pool.getConnection().close();
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(61));
+        pool.housekeeping();
+        assertThat(pool.getStatistics().getIdle(), is(0));
+        verify(physicals.get(0)).close();
+    }
+
+    @Test
+    public void housekeepingLeaks() throws Exception {
+        pool.leakThreshold(1, TimeUnit.SECONDS);
+        Connection connection = pool.getConnection();
+        pool.housekeeping();
+        assertThat(pool.getStatistics().getLeaks(), is(0L));
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        pool.housekeeping();
+        pool.housekeeping();
+        System.out.println("housekeepingLeaks: " + pool.getStatistics());
+        assertThat(pool.getStatistics().getLeaks(), is(1L));
+        connection.close();
+    }
+
+    @Test
+    public void housekeepingValidation() throws Exception {
+        Connection first = pool.getConnection();
+        Connection second = pool.getConnection();
+        first.close();
+        second.close();
+        when(physicals.get(1).isValid(PooledDataSource.DEFAULT_VALIDATION_TIMEOUT_SECONDS)).thenReturn(false);
+        pool.housekeeping();
+        verify(physicals.get(0), never()).isValid(PooledDataSource.DEFAULT_VALIDATION_TIMEOUT_SECONDS);
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(PooledDataSource.DEFAULT_VALIDATION_INTERVAL_MILLIS));
+        pool.housekeeping();
+        System.out.println("housekeepingValidation: " + pool.getStatistics());
+        assertThat(pool.getStatistics().getIdle(), is(1));
+        assertThat(pool.getStatistics().getValidationFailures(), is(1L));
+        verify(physicals.get(1)).close();
+        assertThat(pool.getConnection().unwrap(Connection.class), sameInstance(physicals.get(0)));
+    }
+
+    @Test
+    public void returnClosesStatements() throws Exception {
+        PreparedStatement physical = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(physical.executeQuery()).thenReturn(resultSet);
+        when(physical.getConnection()).thenReturn(physicals.get(0));
+        when(physicals.get(0).prepareStatement("SELECT 1")).thenReturn(physical);
+        Connection connection = pool.getConnection();
+        PreparedStatement statement = connection.prepareStatement("SELECT 1");
+        ResultSet wrapped = statement.executeQuery();
+        assertThat(statement.getConnection(), sameInstance(connection));
+        assertThat(wrapped.getStatement(), sameInstance(statement));
+        connection.close();
+        verify(physical).close();
+        assertThat(statement.isClosed(), is(true));
+        assertThrows(SQLException.class, statement::executeQuery);
+        assertThrows(SQLException.class, () -> statement.getConnection().createStatement());
+        verify(physicals.get(0), never()).close();
+        assertThat(pool.getStatistics().getIdle(), is(1));
+    }
+
+    @Test
+    public void returnRestoresState() throws Exception {
+        Connection physical = physicals.get(0);
+        when(physical.isReadOnly()).thenReturn(false);
+        when(physical.getTransactionIsolation()).thenReturn(Connection.TRANSACTION_READ_COMMITTED);
+        when(physical.getSchema()).thenReturn("PUBLIC");
+        Connection connection = pool.getConnection();
+        connection.setReadOnly(true);
+        connection.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        connection.setSchema("OTHER");
+        connection.setSchema("ANOTHER");
+        connection.close();
+        verify(physical).setReadOnly(false);
+        verify(physical).setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        verify(physical).setSchema("PUBLIC");
+        verify(physical, never()).setCatalog(anyString());
+        pool.getConnection().close();
+        verify(physical).setReadOnly(false);
+    }
+
+    @Test
+    public void returnRollsBack() throws Exception {
+        when(physicals.get(0).getAutoCommit()).thenReturn(false);
+        pool.getConnection().close();
+        verify(physicals.get(0)).rollback();
+        verify(physicals.get(0)).setAutoCommit(true);
+    }
+
+    @Test
+    public void timeout() throws Exception {
+        pool.maxSize(1).borrowTimeout(20, TimeUnit.MILLISECONDS);
+        Connection connection = pool.getConnection();
+        assertThrows(SQLTransientConnectionException.class, () -> pool.getConnection());
+        assertThat(pool.getStatistics().getTimeouts(), is(1L));
+        connection.close();
+        pool.getConnection().close();
+        assertThrows(IllegalStateException.class, () -> pool.maxSize(2));
+    }
+
+    @Test
+    public void waiterServed() throws Exception {
+        pool.maxSize(1);
+        Connection connection = pool.getConnection();
+        CompletableFuture<Connection> waiter = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.getConnection();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((pool.getStatistics().getWaiting() < 1) && (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(5);
+        }
+        assertThat(pool.getStatistics().getWaiting(), is(1));
+        connection.close();
+        Connection next = waiter.get(5, TimeUnit.SECONDS);
+        assertThat(next.unwrap(Connection.class), sameInstance(physicals.get(0)));
+        next.close();
+    }
+
+    @Test
+    public void withDatabase() throws Exception {
+        try (PooledDataSource database = new PooledDataSource("jdbc:h2:mem:pool;DB_CLOSE_DELAY=-1", "sa", "")
+                .maxSize(4)) {
+            ExecutorService executor = Executors.newFixedThreadPool(16);
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                int value = i;
+                results.add(executor.submit(() -> {
+                    try (Connection connection = database.getConnection();
+                         Statement statement = connection.createStatement();
+                         ResultSet resultSet = statement.executeQuery("SELECT " + value)) {
+                        resultSet.next();
+                        return resultSet.getInt(1);
+                    }
+                }));
+            }
+            for (int i = 0; i < 100; i++) {
+                assertThat(results.get(i).get(10, TimeUnit.SECONDS), is(i));
+            }
+            executor.shutdown();
+            System.out.println("withDatabase: " + database.getStatistics());
+            assertThat(database.getStatistics().getCreated(), lessThanOrEqualTo(4L));
+            assertThat(database.getStatistics().getBorrows(), is(100L));
+        }
+    }
+
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.processor;
+
+import org.craigmcc.library.model.Constants;
+import org.craigmcc.library.model.JdbcColumn;
+import org.craigmcc.library.model.JdbcTable;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>Annotation processor that generates a {@link org.craigmcc.library.model.ModelJdbc}
+ * implementation for each {@link org.craigmcc.library.model.Model} class
+ * annotated with {@link JdbcTable}.  The generated class extends
+ * {@link org.craigmcc.library.model.AbstractModelJdbc}, contains the SQL text
+ * for every statement as precomputed constants, and binds and reads columns
+ * by index through {@link org.craigmcc.library.model.Codec} instances that
+ * are resolved once, so it performs no reflection at runtime.</p>
+ *
+ * <p>The columns of each model are the standard {@link org.craigmcc.library.model.Model}
+ * columns (<code>id</code>, <code>published</code>, and <code>updated</code>)
+ * followed by every field annotated with {@link JdbcColumn}, in declaration
+ * order (superclass fields first).  The primary key is expected to be
+ * generated by the database on INSERT.</p>
+ *
+ * <p><strong>USAGE NOTES:</strong></p>
+ * <ul>
+ *     <li>Annotated classes must be concrete, with a no-arguments constructor
+ *         and a public getter and setter for each annotated field.  Problems
+ *         are reported as compilation errors on the offending element.</li>
+ *     <li>The generated <code>populateNext()</code> reads by index when the
+ *         <code>ResultSet</code> has exactly the columns of the generated
+ *         SELECT statements (ignoring case), and otherwise matches each
+ *         column label against the mapped column names (ignoring case, and
+ *         ignoring unknown labels), so it is safe to use with hand-written
+ *         queries as well.</li>
+ *     <li>Parameters are bound through the codec for each column, and
+ *         <code>null</code> values with <code>setNull()</code> and the
+ *         SQL type that corresponds to the Java type of the column.</li>
+ *     <li>The generated <code>findAllById()</code> uses an IN-list, and the
+ *         generated <code>upsert()</code> uses a standard
+ *         <code>MERGE ... USING (VALUES ...)</code> statement keyed on the
+ *         primary key (or an INSERT, when the primary key is
+ *         <code>null</code>).  Databases without a standard
+ *         <code>MERGE</code> should build their own statement with
+ *         <code>UpsertBuilder</code> from the SQL module.</li>
+ *     <li>For classes that implement {@link org.craigmcc.library.model.ChangeTracked},
+ *         the generated <code>populateNext()</code> records a snapshot of
+ *         each object, the generated <code>updateChanged()</code> sets
+ *         only the columns that have changed (and returns <code>null</code>
+ *         when no column has changed), and the generated <code>snapshot()</code>
+ *         records the committed values again after an update.</li>
+ * </ul>
+ */
+@SupportedAnnotationTypes("org.craigmcc.library.model.JdbcTable")
+public class ModelJdbcProcessor extends AbstractProcessor {
+
+    // Static Variables ------------------------------------------------------
+
+    /**
+     * <p>Suffix appended to the model class name to name the generated class.</p>
+     */
+    public static final String SUFFIX = "Jdbc";
+
+    private static final String MODEL_CLASS = "org.craigmcc.library.model.Model";
+
+    private static final String TRACKED_CLASS = "org.craigmcc.library.model.ChangeTracked";
+
+    // Public Methods --------------------------------------------------------
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations,
+                           RoundEnvironment roundEnvironment) {
+        for (Element element : roundEnvironment.getElementsAnnotatedWith(JdbcTable.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "@JdbcTable may only be applied to classes");
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            List<Column> columns = columns(type);
+            if (columns != null) {
+                generate(type, element.getAnnotation(JdbcTable.class).value(), columns);
+            }
+        }
+        return true;
+    }
+
+    // Private Methods -------------------------------------------------------
+
+    /**
+     * <p>Return the accessor of the specified type with the specified name
+     * and parameter count, or <code>null</code> if there is none.</p>
+     */
+    private ExecutableElement accessor(TypeElement type, String name, int parameters) {
+        for (ExecutableElement method : ElementFilter.methodsIn(
+                processingEnv.getElementUtils().getAllMembers(type))) {
+            if (method.getSimpleName().contentEquals(name) &&
+                    (method.getParameters().size() == parameters) &&
+                    method.getModifiers().contains(Modifier.PUBLIC) &&
+                    !method.getModifiers().contains(Modifier.STATIC)) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * <p>Return the boxed equivalent of the erasure of the specified type,
+     * as it would appear in source code.</p>
+     */
+    private String boxed(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return processingEnv.getTypeUtils()
+                    .boxedClass(processingEnv.getTypeUtils().getPrimitiveType(type.getKind()))
+                    .getQualifiedName().toString();
+        }
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /**
+     * <p>Describe the columns of the specified model class, or return
+     * <code>null</code> (after reporting errors) if it is not valid.</p>
+     */
+    private List<Column> columns(TypeElement type) {
+        boolean valid = true;
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            error(type, "@JdbcTable class must not be abstract");
+            valid = false;
+        }
+        if ((type.getNestingKind().isNested()) &&
+                !type.getModifiers().contains(Modifier.STATIC)) {
+            error(type, "@JdbcTable nested class must be static");
+            valid = false;
+        }
+        if (!subclassOfModel(type)) {
+            error(type, "@JdbcTable class must extend " + MODEL_CLASS);
+            valid = false;
+        }
+        boolean constructor = false;
+        for (ExecutableElement method : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (method.getParameters().isEmpty() &&
+                    !method.getModifiers().contains(Modifier.PRIVATE)) {
+                constructor = true;
+            }
+        }
+        if (!constructor) {
+            error(type, "@JdbcTable class must have a no-arguments constructor");
+            valid = false;
+        }
+
+        List<Column> columns = new ArrayList<>();
+        columns.add(new Column(Constants.ID_COLUMN, "getId", "setId", "java.lang.Long", false));
+        columns.add(new Column(Constants.PUBLISHED_COLUMN, "getPublished", "setPublished",
+                "java.time.LocalDateTime", false));
+        columns.add(new Column(Constants.UPDATED_COLUMN, "getUpdated", "setUpdated",
+                "java.time.LocalDateTime", false));
+        List<TypeElement> hierarchy = new ArrayList<>();
+        for (TypeElement current = type; current != null; current = superclass(current)) {
+            hierarchy.add(0, current);
+        }
+        for (TypeElement current : hierarchy) {
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                JdbcColumn annotation = field.getAnnotation(JdbcColumn.class);
+                if (annotation == null) {
+                    continue;
+                }
+                String name = field.getSimpleName().toString();
+                String column = annotation.value().isEmpty() ? name : annotation.value();
+                TypeMirror fieldType = field.asType();
+                String getter = "get" + capitalize(name);
+                if ((accessor(type, getter, 0) == null) &&
+                        (fieldType.getKind() == TypeKind.BOOLEAN)) {
+                    getter = "is" + capitalize(name);
+                }
+                String setter = "set" + capitalize(name);
+                if (accessor(type, getter, 0) == null) {
+                    error(field, "@JdbcColumn field requires a public getter " + getter + "()");
+                    valid = false;
+                }
+                if (accessor(type, setter, 1) == null) {
+                    error(field, "@JdbcColumn field requires a public setter " + setter + "()");
+                    valid = false;
+                }
+                for (Column existing : columns) {
+                    if (existing.column.equalsIgnoreCase(column)) {
+                        error(field, "Duplicate column name " + column);
+                        valid = false;
+                    }
+                }
+                columns.add(new Column(column, getter, setter, boxed(fieldType),
+                        fieldType.getKind().isPrimitive()));
+            }
+        }
+        return valid ? columns : null;
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    /**
+     * <p>Write the generated class for the specified model class.</p>
+     */
+    private void generate(TypeElement type, String table, List<Column> columns) {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String modelName = type.getQualifiedName().toString();
+        String className = type.getSimpleName() + SUFFIX;
+        String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, type);
+            try (Writer writer = file.openWriter()) {
+                writer.write(new ModelJdbcWriter(packageName, className, modelName, table,
+                        columns, tracked(type)).write());
+            }
+        } catch (IOException e) {
+            error(type, "Cannot write " + qualifiedName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * <p>Return <code>true</code> if the specified type is a subclass
+     * of {@link org.craigmcc.library.model.Model}.</p>
+     */
+    private boolean subclassOfModel(TypeElement type) {
+        for (TypeElement current = superclass(type); current != null; current = superclass(current)) {
+            if (current.getQualifiedName().contentEquals(MODEL_CLASS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * <p>Return the superclass of the specified type, or <code>null</code>
+     * when <code>Object</code> is reached.</p>
+     */
+    private TypeElement superclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+        return element.getQualifiedName().contentEquals("java.lang.Object") ? null : element;
+    }
+
+    /**
+     * <p>Return <code>true</code> if the specified type implements
+     * {@link org.craigmcc.library.model.ChangeTracked}.</p>
+     */
+    private boolean tracked(TypeElement type) {
+        TypeElement tracked = processingEnv.getElementUtils().getTypeElement(TRACKED_CLASS);
+        return (tracked != null) &&
+                processingEnv.getTypeUtils().isAssignable(type.asType(), tracked.asType());
+    }
+
+    // Support Classes -------------------------------------------------------
+
+    /**
+     * <p>Description of one mapped column.</p>
+     */
+    static class Column {
+
+        Column(String column, String getter, String setter, String type, boolean primitive) {
+            this.column = column;
+            this.getter = getter;
+            this.primitive = primitive;
+            this.setter = setter;
+            this.type = type;
+        }
+
+        final String column;
+        final String getter;
+        final boolean primitive;
+        final String setter;
+        final String type;
+
+    }
+
+}
@@ -0,0 +1,588 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.processor;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * <p>Writer for the source code of one generated
+ * {@link org.craigmcc.library.model.ModelJdbc} implementation.</p>
+ */
+class ModelJdbcWriter {
+
+    // Instance Variables ----------------------------------------------------
+
+    private final String className;
+    private final List<ModelJdbcProcessor.Column> columns;
+    private final String modelName;
+    private final String packageName;
+    private final StringBuilder sb = new StringBuilder(8192);
+    private final String table;
+    private final boolean tracked;
+
+    // Constructors ----------------------------------------------------------
+
+    ModelJdbcWriter(String packageName, String className, String modelName,
+                    String table, List<ModelJdbcProcessor.Column> columns,
+                    boolean tracked) {
+        this.className = className;
+        this.columns = columns;
+        this.modelName = modelName;
+        this.packageName = packageName;
+        this.table = table;
+        this.tracked = tracked;
+    }
+
+    // Package Methods -------------------------------------------------------
+
+    /**
+     * <p>Return the complete source code of the generated class.</p>
+     */
+    String write() {
+        if (!packageName.isEmpty()) {
+            line("package " + packageName + ";");
+            line("");
+        }
+        line("import org.craigmcc.library.model.AbstractModelJdbc;");
+        line("import org.craigmcc.library.model.Codec;");
+        line("import org.craigmcc.library.model.Codecs;");
+        line("import org.craigmcc.library.model.ColumnLayout;");
+        line("import org.craigmcc.library.shared.model.InList;");
+        line("");
+        line("import java.sql.Connection;");
+        line("import java.sql.PreparedStatement;");
+        line("import java.sql.ResultSet;");
+        line("import java.sql.SQLException;");
+        line("import java.sql.Types;");
+        line("import java.util.Collection;");
+        line("import java.util.Locale;");
+        line("");
+        line("/**");
+        line(" * <p>{@link org.craigmcc.library.model.ModelJdbc} implementation for");
+        line(" * {@link " + modelName + "}, generated by");
+        line(" * {@code org.craigmcc.library.processor.ModelJdbcProcessor}.  Do not edit.</p>");
+        line(" */");
+        line("public class " + className + " extends AbstractModelJdbc<" + modelName + "> {");
+        line("");
+        writeConstants();
+        writeDelete();
+        writeFindAll();
+        writeFindAllById();
+        writeFindById();
+        writeGetTable();
+        writeInsert();
+        writePopulateNext();
+        if (tracked) {
+            writeSnapshot();
+        }
+        writeUpdate();
+        if (tracked) {
+            writeUpdateChanged();
+        }
+        writeUpsert();
+        line("    // Private Methods -------------------------------------------------------");
+        line("");
+        writeField();
+        writePopulateMapped();
+        writeMapping();
+        line("}");
+        return sb.toString();
+    }
+
+    // Private Methods -------------------------------------------------------
+
+    /**
+     * <p>Return the columns as a comma separated list, optionally skipping
+     * the primary key and optionally followed by " = ?".</p>
+     */
+    private String columnList(boolean includeId, String suffix) {
+        StringBuilder list = new StringBuilder();
+        for (int i = includeId ? 0 : 1; i < columns.size(); i++) {
+            if (list.length() > 0) {
+                list.append(", ");
+            }
+            list.append(columns.get(i).column).append(suffix);
+        }
+        return list.toString();
+    }
+
+    /**
+     * <p>Return the name of the codec constant for the column at the
+     * specified (zero-relative) index, which is unique even if two column
+     * names differ only in characters that are not valid in identifiers.</p>
+     */
+    private String constant(int index) {
+        String name = "CODEC_" + columns.get(index).column
+                .replaceAll("[^A-Za-z0-9]", "_").toUpperCase(Locale.ROOT);
+        for (int i = 0; i < index; i++) {
+            if (name.equals("CODEC_" + columns.get(i).column
+                    .replaceAll("[^A-Za-z0-9]", "_").toUpperCase(Locale.ROOT))) {
+                return name + "_" + (index + 1);
+            }
+        }
+        return name;
+    }
+
+    private static String literal(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private void line(String text) {
+        sb.append(text).append('\n');
+    }
+
+    private String placeholders(int count) {
+        StringBuilder list = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            list.append((i > 0) ? ", ?" : "?");
+        }
+        return list.toString();
+    }
+
+    /**
+     * <p>Return the name of the <code>java.sql.Types</code> constant used to
+     * bind a <code>null</code> value of the specified Java type.</p>
+     */
+    private static String sqlType(String type) {
+        switch (type) {
+            case "byte[]":
+                return "VARBINARY";
+            case "java.lang.Boolean":
+                return "BOOLEAN";
+            case "java.lang.Byte":
+                return "TINYINT";
+            case "java.lang.Double":
+                return "DOUBLE";
+            case "java.lang.Float":
+                return "REAL";
+            case "java.lang.Integer":
+                return "INTEGER";
+            case "java.lang.Long":
+                return "BIGINT";
+            case "java.lang.Short":
+                return "SMALLINT";
+            case "java.lang.String":
+                return "VARCHAR";
+            case "java.math.BigDecimal":
+                return "NUMERIC";
+            case "java.time.LocalDate":
+                return "DATE";
+            case "java.time.LocalDateTime":
+                return "TIMESTAMP";
+            case "java.time.LocalTime":
+                return "TIME";
+            case "java.time.OffsetDateTime":
+                return "TIMESTAMP_WITH_TIMEZONE";
+            default:
+                return "OTHER";
+        }
+    }
+
+    /**
+     * <p>Return the text of a standard <code>MERGE</code> statement that
+     * inserts or updates a row by primary key, in the form that
+     * <code>UpsertBuilder</code> renders for the STANDARD dialect.</p>
+     */
+    private String upsert() {
+        String id = columns.get(0).column;
+        StringBuilder updates = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            String column = columns.get(i).column;
+            if (i > 0) {
+                updates.append((i > 1) ? ", " : "").append(column).append(" = s.").append(column);
+            }
+            values.append((i > 0) ? ", s." : "s.").append(column);
+        }
+        return "MERGE INTO " + table + " USING (VALUES (" + placeholders(columns.size()) +
+                ")) AS s (" + columnList(true, "") + ") ON (" + table + "." + id + " = s." + id +
+                ") WHEN MATCHED THEN UPDATE SET " + updates +
+                " WHEN NOT MATCHED THEN INSERT (" + columnList(true, "") + ") VALUES (" +
+                values + ")";
+    }
+
+    /**
+     * <p>Write the statements that bind the value of the column at the
+     * specified (zero-relative) index to the specified parameter, with
+     * its codec or with a typed <code>setNull()</code>.</p>
+     */
+    private void writeBind(int column, int index) {
+        writeBind("        ", column, String.valueOf(index), "value" + index);
+    }
+
+    /**
+     * <p>Write the statements that bind the value of the column at the
+     * specified (zero-relative) index to the parameter given by the
+     * specified expression, declaring the specified local variable for
+     * values that might be <code>null</code>.</p>
+     */
+    private void writeBind(String indent, int column, String index, String variable) {
+        ModelJdbcProcessor.Column mapped = columns.get(column);
+        if (mapped.primitive) {
+            line(indent + constant(column) + ".bind(statement, " + index + ", model." +
+                    mapped.getter + "());");
+            return;
+        }
+        line(indent + mapped.type + " " + variable + " = model." + mapped.getter + "();");
+        line(indent + "if (" + variable + " == null) {");
+        line(indent + "    statement.setNull(" + index + ", Types." + sqlType(mapped.type) + ");");
+        line(indent + "} else {");
+        line(indent + "    " + constant(column) + ".bind(statement, " + index + ", " + variable + ");");
+        line(indent + "}");
+    }
+
+    private void writeBinds(boolean includeId) {
+        int index = 1;
+        for (int i = 1; i < columns.size(); i++) {
+            writeBind(i, index++);
+        }
+        if (includeId) {
+            writeBind(0, index);
+        }
+    }
+
+    private void writeConstants() {
+        String id = columns.get(0).column;
+        String select = "SELECT " + columnList(true, "") + " FROM " + table;
+        line("    // Static Variables ------------------------------------------------------");
+        line("");
+        line("    public static final String TABLE = " + literal(table) + ";");
+        line("");
+        line("    public static final String DELETE_SQL =");
+        line("            " + literal("DELETE FROM " + table + " WHERE " + id + " = ?") + ";");
+        line("    public static final String FIND_ALL_SQL =");
+        line("            " + literal(select + " ORDER BY " + id) + ";");
+        line("    public static final String FIND_ALL_BY_ID_PREFIX =");
+        line("            " + literal(select + " WHERE " + id + " IN (") + ";");
+        line("    public static final String FIND_ALL_BY_ID_SUFFIX =");
+        line("            " + literal(") ORDER BY " + id) + ";");
+        line("    public static final String FIND_BY_ID_SQL =");
+        line("            " + literal(select + " WHERE " + id + " = ?") + ";");
+        line("    public static final String INSERT_SQL =");
+        line("            " + literal("INSERT INTO " + table + " (" + columnList(false, "") +
+                ") VALUES (" + placeholders(columns.size() - 1) + ")") + ";");
+        line("    public static final String UPDATE_SQL =");
+        line("            " + literal("UPDATE " + table + " SET " + columnList(false, " = ?") +
+                " WHERE " + id + " = ?") + ";");
+        line("    public static final String UPSERT_SQL =");
+        line("            " + literal(upsert()) + ";");
+        line("");
+        line("    /**");
+        line("     * <p>Shape of the generated SELECT statements, as reported by");
+        line("     * <code>ColumnLayout.getShape()</code>.</p>");
+        line("     */");
+        line("    public static final String SHAPE = " +
+                literal(columnList(true, "").replace(" ", "")) + ";");
+        line("");
+        line("    private static final String[] KEYS = { " + literal(id) + " };");
+        line("");
+        for (int i = 0; i < columns.size(); i++) {
+            line("    private static final Codec<" + columns.get(i).type + "> " + constant(i) + " =");
+            line("            Codecs.forType(" + columns.get(i).type + ".class);");
+        }
+        line("");
+        line("    // Instance Variables ----------------------------------------------------");
+        line("");
+        line("    private volatile Mapping mapping;");
+        line("");
+        line("    private volatile ColumnLayout matched;");
+        line("");
+        line("    // Public Methods --------------------------------------------------------");
+        line("");
+    }
+
+    private void writeDelete() {
+        line("    @Override");
+        line("    public PreparedStatement delete(Connection connection, Long id)");
+        line("            throws SQLException {");
+        line("        PreparedStatement statement = connection.prepareStatement(DELETE_SQL);");
+        line("        " + constant(0) + ".bind(statement, 1, id);");
+        line("        return statement;");
+        line("    }");
+        line("");
+    }
+
+    /**
+     * <p>Write <code>field()</code>, which maps a column label to the
+     * one-relative index of the column in the generated SELECT statements.</p>
+     */
+    private void writeField() {
+        line("    private static int field(String label) {");
+        line("        switch (label.toLowerCase(Locale.ROOT)) {");
+        for (int i = 0; i < columns.size(); i++) {
+            line("            case " + literal(columns.get(i).column.toLowerCase(Locale.ROOT)) + ":");
+            line("                return " + (i + 1) + ";");
+        }
+        line("            default:");
+        line("                return 0;");
+        line("        }");
+        line("    }");
+        line("");
+    }
+
+    private void writeFindAll() {
+        line("    @Override");
+        line("    public PreparedStatement findAll(Connection connection)");
+        line("            throws SQLException {");
+        line("        return connection.prepareStatement(FIND_ALL_SQL);");
+        line("    }");
+        line("");
+    }
+
+    private void writeFindAllById() {
+        line("    @Override");
+        line("    public PreparedStatement findAllById(Connection connection, Collection<Long> ids)");
+        line("            throws SQLException {");
+        line("        int count = ids.isEmpty() ? 0 : InList.bucket(ids.size());");
+        line("        StringBuilder sql = new StringBuilder(FIND_ALL_BY_ID_PREFIX.length() +");
+        line("                FIND_ALL_BY_ID_SUFFIX.length() + (3 * count) + 4);");
+        line("        sql.append(FIND_ALL_BY_ID_PREFIX);");
+        line("        if (count == 0) {");
+        line("            sql.append(\"NULL\");");
+        line("        }");
+        line("        for (int i = 0; i < count; i++) {");
+        line("            sql.append((i > 0) ? \", ?\" : \"?\");");
+        line("        }");
+        line("        sql.append(FIND_ALL_BY_ID_SUFFIX);");
+        line("        PreparedStatement statement = connection.prepareStatement(sql.toString());");
+        line("        int index = 1;");
+        line("        Long last = null;");
+        line("        for (Long id : ids) {");
+        line("            " + constant(0) + ".bind(statement, index++, id);");
+        line("            last = id;");
+        line("        }");
+        line("        while (index <= count) {");
+        line("            " + constant(0) + ".bind(statement, index++, last);");
+        line("        }");
+        line("        return statement;");
+        line("    }");
+        line("");
+    }
+
+    private void writeFindById() {
+        line("    @Override");
+        line("    public PreparedStatement findById(Connection connection, Long id)");
+        line("            throws SQLException {");
+        line("        PreparedStatement statement = connection.prepareStatement(FIND_BY_ID_SQL);");
+        line("        " + constant(0) + ".bind(statement, 1, id);");
+        line("        return statement;");
+        line("    }");
+        line("");
+    }
+
+    private void writeGetTable() {
+        line("    @Override");
+        line("    public String getTable() {");
+        line("        return TABLE;");
+        line("    }");
+        line("");
+    }
+
+    private void writeInsert() {
+        line("    @Override");
+        line("    public PreparedStatement insert(Connection connection, " + modelName + " model)");
+        line("            throws SQLException {");
+        line("        PreparedStatement statement = connection.prepareStatement(INSERT_SQL, KEYS);");
+        writeBinds(false);
+        line("        return statement;");
+        line("    }");
+        line("");
+    }
+
+    /**
+     * <p>Write the <code>Mapping</code> class, which caches the result of
+     * <code>field()</code> for each column of the most recently seen
+     * <code>ColumnLayout</code> that did not match the generated shape.</p>
+     */
+    private void writeMapping() {
+        line("    // Support Classes -------------------------------------------------------");
+        line("");
+        line("    private static final class Mapping {");
+        line("");
+        line("        Mapping(ColumnLayout layout) {");
+        line("            this.fields = new int[layout.size()];");
+        line("            this.layout = layout;");
+        line("            for (int i = 0; i < fields.length; i++) {");
+        line("                fields[i] = field(layout.getLabel(i + 1));");
+        line("            }");
+        line("        }");
+        line("");
+        line("        final int[] fields;");
+        line("        final ColumnLayout layout;");
+        line("");
+        line("    }");
+        line("");
+    }
+
+    /**
+     * <p>Write <code>populateMapped()</code>, which reads the columns of a
+     * <code>ResultSet</code> that does not have the shape of the generated
+     * SELECT statements by label, so that <code>@JdbcColumn</code> names
+     * are honored and unknown columns are ignored.</p>
+     */
+    private void writePopulateMapped() {
+        line("    private " + modelName + " populateMapped(ResultSet resultSet, ColumnLayout layout)");
+        line("            throws SQLException {");
+        line("        Mapping mapping = this.mapping;");
+        line("        if ((mapping == null) || (mapping.layout != layout)) {");
+        line("            mapping = new Mapping(layout);");
+        line("            this.mapping = mapping;");
+        line("        }");
+        line("        " + modelName + " model = new " + modelName + "();");
+        line("        int[] fields = mapping.fields;");
+        line("        for (int i = 0; i < fields.length; i++) {");
+        line("            switch (fields[i]) {");
+        for (int i = 0; i < columns.size(); i++) {
+            ModelJdbcProcessor.Column column = columns.get(i);
+            String read = constant(i) + ".read(resultSet, i + 1)";
+            line("                case " + (i + 1) + ": {");
+            if (column.primitive) {
+                line("                    " + column.type + " value = " + read + ";");
+                line("                    if (value != null) {");
+                line("                        model." + column.setter + "(value);");
+                line("                    }");
+            } else {
+                line("                    model." + column.setter + "(" + read + ");");
+            }
+            if (tracked) {
+                line("                    model.snapshot(" + literal(column.column) + ", model." +
+                        column.getter + "());");
+            }
+            line("                    break;");
+            line("                }");
+        }
+        line("                default:");
+        line("                    break;");
+        line("            }");
+        line("        }");
+        line("        return model;");
+        line("    }");
+        line("");
+    }
+
+    private void writePopulateNext() {
+        line("    @Override");
+        line("    public " + modelName + " populateNext(ResultSet resultSet)");
+        line("            throws SQLException {");
+        line("        if (!resultSet.next()) {");
+        line("            return null;");
+        line("        }");
+        line("        ColumnLayout layout = ColumnLayout.of(resultSet);");
+        line("        if (layout != matched) {");
+        line("            if (!SHAPE.equalsIgnoreCase(layout.getShape())) {");
+        line("                return populateMapped(resultSet, layout);");
+        line("            }");
+        line("            matched = layout;");
+        line("        }");
+        line("        " + modelName + " model = new " + modelName + "();");
+        for (int i = 0; i < columns.size(); i++) {
+            ModelJdbcProcessor.Column column = columns.get(i);
+            String read = constant(i) + ".read(resultSet, " + (i + 1) + ")";
+            if (column.primitive) {
+                String variable = "value" + (i + 1);
+                line("        " + column.type + " " + variable + " = " + read + ";");
+                line("        if (" + variable + " != null) {");
+                line("            model." + column.setter + "(" + variable + ");");
+                line("        }");
+            } else {
+                line("        model." + column.setter + "(" + read + ");");
+            }
+        }
+        if (tracked) {
+            line("        snapshot(model);");
+        }
+        line("        return model;");
+        line("    }");
+        line("");
+    }
+
+    private void writeSnapshot() {
+        line("    @Override");
+        line("    public void snapshot(" + modelName + " model) {");
+        for (ModelJdbcProcessor.Column column : columns) {
+            line("        model.snapshot(" + literal(column.column) + ", model." +
+                    column.getter + "());");
+        }
+        line("    }");
+        line("");
+    }
+
+    private void writeUpdate() {
+        line("    @Override");
+        line("    public PreparedStatement update(Connection connection, " + modelName + " model)");
+        line("            throws SQLException {");
+        line("        PreparedStatement statement = connection.prepareStatement(UPDATE_SQL);");
+        writeBinds(true);
+        line("        return statement;");
+        line("    }");
+        line("");
+    }
+
+    private void writeUpdateChanged() {
+        line("    @Override");
+        line("    public PreparedStatement updateChanged(Connection connection, " + modelName + " model)");
+        line("            throws SQLException {");
+        StringBuilder any = new StringBuilder();
+        for (int i = 1; i < columns.size(); i++) {
+            ModelJdbcProcessor.Column column = columns.get(i);
+            line("        boolean changed" + (i + 1) + " = model.isChanged(" +
+                    literal(column.column) + ", model." + column.getter + "());");
+            any.append((i > 1) ? " || changed" : "changed").append(i + 1);
+        }
+        line("        if (!(" + any + ")) {");
+        line("            return null;");
+        line("        }");
+        line("        StringBuilder sql = new StringBuilder(UPDATE_SQL.length());");
+        line("        sql.append(" + literal("UPDATE " + table + " SET ") + ");");
+        for (int i = 1; i < columns.size(); i++) {
+            line("        if (changed" + (i + 1) + ") {");
+            line("            sql.append(" + literal(columns.get(i).column + " = ?, ") + ");");
+            line("        }");
+        }
+        line("        sql.setLength(sql.length() - 2);");
+        line("        sql.append(" + literal(" WHERE " + columns.get(0).column + " = ?") + ");");
+        line("        PreparedStatement statement = connection.prepareStatement(sql.toString());");
+        line("        int index = 1;");
+        for (int i = 1; i < columns.size(); i++) {
+            line("        if (changed" + (i + 1) + ") {");
+            writeBind("            ", i, "index++", "value" + (i + 1));
+            line("        }");
+        }
+        writeBind("        ", 0, "index", "value1");
+        line("        return statement;");
+        line("    }");
+        line("");
+    }
+
+    private void writeUpsert() {
+        line("    @Override");
+        line("    public PreparedStatement upsert(Connection connection, " + modelName + " model)");
+        line("            throws SQLException {");
+        line("        if (model." + columns.get(0).getter + "() == null) {");
+        line("            return insert(connection, model);");
+        line("        }");
+        line("        PreparedStatement statement = connection.prepareStatement(UPSERT_SQL);");
+        line("        " + constant(0) + ".bind(statement, 1, model." + columns.get(0).getter + "());");
+        for (int i = 1; i < columns.size(); i++) {
+            writeBind(i, i + 1);
+        }
+        line("        return statement;");
+        line("    }");
+        line("");
+    }
+
+}
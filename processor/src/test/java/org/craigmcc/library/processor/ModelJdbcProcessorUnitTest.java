@@ -0,0 +1,293 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.processor;
+
+import org.craigmcc.library.model.Model;
+import org.craigmcc.library.model.ModelJdbc;
+import org.craigmcc.library.shared.model.InList;
+import org.junit.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import javax.validation.constraints.NotNull;
+import java.io.File;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ModelJdbcProcessorUnitTest {
+
+    private static final String CUSTOMER =
+            "package test;\n" +
+            "import org.craigmcc.library.model.*;\n" +
+            "@JdbcTable(\"customers\")\n" +
+            "public class Customer extends Model<Customer> {\n" +
+            "    @JdbcColumn(\"first_name\") private String firstName;\n" +
+            "    @JdbcColumn private int points;\n" +
+            "    @JdbcColumn private boolean active;\n" +
+            "    private String ignored;\n" +
+            "    public String getFirstName() { return firstName; }\n" +
+            "    public void setFirstName(String firstName) { this.firstName = firstName; }\n" +
+            "    public int getPoints() { return points; }\n" +
+            "    public void setPoints(int points) { this.points = points; }\n" +
+            "    public boolean isActive() { return active; }\n" +
+            "    public void setActive(boolean active) { this.active = active; }\n" +
+            "    public void copy(Customer that) { }\n" +
+            "}\n";
+
+    @Test
+    public void generateModelJdbc() throws Exception {
+        File output = Files.createTempDirectory("processor").toFile();
+        DiagnosticCollector<JavaFileObject> diagnostics = compile(output, "test.Customer", CUSTOMER);
+        System.out.println("generateModelJdbc: " + diagnostics.getDiagnostics());
+        assertThat(errors(diagnostics), is(0));
+        String source = new String(Files.readAllBytes(
+                Paths.get(output.getPath(), "test", "CustomerJdbc.java")), "UTF-8");
+        assertThat(source, containsString("extends AbstractModelJdbc<test.Customer>"));
+        try (URLClassLoader loader = new URLClassLoader(
+                new URL[] { output.toURI().toURL() }, getClass().getClassLoader())) {
+            Class<?> generated = loader.loadClass("test.CustomerJdbc");
+            assertThat(generated.getField("FIND_BY_ID_SQL").get(null),
+                    is("SELECT id, published, updated, first_name, points, active" +
+                            " FROM customers WHERE id = ?"));
+            assertThat(generated.getField("INSERT_SQL").get(null),
+                    is("INSERT INTO customers (published, updated, first_name, points, active)" +
+                            " VALUES (?, ?, ?, ?, ?)"));
+            assertThat(generated.getField("UPDATE_SQL").get(null),
+                    is("UPDATE customers SET published = ?, updated = ?, first_name = ?," +
+                            " points = ?, active = ? WHERE id = ?"));
+            assertThat(generated.getField("DELETE_SQL").get(null),
+                    is("DELETE FROM customers WHERE id = ?"));
+            assertThat(generated.getField("SHAPE").get(null),
+                    is("id,published,updated,first_name,points,active"));
+            assertThat(generated.getField("UPSERT_SQL").get(null),
+                    is("MERGE INTO customers USING (VALUES (?, ?, ?, ?, ?, ?))" +
+                            " AS s (id, published, updated, first_name, points, active)" +
+                            " ON (customers.id = s.id) WHEN MATCHED THEN UPDATE SET" +
+                            " published = s.published, updated = s.updated," +
+                            " first_name = s.first_name, points = s.points, active = s.active" +
+                            " WHEN NOT MATCHED THEN INSERT" +
+                            " (id, published, updated, first_name, points, active)" +
+                            " VALUES (s.id, s.published, s.updated, s.first_name, s.points, s.active)"));
+        }
+        assertThat(source, containsString("statement.setNull(3, Types.VARCHAR);"));
+        assertThat(source, containsString("CODEC_POINTS.bind(statement, 4, model.getPoints());"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void generatedStatements() throws Exception {
+        File output = Files.createTempDirectory("processor").toFile();
+        DiagnosticCollector<JavaFileObject> diagnostics = compile(output, "test.Customer", CUSTOMER);
+        assertThat(errors(diagnostics), is(0));
+        try (URLClassLoader loader = new URLClassLoader(
+                new URL[] { output.toURI().toURL() }, getClass().getClassLoader());
+             Connection connection = DriverManager.getConnection("jdbc:h2:mem:processor")) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE customers (" +
+                        "id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                        "published TIMESTAMP, updated TIMESTAMP, first_name VARCHAR(50), " +
+                        "points INT NOT NULL, active BOOLEAN NOT NULL)");
+            }
+            Class<?> type = loader.loadClass("test.Customer");
+            ModelJdbc<Model> jdbc = (ModelJdbc<Model>)
+                    loader.loadClass("test.CustomerJdbc").getConstructor().newInstance();
+            Method setFirstName = type.getMethod("setFirstName", String.class);
+            Method setPoints = type.getMethod("setPoints", int.class);
+
+            // INSERT binds a null String with a typed setNull()
+            Model first = (Model) type.getConstructor().newInstance();
+            setPoints.invoke(first, 10);
+            try (PreparedStatement statement = jdbc.insert(connection, first)) {
+                assertThat(statement.executeUpdate(), is(1));
+            }
+
+            // MERGE updates the existing row and inserts a new one
+            Model second = (Model) type.getConstructor().newInstance();
+            second.setId(1L);
+            setFirstName.invoke(second, "Fred");
+            setPoints.invoke(second, 20);
+            try (PreparedStatement statement = jdbc.upsert(connection, second)) {
+                assertThat(statement.executeUpdate(), is(1));
+            }
+            second.setId(2L);
+            setFirstName.invoke(second, "Barney");
+            try (PreparedStatement statement = jdbc.upsert(connection, second)) {
+                assertThat(statement.executeUpdate(), is(1));
+            }
+
+            // IN-list lookup, including an empty list
+            try (PreparedStatement statement = jdbc.findAllById(connection, Arrays.asList(2L, 1L, 3L));
+                 ResultSet resultSet = statement.executeQuery()) {
+                List<Model> models = jdbc.populateAll(resultSet);
+                assertThat(models.size(), is(2));
+                assertThat(type.getMethod("getFirstName").invoke(models.get(0)), is("Fred"));
+                assertThat(type.getMethod("getPoints").invoke(models.get(1)), is(20));
+            }
+            try (PreparedStatement statement = jdbc.findAllById(connection, Collections.emptyList());
+                 ResultSet resultSet = statement.executeQuery()) {
+                assertThat(jdbc.populateAll(resultSet).size(), is(0));
+            }
+
+            // A different shape is matched by label, honoring the column names
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(
+                         "SELECT points, extra, first_name FROM" +
+                                 " (SELECT c.*, 'x' AS extra FROM customers c) WHERE id = 2")) {
+                Model model = jdbc.populateNext(resultSet);
+                assertThat(model.getId(), nullValue());
+                assertThat(type.getMethod("getFirstName").invoke(model), is("Barney"));
+                assertThat(type.getMethod("getPoints").invoke(model), is(20));
+            }
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void generateTracked() throws Exception {
+        File output = Files.createTempDirectory("processor").toFile();
+        DiagnosticCollector<JavaFileObject> diagnostics = compile(output, "test.Customer",
+                CUSTOMER.replace("extends Model<Customer>",
+                        "extends Model<Customer> implements ChangeTracked"));
+        assertThat(diagnostics.getDiagnostics(), is(empty()));
+        String source = new String(Files.readAllBytes(
+                Paths.get(output.getPath(), "test", "CustomerJdbc.java")), "UTF-8");
+        assertThat(source, containsString("model.snapshot(\"first_name\", model.getFirstName());"));
+        assertThat(source, containsString("if (!(changed2 || changed3 || changed4 || changed5 || changed6)) {"));
+        try (URLClassLoader loader = new URLClassLoader(
+                new URL[] { output.toURI().toURL() }, getClass().getClassLoader());
+             Connection connection = DriverManager.getConnection("jdbc:h2:mem:tracked")) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE customers (" +
+                        "id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                        "published TIMESTAMP, updated TIMESTAMP, first_name VARCHAR(50), " +
+                        "points INT NOT NULL, active BOOLEAN NOT NULL)");
+                statement.execute("INSERT INTO customers (first_name, points, active)" +
+                        " VALUES ('Fred', 10, TRUE)");
+            }
+            Class<?> type = loader.loadClass("test.Customer");
+            ModelJdbc<Model> jdbc = (ModelJdbc<Model>)
+                    loader.loadClass("test.CustomerJdbc").getConstructor().newInstance();
+            Model model;
+            try (PreparedStatement statement = jdbc.findById(connection, 1L);
+                 ResultSet resultSet = statement.executeQuery()) {
+                model = jdbc.populateNext(resultSet);
+            }
+            assertThat(jdbc.updateChanged(connection, model), nullValue());
+            try (PreparedStatement statement = jdbc.update(connection, model)) {
+                assertThat(statement.toString(),
+                        containsString("UPDATE customers SET published = ?, updated = ?,"));
+            }
+
+            // Only the changed column is sent
+            type.getMethod("setFirstName", String.class).invoke(model, "Barney");
+            try (PreparedStatement statement = jdbc.updateChanged(connection, model)) {
+                assertThat(statement.toString(),
+                        containsString("UPDATE customers SET first_name = ? WHERE id = ?"));
+                assertThat(statement.executeUpdate(), is(1));
+            }
+
+            // The committed values become the new snapshot
+            jdbc.snapshot(model);
+            assertThat(jdbc.updateChanged(connection, model), nullValue());
+            type.getMethod("setPoints", int.class).invoke(model, 20);
+            try (PreparedStatement statement = jdbc.updateChanged(connection, model)) {
+                assertThat(statement.toString(),
+                        containsString("UPDATE customers SET points = ? WHERE id = ?"));
+                assertThat(statement.executeUpdate(), is(1));
+            }
+        }
+    }
+
+    @Test
+    public void missingSetter() throws Exception {
+        File output = Files.createTempDirectory("processor").toFile();
+        DiagnosticCollector<JavaFileObject> diagnostics = compile(output, "test.Broken",
+                "package test;\n" +
+                "import org.craigmcc.library.model.*;\n" +
+                "@JdbcTable(\"broken\")\n" +
+                "public class Broken extends Model<Broken> {\n" +
+                "    @JdbcColumn private String name;\n" +
+                "    public String getName() { return name; }\n" +
+                "    public void copy(Broken that) { }\n" +
+                "}\n");
+        System.out.println("missingSetter: " + diagnostics.getDiagnostics());
+        assertThat(errors(diagnostics), is(1));
+        assertThat(diagnostics.getDiagnostics().get(0).getMessage(null),
+                containsString("setName()"));
+    }
+
+    // Private Methods -------------------------------------------------------
+
+    private DiagnosticCollector<JavaFileObject> compile(File output, String name, String source)
+            throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        String classpath = location(Model.class) + File.pathSeparator + location(InList.class) +
+                File.pathSeparator + location(NotNull.class);
+        List<String> options = Arrays.asList("-d", output.getPath(), "-s", output.getPath(),
+                "-classpath", classpath);
+        JavaFileObject file = new SimpleJavaFileObject(
+                URI.create("string:///" + name.replace('.', '/') + ".java"),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics,
+                options, null, Collections.singletonList(file));
+        task.setProcessors(Collections.singletonList(new ModelJdbcProcessor()));
+        task.call();
+        return diagnostics;
+    }
+
+    private int errors(DiagnosticCollector<JavaFileObject> diagnostics) {
+        int count = 0;
+        for (Diagnostic<?> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private String location(Class<?> type) throws Exception {
+        return new File(type.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+    }
+
+}
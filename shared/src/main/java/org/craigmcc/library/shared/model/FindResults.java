@@ -0,0 +1,71 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.shared.model;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Results of a batch lookup by primary key, such as
+ * <code>findAllById()</code> on the <code>ModelService</code> of either
+ * model module.  Matched objects
+ * are keyed by primary key (in the order the keys were requested), and
+ * keys that did not match anything are reported separately rather than
+ * causing a <code>NotFound</code> exception.</p>
+ *
+ * @param <M> The model class that was looked up
+ */
+public class FindResults<M> {
+
+    // Instance Variables ----------------------------------------------------
+
+    private final Map<Long, M> found;
+    private final List<Long> missing;
+
+    // Constructors ----------------------------------------------------------
+
+    public FindResults(Map<Long, M> found, List<Long> missing) {
+        this.found = Collections.unmodifiableMap(found);
+        this.missing = Collections.unmodifiableList(missing);
+    }
+
+    // Property Methods ------------------------------------------------------
+
+    /**
+     * <p>Return the matched model objects, keyed by primary key,
+     * in the order that the keys were requested.</p>
+     */
+    public Map<Long, M> getFound() {
+        return found;
+    }
+
+    /**
+     * <p>Return the requested primary keys that did not match any
+     * model object, in the order that they were requested.</p>
+     */
+    public List<Long> getMissing() {
+        return missing;
+    }
+
+    // Public Methods --------------------------------------------------------
+
+    @Override
+    public String toString() {
+        return "FindResults{found=" + found.keySet() + ", missing=" + missing + "}";
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.shared.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Static utility methods for IN-lists of primary keys (or other values),
+ * shared by the model modules and the statement builders.  Lists are
+ * padded (by repeating the last value) to the next power of two, so that
+ * the number of distinct statement texts for lists of varying length is
+ * logarithmic instead of linear, and database plan caches and statement
+ * caches are not flooded with one entry per list length.</p>
+ */
+public final class InList {
+
+    // Constructors ----------------------------------------------------------
+
+    private InList() {
+    }
+
+    // Static Methods --------------------------------------------------------
+
+    /**
+     * <p>Return the number of placeholders to render for an IN-list of the
+     * specified length, which is the smallest power of two that is not
+     * less than it.</p>
+     *
+     * @param count Number of values in the list
+     */
+    public static int bucket(int count) {
+        return (count <= 1) ? 1 : Integer.highestOneBit(count - 1) << 1;
+    }
+
+    /**
+     * <p>Return the specified values padded to <code>bucket()</code>
+     * entries by repeating the last value.  The specified list is returned
+     * unchanged if it is empty or already has that many entries.</p>
+     *
+     * @param values Values to be padded
+     */
+    public static <T> List<T> pad(List<T> values) {
+        int bucket = bucket(values.size());
+        if (values.isEmpty() || (values.size() == bucket)) {
+            return values;
+        }
+        List<T> padded = new ArrayList<>(bucket);
+        padded.addAll(values);
+        T last = values.get(values.size() - 1);
+        while (padded.size() < bucket) {
+            padded.add(last);
+        }
+        return padded;
+    }
+
+}
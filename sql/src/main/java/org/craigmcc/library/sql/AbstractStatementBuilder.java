@@ -15,12 +15,17 @@
  */
 package org.craigmcc.library.sql;
 
+import org.craigmcc.library.model.Codecs;
 import org.craigmcc.library.model.Model;
+import org.craigmcc.library.model.StatementMetrics;
 
 import javax.validation.constraints.NotNull;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import static org.craigmcc.library.model.Constants.ID_COLUMN;
@@ -40,30 +45,71 @@ public abstract class AbstractStatementBuilder<B extends StatementBuilder>
 
     // Instance Variables ----------------------------------------------------
 
+    // Lists start out as the shared empty list, and are only allocated when
+    // something is added to them (through the mutable*() methods, which
+    // subclasses must also use), so that simple statements do not pay for
+    // collections they never use.
     protected boolean all = false;
-    protected final List<Clause> clauses = new ArrayList<>();
-    protected final List<Expression> expressions = new ArrayList<>();
+    protected boolean bind = false;
+    protected StatementCache cache = null;
+    protected List<Clause> clauses = Collections.emptyList();
+    protected SqlDialect dialect = SqlDialect.STANDARD;
+    protected List<Expression> expressions = Collections.emptyList();
     protected boolean distinct = false;
-    protected final List<String> groupBys = new ArrayList<>();
+    protected List<String> groupBys = Collections.emptyList();
     protected Integer limit;
     protected Integer offset;
     protected boolean or = false;
-    protected final List<OrderBy> orderBys = new ArrayList<>();
-    protected final List<Pair> pairs = new ArrayList<>();
-    protected final List<Object> params = new ArrayList<>();
+    protected List<OrderBy> orderBys = Collections.emptyList();
+    protected List<Pair> pairs = Collections.emptyList();
+    protected List<Object> params = Collections.emptyList();
     protected Pair primary = null;
+    protected List<String> returning = Collections.emptyList();
+    protected int sizeHint = 0; // Length of the most recently rendered SQL text
+    protected List<String> slots = Collections.emptyList();
     protected String sql = null; // Only useful for debugging via toString() calls after the fact
-    protected final List<String> tables = new ArrayList<>();
+    protected List<String> tables;
+    protected boolean template = false;
 
     // Constructors ----------------------------------------------------------
 
     // TODO - support multiple tables for joins?  With abbreviations for columns?
     public AbstractStatementBuilder(@NotNull String table) {
-        tables.add(table);
+        tables = Collections.singletonList(table);
     }
 
     // Public Methods --------------------------------------------------------
 
+    /**
+     * <p>Generate and return an JDBC <code>PreparedStatement</code> from
+     * this builder, after rendering the SQL text via <code>render()</code>.
+     * Replacement values for "?" placeholders will have already been
+     * applied to the statement, in the correct order.</p>
+     *
+     * <p>If {@link StatementMetrics} are enabled, the build and prepare times
+     * are recorded against the SQL text, and the returned statement records
+     * its execution times as well.</p>
+     *
+     * @param connection The JDBC connection for which to create the
+     *                  prepared statement
+     *
+     * @return A <code>PreparedStatement</code> ready to be executed
+     *
+     * @throws SQLException if a JDBC processing error occurs
+     */
+    @Override
+    public PreparedStatement build(Connection connection) throws SQLException {
+        if (StatementMetrics.isEnabled()) {
+            return buildInstrumented(connection);
+        }
+        sql = render();
+        sizeHint = sql.length();
+        PreparedStatement statement = (cache != null)
+                ? cache.prepare(connection, sql, keys())
+                : prepare(connection, sql, keys());
+        return decorate(applyParams(statement));
+    }
+
     /**
      * <p><strong>RELEVANT ON:</strong> DELETE, SELECT, UPDATE</p>
      *
@@ -75,6 +121,50 @@ public abstract class AbstractStatementBuilder<B extends StatementBuilder>
         return (B) this;
     }
 
+    /**
+     * <p><strong>RELEVANT ON:</strong> DELETE, SELECT, UPDATE</p>
+     *
+     * <p>Cause values specified by <code>expression()</code> and
+     * <code>primary()</code> to be bound as "?" replacement parameters,
+     * instead of being rendered inline into the SQL text.  This means that
+     * statements differing only in these values will share the same SQL text,
+     * so that database plan caches and driver statement caches can reuse it.
+     * Values recognized as SQL literals (such as <code>now()</code>), and
+     * values specified by <code>expressionLiteral()</code>, are still
+     * rendered inline.</p>
+     *
+     * <p><strong>NOTE:</strong> When binding, expression values are passed to
+     * the database as-is, so string values must <strong>NOT</strong> be
+     * enclosed in quotes.</p>
+     *
+     * <p>To check that binding keeps the number of distinct SQL texts small,
+     * call <code>StatementMetrics.enable()</code> and watch
+     * {@link StatementShapes#count()}.  Texts are only counted while metrics
+     * are enabled, which they are not by default, so the count stays at
+     * zero otherwise.</p>
+     *
+     * @return This builder
+     */
+    public B bind() {
+        this.bind = true;
+        return (B) this;
+    }
+
+    /**
+     * <p>Reuse prepared statements from the specified {@link StatementCache},
+     * instead of preparing a new statement every time <code>build()</code>
+     * is called.  Callers still call <code>close()</code> on the returned
+     * statement, which returns it to the cache.</p>
+     *
+     * @param cache The statement cache to be used
+     *
+     * @return This builder
+     */
+    public B cache(@NotNull StatementCache cache) {
+        this.cache = cache;
+        return (B) this;
+    }
+
     /**
      * <p><strong>RELEVANT ON:</strong> DELETE, SELECT, UPDATE.</p>
      *
@@ -89,7 +179,58 @@ public abstract class AbstractStatementBuilder<B extends StatementBuilder>
      * @return This builder
      */
     public B clause(@NotNull String leftColumn, @NotNull SqlOperator operator, @NotNull String rightColumn) {
-        clauses.add(new Clause(leftColumn, operator, rightColumn));
+        mutableClauses().add(new Clause(leftColumn, operator, rightColumn));
+        return (B) this;
+    }
+
+    /**
+     * <p>Render the SQL text for this builder once, and return an immutable
+     * {@link CompiledStatement} that captures that text (interned) plus the
+     * layout of its "?" replacement parameters.  The compiled statement can
+     * be shared across threads, and bound with new parameter values for each
+     * execution without walking the builder state or rendering the SQL text
+     * again.</p>
+     *
+     * <p>When compiling, every value that would otherwise be bound at
+     * <code>build()</code> time becomes a parameter slot.  In addition,
+     * the primary key value (if any) and any <code>pair()</code> values
+     * that are <code>null</code> are rendered as "?" placeholders (rather
+     * than being inlined), so that the compiled statement can be reused
+     * for any value of those columns.  Values passed to <code>pairLiteral()</code>
+     * are still rendered inline, as are values passed to <code>expression()</code>
+     * unless <code>bind()</code> has been called.</p>
+     *
+     * @return The compiled statement template
+     *
+     * @throws IllegalStateException if the builder state cannot be rendered
+     */
+    public CompiledStatement compile() throws IllegalStateException {
+        template = true;
+        try {
+            sql = render();
+            sizeHint = sql.length();
+        } finally {
+            template = false;
+        }
+        if (StatementMetrics.isEnabled()) {
+            StatementMetrics.shape(sql);
+        }
+        return new CompiledStatement(sql, keys(), slots, params);
+    }
+
+    /**
+     * <p><strong>RELEVANT ON:</strong> DELETE, INSERT, UPDATE, UPSERT.</p>
+     *
+     * <p>Set the SQL dialect to be rendered, for statements whose syntax is
+     * not portable (such as <code>returning()</code>, or an upsert).
+     * Default is <code>STANDARD</code>.</p>
+     *
+     * @param dialect The SQL dialect
+     *
+     * @return This builder
+     */
+    public B dialect(@NotNull SqlDialect dialect) {
+        this.dialect = dialect;
         return (B) this;
     }
 
@@ -97,7 +238,13 @@ public abstract class AbstractStatementBuilder<B extends StatementBuilder>
      * <p><strong>RELEVANT ON:</strong> DELETE, SELECT, UPDATE.</p>
      *
      * <p>Store the column, operator, and a literal expression value
-     * for a condition that must be satisfied in order to match.</p>
+     * for a condition that must be satisfied in order to match.  If
+     * <code>bind()</code> has been called, the value will be bound as
+     * a "?" replacement parameter instead.</p>
+     *
+     * <p>For <code>SqlOperator.IN</code>, the value must be a
+     * <code>Collection</code>, and is handled as described for
+     * <code>in()</code>.</p>
      *
      * @param column Column to be matched
      * @param operator The operator used to compare column and value
@@ -106,7 +253,74 @@ public abstract class AbstractStatementBuilder<B extends StatementBuilder>
      * @return This builder
      */
     public B expression(@NotNull String column, @NotNull SqlOperator operator, @NotNull Object value) {
-        expressions.add(new Expression(column, operator, value));
+        if ((operator == SqlOperator.IN) && !(value instanceof Collection)) {
+            throw new IllegalArgumentException("Value for IN must be a Collection");
+        } else if (operator == SqlOperator.ANY) {
+            throw new IllegalArgumentException("Use inArray() for ANY");
+        }
+        mutableExpressions().add(new Expression(column, operator, false, value));
+        return (B) this;
+    }
+
+    /**
+     * <p><strong>RELEVANT ON:</strong> DELETE, SELECT, UPDATE.</p>
+     *
+     * <p>Store a condition that the value of the specified column must be
+     * one of the specified values.  The values are always bound as "?"
+     * replacement parameters, and the number of placeholders is padded to
+     * the next power of two (by repeating the last value), so that lists of
+     * different lengths share a small number of SQL texts.  An empty
+     * collection matches no rows.</p>
+     *
+     * @param column Column to be matched
+     * @param values Values to be matched
+     *
+     * @return This builder
+     */
+    public B in(@NotNull String column, @NotNull Collection<?> values) {
+        return expression(column, SqlOperator.IN, values);
+    }
+
+    /**
+     * <p><strong>RELEVANT ON:</strong> DELETE, SELECT, UPDATE.</p>
+     *
+     * <p>Store a condition that the value of the specified column must be
+     * one of the specified values, bound as a single SQL array parameter
+     * (<code>column = ANY (?)</code>), so that the SQL text is the same
+     * for any number of values.  This is rendered for the <code>H2</code>,
+     * <code>POSTGRESQL</code> and <code>STANDARD</code> dialects.  The
+     * <code>MYSQL</code> and <code>SQLSERVER</code> dialects have no array
+     * parameters, so the values are rendered as for <code>in()</code>
+     * instead.  The array is freed when the built statement is closed.</p>
+     *
+     * @param column Column to be matched
+     * @param type SQL type name of the array elements, as passed to
+     *             <code>Connection.createArrayOf()</code> (such as "bigint")
+     * @param values Values to be matched
+     *
+     * @return This builder
+     */
+    public B inArray(@NotNull String column, @NotNull String type, @NotNull Collection<?> values) {
+        mutableExpressions().add(new Expression(column, SqlOperator.ANY, false, new SqlArray(type, values)));
+        return (B) this;
+    }
+
+    /**
+     * <p><strong>RELEVANT ON:</strong> DELETE, SELECT, UPDATE.</p>
+     *
+     * <p>Store the column, operator, and a literal expression value
+     * for a condition that must be satisfied in order to match.  The
+     * value will always be rendered inline, even if <code>bind()</code>
+     * has been called.</p>
+     *
+     * @param column Column to be matched
+     * @param operator The operator used to compare column and value
+     * @param value Literal expression value to be matched
+     *
+     * @return This builder
+     */
+    public B expressionLiteral(@NotNull String column, @NotNull SqlOperator operator, @NotNull Object value) {
+        mutableExpressions().add(new Expression(column, operator, true, value));
         return (B) this;
     }
 
@@ -139,7 +353,7 @@ public abstract class AbstractStatementBuilder<B extends StatementBuilder>
      * @return This builder
      */
     public B pair(@NotNull String column, Object value) {
-        pairs.add(new Pair(column, value));
+        mutablePairs().add(new Pair(column, value));
         return (B) this;
     }
 
@@ -172,7 +386,7 @@ public abstract class AbstractStatementBuilder<B extends StatementBuilder>
      * @return This builder
      */
     public B pairLiteral(@NotNull String column, @NotNull Object value) {
-        pairs.add(new Pair(column, true, value));
+        mutablePairs().add(new Pair(column, true, value));
         return (B) this;
     }
 
@@ -190,7 +404,6 @@ public abstract class AbstractStatementBuilder<B extends StatementBuilder>
      */
     public B pairModel(@NotNull Model model) {
         primary(ID_COLUMN, model.getId());
-        // TODO - verify LocalDateTime conversions are supported
         pair(PUBLISHED_COLUMN, model.getPublished());
         pair(UPDATED_COLUMN, model.getUpdated());
         return (B) this;
@@ -218,6 +431,83 @@ public abstract class AbstractStatementBuilder<B extends StatementBuilder>
         return (B) this;
     }
 
+    /**
+     * <p><strong>RELEVANT ON:</strong> DELETE, INSERT, UPDATE, UPSERT.</p>
+     *
+     * <p>Return the values of the specified columns from each affected row
+     * as part of executing the statement, so that values assigned by the
+     * database (such as the primary key, or <code>now()</code> timestamps)
+     * do not have to be read back with a separate SELECT.  How they are
+     * returned depends on the <code>dialect()</code>:</p>
+     * <ul>
+     *     <li><code>POSTGRESQL</code> - A <code>RETURNING</code> clause.</li>
+     *     <li><code>SQLSERVER</code> - An <code>OUTPUT</code> clause (of
+     *         <code>DELETED</code> values for a DELETE, and <code>INSERTED</code>
+     *         values otherwise).</li>
+     *     <li><code>H2</code> - The statement is wrapped in a SELECT from a
+     *         <code>FINAL TABLE</code> (or <code>OLD TABLE</code> for a DELETE).</li>
+     *     <li><code>MYSQL</code> and <code>STANDARD</code> - The columns are
+     *         requested as generated keys when the statement is prepared, and
+     *         are available from <code>getGeneratedKeys()</code> (MySQL only
+     *         returns the auto-increment column).  Not supported for DELETE.</li>
+     * </ul>
+     *
+     * <p>For the first three, execute the statement with <code>executeQuery()</code>
+     * (or <code>execute()</code>, which will return <code>true</code>) to
+     * receive the returned rows.</p>
+     *
+     * @param columns Names of the columns to be returned
+     *
+     * @return This builder
+     */
+    public B returning(@NotNull String... columns) {
+        for (String column : columns) {
+            mutableReturning().add(column);
+        }
+        return (B) this;
+    }
+
+    /**
+     * <p>Return this builder to the state it was in just after construction
+     * (for the same table), so that it can be reused for another statement
+     * instead of allocating a new builder.  Lists that were already allocated
+     * are cleared rather than discarded, so a builder that is reused for
+     * statements of similar shape stops allocating them at all.  Builders
+     * are not thread safe, so a hot code path that wants to recycle them
+     * should keep one per thread, for example:</p>
+     *
+     * <code>
+     *     private static final ThreadLocal&lt;SelectBuilder&gt; FINDER =
+     *         ThreadLocal.withInitial(() -&gt; new SelectBuilder("mytable"));
+     *     ...
+     *     FINDER.get().reset().primary("id", id).build(connection);
+     * </code>
+     *
+     * @return This builder
+     */
+    public B reset() {
+        all = false;
+        bind = false;
+        cache = null;
+        clauses.clear();
+        dialect = SqlDialect.STANDARD;
+        expressions.clear();
+        distinct = false;
+        groupBys.clear();
+        limit = null;
+        offset = null;
+        or = false;
+        orderBys.clear();
+        pairs.clear();
+        params.clear();
+        primary = null;
+        returning.clear();
+        slots.clear();
+        sql = null;
+        template = false;
+        return (B) this;
+    }
+
     /**
      * <p>Return the string representation of the SQL statement generated by
      * this builder.  Only includes the SQL text after <code>build()</code> has
@@ -227,15 +517,233 @@ public abstract class AbstractStatementBuilder<B extends StatementBuilder>
      */
     public String toString() {
         return this.getClass().getSimpleName() +
-                "{all=" + all + ", clauses=" + clauses + ", distinct=" + distinct +
+                "{all=" + all + ", bind=" + bind + ", clauses=" + clauses + ", distinct=" + distinct +
                 ", expressions=" + expressions +
                 ", groupBys=" + groupBys + ", limit=" + limit + ", offset=" + offset +
                 ", or=" + or + ", orderBys=" + orderBys + ",pairs=" + pairs +
-                ", params=" + params + ", primary=" + primary + ", sql=" + sql + "}";
+                ", params=" + params + ", primary=" + primary + ", returning=" + returning +
+                ", sql=" + sql + "}";
     }
 
     // Protected Methods ---------------------------------------------------------
 
+    /**
+     * <p>Render the SQL text for the statement described by this builder,
+     * recording replacement parameters (via <code>addParam()</code>) in the
+     * order that their "?" placeholders appear.  Any parameters recorded by
+     * a previous rendering are discarded first, so this may safely be called
+     * more than once.</p>
+     *
+     * @return The rendered SQL text
+     *
+     * @throws IllegalStateException if the builder state cannot be rendered
+     */
+    protected abstract String render() throws IllegalStateException;
+
+    /**
+     * <p>Return the statement to be returned by <code>build()</code>, after
+     * its parameters have been applied.  The default implementation returns
+     * the specified statement unchanged, but subclasses may wrap it (as
+     * {@link SelectBuilder} does for the {@link SlowQueryLog}).</p>
+     *
+     * @param statement The prepared statement (may be <code>null</code>
+     *                  if a mocked connection did not create one)
+     *
+     * @return The statement to be returned
+     */
+    protected PreparedStatement decorate(PreparedStatement statement) {
+        return statement;
+    }
+
+    /**
+     * <p>Return the names of the columns whose generated values should be
+     * made available via <code>getGeneratedKeys()</code>, or <code>null</code>
+     * if there are none.  The default implementation returns the columns
+     * specified by <code>returning()</code>, if the dialect returns them
+     * as generated keys, or <code>null</code> otherwise.</p>
+     *
+     * @return Generated key column names, or <code>null</code>
+     */
+    protected String[] keys() {
+        if (returning.isEmpty() || returnsRows()) {
+            return null;
+        }
+        return returning.toArray(new String[0]);
+    }
+
+    /**
+     * <p>Append the SQL Server <code>OUTPUT</code> clause for the columns
+     * specified by <code>returning()</code>, if any, at the current position
+     * of the SQL text being created.  Nothing is appended for other
+     * dialects.</p>
+     *
+     * @param sb StringBuilder containing the SQL text being created
+     * @param source Pseudo table (<code>INSERTED</code> or <code>DELETED</code>)
+     *               from which values are returned
+     */
+    protected void addOutput(StringBuilder sb, String source) {
+        if (returning.isEmpty() || (dialect != SqlDialect.SQLSERVER)) {
+            return;
+        }
+        sb.append(" OUTPUT ");
+        for (int i = 0; i < returning.size(); i++) {
+            sb.append((i > 0) ? ", " : "").append(source).append(".").append(returning.get(i));
+        }
+    }
+
+    /**
+     * <p>Complete the SQL text being created for the columns specified by
+     * <code>returning()</code>, if any, by appending a PostgreSQL
+     * <code>RETURNING</code> clause, or by wrapping it in an H2 data change
+     * delta table.  Nothing is changed for other dialects (SQL Server uses
+     * <code>addOutput()</code> instead).</p>
+     *
+     * @param sb StringBuilder containing the SQL text being created
+     * @param deleted Whether the statement is a DELETE, which returns the
+     *                values from before the change
+     *
+     * @throws IllegalStateException if the dialect cannot return values
+     *  from this statement
+     */
+    protected void addReturning(StringBuilder sb, boolean deleted)
+            throws IllegalStateException {
+        if (returning.isEmpty()) {
+            return;
+        }
+        switch (dialect) {
+            case H2:
+                StringBuilder select = new StringBuilder("SELECT ");
+                for (int i = 0; i < returning.size(); i++) {
+                    select.append((i > 0) ? ", " : "").append(returning.get(i));
+                }
+                select.append(deleted ? " FROM OLD TABLE (" : " FROM FINAL TABLE (");
+                sb.insert(0, select).append(")");
+                break;
+            case POSTGRESQL:
+                sb.append(" RETURNING ");
+                for (int i = 0; i < returning.size(); i++) {
+                    sb.append((i > 0) ? ", " : "").append(returning.get(i));
+                }
+                break;
+            case SQLSERVER:
+                break;
+            default: // MYSQL, STANDARD
+                if (deleted) {
+                    throw new IllegalStateException("Returning columns from a DELETE is not supported for dialect " +
+                            dialect);
+                }
+                break;
+        }
+    }
+
+    /**
+     * <p>Return <code>true</code> if <code>returning()</code> was specified,
+     * and the dialect returns the values as rows from executing the
+     * statement itself (rather than as generated keys).</p>
+     */
+    protected boolean returnsRows() {
+        return !returning.isEmpty() && (dialect == SqlDialect.H2 ||
+                dialect == SqlDialect.POSTGRESQL || dialect == SqlDialect.SQLSERVER);
+    }
+
+    /**
+     * <p>Create the <code>PreparedStatement</code> for the specified SQL text
+     * from the specified connection, asking for generated keys if necessary.</p>
+     *
+     * @param connection The JDBC connection for which to create the statement
+     * @param sql The rendered SQL text
+     * @param keys Generated key column names, or <code>null</code> for none
+     *
+     * @return The newly prepared statement
+     *
+     * @throws SQLException if a JDBC processing error occurs
+     */
+    static PreparedStatement prepare(Connection connection, String sql, String[] keys)
+            throws SQLException {
+        if (keys != null) {
+            return connection.prepareStatement(sql, keys);
+        } else {
+            return connection.prepareStatement(sql);
+        }
+    }
+
+    /**
+     * <p>Return a <code>StringBuilder</code> for rendering the SQL text,
+     * sized to the previously rendered text if there was one, or else
+     * estimated from the number of table, column, and condition entries,
+     * so that it rarely needs to grow while rendering.</p>
+     */
+    protected StringBuilder buffer() {
+        if (sizeHint > 0) {
+            return new StringBuilder(sizeHint + 16);
+        }
+        int entries = clauses.size() + expressions.size() + groupBys.size() +
+                orderBys.size() + pairs.size() + ((primary != null) ? 1 : 0);
+        return new StringBuilder(32 + tables.get(0).length() + (entries * 24));
+    }
+
+    /**
+     * <p>Discard any parameters recorded by a previous rendering, in
+     * preparation for rendering the SQL text again.</p>
+     */
+    protected void clearParams() {
+        params.clear();
+        slots.clear();
+    }
+
+    /**
+     * <p>Return the list of clauses, first replacing the shared empty list
+     * with one that can be added to.  The same applies to the other
+     * <code>mutable*()</code> methods; subclasses must add to the lists
+     * through them, rather than through the fields.</p>
+     */
+    protected List<Clause> mutableClauses() {
+        return clauses = mutable(clauses);
+    }
+
+    protected List<Expression> mutableExpressions() {
+        return expressions = mutable(expressions);
+    }
+
+    protected List<String> mutableGroupBys() {
+        return groupBys = mutable(groupBys);
+    }
+
+    protected List<OrderBy> mutableOrderBys() {
+        return orderBys = mutable(orderBys);
+    }
+
+    protected List<Pair> mutablePairs() {
+        return pairs = mutable(pairs);
+    }
+
+    protected List<Object> mutableParams() {
+        return params = mutable(params);
+    }
+
+    protected List<String> mutableReturning() {
+        return returning = mutable(returning);
+    }
+
+    protected List<String> mutableSlots() {
+        return slots = mutable(slots);
+    }
+
+    protected List<String> mutableTables() {
+        return tables = mutable(tables);
+    }
+
+    /**
+     * <p>Return the specified list if it can be added to, or otherwise (if
+     * it is the shared empty list, or an immutable list of one element) a
+     * new <code>ArrayList</code> with the same contents.</p>
+     *
+     * @param list List to be returned or copied
+     */
+    protected static <T> List<T> mutable(List<T> list) {
+        return (list instanceof ArrayList) ? list : new ArrayList<>(list);
+    }
+
     /**
      * <p>Add a WHERE clause to the SQL text being created.  This will either
      * be a direct primary key match (if <code>primary()</code> was specified)
@@ -267,11 +775,12 @@ public abstract class AbstractStatementBuilder<B extends StatementBuilder>
             sb.append(" WHERE (");
             sb.append(primary.column);
             sb.append(" = ");
-            if (primary.literal) {
+            if (primary.literal && !template &&
+                    (!bind || Utils.literal(primary.value))) {
                 sb.append(primary.value);
             } else {
                 sb.append("?");
-                params.add(primary.value);
+                addParam(primary.column, primary.value);
             }
             sb.append(")");
 
@@ -301,7 +810,7 @@ public abstract class AbstractStatementBuilder<B extends StatementBuilder>
                 sb.append(")");
             }
 
-            // Second, do expressions (comparison between a column value and a literal)
+            // Second, do expressions (comparison between a column value and a literal or parameter)
             for (Expression expression : expressions) {
                 if (first) {
                     first = false;
@@ -313,11 +822,37 @@ public abstract class AbstractStatementBuilder<B extends StatementBuilder>
                         sb.append(" AND (");
                     }
                 }
+                if (expression.operator == SqlOperator.ANY) {
+                    addAny(sb, expression.column, (SqlArray) expression.expression);
+                    sb.append(")");
+                    continue;
+                } else if ((expression.operator == SqlOperator.IN) && !expression.literal) {
+                    Utils.appendIn(sb, expression.column, (Collection<?>) expression.expression,
+                            this::addParam);
+                    sb.append(")");
+                    continue;
+                }
                 sb.append(expression.column);
                 sb.append(" ");
                 sb.append(expression.operator.getOperator());
                 sb.append(" ");
-                sb.append(expression.expression);
+                if ((expression.operator == SqlOperator.IN) && expression.literal) {
+                    sb.append("(");
+                    boolean firstValue = true;
+                    for (Object value : (Collection<?>) expression.expression) {
+                        if (!firstValue) {
+                            sb.append(", ");
+                        }
+                        firstValue = false;
+                        sb.append(value);
+                    }
+                    sb.append(")");
+                } else if (expression.literal || !bind || Utils.literal(expression.expression)) {
+                    sb.append(expression.expression);
+                } else {
+                    sb.append("?");
+                    addParam(expression.column, expression.expression);
+                }
                 sb.append(")");
             }
 
@@ -337,26 +872,101 @@ public abstract class AbstractStatementBuilder<B extends StatementBuilder>
      * @return This builder
      */
     protected B addParam(Object param) {
-        params.add(param);
+        return addParam(null, param);
+    }
+
+    /**
+     * <p>Add a parameter value that will be used as a replacement value in the
+     * generated SQL statement, remembering the name of the column it relates
+     * to (if any) so that a {@link CompiledStatement} can describe its
+     * parameter slots.</p>
+     *
+     * @param column Name of the column this value relates to, or <code>null</code>
+     * @param param The replacement value to be recorded
+     *
+     * @return This builder
+     */
+    protected B addParam(String column, Object param) {
+        mutableParams().add(param);
+        mutableSlots().add(column);
         return (B) this;
     }
 
     /**
      * <p>Apply any specified parameters to the <code>PreparedStatement</code>
-     * that is being generated.</p>
+     * that is being generated, using the {@link Codecs} binder for the
+     * type of each value.  If an <code>inArray()</code> value was bound,
+     * the returned statement is a wrapper that frees the array when it is
+     * closed; otherwise it is the specified statement.</p>
      *
      * @param statement The <code>PreparedStatement</code> to update
      *
+     * @return The statement to be returned by <code>build()</code>
+     *
      * @throws SQLException if a SQL exception occurs
      */
-    protected void applyParams(PreparedStatement statement) throws SQLException {
+    protected PreparedStatement applyParams(PreparedStatement statement) throws SQLException {
         if (params.size() > 0) {
             if (statement != null) { // TODO - Mockito does not generate this :-(
-                for (int i = 0; i < params.size(); i++) {
-                    statement.setObject(i + 1, params.get(i));
-                }
+                return SqlArray.apply(statement, params);
             }
         }
+        return statement;
+    }
+
+    // Private Methods -------------------------------------------------------
+
+    /**
+     * <p>Append the condition for an <code>inArray()</code> expression at
+     * the current position of the SQL text being created.  Dialects with
+     * array parameters compare against the whole array as a single "?"
+     * placeholder; the others fall back to a padded IN list of its
+     * values.</p>
+     *
+     * @param sb StringBuilder containing the SQL text being created
+     * @param column Column to be matched
+     * @param array Array of values to be matched
+     */
+    private void addAny(StringBuilder sb, String column, SqlArray array) {
+        switch (dialect) {
+            case MYSQL:
+            case SQLSERVER:
+                Utils.appendIn(sb, column, array.getValues(), this::addParam);
+                break;
+            default: // H2, POSTGRESQL, STANDARD
+                sb.append(column);
+                sb.append(" ");
+                sb.append(SqlOperator.ANY.getOperator());
+                sb.append(" (?)");
+                addParam(column, array);
+                break;
+        }
+    }
+
+    /**
+     * <p>Perform <code>build()</code> while recording {@link StatementMetrics}
+     * for the rendered SQL text.  Build time covers rendering and binding the
+     * parameters, but not preparing the statement.</p>
+     *
+     * @param connection The JDBC connection for which to create the
+     *                  prepared statement
+     *
+     * @throws SQLException if a JDBC processing error occurs
+     */
+    private PreparedStatement buildInstrumented(Connection connection) throws SQLException {
+        long start = System.nanoTime();
+        sql = render();
+        sizeHint = sql.length();
+        StatementMetrics.Shape shape = StatementMetrics.shape(sql);
+        long rendered = System.nanoTime();
+        PreparedStatement statement = (cache != null)
+                ? cache.prepare(connection, sql, keys())
+                : prepare(connection, sql, keys());
+        long prepared = System.nanoTime();
+        shape.getPrepare().record(prepared - rendered);
+        statement = applyParams(statement);
+        shape.getBuild().record((rendered - start) + (System.nanoTime() - prepared));
+        return StatementMetrics.instrument(decorate(statement), shape);
     }
 
     // Support classes ---------------------------------------------------------
@@ -389,19 +999,23 @@ public abstract class AbstractStatementBuilder<B extends StatementBuilder>
     }
 
     /**
-     * <p>A column name, SQL operator, and literal value to which that column
-     * will be compared in a WHERE clause.</p>
+     * <p>A column name, SQL operator, and value to which that column
+     * will be compared in a WHERE clause, with the value being rendered
+     * inline if it is a literal (literal == true) or bound as a parameter
+     * when <code>bind()</code> has been called.</p>
      */
     protected static class Expression {
 
-        Expression(@NotNull String column, @NotNull SqlOperator operator, @NotNull Object expression) {
+        Expression(@NotNull String column, @NotNull SqlOperator operator, boolean literal, @NotNull Object expression) {
             this.column = column;
             this.operator = operator;
+            this.literal = literal;
             this.expression = expression;
         }
 
         final String column;
         final Object expression;
+        final boolean literal;
         final SqlOperator operator;
 
         @Override
@@ -409,6 +1023,7 @@ public abstract class AbstractStatementBuilder<B extends StatementBuilder>
             return "Clause{" +
                     "column=" + column +
                     ", operator=" + operator +
+                    ", literal=" + literal +
                     ", expression=" + expression + "}";
         }
 
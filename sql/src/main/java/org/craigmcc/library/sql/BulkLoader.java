@@ -0,0 +1,427 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.sql;
+
+import org.craigmcc.library.model.Model;
+
+import javax.sql.DataSource;
+import javax.validation.constraints.NotNull;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * <p>Streaming loader that inserts an unbounded sequence of {@link Model}
+ * objects, supplied by an <code>Iterator</code> or <code>Stream</code>,
+ * without ever holding more than a bounded number of them in memory.</p>
+ *
+ * <p>Models are handed from the calling thread to one or more writer threads
+ * through a bounded buffer.  When the buffer is full, the calling thread
+ * waits (backpressure) until a writer catches up.  Each writer owns its own
+ * connection (with auto-commit turned off), converts each model into an
+ * {@link InsertBuilder} via the supplied mapper function, sends rows to the
+ * database with JDBC batching, and commits every <code>commitInterval</code>
+ * rows.  If the insert statement asks for generated keys (because
+ * <code>primary()</code> or <code>pairModel()</code> was called), the
+ * generated primary key is stored into each model.</p>
+ *
+ * <p><strong>EXAMPLE:</strong></p>
+ *
+ * <code>
+ *     long count = new BulkLoader&lt;MyModel&gt;(dataSource, model -&gt;
+ *         new InsertBuilder("mytable")
+ *           .primary(ID_COLUMN)
+ *           .pair("firstName", model.getFirstName())
+ *           .pair("lastName", model.getLastName()))
+ *       .writers(4)
+ *       .load(models.iterator());
+ * </code>
+ *
+ * <p><strong>USAGE NOTES:</strong></p>
+ * <ul>
+ *     <li>Consecutive models must map to the same SQL text to be batched
+ *         together.  A change in SQL text (for example, because a value was
+ *         <code>null</code> and rendered inline) sends the batch so far and
+ *         starts a new one.</li>
+ *     <li>The load is not atomic.  Each writer commits independently, so
+ *         if an error occurs, rows committed before that point remain in
+ *         the database.  Rows not yet committed by any writer are rolled
+ *         back, and the first error is rethrown.</li>
+ *     <li>With more than one writer, rows are not necessarily inserted in
+ *         input order.</li>
+ * </ul>
+ *
+ * @param <M> The {@link Model} class being loaded
+ */
+public class BulkLoader<M extends Model> {
+
+    // Static Variables ------------------------------------------------------
+
+    /**
+     * <p>Default maximum number of models buffered between the calling
+     * thread and the writers.</p>
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 10_000;
+
+    /**
+     * <p>Default number of rows inserted by a writer between commits.</p>
+     */
+    public static final int DEFAULT_COMMIT_INTERVAL = 10_000;
+
+    /**
+     * <p>Default number of writer threads.</p>
+     */
+    public static final int DEFAULT_WRITERS = 1;
+
+    private static final Object END = new Object();
+
+    // Instance Variables ----------------------------------------------------
+
+    private int batchSize = InsertBuilder.DEFAULT_BATCH_SIZE;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private int commitInterval = DEFAULT_COMMIT_INTERVAL;
+    private final DataSource dataSource;
+    private final Function<M, InsertBuilder> mapper;
+    private int writers = DEFAULT_WRITERS;
+
+    // Constructors ----------------------------------------------------------
+
+    /**
+     * <p>Create a loader that acquires writer connections from the specified
+     * data source, and converts each model into an {@link InsertBuilder}
+     * with the specified mapper function.</p>
+     *
+     * @param dataSource Source of writer connections
+     * @param mapper Function that returns an insert builder for a model
+     */
+    public BulkLoader(@NotNull DataSource dataSource,
+                      @NotNull Function<M, InsertBuilder> mapper) {
+        this.dataSource = dataSource;
+        this.mapper = mapper;
+    }
+
+    // Public Methods --------------------------------------------------------
+
+    /**
+     * <p>Set the maximum number of rows sent per batch execution.
+     * Default is <code>InsertBuilder.DEFAULT_BATCH_SIZE</code>.</p>
+     *
+     * @param batchSize Maximum rows per batch execution
+     *
+     * @return This loader
+     */
+    public BulkLoader<M> batchSize(int batchSize) {
+        this.batchSize = positive("batchSize", batchSize);
+        return this;
+    }
+
+    /**
+     * <p>Set the maximum number of models buffered between the calling
+     * thread and the writers.  Default is <code>DEFAULT_BUFFER_SIZE</code>.</p>
+     *
+     * @param bufferSize Maximum number of buffered models
+     *
+     * @return This loader
+     */
+    public BulkLoader<M> bufferSize(int bufferSize) {
+        this.bufferSize = positive("bufferSize", bufferSize);
+        return this;
+    }
+
+    /**
+     * <p>Set the number of rows inserted by each writer between commits.
+     * Default is <code>DEFAULT_COMMIT_INTERVAL</code>.</p>
+     *
+     * @param commitInterval Rows per commit
+     *
+     * @return This loader
+     */
+    public BulkLoader<M> commitInterval(int commitInterval) {
+        this.commitInterval = positive("commitInterval", commitInterval);
+        return this;
+    }
+
+    /**
+     * <p>Insert all of the models returned by the specified iterator,
+     * returning when they have all been committed.</p>
+     *
+     * @param models Iterator over the models to be inserted
+     *
+     * @return The number of rows inserted
+     *
+     * @throws InterruptedException if the calling thread is interrupted
+     *  (uncommitted rows are rolled back)
+     * @throws SQLException if a JDBC processing error occurs in any writer
+     */
+    public long load(@NotNull Iterator<M> models)
+            throws InterruptedException, SQLException {
+
+        BlockingQueue<Object> buffer = new ArrayBlockingQueue<>(bufferSize);
+        AtomicReference<SQLException> failure = new AtomicReference<>();
+        AtomicLong inserted = new AtomicLong();
+        List<Thread> threads = new ArrayList<>(writers);
+        for (int i = 0; i < writers; i++) {
+            Thread thread = new Thread(() -> write(buffer, failure, inserted),
+                    "BulkLoader-writer-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+
+        try {
+            while (models.hasNext() && (failure.get() == null)) {
+                buffer.put(models.next());
+            }
+        } catch (InterruptedException e) {
+            failure.compareAndSet(null, new SQLException("Bulk load was interrupted", e));
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, new SQLException("Bulk load was aborted", e));
+            throw e;
+        } finally {
+            finish(buffer, threads);
+        }
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return inserted.get();
+
+    }
+
+    /**
+     * <p>Insert all of the models returned by the specified stream,
+     * returning when they have all been committed.  The stream is
+     * consumed, but not closed.</p>
+     *
+     * @param models Stream of models to be inserted
+     *
+     * @return The number of rows inserted
+     *
+     * @throws InterruptedException if the calling thread is interrupted
+     *  (uncommitted rows are rolled back)
+     * @throws SQLException if a JDBC processing error occurs in any writer
+     */
+    public long load(@NotNull Stream<M> models)
+            throws InterruptedException, SQLException {
+        return load(models.iterator());
+    }
+
+    /**
+     * <p>Set the number of writer threads, each of which owns one connection.
+     * Default is <code>DEFAULT_WRITERS</code>.</p>
+     *
+     * @param writers Number of writer threads
+     *
+     * @return This loader
+     */
+    public BulkLoader<M> writers(int writers) {
+        this.writers = positive("writers", writers);
+        return this;
+    }
+
+    // Private Methods -------------------------------------------------------
+
+    /**
+     * <p>Tell each writer that there are no more models, and wait for all of
+     * them to complete.  Writers that have already exited will not consume
+     * their end marker, so stop offering once none are left alive.</p>
+     *
+     * @param buffer Buffer of models (and end markers) to be written
+     * @param threads Writer threads
+     *
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    private void finish(BlockingQueue<Object> buffer, List<Thread> threads)
+            throws InterruptedException {
+        for (int i = 0; i < threads.size(); i++) {
+            while (!buffer.offer(END, 100, TimeUnit.MILLISECONDS)) {
+                if (threads.stream().noneMatch(Thread::isAlive)) {
+                    return;
+                }
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    /**
+     * <p>Send the rows batched so far, and store any generated primary keys
+     * into the corresponding models.</p>
+     *
+     * @param statement Statement with batched rows
+     * @param keys Whether generated keys were requested
+     * @param batched Models corresponding to the batched rows
+     *
+     * @throws SQLException if a JDBC processing error occurs
+     */
+    private void flush(PreparedStatement statement, boolean keys, List<M> batched)
+            throws SQLException {
+        if (batched.isEmpty()) {
+            return;
+        }
+        statement.executeBatch();
+        if (keys) {
+            int index = 0;
+            try (ResultSet resultSet = statement.getGeneratedKeys()) {
+                while (resultSet.next() && (index < batched.size())) {
+                    batched.get(index++).setId(resultSet.getLong(1));
+                }
+            }
+            if (index != batched.size()) {
+                throw new SQLException("Expected " + batched.size() +
+                        " generated keys but received " + index);
+            }
+        }
+        batched.clear();
+    }
+
+    private int positive(String name, int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException(name + " must be at least 1");
+        }
+        return value;
+    }
+
+    /**
+     * <p>Main loop for a writer thread.  Once any writer has failed, all
+     * writers roll back and discard whatever they receive, so that the
+     * calling thread is never left waiting on a full buffer.  A writer that
+     * fails after taking its end marker (in the final flush or commit) must
+     * not drain, because no further end marker will arrive for it.</p>
+     *
+     * @param buffer Buffer of models (and end markers) to be written
+     * @param failure Holder for the first failure from any writer
+     * @param inserted Counter of committed rows
+     */
+    @SuppressWarnings("unchecked")
+    private void write(BlockingQueue<Object> buffer,
+                       AtomicReference<SQLException> failure,
+                       AtomicLong inserted) {
+
+        Connection connection = null;
+        PreparedStatement statement = null;
+        String sql = null;
+        boolean keys = false;
+        List<M> batched = new ArrayList<>(batchSize);
+        boolean ended = false;
+        int uncommitted = 0;
+
+        try {
+            connection = dataSource.getConnection();
+            connection.setAutoCommit(false);
+            while (true) {
+                Object next = buffer.take();
+                if (next == END) {
+                    ended = true;
+                    break;
+                } else if (failure.get() != null) {
+                    continue;
+                }
+                M model = (M) next;
+                InsertBuilder builder = mapper.apply(model);
+                String rendered = builder.render();
+                if (!rendered.equals(sql)) {
+                    flush(statement, keys, batched);
+                    if (statement != null) {
+                        statement.close();
+                    }
+                    String[] columns = builder.keys();
+                    statement = AbstractStatementBuilder.prepare(connection, rendered, columns);
+                    sql = rendered;
+                    keys = (columns != null);
+                }
+                builder.applyParams(statement);
+                statement.addBatch();
+                batched.add(model);
+                uncommitted++;
+                if (batched.size() >= batchSize) {
+                    flush(statement, keys, batched);
+                }
+                if (uncommitted >= commitInterval) {
+                    flush(statement, keys, batched);
+                    connection.commit();
+                    inserted.addAndGet(uncommitted);
+                    uncommitted = 0;
+                }
+            }
+            if (failure.get() == null) {
+                flush(statement, keys, batched);
+                connection.commit();
+                inserted.addAndGet(uncommitted);
+                uncommitted = 0;
+            }
+        } catch (SQLException e) {
+            failure.compareAndSet(null, e);
+        } catch (InterruptedException e) {
+            failure.compareAndSet(null, new SQLException("Bulk load was interrupted", e));
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, new SQLException(e));
+        } finally {
+            if ((failure.get() != null) && !ended) {
+                drain(buffer);
+            }
+            close(connection, statement, uncommitted > 0);
+        }
+
+    }
+
+    private void close(Connection connection, PreparedStatement statement, boolean rollback) {
+        try {
+            if (statement != null) {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            // Ignore
+        }
+        try {
+            if (connection != null) {
+                if (rollback) {
+                    connection.rollback();
+                }
+                connection.close();
+            }
+        } catch (SQLException e) {
+            // Ignore
+        }
+    }
+
+    private void drain(BlockingQueue<Object> buffer) {
+        try {
+            while (buffer.take() != END) {
+                // Discard
+            }
+        } catch (InterruptedException e) {
+            // Calling thread stops offering once no writers are alive
+        }
+    }
+
+}
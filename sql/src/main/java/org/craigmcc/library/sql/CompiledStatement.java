@@ -0,0 +1,318 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.sql;
+
+import org.craigmcc.library.model.Codecs;
+import org.craigmcc.library.model.StatementMetrics;
+
+import javax.validation.constraints.NotNull;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>Immutable, thread-safe template for an SQL statement, created by calling
+ * <code>compile()</code> on one of the statement builders.  The SQL text is
+ * rendered (and interned) exactly once, and the "?" replacement parameters
+ * are described by a fixed layout of <em>slots</em>, so that the same
+ * template can be used to create any number of statements with different
+ * parameter values.</p>
+ *
+ * <p><strong>EXAMPLE:</strong></p>
+ *
+ * <code>
+ *     static final CompiledStatement FIND_BY_ID = new SelectBuilder("mytable")
+ *       .primary("id", null)
+ *       .compile();
+ *     ...
+ *     PreparedStatement statement = FIND_BY_ID.build(connection, 123L);
+ * </code>
+ *
+ * <p>will result in PreparedStatement:
+ * <code>
+ *     SELECT * FROM mytable WHERE (id = ?)
+ * </code>
+ * with the value <code>123L</code> bound to the first parameter.</p>
+ *
+ * <p><strong>USAGE NOTES:</strong></p>
+ * <ul>
+ *     <li>Parameter values are always supplied in slot order, which is the
+ *         order that the "?" placeholders appear in the SQL text.</li>
+ *     <li>Be sure to call <code>close()</code> on the <code>PreparedStatement</code>
+ *         when you are done with it.</li>
+ * </ul>
+ */
+public final class CompiledStatement {
+
+    // Instance Variables ----------------------------------------------------
+
+    private final Object[] defaults;
+    private final String[] keys;
+    private final String[] slots;
+    private final String sql;
+
+    // Constructors ----------------------------------------------------------
+
+    CompiledStatement(@NotNull String sql, String[] keys,
+                      @NotNull List<String> slots, @NotNull List<Object> defaults) {
+        this.sql = sql.intern();
+        this.keys = (keys != null) ? keys.clone() : null;
+        this.slots = slots.toArray(new String[0]);
+        this.defaults = defaults.toArray();
+    }
+
+    // Public Methods --------------------------------------------------------
+
+    /**
+     * <p>Apply the specified parameter values (in slot order) to an existing
+     * <code>PreparedStatement</code> that was created from this template,
+     * replacing any values that were previously applied.</p>
+     *
+     * @param statement The <code>PreparedStatement</code> to update
+     * @param values Parameter values, one per slot
+     *
+     * @throws IllegalArgumentException if the number of values does not
+     *  match the number of slots
+     * @throws SQLException if a JDBC processing error occurs
+     */
+    public void apply(@NotNull PreparedStatement statement, @NotNull Object... values)
+            throws SQLException {
+        if (values.length != slots.length) {
+            throw new IllegalArgumentException("Expected " + slots.length +
+                    " parameter values but received " + values.length);
+        }
+        for (int i = 0; i < values.length; i++) {
+            Codecs.bind(statement, i + 1, values[i]);
+        }
+    }
+
+    /**
+     * <p>Return a {@link StatementBuilder} that will create a statement from
+     * this template, with the specified parameter values (in slot order)
+     * applied.  This allows a compiled statement to be handed to any logic
+     * that accepts a builder.</p>
+     *
+     * @param values Parameter values, one per slot
+     *
+     * @return A builder for a statement with these values applied
+     */
+    public StatementBuilder bind(@NotNull Object... values) {
+        Object[] bound = values.clone();
+        return connection -> build(connection, bound);
+    }
+
+    /**
+     * <p>Create a <code>PreparedStatement</code> from this template, with the
+     * parameter values that were present in the builder when it was
+     * compiled applied.</p>
+     *
+     * @param connection The JDBC connection for which to create the
+     *                   prepared statement
+     *
+     * @return A <code>PreparedStatement</code> ready to be executed
+     *
+     * @throws SQLException if a JDBC processing error occurs
+     */
+    public PreparedStatement build(@NotNull Connection connection)
+            throws SQLException {
+        return build(connection, defaults);
+    }
+
+    /**
+     * <p>Create a <code>PreparedStatement</code> from this template, with the
+     * specified parameter values (in slot order) applied.</p>
+     *
+     * @param connection The JDBC connection for which to create the
+     *                   prepared statement
+     * @param values Parameter values, one per slot
+     *
+     * @return A <code>PreparedStatement</code> ready to be executed
+     *
+     * @throws IllegalArgumentException if the number of values does not
+     *  match the number of slots
+     * @throws SQLException if a JDBC processing error occurs
+     */
+    public PreparedStatement build(@NotNull Connection connection, @NotNull Object... values)
+            throws SQLException {
+        if (values.length != slots.length) {
+            throw new IllegalArgumentException("Expected " + slots.length +
+                    " parameter values but received " + values.length);
+        }
+        return SqlArray.apply(prepare(connection), Arrays.asList(values));
+    }
+
+    /**
+     * <p>Execute this statement once for each of the specified rows of
+     * parameter values (each in slot order), using JDBC batching so that
+     * rows are sent to the database <code>chunkSize</code> at a time instead
+     * of one per round trip.  If this statement requests generated keys
+     * (for example, an INSERT where <code>primary()</code> was specified),
+     * the generated key for each row is returned, in the same order as the
+     * input rows.  Otherwise, an empty list is returned.</p>
+     *
+     * <p>This method does not commit or roll back any transaction; that is
+     * left to the caller.</p>
+     *
+     * @param connection The JDBC connection on which to execute the batch
+     * @param rows Rows of parameter values, one value per slot in each row
+     * @param chunkSize Maximum number of rows sent per batch execution
+     *
+     * @return Generated keys in input order, or an empty list if no keys
+     *  were requested
+     *
+     * @throws IllegalArgumentException if <code>chunkSize</code> is less than
+     *  one, or a row does not have one value per slot
+     * @throws SQLException if a JDBC processing error occurs, or the driver
+     *  does not return one generated key per row
+     */
+    public List<Object> executeBatch(@NotNull Connection connection,
+                                     @NotNull Iterable<Object[]> rows,
+                                     int chunkSize)
+            throws SQLException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be at least 1");
+        }
+        List<Object> generated = new ArrayList<>();
+        try (PreparedStatement statement = prepare(connection)) {
+            int count = 0;
+            for (Object[] row : rows) {
+                apply(statement, row);
+                statement.addBatch();
+                if (++count == chunkSize) {
+                    flush(statement, count, generated);
+                    count = 0;
+                }
+            }
+            if (count > 0) {
+                flush(statement, count, generated);
+            }
+        }
+        return generated;
+    }
+
+    /**
+     * <p>Return the names of the generated key columns that will be requested
+     * when a statement is created, or <code>null</code> for none.</p>
+     */
+    public String[] getKeys() {
+        return (keys != null) ? keys.clone() : null;
+    }
+
+    /**
+     * <p>Return the column name related to the specified (zero-relative)
+     * parameter slot, or <code>null</code> if it does not relate to a column.</p>
+     *
+     * @param index Zero-relative slot index
+     */
+    public String getSlot(int index) {
+        return slots[index];
+    }
+
+    /**
+     * <p>Return the number of parameter slots in this template.</p>
+     */
+    public int getSlotCount() {
+        return slots.length;
+    }
+
+    /**
+     * <p>Return the (interned) SQL text for this template.</p>
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * <p>Return the zero-relative index of the first parameter slot related
+     * to the specified column name, or <code>-1</code> if there is none.</p>
+     *
+     * @param column Column name to look up
+     */
+    public int indexOf(@NotNull String column) {
+        for (int i = 0; i < slots.length; i++) {
+            if (column.equals(slots[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledStatement{sql=" + sql +
+                ", slots=" + Arrays.toString(slots) +
+                ", keys=" + Arrays.toString(keys) + "}";
+    }
+
+    // Private Methods -------------------------------------------------------
+
+    /**
+     * <p>Execute the rows batched so far, and collect their generated keys
+     * (if any were requested).</p>
+     *
+     * @param statement Statement with batched rows
+     * @param count Number of rows that were batched
+     * @param generated List to which generated keys are appended
+     *
+     * @throws SQLException if a JDBC processing error occurs
+     */
+    private void flush(PreparedStatement statement, int count, List<Object> generated)
+            throws SQLException {
+        statement.executeBatch();
+        if (keys == null) {
+            return;
+        }
+        int found = 0;
+        try (ResultSet resultSet = statement.getGeneratedKeys()) {
+            while (resultSet.next()) {
+                generated.add(resultSet.getObject(1));
+                found++;
+            }
+        }
+        if (found != count) {
+            throw new SQLException("Expected " + count +
+                    " generated keys but received " + found);
+        }
+    }
+
+    /**
+     * <p>Create the <code>PreparedStatement</code> for this template.  If
+     * {@link StatementMetrics} are enabled, the prepare time is recorded
+     * against the SQL text, and the returned statement records its
+     * execution times as well.  (There is no build time to record, because
+     * the SQL text was rendered once by <code>compile()</code>.)</p>
+     *
+     * @param connection The JDBC connection for which to create the statement
+     *
+     * @throws SQLException if a JDBC processing error occurs
+     */
+    private PreparedStatement prepare(Connection connection) throws SQLException {
+        if (!StatementMetrics.isEnabled()) {
+            return AbstractStatementBuilder.prepare(connection, sql, keys);
+        }
+        StatementMetrics.Shape shape = StatementMetrics.shape(sql);
+        long start = System.nanoTime();
+        PreparedStatement statement =
+                AbstractStatementBuilder.prepare(connection, sql, keys);
+        shape.getPrepare().record(System.nanoTime() - start);
+        return StatementMetrics.instrument(statement, shape);
+    }
+
+}
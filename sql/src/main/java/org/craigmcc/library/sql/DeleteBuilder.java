@@ -18,9 +18,7 @@ package org.craigmcc.library.sql;
 import org.craigmcc.library.model.Model;
 
 import javax.validation.constraints.NotNull;
-import java.sql.Connection;
 import java.sql.PreparedStatement;
-import java.sql.SQLException;
 
 import static org.craigmcc.library.model.Constants.ID_COLUMN;
 
@@ -47,20 +45,6 @@ public class DeleteBuilder extends AbstractStatementBuilder<DeleteBuilder> {
 
     // Public Methods --------------------------------------------------------
 
-    @Override
-    public PreparedStatement build(Connection connection) throws SQLException {
-
-        StringBuilder sb = new StringBuilder("DELETE FROM ");
-        sb.append(tables.get(0));
-
-        addWhere(sb);
-        sql = sb.toString();
-        PreparedStatement statement = connection.prepareStatement(sql);
-        applyParams(statement);
-        return statement;
-
-    }
-
     /**
      * <p>Record the primary key name and value for generating a WHERE condition.</p>
      *
@@ -73,4 +57,19 @@ public class DeleteBuilder extends AbstractStatementBuilder<DeleteBuilder> {
         return this;
     }
 
+    // Protected Methods -----------------------------------------------------
+
+    @Override
+    protected String render() throws IllegalStateException {
+
+        clearParams();
+        StringBuilder sb = buffer().append("DELETE FROM ");
+        sb.append(tables.get(0));
+        addOutput(sb, "DELETED");
+        addWhere(sb);
+        addReturning(sb, true);
+        return sb.toString();
+
+    }
+
 }
@@ -21,6 +21,8 @@ import javax.validation.constraints.NotNull;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * <p>Builder that generates a {@link PreparedStatement} for an SQL INSERT.</p>
@@ -63,13 +65,49 @@ import java.sql.SQLException;
  *         on it after the insert completes.  In the resulting <code>ResultSet</code>,
  *         call <code>next()</code> and then <code>getLong(1)</code> (or whatever
  *         is appropriate for the data type of your primary key) to retrieve it.</li>
+ *     <li>To also retrieve other values assigned by the database (such as
+ *         <code>now()</code> timestamps) without a separate SELECT, call
+ *         <code>returning()</code> with the columns to be returned.</li>
  *     <li>Be sure to call <code>close()</code> on the <code>PreparedStatement</code>
  *         when you are done with it.</li>
  * </ul>
+ *
+ * <p><strong>EXAMPLE 3 (BATCH):</strong></p>
+ *
+ * <code>
+ *     List&lt;Object&gt; keys = new InsertBuilder("mytable")
+ *       .pair("firstName", null)
+ *       .pair("lastName", null)
+ *       .primary("id")
+ *       .row("Fred", "Flintstone")
+ *       .row("Barney", "Rubble")
+ *       .executeBatch(connection);
+ * </code>
+ *
+ * <p>will execute the single PreparedStatement:
+ * <code>
+ *     INSERT INTO mytable (firstName, lastName) VALUES (?, ?)
+ * </code>
+ * once per row, using JDBC batching, and return the generated primary keys
+ * in the same order as the rows.  In batch mode, <code>pair()</code> calls
+ * only define the columns (their values are ignored), while each row supplies
+ * one value per non-literal column, in the order the pairs were added.</p>
  */
 public class InsertBuilder extends MutatingStatementBuilder<InsertBuilder>
         implements StatementBuilder {
 
+    // Static Variables ------------------------------------------------------
+
+    /**
+     * <p>Default maximum number of rows sent per batch execution.</p>
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    // Instance Variables ----------------------------------------------------
+
+    protected int batchSize = DEFAULT_BATCH_SIZE;
+    protected List<Object[]> rows = Collections.emptyList();
+
     // Constructors ----------------------------------------------------------
 
     public InsertBuilder(@NotNull String table) {
@@ -78,10 +116,130 @@ public class InsertBuilder extends MutatingStatementBuilder<InsertBuilder>
 
     // Public Methods --------------------------------------------------------
 
+    /**
+     * <p>Set the maximum number of rows sent to the database per batch
+     * execution in <code>executeBatch()</code>.  Default is
+     * <code>DEFAULT_BATCH_SIZE</code>.</p>
+     *
+     * @param batchSize Maximum rows per batch execution
+     *
+     * @return This builder
+     */
+    public InsertBuilder batchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * <p>Insert all of the rows specified by calling <code>row()</code>,
+     * using JDBC batching with at most <code>batchSize</code> rows per
+     * round trip.  If <code>primary()</code> was specified, the generated
+     * primary keys are returned in the same order as the rows were added.
+     * Otherwise, an empty list is returned.  Once the rows have been
+     * executed successfully, they are discarded, so that the builder can
+     * collect the next batch.  If execution fails, they are retained.</p>
+     *
+     * <p>This method does not commit or roll back any transaction; that is
+     * left to the caller.</p>
+     *
+     * @param connection The JDBC connection on which to insert the rows
+     *
+     * @return Generated primary keys in row order, or an empty list
+     *
+     * @throws SQLException if a JDBC processing error occurs
+     */
+    public List<Object> executeBatch(@NotNull Connection connection)
+            throws SQLException {
+        List<Object> results = executeBatch(connection, rows);
+        rows.clear();
+        return results;
+    }
+
+    /**
+     * <p>Insert all of the specified rows, using JDBC batching with at most
+     * <code>batchSize</code> rows per round trip.  If <code>primary()</code>
+     * was specified, the generated primary keys are returned in the same
+     * order as the rows.  Otherwise, an empty list is returned.</p>
+     *
+     * <p>This method does not commit or roll back any transaction; that is
+     * left to the caller.</p>
+     *
+     * @param connection The JDBC connection on which to insert the rows
+     * @param rows Rows of values, each with one value per non-literal
+     *             column in the order that the pairs were added
+     *
+     * @return Generated primary keys in row order, or an empty list
+     *
+     * @throws SQLException if a JDBC processing error occurs
+     */
+    public List<Object> executeBatch(@NotNull Connection connection,
+                                     @NotNull Iterable<Object[]> rows)
+            throws SQLException {
+        return compile().executeBatch(connection, rows, batchSize);
+    }
+
+    /**
+     * <p>Store the specified name of the primary key column for this object
+     * so that it can be retrieved after an INSERT statement is completed.
+     *
+     * <p><strong>NOTE:</strong> If you are dealing with a {@link Model} object,
+     * calling <code>pairModel()</code> will have done this for you already.</p>
+     *
+     * @param column Name of the primary key column for this table
+     *
+     * @return This builder
+     */
+    public InsertBuilder primary(@NotNull String column) {
+        this.primary = new Pair(column, null);
+        return this;
+    }
+
+    /**
+     * <p>Reset this builder as described for the superclass, also discarding
+     * any rows and restoring the default batch size.</p>
+     *
+     * @return This builder
+     */
+    @Override
+    public InsertBuilder reset() {
+        super.reset();
+        batchSize = DEFAULT_BATCH_SIZE;
+        rows.clear();
+        return this;
+    }
+
+    /**
+     * <p>Add a row of values to be inserted by <code>executeBatch()</code>.
+     * There must be one value per non-literal column, in the order that the
+     * pairs were added.</p>
+     *
+     * @param values Values for this row
+     *
+     * @return This builder
+     */
+    public InsertBuilder row(@NotNull Object... values) {
+        mutableRows().add(values);
+        return this;
+    }
+
+    // Protected Methods -----------------------------------------------------
+
+    /**
+     * <p>Return the list of batched rows, first replacing the shared empty
+     * list with one that can be added to.</p>
+     */
+    protected List<Object[]> mutableRows() {
+        return rows = mutable(rows);
+    }
+
     @Override
-    public PreparedStatement build(Connection connection) throws SQLException {
+    protected String render() throws IllegalStateException {
 
-        StringBuilder sb = new StringBuilder("INSERT INTO ")
+        clearParams();
+        StringBuilder sb = buffer().append("INSERT INTO ")
                 .append(tables.get(0))
                 .append(" (");
         boolean first = true;
@@ -97,7 +255,9 @@ public class InsertBuilder extends MutatingStatementBuilder<InsertBuilder>
             sb.append(pair.column);
         }
 
-        sb.append(") VALUES (");
+        sb.append(")");
+        addOutput(sb, "INSERTED");
+        sb.append(" VALUES (");
         first = true;
         for (Pair pair : pairs) {
             if ((primary != null) && pair.column.equals(primary.column)) {
@@ -108,44 +268,30 @@ public class InsertBuilder extends MutatingStatementBuilder<InsertBuilder>
             } else {
                 sb.append(", ");
             }
-            if (pair.value == null) {
+            if ((pair.value == null) && (pair.literal || !template)) {
                 sb.append(NULL_VALUE);
             } else if (pair.literal) {
                 sb.append(pair.value);
             } else {
                 sb.append("?");
-                addParam(pair.value);
+                addParam(pair.column, pair.value);
             }
         }
         sb.append(")");
-        sql = sb.toString();
-
-        PreparedStatement statement = null;
-        if (primary != null) {
-            String[] keys = new String[] { primary.column };
-            statement = connection.prepareStatement(sql, keys);
-        } else {
-            statement = connection.prepareStatement(sql);
-        }
-        applyParams(statement);
-        return statement;
+        addReturning(sb, false);
+        return sb.toString();
 
     }
 
-    /**
-     * <p>Store the specified name of the primary key column for this object
-     * so that it can be retrieved after an INSERT statement is completed.
-     *
-     * <p><strong>NOTE:</strong> If you are dealing with a {@link Model} object,
-     * calling <code>pairModel()</code> will have done this for you already.</p>
-     *
-     * @param column Name of the primary key column for this table
-     *
-     * @return This builder
-     */
-    public InsertBuilder primary(@NotNull String column) {
-        this.primary = new Pair(column, null);
-        return this;
+    @Override
+    protected String[] keys() {
+        if (!returning.isEmpty()) {
+            return super.keys();
+        } else if (primary != null) {
+            return new String[] { primary.column };
+        } else {
+            return null;
+        }
     }
 
 }
@@ -20,8 +20,9 @@ import javax.validation.constraints.NotNull;
 /**
  * <p>Extension of {@link AbstractStatementBuilder} that marks this builder
  * as supporting data mutation.  It should be extended only by
- * {@link InsertBuilder} and {@link UpdateBuilder} to support common
- * per-model-type extensions that require lists of <code>pair()</code> calls.</p>
+ * {@link InsertBuilder}, {@link UpdateBuilder}, and {@link UpsertBuilder}
+ * to support common per-model-type extensions that require lists of
+ * <code>pair()</code> calls.</p>
  */
 public abstract class MutatingStatementBuilder<B extends StatementBuilder>
         extends AbstractStatementBuilder<B>
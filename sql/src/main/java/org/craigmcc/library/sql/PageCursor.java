@@ -0,0 +1,125 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.sql;
+
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>Immutable position within a sequence of pages retrieved with keyset
+ * (seek) pagination, via <code>page()</code> on {@link SelectBuilder}.
+ * A cursor carries the page size plus the values of the
+ * <code>orderBy()</code> columns from the last row of the previous page
+ * (if any), so that the next page can be selected with a WHERE condition
+ * instead of skipping rows with OFFSET.</p>
+ *
+ * <p><strong>EXAMPLE:</strong></p>
+ *
+ * <code>
+ *     PageCursor cursor = PageCursor.first(25);
+ *     ... select and process a page, remembering the last row ...
+ *     cursor = cursor.next(last.getLastName(), last.getId());
+ * </code>
+ *
+ * <p><strong>USAGE NOTES:</strong></p>
+ * <ul>
+ *     <li>The key values must be supplied in the same order as the
+ *         <code>orderBy()</code> columns of the select.</li>
+ *     <li>The <code>orderBy()</code> columns must not contain nulls,
+ *         and together they must uniquely identify a row (typically by
+ *         ending with the primary key), or rows may be skipped.</li>
+ *     <li>Cursors are <code>Serializable</code> so that they can be kept
+ *         in a session between requests.  If one is handed to an untrusted
+ *         client, encode just the key values, rather than serializing
+ *         the cursor.</li>
+ * </ul>
+ */
+public final class PageCursor implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // Instance Variables ----------------------------------------------------
+
+    private final Object[] keys;
+    private final int size;
+
+    // Constructors ----------------------------------------------------------
+
+    private PageCursor(int size, Object[] keys) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size must be at least 1");
+        }
+        this.size = size;
+        this.keys = keys;
+    }
+
+    // Static Methods --------------------------------------------------------
+
+    /**
+     * <p>Return a cursor for the first page of the specified size.</p>
+     *
+     * @param size Maximum number of rows per page
+     */
+    public static PageCursor first(int size) {
+        return new PageCursor(size, null);
+    }
+
+    // Public Methods --------------------------------------------------------
+
+    /**
+     * <p>Return the key values from the last row of the previous page, in
+     * <code>orderBy()</code> column order, or an empty list for the first page.</p>
+     */
+    public List<Object> getKeys() {
+        return (keys != null) ? Collections.unmodifiableList(Arrays.asList(keys)) : Collections.emptyList();
+    }
+
+    /**
+     * <p>Return the maximum number of rows per page.</p>
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * <p>Return <code>true</code> if this cursor is for the first page.</p>
+     */
+    public boolean isFirst() {
+        return keys == null;
+    }
+
+    /**
+     * <p>Return a cursor for the page following the one whose last row had
+     * the specified key values (in <code>orderBy()</code> column order).</p>
+     *
+     * @param keys Key values from the last row of the current page
+     */
+    public PageCursor next(@NotNull Object... keys) {
+        if (keys.length == 0) {
+            throw new IllegalArgumentException("At least one key value must be specified");
+        }
+        return new PageCursor(size, keys.clone());
+    }
+
+    @Override
+    public String toString() {
+        return "PageCursor{size=" + size + ", keys=" + Arrays.toString(keys) + "}";
+    }
+
+}
@@ -21,6 +21,7 @@ import javax.validation.constraints.NotNull;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.List;
 
 import static org.craigmcc.library.model.Constants.ID_COLUMN;
 import static org.craigmcc.library.model.Constants.PUBLISHED_COLUMN;
@@ -46,6 +47,11 @@ public class SelectBuilder extends AbstractStatementBuilder<SelectBuilder> {
     // TODO - add a way to utilize this instead of column names?
     private static final String COUNT_LITERAL = "count(*)";
 
+    // Instance Variables ----------------------------------------------------
+
+    protected PageCursor cursor = null;
+    protected Integer fetchSize = null;
+
     // Constructors ----------------------------------------------------------
 
     public SelectBuilder(@NotNull String table) {
@@ -54,41 +60,25 @@ public class SelectBuilder extends AbstractStatementBuilder<SelectBuilder> {
 
     // Public Methods --------------------------------------------------------
 
+    /**
+     * <p>Generate and return a JDBC <code>PreparedStatement</code> as
+     * described for the superclass, applying the fetch size (if any)
+     * that was specified by <code>fetchSize()</code>.</p>
+     *
+     * @param connection The JDBC connection for which to create the
+     *                  prepared statement
+     *
+     * @return A <code>PreparedStatement</code> ready to be executed
+     *
+     * @throws SQLException if a JDBC processing error occurs
+     */
     @Override
-    public PreparedStatement build(Connection connection)
-            throws SQLException {
-
-        StringBuilder sb = new StringBuilder("SELECT ");
-        if (distinct) {
-            sb.append("DISTINCT ");
+    public PreparedStatement build(Connection connection) throws SQLException {
+        PreparedStatement statement = super.build(connection);
+        if ((fetchSize != null) && (statement != null)) {
+            statement.setFetchSize(fetchSize);
         }
-        if (pairs.size() == 0) {
-            sb.append("*");
-        } else {
-            boolean first = true;
-            for (Pair pair : pairs) {
-                if (first) {
-                    first = false;
-                } else {
-                    sb.append(", ");
-                }
-                sb.append(pair.column);
-            }
-        }
-
-        sb.append(" FROM ");
-        sb.append(tables.get(0));
-        addWhere(sb);
-        addGroupBy(sb);
-        addOrderBy(sb);
-        addLimit(sb);
-        addOffset(sb);
-
-        sql = sb.toString();
-        PreparedStatement statement = connection.prepareStatement(sql);
-        applyParams(statement);
         return statement;
-
     }
 
     /**
@@ -103,7 +93,7 @@ public class SelectBuilder extends AbstractStatementBuilder<SelectBuilder> {
      */
     public SelectBuilder column(@NotNull String... columns) {
         for (String column : columns) {
-            pairs.add(new Pair(column, null));
+            mutablePairs().add(new Pair(column, null));
         }
         return this;
     }
@@ -123,6 +113,22 @@ public class SelectBuilder extends AbstractStatementBuilder<SelectBuilder> {
         return this;
     }
 
+    /**
+     * <p>Hint to the JDBC driver how many rows should be fetched from the
+     * database per round trip when reading the results of this select.
+     * Combined with a {@link org.craigmcc.library.model.ModelCursor}, this
+     * allows very large results to be processed in constant memory.
+     * Default is the driver's own default.</p>
+     *
+     * @param fetchSize Number of rows to fetch per round trip
+     *
+     * @return This builder
+     */
+    public SelectBuilder fetchSize(Integer fetchSize) {
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
     /**
      * <p>Store the name of the column(s) by which results should be grouped.
      * These will be applied to a statement in the order that they were
@@ -134,7 +140,7 @@ public class SelectBuilder extends AbstractStatementBuilder<SelectBuilder> {
      */
     public SelectBuilder groupBy(@NotNull String... columns) {
         for (String column : columns) {
-            groupBys.add(column);
+            mutableGroupBys().add(column);
         }
         return this;
     }
@@ -166,6 +172,31 @@ public class SelectBuilder extends AbstractStatementBuilder<SelectBuilder> {
         return this;
     }
 
+    /**
+     * <p>Select the page of rows described by the specified {@link PageCursor},
+     * using keyset (seek) pagination.  The page size becomes the limit, and
+     * (after the first page) a condition is added so that only rows after
+     * the cursor's key values, in <code>orderBy()</code> order, are matched.
+     * Unlike <code>offset()</code>, the database does not need to read and
+     * discard the rows of earlier pages.</p>
+     *
+     * <p>When every <code>orderBy()</code> column has the same direction,
+     * the condition is a row value comparison such as
+     * <code>((lastName, id) &gt; (?, ?))</code>.  With mixed directions, it
+     * is expanded into the equivalent OR of comparisons.  Any other
+     * conditions are combined with the seek condition by AND.</p>
+     *
+     * @param cursor Cursor describing the page to be selected
+     *
+     * @return This builder
+     */
+    public SelectBuilder page(@NotNull PageCursor cursor) {
+        this.cursor = cursor;
+        this.limit = cursor.getSize();
+        this.offset = null;
+        return this;
+    }
+
     /**
      * <p>Store an <code>OrderBy</code> representing the specified column name
      * and direction on which results should be sorted.  These will be applied
@@ -177,12 +208,159 @@ public class SelectBuilder extends AbstractStatementBuilder<SelectBuilder> {
      * @return This builder
      */
     public SelectBuilder orderBy(@NotNull String column, @NotNull SqlDirection direction) {
-        orderBys.add(new OrderBy(column, direction));
+        mutableOrderBys().add(new OrderBy(column, direction));
+        return this;
+    }
+
+    /**
+     * <p>Reset this builder as described for the superclass, also discarding
+     * any page cursor and fetch size.</p>
+     *
+     * @return This builder
+     */
+    @Override
+    public SelectBuilder reset() {
+        super.reset();
+        cursor = null;
+        fetchSize = null;
         return this;
     }
 
     // Protected Methods -----------------------------------------------------
 
+    /**
+     * <p>Wrap the statement so that its queries are timed by the installed
+     * {@link SlowQueryLog}, if there is one.</p>
+     *
+     * @param statement The prepared statement
+     *
+     * @return The (possibly wrapped) statement
+     */
+    @Override
+    protected PreparedStatement decorate(PreparedStatement statement) {
+        SlowQueryLog log = SlowQueryLog.installed();
+        if ((log == null) || (statement == null)) {
+            return statement;
+        }
+        return log.wrap(statement, sql, params, dialect);
+    }
+
+    /**
+     * <p>Add a WHERE clause as described for the superclass, plus the seek
+     * condition for keyset pagination if <code>page()</code> was called
+     * with a cursor that is not for the first page.</p>
+     *
+     * @param sb StringBuilder containing the SQL text being created
+     */
+    @Override
+    protected void addWhere(StringBuilder sb) throws IllegalStateException {
+
+        if ((cursor == null) || cursor.isFirst()) {
+            super.addWhere(sb);
+            return;
+        }
+        List<Object> keys = cursor.getKeys();
+        if (keys.size() != orderBys.size()) {
+            throw new IllegalStateException("Cursor has " + keys.size() +
+                    " key values but there are " + orderBys.size() + " orderBy() columns");
+        }
+
+        // Combine any other conditions with the seek condition
+        if (!all && ((primary != null) || (clauses.size() > 0) || (expressions.size() > 0))) {
+            StringBuilder conditions = new StringBuilder();
+            super.addWhere(conditions);
+            sb.append(" WHERE (");
+            sb.append(conditions, " WHERE ".length(), conditions.length());
+            sb.append(") AND ");
+        } else {
+            sb.append(" WHERE ");
+        }
+
+        // Use a row value comparison if all directions are the same
+        boolean uniform = true;
+        for (OrderBy orderBy : orderBys) {
+            if (orderBy.direction != orderBys.get(0).direction) {
+                uniform = false;
+                break;
+            }
+        }
+        if (uniform && (orderBys.size() == 1)) {
+            sb.append("(");
+            addSeek(sb, orderBys.get(0), keys.get(0));
+            sb.append(")");
+        } else if (uniform) {
+            sb.append("((");
+            for (int i = 0; i < orderBys.size(); i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(orderBys.get(i).column);
+            }
+            sb.append(") ");
+            sb.append(orderBys.get(0).direction == SqlDirection.ASC ? ">" : "<");
+            sb.append(" (");
+            for (int i = 0; i < orderBys.size(); i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append("?");
+                addParam(orderBys.get(i).column, keys.get(i));
+            }
+            sb.append("))");
+        } else {
+            // (a > ?) OR (a = ? AND b < ?) OR (a = ? AND b = ? AND c > ?) ...
+            sb.append("(");
+            for (int i = 0; i < orderBys.size(); i++) {
+                if (i > 0) {
+                    sb.append(" OR ");
+                }
+                sb.append("(");
+                for (int j = 0; j < i; j++) {
+                    sb.append(orderBys.get(j).column);
+                    sb.append(" = ? AND ");
+                    addParam(orderBys.get(j).column, keys.get(j));
+                }
+                addSeek(sb, orderBys.get(i), keys.get(i));
+                sb.append(")");
+            }
+            sb.append(")");
+        }
+
+    }
+
+    @Override
+    protected String render() throws IllegalStateException {
+
+        clearParams();
+        StringBuilder sb = buffer().append("SELECT ");
+        if (distinct) {
+            sb.append("DISTINCT ");
+        }
+        if (pairs.size() == 0) {
+            sb.append("*");
+        } else {
+            boolean first = true;
+            for (Pair pair : pairs) {
+                if (first) {
+                    first = false;
+                } else {
+                    sb.append(", ");
+                }
+                sb.append(pair.column);
+            }
+        }
+
+        sb.append(" FROM ");
+        sb.append(tables.get(0));
+        addWhere(sb);
+        addGroupBy(sb);
+        addOrderBy(sb);
+        addLimit(sb);
+        addOffset(sb);
+        return sb.toString();
+
+    }
+
     /**
      * <p>Add a GROUP BY clause, if requested.</p>
      *
@@ -225,6 +403,20 @@ public class SelectBuilder extends AbstractStatementBuilder<SelectBuilder> {
         }
     }
 
+    /**
+     * <p>Add a comparison that matches values after the specified key value
+     * in the direction of the specified <code>OrderBy</code>.</p>
+     *
+     * @param sb StringBuilder containing the SQL text being created
+     * @param orderBy Column and direction being compared
+     * @param key Key value from the last row of the previous page
+     */
+    protected void addSeek(StringBuilder sb, OrderBy orderBy, Object key) {
+        sb.append(orderBy.column);
+        sb.append(orderBy.direction == SqlDirection.ASC ? " > ?" : " < ?");
+        addParam(orderBy.column, key);
+    }
+
     /**
      * <p>Add an ORDER BY clause, if requested.</p>
      *
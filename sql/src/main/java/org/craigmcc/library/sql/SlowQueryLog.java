@@ -0,0 +1,547 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.sql;
+
+import org.craigmcc.library.model.Codecs;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * <p>Log of SELECT statements (built by {@link SelectBuilder}) that take
+ * longer than a configurable threshold, measured from the call to
+ * <code>executeQuery()</code> until the returned <code>ResultSet</code> has
+ * been exhausted or closed.  Each entry records the elapsed time, the number
+ * of rows read, the SQL text, a sample of the bound parameter values, and
+ * the call site that read the results.  Optionally, the execution plan is
+ * captured (with <code>EXPLAIN</code> on the same connection) for the first
+ * few slow occurrences of each SQL text.</p>
+ *
+ * <p>Entries are written to a <code>java.util.logging</code> handler, which
+ * by default is a <code>FileHandler</code> rotating through a set of files
+ * of bounded size.  For example:</p>
+ *
+ * <code>
+ *     SlowQueryLog log = new SlowQueryLog("%t/slow-queries-%g.log")
+ *         .threshold(500, TimeUnit.MILLISECONDS)
+ *         .explain(3)
+ *         .install();
+ * </code>
+ *
+ * <p>At most one log is installed at a time.  While none is installed, the
+ * only cost to <code>SelectBuilder.build()</code> is a single volatile read.
+ * While one is installed, each built statement is wrapped, and its parameter
+ * values are copied, so that they are still available after the builder has
+ * been reset or reused.</p>
+ */
+public class SlowQueryLog implements AutoCloseable {
+
+    // Static Variables ------------------------------------------------------
+
+    /**
+     * <p>Default number of log files to rotate through.</p>
+     */
+    public static final int DEFAULT_COUNT = 5;
+
+    /**
+     * <p>Default maximum number of bytes written to each log file.</p>
+     */
+    public static final int DEFAULT_LIMIT = 10 * 1024 * 1024;
+
+    /**
+     * <p>Default maximum number of parameter values logged per entry.</p>
+     */
+    public static final int DEFAULT_MAX_PARAMS = 10;
+
+    /**
+     * <p>Default threshold (in milliseconds) above which queries are
+     * logged.</p>
+     */
+    public static final long DEFAULT_THRESHOLD_MILLIS = 1000;
+
+    /**
+     * <p>Maximum number of distinct SQL texts for which explain counts are
+     * tracked.  Slow queries for further texts are not explained.</p>
+     */
+    public static final int MAX_EXPLAINED = 1_000;
+
+    /**
+     * <p>Maximum number of characters logged for each parameter value.</p>
+     */
+    public static final int MAX_VALUE_LENGTH = 100;
+
+    private static volatile SlowQueryLog installed = null;
+
+    // Instance Variables ----------------------------------------------------
+
+    private int explainLimit = 0;
+    private final ConcurrentHashMap<String, AtomicInteger> explained = new ConcurrentHashMap<>();
+    private final Handler handler;
+    private final AtomicLong logged = new AtomicLong();
+    private int maxParams = DEFAULT_MAX_PARAMS;
+    private long thresholdNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_THRESHOLD_MILLIS);
+
+    // Constructors ----------------------------------------------------------
+
+    /**
+     * <p>Create a log that writes to rotating files matching the specified
+     * <code>FileHandler</code> pattern, with the default size limit and
+     * file count.</p>
+     *
+     * @param pattern <code>FileHandler</code> file name pattern
+     *
+     * @throws IOException if the log file cannot be opened
+     */
+    public SlowQueryLog(@NotNull String pattern) throws IOException {
+        this(pattern, DEFAULT_LIMIT, DEFAULT_COUNT);
+    }
+
+    /**
+     * <p>Create a log that writes to rotating files matching the specified
+     * <code>FileHandler</code> pattern.</p>
+     *
+     * @param pattern <code>FileHandler</code> file name pattern
+     * @param limit Maximum number of bytes written to each file
+     * @param count Number of files to rotate through
+     *
+     * @throws IOException if the log file cannot be opened
+     */
+    public SlowQueryLog(@NotNull String pattern, int limit, int count) throws IOException {
+        this(new FileHandler(pattern, limit, count, true));
+        handler.setFormatter(new EntryFormatter());
+    }
+
+    /**
+     * <p>Create a log that publishes entries to the specified handler.</p>
+     *
+     * @param handler Handler to which entries are published
+     */
+    public SlowQueryLog(@NotNull Handler handler) {
+        this.handler = handler;
+    }
+
+    // Static Methods --------------------------------------------------------
+
+    /**
+     * <p>Return the currently installed log, or <code>null</code> if there
+     * is none.</p>
+     */
+    public static SlowQueryLog installed() {
+        return installed;
+    }
+
+    /**
+     * <p>Uninstall the currently installed log, if there is one.  The log
+     * itself is not closed.</p>
+     */
+    public static void uninstall() {
+        installed = null;
+    }
+
+    // Public Methods --------------------------------------------------------
+
+    /**
+     * <p>Uninstall this log (if it is installed), and close its handler.</p>
+     */
+    @Override
+    public void close() {
+        if (installed == this) {
+            installed = null;
+        }
+        handler.close();
+    }
+
+    /**
+     * <p>Capture the execution plan (with <code>EXPLAIN</code>) for the
+     * first <code>occurrences</code> slow queries of each SQL text.  Zero
+     * (the default) disables plan capture.</p>
+     *
+     * @param occurrences Number of occurrences to explain per SQL text
+     *
+     * @return This log
+     */
+    public SlowQueryLog explain(int occurrences) {
+        if (occurrences < 0) {
+            throw new IllegalArgumentException("occurrences must not be negative");
+        }
+        this.explainLimit = occurrences;
+        return this;
+    }
+
+    /**
+     * <p>Return the number of entries logged so far.</p>
+     */
+    public long getLogged() {
+        return logged.get();
+    }
+
+    /**
+     * <p>Install this log, replacing any previously installed one, so that
+     * statements subsequently built by {@link SelectBuilder} are timed.</p>
+     *
+     * @return This log
+     */
+    public SlowQueryLog install() {
+        installed = this;
+        return this;
+    }
+
+    /**
+     * <p>Set the maximum number of parameter values logged per entry.
+     * Default is <code>DEFAULT_MAX_PARAMS</code>.</p>
+     *
+     * @param maxParams Maximum number of parameter values
+     *
+     * @return This log
+     */
+    public SlowQueryLog maxParams(int maxParams) {
+        if (maxParams < 0) {
+            throw new IllegalArgumentException("maxParams must not be negative");
+        }
+        this.maxParams = maxParams;
+        return this;
+    }
+
+    /**
+     * <p>Set the elapsed time at or above which queries are logged.
+     * Default is <code>DEFAULT_THRESHOLD_MILLIS</code> milliseconds.</p>
+     *
+     * @param threshold Threshold in the specified units
+     * @param unit Time unit of the threshold
+     *
+     * @return This log
+     */
+    public SlowQueryLog threshold(long threshold, @NotNull TimeUnit unit) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("threshold must not be negative");
+        }
+        this.thresholdNanos = unit.toNanos(threshold);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "SlowQueryLog{thresholdNanos=" + thresholdNanos +
+                ", explainLimit=" + explainLimit +
+                ", maxParams=" + maxParams +
+                ", logged=" + logged.get() + "}";
+    }
+
+    // Package Methods -------------------------------------------------------
+
+    /**
+     * <p>Wrap the specified statement so that its queries are timed, and
+     * logged if they are slow.</p>
+     *
+     * @param statement The prepared statement to be wrapped
+     * @param sql The SQL text of the statement
+     * @param params Parameter values bound to the statement, in order
+     * @param dialect SQL dialect of the statement
+     *
+     * @return The wrapped statement
+     */
+    PreparedStatement wrap(@NotNull PreparedStatement statement, @NotNull String sql,
+                           @NotNull List<Object> params, @NotNull SqlDialect dialect) {
+        return (PreparedStatement) Proxy.newProxyInstance(
+                SlowQueryLog.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class },
+                new StatementHandler(statement, sql, params.toArray(), dialect));
+    }
+
+    // Private Methods -------------------------------------------------------
+
+    /**
+     * <p>Return a description of the first stack frame that is not part of
+     * this library's query pipeline (or the JDK), or <code>"unknown"</code>.</p>
+     *
+     * @param stack Stack trace captured when the slow query was detected
+     */
+    private static String callSite(StackTraceElement[] stack) {
+        String model = Codecs.class.getPackage().getName() + ".";
+        for (StackTraceElement element : stack) {
+            String name = element.getClassName();
+            if (name.equals(SlowQueryLog.class.getName()) ||
+                    name.startsWith(SlowQueryLog.class.getName() + "$") ||
+                    name.startsWith(model) ||
+                    name.startsWith("java.") ||
+                    name.startsWith("javax.") ||
+                    name.startsWith("jdk.") ||
+                    name.startsWith("sun.") ||
+                    name.startsWith("com.sun.") ||
+                    name.contains("$Proxy")) {
+                continue;
+            }
+            return element.toString();
+        }
+        return "unknown";
+    }
+
+    /**
+     * <p>Return the execution plan for the specified query, one line per
+     * row with columns separated by tabs, or a description of why it could
+     * not be obtained.</p>
+     *
+     * @param connection Connection on which the query was executed
+     * @param sql SQL text of the query
+     * @param params Parameter values bound to the query
+     * @param dialect SQL dialect of the query
+     */
+    private static String explain(Connection connection, String sql,
+                                  Object[] params, SqlDialect dialect) {
+        if (dialect == SqlDialect.SQLSERVER) {
+            return "EXPLAIN is not supported for " + dialect;
+        }
+        StringBuilder sb = new StringBuilder();
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; i < params.length; i++) {
+                Codecs.bind(statement, i + 1, params[i]);
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                int columns = resultSet.getMetaData().getColumnCount();
+                while (resultSet.next()) {
+                    for (int i = 1; i <= columns; i++) {
+                        if (i > 1) {
+                            sb.append('\t');
+                        }
+                        sb.append(resultSet.getString(i));
+                    }
+                    sb.append('\n');
+                }
+            }
+        } catch (SQLException e) {
+            return "EXPLAIN failed: " + e.getMessage();
+        }
+        return sb.toString();
+    }
+
+    /**
+     * <p>Format the specified parameter value for the log.</p>
+     *
+     * @param value Value to be formatted
+     */
+    private static String format(Object value) {
+        if (value == null) {
+            return "null";
+        } else if (value instanceof byte[]) {
+            return "byte[" + ((byte[]) value).length + "]";
+        }
+        String text = String.valueOf(value);
+        if (text.length() > MAX_VALUE_LENGTH) {
+            text = text.substring(0, MAX_VALUE_LENGTH) + "...";
+        }
+        return (value instanceof CharSequence) ? "'" + text + "'" : text;
+    }
+
+    /**
+     * <p>Log a slow query, if its elapsed time reached the threshold.</p>
+     *
+     * @param handler Statement handler for the query
+     * @param rows Number of rows read
+     * @param elapsed Elapsed nanoseconds
+     */
+    private void finish(StatementHandler handler, long rows, long elapsed) {
+        if (elapsed < thresholdNanos) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder("Slow query: ")
+                .append(TimeUnit.NANOSECONDS.toMillis(elapsed)).append(" ms, ")
+                .append(rows).append(" rows\n    sql: ")
+                .append(handler.sql)
+                .append("\n    params: [");
+        int count = Math.min(maxParams, handler.params.length);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(format(handler.params[i]));
+        }
+        if (count < handler.params.length) {
+            sb.append(count > 0 ? ", " : "")
+                    .append("...(").append(handler.params.length - count).append(" more)");
+        }
+        sb.append("]\n    at: ").append(callSite(new Throwable().getStackTrace()));
+        if (shouldExplain(handler.sql)) {
+            sb.append("\n    plan:");
+            String plan;
+            try {
+                plan = explain(handler.statement.getConnection(), handler.sql,
+                        handler.params, handler.dialect);
+            } catch (SQLException e) {
+                plan = "EXPLAIN failed: " + e.getMessage();
+            }
+            for (String line : plan.split("\n")) {
+                sb.append("\n        ").append(line);
+            }
+        }
+        logged.incrementAndGet();
+        publish(sb.toString());
+    }
+
+    /**
+     * <p>Publish the specified entry to the handler.</p>
+     *
+     * @param message Entry to be published
+     */
+    private void publish(String message) {
+        handler.publish(new LogRecord(Level.WARNING, message));
+        handler.flush();
+    }
+
+    /**
+     * <p>Return <code>true</code> if a slow occurrence of the specified SQL
+     * text should be explained, counting it if so.</p>
+     *
+     * @param sql SQL text of the slow query
+     */
+    private boolean shouldExplain(String sql) {
+        if (explainLimit == 0) {
+            return false;
+        }
+        AtomicInteger count = explained.get(sql);
+        if (count == null) {
+            if (explained.size() >= MAX_EXPLAINED) {
+                return false;
+            }
+            count = explained.computeIfAbsent(sql, k -> new AtomicInteger());
+        }
+        return count.incrementAndGet() <= explainLimit;
+    }
+
+    // Support Classes -------------------------------------------------------
+
+    /**
+     * <p>Formatter that writes each entry with a timestamp prefix.</p>
+     */
+    private static class EntryFormatter extends Formatter {
+
+        @Override
+        public String format(LogRecord record) {
+            return String.format("%1$tF %1$tT.%1$tL %2$s%n",
+                    new Date(record.getMillis()), formatMessage(record));
+        }
+
+    }
+
+    /**
+     * <p>Invocation handler that counts the rows read from a wrapped
+     * <code>ResultSet</code>, and finishes timing its query (once) when
+     * it is exhausted or closed.</p>
+     */
+    private class ResultSetHandler implements InvocationHandler {
+
+        private boolean finished = false;
+        private final ResultSet resultSet;
+        private long rows = 0;
+        private final long started;
+        private final StatementHandler statement;
+
+        private ResultSetHandler(StatementHandler statement, ResultSet resultSet, long started) {
+            this.statement = statement;
+            this.resultSet = resultSet;
+            this.started = started;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result;
+            try {
+                result = method.invoke(resultSet, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            String name = method.getName();
+            if ("next".equals(name)) {
+                if (Boolean.TRUE.equals(result)) {
+                    rows++;
+                } else {
+                    finish();
+                }
+            } else if ("close".equals(name)) {
+                finish();
+            }
+            return result;
+        }
+
+        private void finish() {
+            if (!finished) {
+                finished = true;
+                SlowQueryLog.this.finish(statement, rows, System.nanoTime() - started);
+            }
+        }
+
+    }
+
+    /**
+     * <p>Invocation handler that starts timing each <code>executeQuery()</code>
+     * of a wrapped statement, and wraps the returned <code>ResultSet</code>.</p>
+     */
+    private class StatementHandler implements InvocationHandler {
+
+        private final SqlDialect dialect;
+        private final Object[] params;
+        private final String sql;
+        private final PreparedStatement statement;
+
+        private StatementHandler(PreparedStatement statement, String sql,
+                                 Object[] params, SqlDialect dialect) {
+            this.statement = statement;
+            this.sql = sql;
+            this.params = params;
+            this.dialect = dialect;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            boolean query = "executeQuery".equals(method.getName()) &&
+                    (method.getParameterCount() == 0);
+            long started = query ? System.nanoTime() : 0;
+            Object result;
+            try {
+                result = method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (query && (result != null)) {
+                return Proxy.newProxyInstance(
+                        SlowQueryLog.class.getClassLoader(),
+                        new Class<?>[] { ResultSet.class },
+                        new ResultSetHandler(this, (ResultSet) result, started));
+            }
+            return result;
+        }
+
+    }
+
+}
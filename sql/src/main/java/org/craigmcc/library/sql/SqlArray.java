@@ -0,0 +1,213 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.sql;
+
+import org.craigmcc.library.model.Codec;
+import org.craigmcc.library.model.Codecs;
+import org.craigmcc.library.model.DelegatingPreparedStatement;
+
+import javax.validation.constraints.NotNull;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>Parameter value that is bound as a single SQL <code>ARRAY</code>,
+ * created from the statement's connection with <code>createArrayOf()</code>.
+ * Used by <code>inArray()</code> on the statement builders, and read back
+ * from <code>ARRAY</code> columns by its {@link Codec}.</p>
+ *
+ * <p>Statements built by the builders (or by {@link CompiledStatement}) bind
+ * their parameters through <code>apply()</code>, which frees the arrays it
+ * creates when the statement is closed.  Arrays created when a value is bound
+ * directly through {@link Codecs} are left to the driver, which releases them
+ * no later than the end of the transaction.</p>
+ */
+final class SqlArray {
+
+    // Static Variables ------------------------------------------------------
+
+    static {
+        Codecs.register(SqlArray.class, new Codec<SqlArray>() {
+            @Override
+            public void bind(PreparedStatement statement, int index, SqlArray value) throws SQLException {
+                statement.setArray(index, value.create(statement.getConnection()));
+            }
+            @Override
+            public SqlArray read(ResultSet resultSet, int index) throws SQLException {
+                return of(resultSet.getArray(index));
+            }
+            @Override
+            public SqlArray read(ResultSet resultSet, String column) throws SQLException {
+                return of(resultSet.getArray(column));
+            }
+        });
+    }
+
+    // Instance Variables ----------------------------------------------------
+
+    private final String type;
+    private final Object[] values;
+
+    // Constructors ----------------------------------------------------------
+
+    SqlArray(@NotNull String type, @NotNull Collection<?> values) {
+        this.type = type;
+        this.values = values.toArray();
+    }
+
+    // Static Methods --------------------------------------------------------
+
+    /**
+     * <p>Bind the specified values to the "?" placeholders of the specified
+     * statement, in order, as <code>Codecs.bind()</code> would.  If any of
+     * them is an <code>SqlArray</code>, return the statement wrapped so that
+     * closing it also frees the arrays that were created for it; otherwise,
+     * return the statement itself.</p>
+     *
+     * @param statement Statement to be bound
+     * @param values Parameter values, one per placeholder
+     *
+     * @return The statement to be executed (and closed) by the caller
+     *
+     * @throws SQLException if a JDBC error occurs
+     */
+    static PreparedStatement apply(@NotNull PreparedStatement statement, @NotNull List<?> values)
+            throws SQLException {
+        List<Array> arrays = null;
+        for (int i = 0; i < values.size(); i++) {
+            Object value = values.get(i);
+            if (value instanceof SqlArray) {
+                Array array = ((SqlArray) value).create(statement.getConnection());
+                if (arrays == null) {
+                    arrays = new ArrayList<>(2);
+                }
+                arrays.add(array);
+                statement.setArray(i + 1, array);
+            } else {
+                Codecs.bind(statement, i + 1, value);
+            }
+        }
+        return (arrays == null) ? statement : new Freeing(statement, arrays);
+    }
+
+    // Public Methods --------------------------------------------------------
+
+    /**
+     * <p>Return the SQL type name of the array elements.</p>
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * <p>Return the array elements, in order.</p>
+     */
+    public List<Object> getValues() {
+        return Collections.unmodifiableList(Arrays.asList(values));
+    }
+
+    @Override
+    public String toString() {
+        return "SqlArray{type=" + type + ", values=" + Arrays.toString(values) + "}";
+    }
+
+    // Private Methods -------------------------------------------------------
+
+    /**
+     * <p>Create the JDBC <code>Array</code> for this value from the
+     * specified connection.  The caller is responsible for freeing it.</p>
+     *
+     * @param connection Connection from which to create the array
+     */
+    private Array create(Connection connection) throws SQLException {
+        return connection.createArrayOf(type, values);
+    }
+
+    /**
+     * <p>Copy the specified JDBC <code>Array</code> (which may be
+     * <code>null</code> for SQL NULL) into a new <code>SqlArray</code>, and
+     * free it.</p>
+     *
+     * @param array Array read from a <code>ResultSet</code>
+     */
+    private static SqlArray of(Array array) throws SQLException {
+        if (array == null) {
+            return null;
+        }
+        try {
+            Object elements = array.getArray();
+            int length = java.lang.reflect.Array.getLength(elements);
+            List<Object> values = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                values.add(java.lang.reflect.Array.get(elements, i));
+            }
+            return new SqlArray(array.getBaseTypeName(), values);
+        } finally {
+            array.free();
+        }
+    }
+
+    // Support Classes -------------------------------------------------------
+
+    /**
+     * <p>Statement wrapper that frees the arrays bound to the statement
+     * after it has been closed.</p>
+     */
+    private static final class Freeing extends DelegatingPreparedStatement {
+
+        private Freeing(PreparedStatement statement, List<Array> arrays) {
+            super(statement);
+            this.arrays = arrays;
+        }
+
+        private final List<Array> arrays;
+
+        @Override
+        public void close() throws SQLException {
+            SQLException exception = null;
+            try {
+                delegate.close();
+            } catch (SQLException e) {
+                exception = e;
+            }
+            for (Array array : arrays) {
+                try {
+                    array.free();
+                } catch (SQLException e) {
+                    if (exception == null) {
+                        exception = e;
+                    } else {
+                        exception.addSuppressed(e);
+                    }
+                }
+            }
+            arrays.clear();
+            if (exception != null) {
+                throw exception;
+            }
+        }
+
+    }
+
+}
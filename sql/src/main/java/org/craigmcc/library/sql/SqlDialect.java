@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.sql;
+
+import javax.validation.constraints.NotNull;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * <p>SQL dialects for which builders (such as {@link UpsertBuilder}) render
+ * statements that have no portable syntax.</p>
+ */
+public enum SqlDialect {
+
+    /**
+     * <p>H2 (<code>MERGE INTO ... KEY (...) VALUES (...)</code>).</p>
+     */
+    H2,
+
+    /**
+     * <p>MySQL and MariaDB (<code>ON DUPLICATE KEY UPDATE</code>).</p>
+     */
+    MYSQL,
+
+    /**
+     * <p>PostgreSQL and SQLite (<code>ON CONFLICT (...) DO UPDATE</code>).</p>
+     */
+    POSTGRESQL,
+
+    /**
+     * <p>Microsoft SQL Server (standard <code>MERGE</code>, which SQL Server
+     * requires to be terminated by a semicolon).</p>
+     */
+    SQLSERVER,
+
+    /**
+     * <p>Standard SQL <code>MERGE</code> (for example, DB2).</p>
+     */
+    STANDARD;
+
+    // Static Methods --------------------------------------------------------
+
+    /**
+     * <p>Return the dialect for the database product of the specified
+     * connection, or <code>STANDARD</code> if it is not recognized.</p>
+     *
+     * @param connection <code>Connection</code> whose database is to be identified
+     *
+     * @throws SQLException if a JDBC error occurs
+     */
+    public static @NotNull SqlDialect of(@NotNull Connection connection)
+            throws SQLException {
+        return of(connection.getMetaData().getDatabaseProductName());
+    }
+
+    /**
+     * <p>Return the dialect for the specified database product name (as
+     * returned by <code>DatabaseMetaData.getDatabaseProductName()</code>),
+     * or <code>STANDARD</code> if it is not recognized.</p>
+     *
+     * @param productName Database product name
+     */
+    public static @NotNull SqlDialect of(String productName) {
+        String name = (productName != null) ? productName.toLowerCase(Locale.ROOT) : "";
+        if (name.startsWith("h2")) {
+            return H2;
+        } else if (name.contains("mysql") || name.contains("mariadb")) {
+            return MYSQL;
+        } else if (name.contains("postgres") || name.contains("sqlite")) {
+            return POSTGRESQL;
+        } else if (name.contains("sql server")) {
+            return SQLSERVER;
+        } else {
+            return STANDARD;
+        }
+    }
+
+}
@@ -25,7 +25,9 @@ public enum SqlOperator {
     GE(">="),
     EQ("="),
     NE("<>"),
-    LIKE("LIKE");
+    LIKE("LIKE"),
+    IN("IN"), // Value must be a Collection, see Utils.appendIn()
+    ANY("= ANY"); // Value must be an array, see inArray()
 
     SqlOperator(String operator) {
         this.operator = operator;
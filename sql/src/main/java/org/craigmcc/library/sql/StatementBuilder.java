@@ -41,6 +41,10 @@ public interface StatementBuilder {
      * that were specified.  Replacement values for "?" placeholders will
      * have already been applied to the statement, in the correct order.</p>
      *
+     * <p>The caller is responsible for calling <code>close()</code> on the
+     * returned statement.  If the statement came from a {@link StatementCache},
+     * this returns it to the cache instead of actually closing it.</p>
+     *
      * @param connection The JDBC connection for which to create the
      *                  prepared statement
      *
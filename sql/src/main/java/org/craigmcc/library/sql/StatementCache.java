@@ -0,0 +1,431 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.sql;
+
+import javax.validation.constraints.NotNull;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Opt-in cache of <code>PreparedStatement</code> instances, scoped to the
+ * physical <code>Connection</code> that created them and keyed by the
+ * generated SQL text.  Pass an instance to the <code>cache()</code> decorator of any of
+ * the statement builders (or call <code>prepare()</code> directly) to have
+ * statements reused, instead of being prepared again on every call.  This
+ * is most useful with pooled connections and a modest number of distinct
+ * statement shapes (see <code>bind()</code> on the builders).</p>
+ *
+ * <p><strong>USAGE NOTES:</strong></p>
+ * <ul>
+ *     <li>Callers still call <code>close()</code> on the returned statement
+ *         when they are done with it.  For a cached statement, this clears
+ *         its parameters and batch, restores the fetch size, maximum rows
+ *         and query timeout it had when it was prepared, and returns it to
+ *         the cache, rather than actually closing it.</li>
+ *     <li>Each connection has its own least recently used (LRU) list of
+ *         at most <code>maxSize</code> statements.  Statements evicted from
+ *         that list are closed (after being returned, if they are in use
+ *         at the time).</li>
+ *     <li>If a cached statement is still in use when the same SQL text is
+ *         requested again on the same connection, a new statement that is
+ *         <strong>not</strong> cached is prepared and returned instead.</li>
+ *     <li>Statements are cached against the physical connection, as returned
+ *         by <code>unwrap(Connection.class)</code>, and are prepared on it
+ *         directly.  Therefore, a pool that hands out a new wrapper for each
+ *         borrow (such as <code>PooledDataSource</code>) still gets cache
+ *         hits across borrows, and does not close the cached statements when
+ *         the wrapper is returned.  While a cached statement is in use,
+ *         <code>getConnection()</code> on it returns the connection that was
+ *         passed to <code>prepare()</code>.</li>
+ *     <li>Connections are held weakly, and a connection that reports it
+ *         is closed has its cached statements discarded.  Call
+ *         <code>invalidate()</code> before physically closing a connection
+ *         to release its statements immediately.</li>
+ * </ul>
+ */
+public class StatementCache {
+
+    // Static Variables ------------------------------------------------------
+
+    /**
+     * <p>Default maximum number of cached statements per connection.</p>
+     */
+    public static final int DEFAULT_MAX_SIZE = 64;
+
+    // Instance Variables ----------------------------------------------------
+
+    private final Map<Connection, Statements> connections = new WeakHashMap<>();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final int maxSize;
+    private final AtomicLong misses = new AtomicLong();
+
+    // Constructors ----------------------------------------------------------
+
+    public StatementCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public StatementCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        }
+        this.maxSize = maxSize;
+    }
+
+    // Public Methods --------------------------------------------------------
+
+    /**
+     * <p>Close and discard all cached statements for all connections.
+     * Statements that are currently in use will be closed when they
+     * are returned.</p>
+     */
+    public void clear() {
+        List<Statements> all;
+        synchronized (connections) {
+            all = new ArrayList<>(connections.values());
+            connections.clear();
+        }
+        for (Statements statements : all) {
+            statements.clear();
+        }
+    }
+
+    /**
+     * <p>Return the number of statements evicted because the per-connection
+     * size limit was exceeded.</p>
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * <p>Return the number of requests satisfied by a cached statement.</p>
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * <p>Return the maximum number of cached statements per connection.</p>
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * <p>Return the number of requests that required a new statement to
+     * be prepared.</p>
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * <p>Close and discard all cached statements for the specified connection.
+     * Statements that are currently in use will be closed when they
+     * are returned.</p>
+     *
+     * @param connection Connection whose statements should be discarded
+     */
+    public void invalidate(@NotNull Connection connection) {
+        Connection physical = physical(connection);
+        Statements statements;
+        synchronized (connections) {
+            statements = connections.remove(physical);
+        }
+        if (statements != null) {
+            statements.clear();
+        }
+    }
+
+    /**
+     * <p>Return a <code>PreparedStatement</code> for the SQL text of the
+     * specified compiled statement, reusing a cached one if possible.</p>
+     *
+     * @param connection Connection for which to prepare the statement
+     * @param compiled Compiled statement whose SQL text is to be prepared
+     *
+     * @return A prepared statement with no parameters applied
+     *
+     * @throws SQLException if a JDBC processing error occurs
+     */
+    public PreparedStatement prepare(@NotNull Connection connection,
+                                     @NotNull CompiledStatement compiled)
+            throws SQLException {
+        return prepare(connection, compiled.getSql(), compiled.getKeys());
+    }
+
+    /**
+     * <p>Return a <code>PreparedStatement</code> for the specified SQL text,
+     * reusing a cached one if possible.</p>
+     *
+     * @param connection Connection for which to prepare the statement
+     * @param sql SQL text to be prepared
+     * @param keys Generated key column names, or <code>null</code> for none
+     *
+     * @return A prepared statement with no parameters applied
+     *
+     * @throws SQLException if a JDBC processing error occurs
+     */
+    public PreparedStatement prepare(@NotNull Connection connection,
+                                     @NotNull String sql, String[] keys)
+            throws SQLException {
+
+        // Look up (or create) the statements for this physical connection
+        Connection physical = physical(connection);
+        Statements statements;
+        synchronized (connections) {
+            statements = connections.get(physical);
+            if ((statements != null) && physical.isClosed()) {
+                connections.remove(physical);
+                statements.clear();
+                statements = null;
+            }
+            if (statements == null) {
+                statements = new Statements();
+                connections.put(physical, statements);
+            }
+        }
+        String key = (keys == null) ? sql : sql + '\u0000' + String.join(",", keys);
+
+        // Reuse a cached statement if there is an idle one
+        synchronized (statements) {
+            Entry entry = statements.get(key);
+            if (entry != null) {
+                if (!entry.inUse) {
+                    entry.inUse = true;
+                    entry.connection = connection;
+                    hits.incrementAndGet();
+                    return entry.proxy;
+                }
+                // Still in use, so hand out an uncached statement instead
+                misses.incrementAndGet();
+                return AbstractStatementBuilder.prepare(connection, sql, keys);
+            }
+        }
+
+        // Prepare a new statement and cache it
+        misses.incrementAndGet();
+        PreparedStatement statement = AbstractStatementBuilder.prepare(physical, sql, keys);
+        Entry entry;
+        try {
+            entry = new Entry(statement);
+        } catch (SQLException e) {
+            statement.close();
+            throw e;
+        }
+        synchronized (statements) {
+            if (statements.containsKey(key)) {
+                return statement;
+            }
+            entry.inUse = true;
+            entry.connection = connection;
+            statements.put(key, entry);
+            return entry.proxy;
+        }
+
+    }
+
+    /**
+     * <p>Return the number of statements currently cached, for all connections.</p>
+     */
+    public int size() {
+        List<Statements> all;
+        synchronized (connections) {
+            all = new ArrayList<>(connections.values());
+        }
+        int size = 0;
+        for (Statements statements : all) {
+            synchronized (statements) {
+                size += statements.size();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "StatementCache{maxSize=" + maxSize + ", size=" + size() +
+                ", hits=" + hits + ", misses=" + misses +
+                ", evictions=" + evictions + "}";
+    }
+
+    // Private Methods -------------------------------------------------------
+
+    /**
+     * <p>Return the physical connection underlying the specified connection,
+     * or the connection itself if it does not wrap one.</p>
+     *
+     * @param connection Connection (possibly a pool wrapper) to unwrap
+     */
+    private static Connection physical(Connection connection) {
+        try {
+            Connection physical = connection.unwrap(Connection.class);
+            return (physical != null) ? physical : connection;
+        } catch (SQLException e) {
+            return connection;
+        }
+    }
+
+    // Support Classes -------------------------------------------------------
+
+    /**
+     * <p>A cached statement, plus the proxy that is handed out to callers so
+     * that calling <code>close()</code> returns the statement to the cache.</p>
+     */
+    private static class Entry implements InvocationHandler {
+
+        Entry(PreparedStatement statement) throws SQLException {
+            this.statement = statement;
+            this.fetchSize = statement.getFetchSize();
+            this.maxRows = statement.getMaxRows();
+            this.queryTimeout = statement.getQueryTimeout();
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class },
+                    this);
+        }
+
+        Connection connection; // Guarded by the owning Statements
+        boolean discarded = false; // Guarded by the owning Statements
+        boolean inUse = false; // Guarded by the owning Statements
+        Statements owner;
+        final PreparedStatement proxy;
+        final PreparedStatement statement;
+        // Settings at prepare time, restored when the statement is released
+        final int fetchSize;
+        final int maxRows;
+        final int queryTimeout;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("close".equals(name) && (method.getParameterCount() == 0)) {
+                owner.release(this);
+                return null;
+            } else if ("getConnection".equals(name) && (method.getParameterCount() == 0)) {
+                synchronized (owner) {
+                    return connection;
+                }
+            } else if ("isClosed".equals(name) && (method.getParameterCount() == 0)) {
+                synchronized (owner) {
+                    return !inUse;
+                }
+            } else if ("equals".equals(name) && (method.getParameterCount() == 1)) {
+                return proxy == args[0];
+            } else if ("hashCode".equals(name) && (method.getParameterCount() == 0)) {
+                return System.identityHashCode(proxy);
+            }
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        void close() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                // Ignore
+            }
+        }
+
+    }
+
+    /**
+     * <p>The least recently used list of cached statements for one connection.</p>
+     */
+    private class Statements extends LinkedHashMap<String, Entry> {
+
+        Statements() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        public Entry put(String key, Entry entry) {
+            entry.owner = this;
+            return super.put(key, entry);
+        }
+
+        @Override
+        public synchronized void clear() {
+            for (Entry entry : values()) {
+                discard(entry);
+            }
+            super.clear();
+        }
+
+        synchronized void release(Entry entry) {
+            if (!entry.inUse) {
+                return;
+            }
+            entry.inUse = false;
+            entry.connection = null;
+            if (entry.discarded) {
+                entry.close();
+                return;
+            }
+            try {
+                ResultSet resultSet = entry.statement.getResultSet();
+                if (resultSet != null) {
+                    resultSet.close();
+                }
+                entry.statement.clearParameters();
+                entry.statement.clearBatch();
+                entry.statement.setFetchSize(entry.fetchSize);
+                entry.statement.setMaxRows(entry.maxRows);
+                entry.statement.setQueryTimeout(entry.queryTimeout);
+            } catch (SQLException e) {
+                // Statement is no longer usable, so do not reuse it
+                values().remove(entry);
+                discard(entry);
+            }
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > maxSize) {
+                evictions.incrementAndGet();
+                discard(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+
+        private void discard(Entry entry) {
+            entry.discarded = true;
+            if (!entry.inUse) {
+                entry.close();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.sql;
+
+import org.craigmcc.library.model.StatementMetrics;
+
+/**
+ * <p>Process-wide counter of the distinct SQL texts generated by the
+ * statement builders (via <code>build()</code> or <code>compile()</code>).
+ * Each distinct text is a separate entry in database plan caches and
+ * driver statement caches, so this count should stay small and stable
+ * for a well behaved application.  If it keeps growing, some statement
+ * is probably inlining values that should be bound (see
+ * <code>bind()</code> on the builders).</p>
+ *
+ * <p><strong>NOTE:</strong> The texts are the shapes tracked by
+ * {@link StatementMetrics}, so they are only counted while metrics are
+ * enabled.  Metrics are disabled by default, so <code>count()</code>
+ * returns zero unless <code>StatementMetrics.enable()</code> has been
+ * called, and texts built before then (or after
+ * <code>StatementMetrics.disable()</code>) are never counted.  In return,
+ * building a statement costs nothing extra while metrics are disabled.
+ * At most
+ * <code>MAX_TRACKED</code> distinct texts are tracked.  Once that limit
+ * is reached, <code>isSaturated()</code> returns <code>true</code> and
+ * further new texts are no longer counted.</p>
+ */
+public final class StatementShapes {
+
+    // Static Variables ------------------------------------------------------
+
+    /**
+     * <p>Maximum number of distinct SQL texts that will be tracked.</p>
+     */
+    public static final int MAX_TRACKED = StatementMetrics.MAX_SHAPES;
+
+    // Constructors ----------------------------------------------------------
+
+    private StatementShapes() {
+    }
+
+    // Public Methods --------------------------------------------------------
+
+    /**
+     * <p>Return the number of distinct SQL texts generated so far while
+     * {@link StatementMetrics} were enabled.  This is zero if they have
+     * never been enabled.</p>
+     */
+    public static int count() {
+        return StatementMetrics.getShapeCount();
+    }
+
+    /**
+     * <p>Return <code>true</code> if <code>MAX_TRACKED</code> distinct SQL
+     * texts have been seen, so that further new texts are not counted.</p>
+     */
+    public static boolean isSaturated() {
+        return count() >= MAX_TRACKED;
+    }
+
+    /**
+     * <p>Forget all of the SQL texts seen so far (which also discards the
+     * {@link StatementMetrics} recorded for them).</p>
+     */
+    public static void reset() {
+        StatementMetrics.reset();
+    }
+
+}
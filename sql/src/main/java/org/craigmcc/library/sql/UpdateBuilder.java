@@ -15,10 +15,10 @@
  */
 package org.craigmcc.library.sql;
 
+import org.craigmcc.library.model.Model;
+
 import javax.validation.constraints.NotNull;
-import java.sql.Connection;
 import java.sql.PreparedStatement;
-import java.sql.SQLException;
 
 /**
  * <p>Builder that generates a {@link PreparedStatement} for an SQL UPDATE.</p>
@@ -32,10 +32,32 @@ import java.sql.SQLException;
  *     <li>Be sure to call <code>close()</code> on the <code>PreparedStatement</code>
  *         when you are done with it.</li>
  * </ul>
+ *
+ * <p><strong>EXAMPLE (CHANGED COLUMNS ONLY):</strong></p>
+ *
+ * <code>
+ *     UpdateBuilder builder = new UpdateBuilder("mytable")
+ *       .dirty(model)
+ *       .pairModel(model)
+ *       .pair("firstName", model.getFirstName())
+ *       .pair("lastName", model.getLastName());
+ *     if (builder.changed()) {
+ *         PreparedStatement statement = builder.build(connection);
+ *         ...
+ *     }
+ * </code>
+ *
+ * <p>will only include the columns whose values differ from the snapshot
+ * taken when <code>model</code> was loaded (see
+ * {@link org.craigmcc.library.model.ChangeTracked}).</p>
  */
 public class UpdateBuilder extends MutatingStatementBuilder<UpdateBuilder>
         implements StatementBuilder {
 
+    // Instance Variables ----------------------------------------------------
+
+    protected Model<?> tracked;
+
     // Constructors ----------------------------------------------------------
 
     public UpdateBuilder(@NotNull String table) {
@@ -44,17 +66,74 @@ public class UpdateBuilder extends MutatingStatementBuilder<UpdateBuilder>
 
     // Public Methods --------------------------------------------------------
 
+    /**
+     * <p>Return <code>true</code> if this statement would update at least one
+     * column whose value has changed.  If no tracked model was specified,
+     * this is <code>true</code> whenever any pair has been specified.
+     * Literal pairs (such as a timestamp expression) do not count as
+     * changes by themselves.</p>
+     */
+    public boolean changed() {
+        for (Pair pair : pairs) {
+            if (tracked == null || (!pair.literal && tracked.isChanged(pair.column, pair.value))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * <p>Only include (non-literal) pairs whose values have changed since
+     * the specified {@link Model} object was loaded, according to its
+     * snapshot.  If the object has no snapshot, every pair is included.
+     * Literal pairs are included whenever any other column has changed.
+     * Once the update has been committed, record the committed values
+     * again (<code>snapshot()</code> on the {@link org.craigmcc.library.model.ModelJdbc}
+     * for the object does this), or call <code>clearSnapshot()</code>.</p>
+     *
+     * @param model {@link Model} object whose snapshot is consulted
+     *
+     * @return This builder
+     */
+    public UpdateBuilder dirty(@NotNull Model<?> model) {
+        this.tracked = model;
+        return this;
+    }
+
+    /**
+     * <p>Reset this builder as described for the superclass, also
+     * forgetting any tracked model.</p>
+     *
+     * @return This builder
+     */
     @Override
-    public PreparedStatement build(Connection connection) throws SQLException {
+    public UpdateBuilder reset() {
+        super.reset();
+        tracked = null;
+        return this;
+    }
+
+    // Protected Methods -----------------------------------------------------
 
+    @Override
+    protected String render() throws IllegalStateException {
+
+        clearParams();
         if (pairs.size() < 1) {
             throw new IllegalArgumentException("At least one column+value pair must be specified");
         }
-        StringBuilder sb = new StringBuilder("UPDATE ")
+        if (!changed()) {
+            throw new IllegalStateException("No changed columns to update");
+        }
+        StringBuilder sb = buffer().append("UPDATE ")
                 .append(tables.get(0))
                 .append(" SET ");
         boolean first = true;
         for (Pair pair : pairs) {
+            if ((tracked != null) && !pair.literal &&
+                    !tracked.isChanged(pair.column, pair.value)) {
+                continue;
+            }
             if (first) {
                 first = false;
             } else {
@@ -62,21 +141,20 @@ public class UpdateBuilder extends MutatingStatementBuilder<UpdateBuilder>
             }
             sb.append(pair.column);
             sb.append(" = ");
-            if (pair.value == null) {
+            if ((pair.value == null) && (pair.literal || !template)) {
                 sb.append(NULL_VALUE);
             } else if (pair.literal) {
                 sb.append(pair.value);
             } else {
                 sb.append("?");
-                addParam(pair.value);
+                addParam(pair.column, pair.value);
             }
         }
 
+        addOutput(sb, "INSERTED");
         addWhere(sb);
-        sql = sb.toString();
-        PreparedStatement statement = connection.prepareStatement(sql);
-        applyParams(statement);
-        return statement;
+        addReturning(sb, false);
+        return sb.toString();
 
     }
 
@@ -0,0 +1,405 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.sql;
+
+import javax.validation.constraints.NotNull;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>Builder that generates a {@link PreparedStatement} for an SQL "upsert",
+ * which inserts a row, or updates the existing row with the same key, in a
+ * single round trip and without the race between a lookup and an insert.
+ * The syntax depends on the {@link SqlDialect}, which defaults to
+ * <code>STANDARD</code>.</p>
+ *
+ * <p><strong>EXAMPLE 1:</strong></p>
+ *
+ * <code>
+ *     UpsertBuilder builder = new UpsertBuilder("mytable")
+ *       .dialect(SqlDialect.POSTGRESQL)
+ *       .key("code")
+ *       .pair("code", "FRED")
+ *       .pair("firstName", "Fred")
+ *       .pair("lastName", "Flintstone")
+ *       .build(connection);
+ * </code>
+ *
+ * <p>will result in PreparedStatement:
+ * <code>
+ *     INSERT INTO mytable (code, firstName, lastName) VALUES (?, ?, ?)
+ *     ON CONFLICT (code) DO UPDATE SET firstName = EXCLUDED.firstName,
+ *     lastName = EXCLUDED.lastName
+ * </code></p>
+ *
+ * <p>For the other dialects, the same builder renders
+ * <code>INSERT ... ON DUPLICATE KEY UPDATE</code> (MYSQL),
+ * <code>MERGE INTO ... KEY (...) VALUES (...)</code> (H2), or a standard
+ * <code>MERGE INTO ... USING (VALUES (...))</code> statement (SQLSERVER
+ * and STANDARD).</p>
+ *
+ * <p><strong>EXAMPLE 2 (BATCH):</strong></p>
+ *
+ * <code>
+ *     new UpsertBuilder("mytable")
+ *       .dialect(SqlDialect.of(connection))
+ *       .key("code")
+ *       .pair("code", null)
+ *       .pair("firstName", null)
+ *       .row("FRED", "Fred")
+ *       .row("BARNEY", "Barney")
+ *       .executeBatch(connection);
+ * </code>
+ *
+ * <p><strong>USAGE NOTES:</strong></p>
+ * <ul>
+ *     <li>You may only utilize decorator methods that are marked as being
+ *         relevant for INSERT statements, or exist only in this class.</li>
+ *     <li>The key columns must be covered by a primary key or unique
+ *         constraint (MYSQL uses whichever unique constraint conflicts).
+ *         If no key is specified, the column given to <code>primary()</code>
+ *         (or <code>pairModel()</code>) is used.</li>
+ *     <li>If <code>primary()</code> is specified, it is treated as the first
+ *         column, and its value is bound as a parameter.  If its value is
+ *         <code>null</code> (as for a new {@link org.craigmcc.library.model.Model}
+ *         passed to <code>pairModel()</code>), and it is not a key column,
+ *         it is omitted so that the database can generate it.</li>
+ *     <li>Columns named by <code>noUpdate()</code> (such as a creation
+ *         timestamp) are only written when a row is inserted.  The H2
+ *         <code>MERGE</code> statement cannot express this, so it is
+ *         rejected for that dialect.</li>
+ *     <li>In batch mode, each row supplies one value per non-literal
+ *         column, in column order.</li>
+ *     <li>Be sure to call <code>close()</code> on the <code>PreparedStatement</code>
+ *         when you are done with it.</li>
+ * </ul>
+ */
+public class UpsertBuilder extends MutatingStatementBuilder<UpsertBuilder>
+        implements StatementBuilder {
+
+    // Static Variables ------------------------------------------------------
+
+    /**
+     * <p>Default maximum number of rows sent per batch execution.</p>
+     */
+    public static final int DEFAULT_BATCH_SIZE = InsertBuilder.DEFAULT_BATCH_SIZE;
+
+    // Instance Variables ----------------------------------------------------
+
+    protected int batchSize = DEFAULT_BATCH_SIZE;
+    protected List<String> keys = Collections.emptyList();
+    protected List<String> noUpdates = Collections.emptyList();
+    protected List<Object[]> rows = Collections.emptyList();
+
+    // Constructors ----------------------------------------------------------
+
+    public UpsertBuilder(@NotNull String table) {
+        super(table);
+    }
+
+    // Public Methods --------------------------------------------------------
+
+    /**
+     * <p>Set the maximum number of rows sent to the database per batch
+     * execution in <code>executeBatch()</code>.  Default is
+     * <code>DEFAULT_BATCH_SIZE</code>.</p>
+     *
+     * @param batchSize Maximum rows per batch execution
+     *
+     * @return This builder
+     */
+    public UpsertBuilder batchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * <p>Upsert all of the rows specified by calling <code>row()</code>,
+     * using JDBC batching with at most <code>batchSize</code> rows per
+     * round trip.  Once the rows have been executed successfully, they are
+     * discarded, so that the builder can collect the next batch.  If
+     * execution fails, they are retained.</p>
+     *
+     * <p>This method does not commit or roll back any transaction; that is
+     * left to the caller.</p>
+     *
+     * @param connection The JDBC connection on which to upsert the rows
+     *
+     * @throws SQLException if a JDBC processing error occurs
+     */
+    public void executeBatch(@NotNull Connection connection)
+            throws SQLException {
+        executeBatch(connection, rows);
+        rows.clear();
+    }
+
+    /**
+     * <p>Upsert all of the specified rows, using JDBC batching with at most
+     * <code>batchSize</code> rows per round trip.</p>
+     *
+     * <p>This method does not commit or roll back any transaction; that is
+     * left to the caller.</p>
+     *
+     * @param connection The JDBC connection on which to upsert the rows
+     * @param rows Rows of values, each with one value per non-literal
+     *             column in column order
+     *
+     * @throws SQLException if a JDBC processing error occurs
+     */
+    public void executeBatch(@NotNull Connection connection,
+                             @NotNull Iterable<Object[]> rows)
+            throws SQLException {
+        compile().executeBatch(connection, rows, batchSize);
+    }
+
+    /**
+     * <p>Specify the columns that identify an existing row.  Each of them
+     * must also be specified as a column with <code>pair()</code> (or as
+     * the primary key).</p>
+     *
+     * @param columns Key column names
+     *
+     * @return This builder
+     */
+    public UpsertBuilder key(@NotNull String... columns) {
+        for (String column : columns) {
+            mutableKeys().add(column);
+        }
+        return this;
+    }
+
+    /**
+     * <p>Specify columns that are only written when a new row is inserted,
+     * and are left unchanged when an existing row is updated.</p>
+     *
+     * @param columns Insert-only column names
+     *
+     * @return This builder
+     */
+    public UpsertBuilder noUpdate(@NotNull String... columns) {
+        for (String column : columns) {
+            mutableNoUpdates().add(column);
+        }
+        return this;
+    }
+
+    /**
+     * <p>Reset this builder as described for the superclass, also discarding
+     * any keys, insert-only columns, and rows, and restoring the default
+     * batch size.</p>
+     *
+     * @return This builder
+     */
+    @Override
+    public UpsertBuilder reset() {
+        super.reset();
+        batchSize = DEFAULT_BATCH_SIZE;
+        keys.clear();
+        noUpdates.clear();
+        rows.clear();
+        return this;
+    }
+
+    /**
+     * <p>Add a row of values to be upserted by <code>executeBatch()</code>.
+     * There must be one value per non-literal column, in column order.</p>
+     *
+     * @param values Values for this row
+     *
+     * @return This builder
+     */
+    public UpsertBuilder row(@NotNull Object... values) {
+        mutableRows().add(values);
+        return this;
+    }
+
+    // Protected Methods -----------------------------------------------------
+
+    /**
+     * <p>Return the list of key columns, first replacing the shared empty
+     * list with one that can be added to.  The same applies to
+     * <code>mutableNoUpdates()</code> and <code>mutableRows()</code>.</p>
+     */
+    protected List<String> mutableKeys() {
+        return keys = mutable(keys);
+    }
+
+    protected List<String> mutableNoUpdates() {
+        return noUpdates = mutable(noUpdates);
+    }
+
+    protected List<Object[]> mutableRows() {
+        return rows = mutable(rows);
+    }
+
+    @Override
+    protected String render() throws IllegalStateException {
+
+        clearParams();
+        List<String> keyColumns = keys;
+        if (keyColumns.isEmpty() && (primary != null)) {
+            keyColumns = Collections.singletonList(primary.column);
+        }
+        List<Pair> columns = columns(keyColumns);
+        if (keyColumns.isEmpty()) {
+            throw new IllegalStateException("At least one key column must be specified");
+        }
+        List<String> names = new ArrayList<>(columns.size());
+        for (Pair pair : columns) {
+            names.add(pair.column);
+        }
+        for (String key : keyColumns) {
+            if (!names.contains(key)) {
+                throw new IllegalStateException("Key column " + key + " is not a specified column");
+            }
+        }
+        List<String> updates = new ArrayList<>(names.size());
+        for (String name : names) {
+            if (!keyColumns.contains(name) && !noUpdates.contains(name)) {
+                updates.add(name);
+            }
+        }
+
+        StringBuilder sb = buffer();
+        switch (dialect) {
+            case H2:
+                if (!noUpdates.isEmpty()) {
+                    throw new IllegalStateException("Insert-only columns are not supported for dialect H2");
+                }
+                sb.append("MERGE INTO ").append(tables.get(0));
+                appendList(sb.append(" ("), names, "").append(")");
+                appendList(sb.append(" KEY ("), keyColumns, "").append(")");
+                appendValues(sb.append(" VALUES ("), columns).append(")");
+                break;
+            case MYSQL:
+                appendInsert(sb, names, columns);
+                sb.append(" ON DUPLICATE KEY UPDATE ");
+                if (updates.isEmpty()) {
+                    // A no-op assignment makes a conflicting row be ignored
+                    sb.append(keyColumns.get(0)).append(" = ").append(keyColumns.get(0));
+                }
+                for (int i = 0; i < updates.size(); i++) {
+                    sb.append((i > 0) ? ", " : "").append(updates.get(i))
+                            .append(" = VALUES(").append(updates.get(i)).append(")");
+                }
+                break;
+            case POSTGRESQL:
+                appendInsert(sb, names, columns);
+                appendList(sb.append(" ON CONFLICT ("), keyColumns, "").append(")");
+                if (updates.isEmpty()) {
+                    sb.append(" DO NOTHING");
+                }
+                for (int i = 0; i < updates.size(); i++) {
+                    sb.append((i > 0) ? ", " : " DO UPDATE SET ").append(updates.get(i))
+                            .append(" = EXCLUDED.").append(updates.get(i));
+                }
+                break;
+            default: // SQLSERVER, STANDARD
+                String table = tables.get(0);
+                sb.append("MERGE INTO ").append(table);
+                appendValues(sb.append(" USING (VALUES ("), columns).append(")) AS s");
+                appendList(sb.append(" ("), names, "").append(")");
+                sb.append(" ON (");
+                for (int i = 0; i < keyColumns.size(); i++) {
+                    sb.append((i > 0) ? " AND " : "").append(table).append(".").append(keyColumns.get(i))
+                            .append(" = s.").append(keyColumns.get(i));
+                }
+                sb.append(")");
+                for (int i = 0; i < updates.size(); i++) {
+                    sb.append((i > 0) ? ", " : " WHEN MATCHED THEN UPDATE SET ").append(updates.get(i))
+                            .append(" = s.").append(updates.get(i));
+                }
+                appendList(sb.append(" WHEN NOT MATCHED THEN INSERT ("), names, "").append(")");
+                appendList(sb.append(" VALUES ("), names, "s.").append(")");
+                addOutput(sb, "INSERTED");
+                if (dialect == SqlDialect.SQLSERVER) {
+                    sb.append(";");
+                }
+                break;
+        }
+        addReturning(sb, false);
+        return sb.toString();
+
+    }
+
+    // Private Methods -------------------------------------------------------
+
+    private void appendInsert(StringBuilder sb, List<String> names, List<Pair> columns) {
+        sb.append("INSERT INTO ").append(tables.get(0));
+        appendList(sb.append(" ("), names, "").append(")");
+        appendValues(sb.append(" VALUES ("), columns).append(")");
+    }
+
+    private StringBuilder appendList(StringBuilder sb, List<String> names, String prefix) {
+        for (int i = 0; i < names.size(); i++) {
+            sb.append((i > 0) ? ", " : "").append(prefix).append(names.get(i));
+        }
+        return sb;
+    }
+
+    private StringBuilder appendValues(StringBuilder sb, List<Pair> columns) {
+        boolean first = true;
+        for (Pair pair : columns) {
+            if (first) {
+                first = false;
+            } else {
+                sb.append(", ");
+            }
+            if ((pair.value == null) && (pair.literal || !template)) {
+                sb.append(NULL_VALUE);
+            } else if (pair.literal) {
+                sb.append(pair.value);
+            } else {
+                sb.append("?");
+                addParam(pair.column, pair.value);
+            }
+        }
+        return sb;
+    }
+
+    /**
+     * <p>Return the columns to be written: the primary key (as a bound
+     * parameter) if one was specified, followed by the pairs.  A primary key
+     * without a value is omitted, so that the database can generate it for
+     * a new row, unless it is a key column or this is a template.</p>
+     */
+    private List<Pair> columns(List<String> keyColumns) {
+        boolean includePrimary = (primary != null) &&
+                ((primary.value != null) || template || keyColumns.contains(primary.column));
+        if (pairs.isEmpty() && !includePrimary) {
+            throw new IllegalStateException("At least one column+value pair must be specified");
+        }
+        if (!includePrimary) {
+            return pairs;
+        }
+        List<Pair> columns = new ArrayList<>(pairs.size() + 1);
+        columns.add(new Pair(primary.column, primary.value));
+        for (Pair pair : pairs) {
+            if (!pair.column.equals(primary.column)) {
+                columns.add(pair);
+            }
+        }
+        return columns;
+    }
+
+}
@@ -15,14 +15,19 @@
  */
 package org.craigmcc.library.sql;
 
+import org.craigmcc.library.model.Codecs;
+import org.craigmcc.library.shared.model.InList;
+
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.function.BiConsumer;
 
 /**
- * <p>UNUSED but leftover from previous iterations of this package.</p>
+ * <p>Static utility methods shared by the statement builders.</p>
  */
 class Utils {
     
@@ -32,7 +37,7 @@ class Utils {
     public static void apply(PreparedStatement stmt, List<Object> params) throws SQLException {
         if ((params != null) && (params.size() > 0)) {
             for (int i = 0; i < params.size(); i++) {
-                stmt.setObject(i + 1, params.get(i));
+                Codecs.bind(stmt, i + 1, params.get(i));
             }
         }
     }
@@ -41,8 +46,54 @@ class Utils {
         apply(stmt, Arrays.asList(params));
     }
 
+    /**
+     * <p>Append an IN condition for the specified column and values, using
+     * one "?" placeholder per value, padded (by repeating the last value)
+     * to the next power of two.  This keeps the number of distinct SQL
+     * texts for lists of varying length logarithmic instead of linear, so
+     * that database plan caches and statement caches are not flooded with
+     * one entry per list length.  An empty collection renders a condition
+     * that matches nothing, since <code>IN ()</code> is not valid SQL.</p>
+     *
+     * @param sb StringBuilder containing the SQL text being created
+     * @param column Column to be matched
+     * @param values Values to be matched
+     * @param params Receives the column and value for each placeholder, in order
+     */
+    public static void appendIn(StringBuilder sb, String column, Collection<?> values,
+                                BiConsumer<String, Object> params) {
+        if (values.isEmpty()) {
+            sb.append("1 = 0");
+            return;
+        }
+        sb.append(column);
+        sb.append(" IN (");
+        int count = 0;
+        Object last = null;
+        for (Object value : values) {
+            if (count++ > 0) {
+                sb.append(", ");
+            }
+            sb.append("?");
+            params.accept(column, value);
+            last = value;
+        }
+        for (int bucket = InList.bucket(count); count < bucket; count++) {
+            sb.append(", ?");
+            params.accept(column, last);
+        }
+        sb.append(")");
+    }
+
+    /**
+     * <p>Return <code>true</code> if the specified value is an SQL literal
+     * (such as <code>now()</code>) that must be rendered inline rather than
+     * bound as a replacement parameter.</p>
+     *
+     * @param value Value to be checked
+     */
     public static boolean literal(Object value) {
-        if (literals.contains(value)) {
+        if ((value != null) && literals.contains(value)) {
             return true;
         }
         return false;
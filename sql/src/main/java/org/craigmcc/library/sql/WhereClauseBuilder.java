@@ -17,6 +17,7 @@ package org.craigmcc.library.sql;
 
 import javax.validation.constraints.NotNull;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -116,7 +117,8 @@ class WhereClauseBuilder {
     
     /**
      * Add an expression for comparing the specified column name to the specified
-     * value with the specified operator.
+     * value with the specified operator.  For <code>SqlOperator.IN</code>, the
+     * value must be a <code>Collection</code> of values to be matched.
      * 
      * @param column Name of the column to be filtered on
      * @param operator Operator for the comparison
@@ -129,6 +131,9 @@ class WhereClauseBuilder {
         if (operator == null) {
             throw new IllegalArgumentException("WHERE operator cannot be null");
         }
+        if ((operator == SqlOperator.IN) && !(value instanceof Collection)) {
+            throw new IllegalArgumentException("WHERE value for IN must be a Collection");
+        }
         wheres.add(new Where(column, operator, value));
         return this;
     }
@@ -200,13 +205,15 @@ class WhereClauseBuilder {
     
     private String expression(String column, SqlOperator operator, Object value) {
         StringBuilder sb = new StringBuilder();
+        if ((operator == SqlOperator.IN) && (value instanceof Collection)) {
+            Utils.appendIn(sb, column, (Collection<?>) value, (c, v) -> params.add(v));
+            return sb.toString();
+        }
         sb.append(column);
         sb.append(" ");
         sb.append(operator.getOperator());
         sb.append(" ");
         if (value != null) {
-            sb.append(operator.getOperator());
-            sb.append(" ");
             if (Utils.literal(value)) {
                 sb.append(value);
             } else {
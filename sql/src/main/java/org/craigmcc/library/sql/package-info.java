@@ -26,6 +26,12 @@
  * replacement) already applied.  This prepared statement is ready
  * to be executed and then closed by the calling logic.</p>
  *
+ * <p>For statements that are executed repeatedly with the same shape,
+ * call <code>compile()</code> instead of <code>build()</code> to get
+ * a {@link org.craigmcc.library.sql.CompiledStatement}.  This renders
+ * the SQL text once, and can then create any number of prepared
+ * statements with different parameter values, from any thread.</p>
+ *
  * <p>For good examples of the variety of decorators that can be
  * used, and the precise syntax of the SQL statement that is generated,
  * see the various unit tests for these builder classes.</p>
@@ -20,20 +20,27 @@ import org.craigmcc.library.model.Model;
 import org.junit.BeforeClass;
 import org.mockito.Mockito;
 
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+
 public class AbstractUnitTest {
 
     protected static Connection connection = Mockito.mock(Connection.class);
+    protected static final String H2_URL = "jdbc:h2:mem:sql;DB_CLOSE_DELAY=-1";
     protected static final String MY_TABLE = "mytable";
 
     @BeforeClass
     public static void beforeClass() throws Exception {
-        String[] keys = new String[] { "" };
         connection = Mockito.mock(Connection.class);
-        Mockito.when(connection.prepareStatement("")).thenReturn(Mockito.mock(PreparedStatement.class));
-        Mockito.when(connection.prepareStatement("", keys)).thenReturn(Mockito.mock(PreparedStatement.class));
+        PreparedStatement statement = Mockito.mock(PreparedStatement.class);
+        Mockito.when(statement.getConnection()).thenReturn(connection);
+        Mockito.when(connection.prepareStatement(anyString())).thenReturn(statement);
+        Mockito.when(connection.prepareStatement(anyString(), any(String[].class))).thenReturn(statement);
+        Mockito.when(connection.createArrayOf(anyString(), any(Object[].class))).thenReturn(Mockito.mock(Array.class));
     }
 
     static class ConcreteModel extends Model<ConcreteModel> implements Constants {
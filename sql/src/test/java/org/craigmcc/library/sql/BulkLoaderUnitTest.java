@@ -0,0 +1,142 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.sql;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.craigmcc.library.model.Constants.ID_COLUMN;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThrows;
+
+public class BulkLoaderUnitTest extends AbstractUnitTest {
+
+    private static final String INSERT_SQL = "INSERT INTO " + MY_TABLE + " (firstName) VALUES (?)";
+    private static final String[] INSERT_KEYS = new String[] { ID_COLUMN };
+
+    private Connection connection;
+    private DataSource dataSource;
+    private PreparedStatement statement;
+
+    @Before
+    public void before() throws Exception {
+        connection = Mockito.mock(Connection.class);
+        dataSource = Mockito.mock(DataSource.class);
+        statement = Mockito.mock(PreparedStatement.class);
+        Mockito.when(dataSource.getConnection()).thenReturn(connection);
+        Mockito.when(connection.prepareStatement(INSERT_SQL)).thenReturn(statement);
+        Mockito.when(connection.prepareStatement(INSERT_SQL, INSERT_KEYS)).thenReturn(statement);
+    }
+
+    @Test
+    public void loadWithKeys() throws Exception {
+        ResultSet keys = Mockito.mock(ResultSet.class);
+        Mockito.when(statement.getGeneratedKeys()).thenReturn(keys);
+        Mockito.when(keys.next()).thenReturn(true, true, false, true, true, false, true, false);
+        Mockito.when(keys.getLong(1)).thenReturn(1L, 2L, 3L, 4L, 5L);
+        List<ConcreteModel> models = models(5);
+        long count = new BulkLoader<ConcreteModel>(dataSource, model ->
+                new InsertBuilder(MY_TABLE)
+                        .primary(ID_COLUMN)
+                        .pair("firstName", model.getFirstName()))
+                .batchSize(2)
+                .commitInterval(4)
+                .load(models.iterator());
+        assertThat(count, is(5L));
+        for (int i = 0; i < models.size(); i++) {
+            assertThat(models.get(i).getId(), is((long) (i + 1)));
+        }
+        Mockito.verify(connection).setAutoCommit(false);
+        Mockito.verify(connection, Mockito.times(2)).commit();
+        Mockito.verify(statement, Mockito.times(3)).executeBatch();
+        Mockito.verify(connection).close();
+    }
+
+    @Test
+    public void loadWithWriters() throws Exception {
+        long count = new BulkLoader<ConcreteModel>(dataSource, model ->
+                new InsertBuilder(MY_TABLE)
+                        .pair("firstName", model.getFirstName()))
+                .bufferSize(10)
+                .writers(4)
+                .load(models(1000).stream());
+        assertThat(count, is(1000L));
+        Mockito.verify(statement, Mockito.times(1000)).addBatch();
+        Mockito.verify(connection, Mockito.times(4)).close();
+    }
+
+    @Test
+    public void loadWithFailure() throws Exception {
+        Mockito.when(statement.executeBatch()).thenThrow(new SQLException("Boom"));
+        BulkLoader<ConcreteModel> loader = new BulkLoader<ConcreteModel>(dataSource, model ->
+                new InsertBuilder(MY_TABLE)
+                        .pair("firstName", model.getFirstName()))
+                .batchSize(10)
+                .bufferSize(5);
+        SQLException e = assertThrows(SQLException.class,
+                () -> loader.load(models(100).iterator()));
+        assertThat(e.getMessage(), is("Boom"));
+        Mockito.verify(connection).rollback();
+        Mockito.verify(connection, Mockito.never()).commit();
+    }
+
+    @Test(timeout = 5000)
+    public void loadWithFinalCommitFailure() throws Exception {
+        Mockito.doThrow(new SQLException("Boom")).when(connection).commit();
+        BulkLoader<ConcreteModel> loader = new BulkLoader<ConcreteModel>(dataSource, model ->
+                new InsertBuilder(MY_TABLE)
+                        .pair("firstName", model.getFirstName()))
+                .writers(2);
+        SQLException e = assertThrows(SQLException.class,
+                () -> loader.load(models(10).iterator()));
+        assertThat(e.getMessage(), is("Boom"));
+        Mockito.verify(connection, Mockito.times(2)).close();
+    }
+
+    @Test(timeout = 5000)
+    public void loadWithFinalFlushFailure() throws Exception {
+        Mockito.when(statement.executeBatch()).thenThrow(new SQLException("Boom"));
+        BulkLoader<ConcreteModel> loader = new BulkLoader<ConcreteModel>(dataSource, model ->
+                new InsertBuilder(MY_TABLE)
+                        .pair("firstName", model.getFirstName()))
+                .batchSize(100);
+        SQLException e = assertThrows(SQLException.class,
+                () -> loader.load(models(2).iterator()));
+        assertThat(e.getMessage(), is("Boom"));
+        Mockito.verify(connection).rollback();
+        Mockito.verify(connection, Mockito.never()).commit();
+        Mockito.verify(connection).close();
+    }
+
+    private List<ConcreteModel> models(int count) {
+        List<ConcreteModel> models = new ArrayList<>(count);
+        IntStream.range(0, count).forEach(i ->
+                models.add(new ConcreteModel("First" + i, "Last" + i, i)));
+        return models;
+    }
+
+}
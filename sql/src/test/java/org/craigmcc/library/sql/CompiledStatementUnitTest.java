@@ -0,0 +1,132 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.sql;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+
+import static org.craigmcc.library.model.Constants.ID_COLUMN;
+import static org.craigmcc.library.sql.SqlOperator.LT;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThrows;
+
+public class CompiledStatementUnitTest extends AbstractUnitTest {
+
+    @Test
+    public void compileDelete() throws Exception {
+        CompiledStatement compiled = new DeleteBuilder(MY_TABLE)
+                .primary(ID_COLUMN, 123L)
+                .compile();
+        System.out.println("compileDelete: " + compiled.toString());
+        assertThat(compiled.getSql(),
+                is("DELETE FROM " + MY_TABLE + " WHERE (id = ?)"));
+        assertThat(compiled.getSlotCount(), is(1));
+        assertThat(compiled.getSlot(0), is(ID_COLUMN));
+    }
+
+    @Test
+    public void compileInsert() throws Exception {
+        CompiledStatement compiled = new InsertBuilder(MY_TABLE)
+                .pair("firstName", null)
+                .pair("lastName", "Flintstone")
+                .pairLiteral("points", 0)
+                .primary(ID_COLUMN)
+                .compile();
+        System.out.println("compileInsert: " + compiled.toString());
+        assertThat(compiled.getSql(),
+                is("INSERT INTO " + MY_TABLE +
+                        " (firstName, lastName, points) VALUES (?, ?, 0)"));
+        assertThat(compiled.getSlotCount(), is(2));
+        assertThat(compiled.indexOf("firstName"), is(0));
+        assertThat(compiled.indexOf("lastName"), is(1));
+        assertThat(compiled.indexOf("points"), is(-1));
+        assertThat(compiled.getKeys()[0], is(ID_COLUMN));
+    }
+
+    @Test
+    public void compileSelect() throws Exception {
+        CompiledStatement compiled = new SelectBuilder(MY_TABLE)
+                .primary(ID_COLUMN, null)
+                .compile();
+        System.out.println("compileSelect: " + compiled.toString());
+        assertThat(compiled.getSql(),
+                is("SELECT * FROM " + MY_TABLE + " WHERE (id = ?)"));
+        assertThat(compiled.getSql(),
+                sameInstance(new SelectBuilder(MY_TABLE).primary(ID_COLUMN, 456L).compile().getSql()));
+        assertThat(compiled.getKeys(), nullValue());
+    }
+
+    @Test
+    public void compileUpdate() throws Exception {
+        CompiledStatement compiled = new UpdateBuilder(MY_TABLE)
+                .pair("firstName", "Betty")
+                .pair("lastName", "Rubble")
+                .expression("points", LT, 100)
+                .primary(ID_COLUMN, 42L)
+                .compile();
+        System.out.println("compileUpdate: " + compiled.toString());
+        assertThat(compiled.getSql(),
+                is("UPDATE " + MY_TABLE +
+                        " SET firstName = ?, lastName = ?" +
+                        " WHERE (id = ?)"));
+        assertThat(compiled.getSlotCount(), is(3));
+        assertThat(compiled.getSlot(2), is(ID_COLUMN));
+    }
+
+    @Test
+    public void compileDoesNotChangeBuild() throws Exception {
+        UpdateBuilder builder = new UpdateBuilder(MY_TABLE)
+                .pair("firstName", "Betty")
+                .primary(ID_COLUMN, 42L);
+        builder.compile();
+        builder.build(connection);
+        assertThat(builder.sql,
+                is("UPDATE " + MY_TABLE +
+                        " SET firstName = ? WHERE (id = 42)"));
+        assertThat(builder.params.size(), is(1));
+    }
+
+    @Test
+    public void buildWithValues() throws Exception {
+        CompiledStatement compiled = new SelectBuilder(MY_TABLE)
+                .column("firstName", "lastName")
+                .primary(ID_COLUMN, null)
+                .compile();
+        Connection connection = Mockito.mock(Connection.class);
+        PreparedStatement statement = Mockito.mock(PreparedStatement.class);
+        Mockito.when(connection.prepareStatement(compiled.getSql())).thenReturn(statement);
+        assertThat(compiled.build(connection, 789L), sameInstance(statement));
+        Mockito.verify(statement).setLong(1, 789L);
+        assertThat(compiled.bind(987L).build(connection), sameInstance(statement));
+        Mockito.verify(statement).setLong(1, 987L);
+    }
+
+    @Test
+    public void buildWithWrongValues() throws Exception {
+        CompiledStatement compiled = new DeleteBuilder(MY_TABLE)
+                .primary(ID_COLUMN, null)
+                .compile();
+        assertThrows(IllegalArgumentException.class,
+                () -> compiled.build(connection, 1L, 2L));
+    }
+
+}
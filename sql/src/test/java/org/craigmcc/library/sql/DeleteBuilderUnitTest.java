@@ -18,12 +18,15 @@ package org.craigmcc.library.sql;
 import org.junit.Test;
 
 import java.sql.PreparedStatement;
+import java.util.Collections;
+import java.util.List;
 
 import static org.craigmcc.library.sql.SqlOperator.GE;
 import static org.craigmcc.library.sql.SqlOperator.LT;
 import static org.craigmcc.library.sql.SqlOperator.NE;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThrows;
 
 public class DeleteBuilderUnitTest extends AbstractUnitTest {
@@ -45,6 +48,40 @@ public class DeleteBuilderUnitTest extends AbstractUnitTest {
                 () -> builder.build(connection));
     }
 
+    @Test
+    public void deleteReturningH2() throws Exception {
+        DeleteBuilder builder = new DeleteBuilder(MY_TABLE)
+                .dialect(SqlDialect.H2)
+                .primary("id", 123)
+                .returning("id", "firstName");
+        builder.build(connection);
+        System.out.println("deleteReturningH2: " + builder.toString());
+        assertThat(builder.sql,
+                is("SELECT id, firstName FROM OLD TABLE (DELETE FROM " + MY_TABLE +
+                        " WHERE (id = 123))"));
+    }
+
+    @Test
+    public void deleteReturningSqlServer() throws Exception {
+        DeleteBuilder builder = new DeleteBuilder(MY_TABLE)
+                .dialect(SqlDialect.SQLSERVER)
+                .primary("id", 123)
+                .returning("firstName");
+        builder.build(connection);
+        System.out.println("deleteReturningSqlServer: " + builder.toString());
+        assertThat(builder.sql,
+                is("DELETE FROM " + MY_TABLE + " OUTPUT DELETED.firstName WHERE (id = 123)"));
+    }
+
+    @Test
+    public void deleteReturningStandard() throws Exception {
+        DeleteBuilder builder = new DeleteBuilder(MY_TABLE)
+                .primary("id", 123)
+                .returning("firstName");
+        assertThrows(IllegalStateException.class,
+                () -> builder.build(connection));
+    }
+
     @Test
     public void deleteWithAnd() throws Exception {
         DeleteBuilder builder = new DeleteBuilder(MY_TABLE)
@@ -101,6 +138,28 @@ public class DeleteBuilderUnitTest extends AbstractUnitTest {
         System.out.println("deleteWithPrimary: " + builder.toString());
         assertThat(builder.sql,
                 is("DELETE FROM " + MY_TABLE + " WHERE (id = 123)"));
+        assertThat(builder.clauses, sameInstance(Collections.emptyList()));
+        assertThat(builder.expressions, sameInstance(Collections.emptyList()));
+        assertThat(builder.pairs, sameInstance(Collections.emptyList()));
+    }
+
+    @Test
+    public void deleteWithReset() throws Exception {
+        DeleteBuilder builder = new DeleteBuilder(MY_TABLE)
+                .bind()
+                .expression("firstName", NE, "Fred")
+                .expression("lastName", NE, "Flintstone");
+        builder.build(connection);
+        List<?> expressions = builder.expressions;
+        PreparedStatement statement = builder.reset()
+                .primary("id", 123)
+                .build(connection);
+        System.out.println("deleteWithReset: " + builder.toString());
+        assertThat(builder.sql,
+                is("DELETE FROM " + MY_TABLE + " WHERE (id = 123)"));
+        assertThat(builder.params.size(), is(0));
+        assertThat(builder.expressions, sameInstance(expressions));
+        assertThat(builder.expressions.size(), is(0));
     }
 
 }
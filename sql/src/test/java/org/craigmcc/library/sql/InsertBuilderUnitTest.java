@@ -16,12 +16,23 @@
 package org.craigmcc.library.sql;
 
 import org.junit.Test;
+import org.mockito.Mockito;
 
+import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThrows;
 
 public class InsertBuilderUnitTest extends AbstractUnitTest {
 
@@ -38,6 +49,147 @@ public class InsertBuilderUnitTest extends AbstractUnitTest {
                         " (firstName, lastName, points) VALUES (?, ?, ?)"));
     }
 
+    @Test
+    public void insertBatch() throws Exception {
+        String sql = "INSERT INTO " + MY_TABLE + " (firstName, lastName) VALUES (?, ?)";
+        Connection connection = Mockito.mock(Connection.class);
+        PreparedStatement statement = Mockito.mock(PreparedStatement.class);
+        ResultSet keys1 = Mockito.mock(ResultSet.class);
+        ResultSet keys2 = Mockito.mock(ResultSet.class);
+        Mockito.when(connection.prepareStatement(sql, new String[] { "id" })).thenReturn(statement);
+        Mockito.when(statement.getGeneratedKeys()).thenReturn(keys1, keys2);
+        Mockito.when(keys1.next()).thenReturn(true, true, false);
+        Mockito.when(keys1.getObject(1)).thenReturn(11L, 12L);
+        Mockito.when(keys2.next()).thenReturn(true, false);
+        Mockito.when(keys2.getObject(1)).thenReturn(13L);
+        InsertBuilder builder = new InsertBuilder(MY_TABLE)
+                .pair("firstName", null)
+                .pair("lastName", null)
+                .primary("id")
+                .batchSize(2)
+                .row("Fred", "Flintstone")
+                .row("Wilma", "Flintstone")
+                .row("Barney", "Rubble");
+        List<Object> generated = builder.executeBatch(connection);
+        System.out.println("insertBatch: " + generated);
+        assertThat(generated, contains(11L, 12L, 13L));
+        assertThat(builder.rows.isEmpty(), is(true));
+        Mockito.verify(statement, Mockito.times(3)).addBatch();
+        Mockito.verify(statement, Mockito.times(2)).executeBatch();
+        Mockito.verify(statement).setString(1, "Barney");
+        Mockito.verify(statement).close();
+    }
+
+    @Test
+    public void insertBatchWithWrongRow() throws Exception {
+        String sql = "INSERT INTO " + MY_TABLE + " (firstName, lastName) VALUES (?, ?)";
+        Connection connection = Mockito.mock(Connection.class);
+        PreparedStatement statement = Mockito.mock(PreparedStatement.class);
+        Mockito.when(connection.prepareStatement(sql)).thenReturn(statement);
+        InsertBuilder builder = new InsertBuilder(MY_TABLE)
+                .pair("firstName", null)
+                .pair("lastName", null)
+                .row("Fred");
+        assertThrows(IllegalArgumentException.class,
+                () -> builder.executeBatch(connection));
+        assertThat(builder.rows.size(), is(1));
+    }
+
+    @Test
+    public void insertReturningDatabase() throws Exception {
+        try (Connection connection = DriverManager.getConnection(H2_URL)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP TABLE IF EXISTS returned");
+                statement.execute("CREATE TABLE returned (id BIGINT AUTO_INCREMENT PRIMARY KEY," +
+                        " firstName VARCHAR(20), published TIMESTAMP)");
+            }
+            InsertBuilder builder = new InsertBuilder("returned")
+                    .dialect(SqlDialect.H2)
+                    .pair("firstName", "Fred")
+                    .pairLiteral("published", "now()")
+                    .primary("id")
+                    .returning("id", "published");
+            try (PreparedStatement statement = builder.build(connection);
+                 ResultSet resultSet = statement.executeQuery()) {
+                System.out.println("insertReturningDatabase: " + builder.toString());
+                assertThat(resultSet.next(), is(true));
+                assertThat(resultSet.getLong(1), is(1L));
+                assertThat(resultSet.getTimestamp(2), notNullValue());
+            }
+            builder = new InsertBuilder("returned")
+                    .pair("firstName", "Wilma")
+                    .pairLiteral("published", "now()")
+                    .returning("id", "published");
+            try (PreparedStatement statement = builder.build(connection)) {
+                statement.executeUpdate();
+                try (ResultSet resultSet = statement.getGeneratedKeys()) {
+                    assertThat(resultSet.next(), is(true));
+                    assertThat(resultSet.getLong(1), is(2L));
+                    assertThat(resultSet.getTimestamp(2), notNullValue());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void insertReturningH2() throws Exception {
+        InsertBuilder builder = new InsertBuilder(MY_TABLE)
+                .dialect(SqlDialect.H2)
+                .pair("firstName", "Fred")
+                .pairLiteral("published", "now()")
+                .primary("id")
+                .returning("id", "published");
+        builder.build(connection);
+        System.out.println("insertReturningH2: " + builder.toString());
+        assertThat(builder.sql,
+                is("SELECT id, published FROM FINAL TABLE (INSERT INTO " + MY_TABLE +
+                        " (firstName, published) VALUES (?, now()))"));
+        assertThat(builder.keys(), nullValue());
+    }
+
+    @Test
+    public void insertReturningPostgreSql() throws Exception {
+        InsertBuilder builder = new InsertBuilder(MY_TABLE)
+                .dialect(SqlDialect.POSTGRESQL)
+                .pair("firstName", "Fred")
+                .pairLiteral("published", "now()")
+                .primary("id")
+                .returning("id", "published");
+        builder.build(connection);
+        System.out.println("insertReturningPostgreSql: " + builder.toString());
+        assertThat(builder.sql,
+                is("INSERT INTO " + MY_TABLE + " (firstName, published)" +
+                        " VALUES (?, now()) RETURNING id, published"));
+        assertThat(builder.keys(), nullValue());
+    }
+
+    @Test
+    public void insertReturningSqlServer() throws Exception {
+        InsertBuilder builder = new InsertBuilder(MY_TABLE)
+                .dialect(SqlDialect.SQLSERVER)
+                .pair("firstName", "Fred")
+                .returning("id", "published");
+        builder.build(connection);
+        System.out.println("insertReturningSqlServer: " + builder.toString());
+        assertThat(builder.sql,
+                is("INSERT INTO " + MY_TABLE + " (firstName)" +
+                        " OUTPUT INSERTED.id, INSERTED.published VALUES (?)"));
+    }
+
+    @Test
+    public void insertReturningStandard() throws Exception {
+        InsertBuilder builder = new InsertBuilder(MY_TABLE)
+                .pair("firstName", "Fred")
+                .primary("id")
+                .returning("id", "published");
+        builder.build(connection);
+        System.out.println("insertReturningStandard: " + builder.toString());
+        assertThat(builder.sql,
+                is("INSERT INTO " + MY_TABLE + " (firstName) VALUES (?)"));
+        assertThat(Arrays.asList(builder.keys()), contains("id", "published"));
+        assertThat(Arrays.asList(builder.reset().primary("id").keys()), contains("id"));
+    }
+
     @Test
     public void insertWithLiteral() throws Exception {
         InsertBuilder builder = new InsertBuilder(MY_TABLE)
@@ -1,16 +1,33 @@
 package org.craigmcc.library.sql;
 
+import org.craigmcc.library.model.Codecs;
 import org.junit.Test;
+import org.mockito.Mockito;
 
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import static org.craigmcc.library.model.Constants.ID_COLUMN;
 import static org.craigmcc.library.sql.SqlOperator.GE;
 import static org.craigmcc.library.sql.SqlOperator.LT;
 import static org.craigmcc.library.sql.SqlOperator.NE;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.verify;
 
 public class SelectBuilderUnitTest extends AbstractUnitTest {
 
@@ -50,6 +67,40 @@ public class SelectBuilderUnitTest extends AbstractUnitTest {
                         " AND (points < 100)"));
     }
 
+    @Test
+    public void selectWithBind() throws Exception {
+        SelectBuilder builder = new SelectBuilder(MY_TABLE)
+                .bind()
+                .expression("firstName", GE, "Fred")
+                .expression("points", LT, 100)
+                .expressionLiteral("lastName", NE, "'Rubble'")
+                .expression("updated", LT, "now()");
+        PreparedStatement statement = builder.build(connection);
+        System.out.println("selectWithBind: " + builder.toString());
+        assertThat(builder.sql,
+                is("SELECT * FROM " + MY_TABLE +
+                        " WHERE (firstName >= ?)" +
+                        " AND (points < ?)" +
+                        " AND (lastName <> 'Rubble')" +
+                        " AND (updated < now())"));
+        assertThat(builder.params.size(), is(2));
+        assertThat(builder.params.get(0), is("Fred"));
+        assertThat(builder.params.get(1), is(100));
+    }
+
+    @Test
+    public void selectWithBindPrimary() throws Exception {
+        SelectBuilder builder = new SelectBuilder(MY_TABLE)
+                .bind()
+                .primary("id", 987);
+        PreparedStatement statement = builder.build(connection);
+        System.out.println("selectWithBindPrimary: " + builder.toString());
+        assertThat(builder.sql,
+                is("SELECT * FROM " + MY_TABLE +
+                        " WHERE (id = ?)"));
+        assertThat(builder.params.get(0), is(987));
+    }
+
     @Test
     public void selectWithClause() throws Exception {
         SelectBuilder builder = new SelectBuilder(MY_TABLE)
@@ -85,6 +136,127 @@ public class SelectBuilderUnitTest extends AbstractUnitTest {
                         " GROUP BY lastName"));
     }
 
+    @Test
+    public void selectWithIn() throws Exception {
+        SelectBuilder builder = new SelectBuilder(MY_TABLE)
+                .expression("lastName", NE, "'Rubble'")
+                .in(ID_COLUMN, Arrays.asList(1L, 2L, 3L));
+        PreparedStatement statement = builder.build(connection);
+        System.out.println("selectWithIn: " + builder.toString());
+        assertThat(builder.sql,
+                is("SELECT * FROM " + MY_TABLE +
+                        " WHERE (lastName <> 'Rubble') AND (id IN (?, ?, ?, ?))"));
+        assertThat(builder.params, contains(1L, 2L, 3L, 3L));
+    }
+
+    @Test
+    public void selectWithInArray() throws Exception {
+        SelectBuilder builder = new SelectBuilder(MY_TABLE)
+                .inArray(ID_COLUMN, "bigint", Arrays.asList(1L, 2L, 3L));
+        PreparedStatement statement = builder.build(connection);
+        System.out.println("selectWithInArray: " + builder.toString());
+        assertThat(builder.sql,
+                is("SELECT * FROM " + MY_TABLE +
+                        " WHERE (id = ANY (?))"));
+        assertThat(builder.params.size(), is(1));
+    }
+
+    @Test
+    public void selectWithInArrayDatabase() throws Exception {
+        try (Connection connection = DriverManager.getConnection(H2_URL)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP TABLE IF EXISTS " + MY_TABLE);
+                statement.execute("CREATE TABLE " + MY_TABLE + " (id BIGINT PRIMARY KEY," +
+                        " firstName VARCHAR(20))");
+                statement.execute("INSERT INTO " + MY_TABLE + " VALUES (1, 'Fred'), (2, 'Barney'), (3, 'Wilma')");
+            }
+            SelectBuilder builder = new SelectBuilder(MY_TABLE)
+                    .dialect(SqlDialect.H2)
+                    .column("firstName")
+                    .inArray(ID_COLUMN, "bigint", Arrays.asList(1L, 3L))
+                    .orderBy("firstName", SqlDirection.ASC);
+            List<String> names = new ArrayList<>();
+            try (PreparedStatement statement = builder.build(connection);
+                 ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    names.add(resultSet.getString(1));
+                }
+            }
+            System.out.println("selectWithInArrayDatabase: " + builder.toString());
+            assertThat(names, contains("Fred", "Wilma"));
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT ARRAY[1, 2, 3]")) {
+                assertThat(resultSet.next(), is(true));
+                SqlArray array = Codecs.read(resultSet, 1, SqlArray.class);
+                assertThat(array.getValues(), contains(1, 2, 3));
+            }
+        }
+    }
+
+    @Test
+    public void selectWithInArrayDialect() throws Exception {
+        SelectBuilder builder = new SelectBuilder(MY_TABLE)
+                .dialect(SqlDialect.MYSQL)
+                .inArray(ID_COLUMN, "bigint", Arrays.asList(1L, 2L, 3L));
+        PreparedStatement statement = builder.build(connection);
+        System.out.println("selectWithInArrayDialect: " + builder.toString());
+        assertThat(builder.sql,
+                is("SELECT * FROM " + MY_TABLE +
+                        " WHERE (id IN (?, ?, ?, ?))"));
+        assertThat(builder.params, contains(1L, 2L, 3L, 3L));
+    }
+
+    @Test
+    public void selectWithInArrayFreed() throws Exception {
+        Connection connection = Mockito.mock(Connection.class);
+        PreparedStatement prepared = Mockito.mock(PreparedStatement.class);
+        Array array = Mockito.mock(Array.class);
+        Mockito.when(connection.prepareStatement(anyString())).thenReturn(prepared);
+        Mockito.when(connection.createArrayOf(anyString(), any(Object[].class))).thenReturn(array);
+        Mockito.when(prepared.getConnection()).thenReturn(connection);
+        PreparedStatement statement = new SelectBuilder(MY_TABLE)
+                .inArray(ID_COLUMN, "bigint", Arrays.asList(1L, 2L, 3L))
+                .build(connection);
+        verify(prepared).setArray(1, array);
+        verify(array, Mockito.never()).free();
+        statement.close();
+        verify(prepared).close();
+        verify(array).free();
+    }
+
+    @Test
+    public void selectWithInBuckets() throws Exception {
+        Set<String> texts = new HashSet<>();
+        for (int count = 1; count <= 100; count++) {
+            List<Long> ids = new ArrayList<>();
+            for (long id = 0; id < count; id++) {
+                ids.add(id);
+            }
+            SelectBuilder builder = new SelectBuilder(MY_TABLE).in(ID_COLUMN, ids);
+            builder.build(connection);
+            texts.add(builder.sql);
+        }
+        System.out.println("selectWithInBuckets: " + texts.size() + " distinct texts");
+        assertThat(texts.size(), is(8)); // 1, 2, 4, ... 128 placeholders
+    }
+
+    @Test
+    public void selectWithInEmpty() throws Exception {
+        SelectBuilder builder = new SelectBuilder(MY_TABLE)
+                .in(ID_COLUMN, Collections.emptyList());
+        PreparedStatement statement = builder.build(connection);
+        System.out.println("selectWithInEmpty: " + builder.toString());
+        assertThat(builder.sql,
+                is("SELECT * FROM " + MY_TABLE +
+                        " WHERE (1 = 0)"));
+    }
+
+    @Test
+    public void selectWithInNotCollection() throws Exception {
+        assertThrows(IllegalArgumentException.class,
+                () -> new SelectBuilder(MY_TABLE).expression(ID_COLUMN, SqlOperator.IN, 123L));
+    }
+
     @Test
     public void setWithModel() throws Exception {
         ConcreteModel model = new ConcreteModel("Bam Bam", "Rubble", 567);
@@ -112,6 +284,115 @@ public class SelectBuilderUnitTest extends AbstractUnitTest {
                         " OR (points < 100)"));
     }
 
+    @Test
+    public void selectWithPageFirst() throws Exception {
+        SelectBuilder builder = new SelectBuilder(MY_TABLE)
+                .all()
+                .orderBy("lastName", SqlDirection.ASC)
+                .orderBy(ID_COLUMN, SqlDirection.ASC)
+                .page(PageCursor.first(25));
+        PreparedStatement statement = builder.build(connection);
+        System.out.println("selectWithPageFirst: " + builder.toString());
+        assertThat(builder.sql,
+                is("SELECT * FROM " + MY_TABLE +
+                        " ORDER BY lastName ASC, id ASC LIMIT 25"));
+        assertThat(builder.params.size(), is(0));
+    }
+
+    @Test
+    public void selectWithPageMixed() throws Exception {
+        SelectBuilder builder = new SelectBuilder(MY_TABLE)
+                .all()
+                .orderBy("lastName", SqlDirection.DESC)
+                .orderBy(ID_COLUMN, SqlDirection.ASC)
+                .page(PageCursor.first(25).next("Flintstone", 123L));
+        PreparedStatement statement = builder.build(connection);
+        System.out.println("selectWithPageMixed: " + builder.toString());
+        assertThat(builder.sql,
+                is("SELECT * FROM " + MY_TABLE +
+                        " WHERE ((lastName < ?) OR (lastName = ? AND id > ?))" +
+                        " ORDER BY lastName DESC, id ASC LIMIT 25"));
+        assertThat(builder.params.size(), is(3));
+        assertThat(builder.params.get(0), is("Flintstone"));
+        assertThat(builder.params.get(1), is("Flintstone"));
+        assertThat(builder.params.get(2), is(123L));
+    }
+
+    @Test
+    public void selectWithPageNext() throws Exception {
+        SelectBuilder builder = new SelectBuilder(MY_TABLE)
+                .all()
+                .orderBy("lastName", SqlDirection.ASC)
+                .orderBy(ID_COLUMN, SqlDirection.ASC)
+                .offset(100)
+                .page(PageCursor.first(25).next("Flintstone", 123L));
+        PreparedStatement statement = builder.build(connection);
+        System.out.println("selectWithPageNext: " + builder.toString());
+        assertThat(builder.sql,
+                is("SELECT * FROM " + MY_TABLE +
+                        " WHERE ((lastName, id) > (?, ?))" +
+                        " ORDER BY lastName ASC, id ASC LIMIT 25"));
+        assertThat(builder.params.get(0), is("Flintstone"));
+        assertThat(builder.params.get(1), is(123L));
+    }
+
+    @Test
+    public void selectWithPageOr() throws Exception {
+        SelectBuilder builder = new SelectBuilder(MY_TABLE)
+                .expression("firstName", SqlOperator.EQ, "'Fred'")
+                .expression("firstName", SqlOperator.EQ, "'Wilma'")
+                .or()
+                .orderBy(ID_COLUMN, SqlDirection.DESC)
+                .page(PageCursor.first(10).next(123L));
+        PreparedStatement statement = builder.build(connection);
+        System.out.println("selectWithPageOr: " + builder.toString());
+        assertThat(builder.sql,
+                is("SELECT * FROM " + MY_TABLE +
+                        " WHERE ((firstName = 'Fred') OR (firstName = 'Wilma'))" +
+                        " AND (id < ?)" +
+                        " ORDER BY id DESC LIMIT 10"));
+        assertThat(builder.params.get(0), is(123L));
+    }
+
+    @Test
+    public void selectWithPageWrongKeys() throws Exception {
+        SelectBuilder builder = new SelectBuilder(MY_TABLE)
+                .all()
+                .orderBy(ID_COLUMN, SqlDirection.ASC)
+                .page(PageCursor.first(10).next("Flintstone", 123L));
+        assertThrows(IllegalStateException.class,
+                () -> builder.build(connection));
+    }
+
+    @Test
+    public void selectWithListsFromSubclass() throws Exception {
+        SelectBuilder builder = new SelectBuilder(MY_TABLE);
+        builder.mutableExpressions().add(new AbstractStatementBuilder.Expression("points", LT, false, 100));
+        builder.mutableOrderBys().add(new AbstractStatementBuilder.OrderBy("points", SqlDirection.DESC));
+        PreparedStatement statement = builder.build(connection);
+        System.out.println("selectWithListsFromSubclass: " + builder.toString());
+        assertThat(builder.sql,
+                is("SELECT * FROM " + MY_TABLE +
+                        " WHERE (points < 100) ORDER BY points DESC"));
+    }
+
+    @Test
+    public void selectWithReset() throws Exception {
+        SelectBuilder builder = new SelectBuilder(MY_TABLE)
+                .all()
+                .column("firstName", "lastName")
+                .orderBy("lastName", SqlDirection.ASC)
+                .page(PageCursor.first(10).next("Flintstone"));
+        builder.build(connection);
+        PreparedStatement statement = builder.reset()
+                .primary("id", 987)
+                .build(connection);
+        System.out.println("selectWithReset: " + builder.toString());
+        assertThat(builder.sql,
+                is("SELECT * FROM " + MY_TABLE +
+                        " WHERE (id = 987)"));
+    }
+
     @Test
     public void selectWithPrimary() throws Exception {
         SelectBuilder builder = new SelectBuilder(MY_TABLE)
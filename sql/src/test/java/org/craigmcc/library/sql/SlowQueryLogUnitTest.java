@@ -0,0 +1,185 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.sql;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+import static org.craigmcc.library.sql.SqlOperator.EQ;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SlowQueryLogUnitTest {
+
+    private static final String SLOW_TABLE = "slowtable";
+
+    private Connection connection;
+    private PreparedStatement explain;
+    private final List<LogRecord> records = new ArrayList<>();
+    private ResultSet resultSet;
+    private PreparedStatement statement;
+
+    @Before
+    public void before() throws Exception {
+        resultSet = mock(ResultSet.class);
+        when(resultSet.next()).thenReturn(true, true, false);
+        statement = mock(PreparedStatement.class);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        ResultSetMetaData planMetaData = mock(ResultSetMetaData.class);
+        when(planMetaData.getColumnCount()).thenReturn(2);
+        ResultSet plan = mock(ResultSet.class);
+        when(plan.getMetaData()).thenReturn(planMetaData);
+        when(plan.next()).thenReturn(true, false);
+        when(plan.getString(1)).thenReturn("SCAN slowtable");
+        when(plan.getString(2)).thenReturn("cost=42");
+        explain = mock(PreparedStatement.class);
+        when(explain.executeQuery()).thenReturn(plan);
+        connection = mock(Connection.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.getConnection()).thenReturn(connection);
+        records.clear();
+    }
+
+    @After
+    public void after() throws Exception {
+        SlowQueryLog.uninstall();
+    }
+
+    @Test
+    public void explainFirstOccurrences() throws Exception {
+        SelectBuilder builder = new SelectBuilder(SLOW_TABLE)
+                .bind()
+                .expression("id", EQ, 123L);
+        builder.build(connection);
+        when(connection.prepareStatement("EXPLAIN " + builder.sql)).thenReturn(explain);
+        SlowQueryLog log = newLog().explain(1).install();
+        for (int i = 0; i < 3; i++) {
+            query(builder);
+        }
+        System.out.println("explainFirstOccurrences: " + records.get(0).getMessage());
+        assertThat(log.getLogged(), is(3L));
+        assertThat(records.get(0).getMessage(), containsString("plan:\n        SCAN slowtable\tcost=42"));
+        assertThat(records.get(1).getMessage(), not(containsString("plan:")));
+        verify(explain, times(1)).executeQuery();
+        verify(explain).setLong(1, 123L);
+    }
+
+    @Test
+    public void fastQueryNotLogged() throws Exception {
+        SlowQueryLog log = newLog().threshold(1, TimeUnit.HOURS).install();
+        query(new SelectBuilder(SLOW_TABLE).bind().expression("id", EQ, 123L));
+        assertThat(log.getLogged(), is(0L));
+        assertThat(records.size(), is(0));
+    }
+
+    @Test
+    public void fileHandler() throws Exception {
+        File directory = Files.createTempDirectory("slow").toFile();
+        String pattern = new File(directory, "slow-%g.log").getPath();
+        try (SlowQueryLog log = new SlowQueryLog(pattern)
+                .threshold(0, TimeUnit.MILLISECONDS)
+                .install()) {
+            query(new SelectBuilder(SLOW_TABLE).bind().expression("id", EQ, 123L));
+        }
+        assertThat(SlowQueryLog.installed(), nullValue());
+        String contents = new String(Files.readAllBytes(
+                new File(directory, "slow-0.log").toPath()), StandardCharsets.UTF_8);
+        System.out.println("fileHandler: " + contents);
+        assertThat(contents, containsString("Slow query: "));
+        assertThat(contents, containsString("sql: SELECT * FROM " + SLOW_TABLE));
+    }
+
+    @Test
+    public void notInstalled() throws Exception {
+        PreparedStatement built = new SelectBuilder(SLOW_TABLE).all().build(connection);
+        assertThat(built, sameInstance(statement));
+    }
+
+    @Test
+    public void slowQueryClosedEarly() throws Exception {
+        SlowQueryLog log = newLog().install();
+        try (ResultSet rows = new SelectBuilder(SLOW_TABLE).all().build(connection).executeQuery()) {
+            rows.next();
+        }
+        assertThat(log.getLogged(), is(1L));
+        assertThat(records.get(0).getMessage(), containsString(", 1 rows"));
+    }
+
+    @Test
+    public void slowQueryLogged() throws Exception {
+        SlowQueryLog log = newLog().maxParams(1).install();
+        SelectBuilder builder = new SelectBuilder(SLOW_TABLE)
+                .bind()
+                .expression("firstName", EQ, "Fred")
+                .expression("lastName", EQ, "Flintstone");
+        query(builder);
+        String message = records.get(0).getMessage();
+        System.out.println("slowQueryLogged: " + message);
+        assertThat(log.getLogged(), is(1L));
+        assertThat(message, containsString(", 2 rows"));
+        assertThat(message, containsString("sql: " + builder.sql));
+        assertThat(message, containsString("params: ['Fred', ...(1 more)]"));
+        assertThat(message, containsString("at: " + getClass().getName() + ".query"));
+        assertThat(message, not(containsString("plan:")));
+    }
+
+    private SlowQueryLog newLog() {
+        return new SlowQueryLog(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                records.add(record);
+            }
+            @Override
+            public void flush() {
+            }
+            @Override
+            public void close() {
+            }
+        }).threshold(0, TimeUnit.MILLISECONDS);
+    }
+
+    private void query(SelectBuilder builder) throws Exception {
+        try (PreparedStatement built = builder.build(connection);
+             ResultSet rows = built.executeQuery()) {
+            while (rows.next()) {
+            }
+        }
+    }
+
+}
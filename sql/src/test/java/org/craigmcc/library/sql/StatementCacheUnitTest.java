@@ -0,0 +1,156 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.sql;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+
+import static org.craigmcc.library.model.Constants.ID_COLUMN;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class StatementCacheUnitTest extends AbstractUnitTest {
+
+    private Connection cached;
+    private PreparedStatement first;
+    private PreparedStatement second;
+    private PreparedStatement third;
+
+    @Before
+    public void before() throws Exception {
+        cached = Mockito.mock(Connection.class);
+        first = Mockito.mock(PreparedStatement.class);
+        second = Mockito.mock(PreparedStatement.class);
+        third = Mockito.mock(PreparedStatement.class);
+        Mockito.when(cached.prepareStatement("SELECT * FROM first WHERE (id = ?)")).thenReturn(first);
+        Mockito.when(cached.prepareStatement("SELECT * FROM second WHERE (id = ?)")).thenReturn(second);
+        Mockito.when(cached.prepareStatement("SELECT * FROM third WHERE (id = ?)")).thenReturn(third);
+    }
+
+    @Test
+    public void cacheEviction() throws Exception {
+        StatementCache cache = new StatementCache(2);
+        select(cache, "first").close();
+        select(cache, "second").close();
+        select(cache, "third").close();
+        System.out.println("cacheEviction: " + cache.toString());
+        assertThat(cache.size(), is(2));
+        assertThat(cache.getEvictions(), is(1L));
+        Mockito.verify(first).close();
+        Mockito.verify(second, Mockito.never()).close();
+    }
+
+    @Test
+    public void cacheHit() throws Exception {
+        StatementCache cache = new StatementCache();
+        PreparedStatement statement1 = select(cache, "first");
+        statement1.close();
+        assertThat(statement1.isClosed(), is(true));
+        PreparedStatement statement2 = select(cache, "first");
+        System.out.println("cacheHit: " + cache.toString());
+        assertThat(statement2, sameInstance(statement1));
+        assertThat(statement2.isClosed(), is(false));
+        assertThat(cache.getHits(), is(1L));
+        assertThat(cache.getMisses(), is(1L));
+        Mockito.verify(first, Mockito.never()).close();
+        Mockito.verify(first).clearParameters();
+    }
+
+    @Test
+    public void cacheInUse() throws Exception {
+        StatementCache cache = new StatementCache();
+        PreparedStatement statement1 = select(cache, "first");
+        PreparedStatement statement2 = select(cache, "first");
+        System.out.println("cacheInUse: " + cache.toString());
+        assertThat(statement2, not(sameInstance(statement1)));
+        assertThat(statement2, sameInstance(first));
+        assertThat(cache.getHits(), is(0L));
+        assertThat(cache.getMisses(), is(2L));
+        assertThat(cache.size(), is(1));
+    }
+
+    @Test
+    public void cacheInvalidate() throws Exception {
+        StatementCache cache = new StatementCache();
+        PreparedStatement statement = select(cache, "first");
+        cache.invalidate(cached);
+        assertThat(cache.size(), is(0));
+        Mockito.verify(first, Mockito.never()).close();
+        statement.close();
+        Mockito.verify(first).close();
+    }
+
+    @Test
+    public void cachePhysical() throws Exception {
+        Connection borrowed1 = Mockito.mock(Connection.class);
+        Connection borrowed2 = Mockito.mock(Connection.class);
+        Mockito.when(borrowed1.unwrap(Connection.class)).thenReturn(cached);
+        Mockito.when(borrowed2.unwrap(Connection.class)).thenReturn(cached);
+        StatementCache cache = new StatementCache();
+        PreparedStatement statement1 = select(cache, "first", borrowed1);
+        assertThat(statement1.getConnection(), sameInstance(borrowed1));
+        statement1.close();
+        PreparedStatement statement2 = select(cache, "first", borrowed2);
+        System.out.println("cachePhysical: " + cache.toString());
+        assertThat(statement2, sameInstance(statement1));
+        assertThat(statement2.getConnection(), sameInstance(borrowed2));
+        assertThat(cache.getHits(), is(1L));
+        Mockito.verify(borrowed1, Mockito.never()).prepareStatement(Mockito.anyString());
+        cache.invalidate(borrowed2);
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    public void cacheReleaseResets() throws Exception {
+        Mockito.when(first.getFetchSize()).thenReturn(10);
+        Mockito.when(first.getMaxRows()).thenReturn(0);
+        Mockito.when(first.getQueryTimeout()).thenReturn(30);
+        StatementCache cache = new StatementCache();
+        PreparedStatement statement = select(cache, "first");
+        statement.setFetchSize(500);
+        statement.setMaxRows(1);
+        statement.setQueryTimeout(1);
+        statement.addBatch();
+        statement.close();
+        Mockito.verify(first).clearParameters();
+        Mockito.verify(first).clearBatch();
+        Mockito.verify(first).setFetchSize(10);
+        Mockito.verify(first).setMaxRows(0);
+        Mockito.verify(first).setQueryTimeout(30);
+        Mockito.verify(first, Mockito.never()).close();
+        assertThat(select(cache, "first"), sameInstance(statement));
+    }
+
+    private PreparedStatement select(StatementCache cache, String table) throws Exception {
+        return select(cache, table, cached);
+    }
+
+    private PreparedStatement select(StatementCache cache, String table, Connection connection)
+            throws Exception {
+        return new SelectBuilder(table)
+                .bind()
+                .cache(cache)
+                .primary(ID_COLUMN, 123L)
+                .build(connection);
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.sql;
+
+import org.craigmcc.library.model.StatementMetrics;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import static org.craigmcc.library.sql.SqlOperator.EQ;
+import static org.craigmcc.library.sql.SqlOperator.LT;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class StatementShapesUnitTest extends AbstractUnitTest {
+
+    private static final String SHAPES_TABLE = "shapestable";
+
+    @Test
+    public void boundShapesStayBounded() throws Exception {
+        StatementMetrics.enable();
+        try {
+            int before = StatementShapes.count();
+            for (int i = 0; i < 100; i++) {
+                new SelectBuilder(SHAPES_TABLE)
+                        .bind()
+                        .expression("points", LT, i)
+                        .build(connection);
+            }
+            assertThat(StatementShapes.count(), is(before + 1));
+        } finally {
+            StatementMetrics.disable();
+            StatementShapes.reset();
+        }
+    }
+
+    @Test
+    public void disabledShapesNotCounted() throws Exception {
+        int before = StatementShapes.count();
+        new SelectBuilder(SHAPES_TABLE)
+                .expression("published", LT, 1)
+                .build(connection);
+        assertThat(StatementShapes.count(), is(before));
+    }
+
+    @Test
+    public void inlinedShapesGrow() throws Exception {
+        StatementMetrics.enable();
+        try {
+            int before = StatementShapes.count();
+            for (int i = 0; i < 100; i++) {
+                new SelectBuilder(SHAPES_TABLE)
+                        .expression("updated", LT, i)
+                        .build(connection);
+            }
+            assertThat(StatementShapes.count(), is(before + 100));
+        } finally {
+            StatementMetrics.disable();
+            StatementShapes.reset();
+        }
+    }
+
+    @Test
+    public void metricsDisabled() throws Exception {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        Connection connection = mock(Connection.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        PreparedStatement built = new SelectBuilder(SHAPES_TABLE)
+                .bind()
+                .expression("id", EQ, 1L)
+                .build(connection);
+        assertThat(built, sameInstance(statement));
+    }
+
+    @Test
+    public void metricsEnabled() throws Exception {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(statement.executeQuery()).thenReturn(mock(ResultSet.class));
+        Connection connection = mock(Connection.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        StatementMetrics.enable();
+        try {
+            SelectBuilder builder = new SelectBuilder(SHAPES_TABLE)
+                    .bind()
+                    .expression("firstName", EQ, "Fred");
+            for (int i = 0; i < 3; i++) {
+                PreparedStatement built = builder.build(connection);
+                assertThat(built, not(sameInstance(statement)));
+                built.executeQuery();
+            }
+            CompiledStatement compiled = builder.compile();
+            compiled.build(connection, "Barney").executeQuery();
+            StatementMetrics.Shape shape = StatementMetrics.getShape(compiled.getSql());
+            System.out.println("metricsEnabled: " + shape);
+            assertThat(shape.getBuild().getCount(), is(3L));
+            assertThat(shape.getPrepare().getCount(), is(4L));
+            assertThat(shape.getExecute().getCount(), is(4L));
+        } finally {
+            StatementMetrics.disable();
+            StatementMetrics.reset();
+        }
+    }
+
+}
@@ -44,6 +44,79 @@ public class UpdateBuilderUnitTest extends AbstractUnitTest {
                         " WHERE (id = 42)"));
     }
 
+    @Test
+    public void updateWithDirty() throws Exception {
+        ConcreteModel model = new ConcreteModel("Fred", "Flintstone", 100);
+        model.setId(42L);
+        model.snapshot("FIRSTNAME", "Fred");
+        model.snapshot("lastName", "Flintstone");
+        model.snapshot("points", 100);
+        model.setLastName("Rubble");
+        UpdateBuilder builder = new UpdateBuilder(MY_TABLE)
+                .dirty(model)
+                .pair("firstName", model.getFirstName())
+                .pair("lastName", model.getLastName())
+                .pair("points", model.getPoints())
+                .pairLiteral("updated", "CURRENT_TIMESTAMP")
+                .primary("id", 42L);
+        assertThat(builder.changed(), is(true));
+        PreparedStatement statement = builder.build(connection);
+        System.out.println("updateWithDirty: " + builder.toString());
+        assertThat(builder.sql,
+                is("UPDATE " + MY_TABLE +
+                        " SET lastName = ?, updated = CURRENT_TIMESTAMP" +
+                        " WHERE (id = 42)"));
+    }
+
+    @Test
+    public void updateWithDirtyUnchanged() throws Exception {
+        ConcreteModel model = new ConcreteModel("Fred", "Flintstone", 100);
+        model.snapshot("firstName", "Fred");
+        UpdateBuilder builder = new UpdateBuilder(MY_TABLE)
+                .dirty(model)
+                .pair("firstName", model.getFirstName())
+                .pairLiteral("updated", "CURRENT_TIMESTAMP")
+                .primary("id", 42L);
+        assertThat(builder.changed(), is(false));
+        assertThrows(IllegalStateException.class,
+                () -> builder.build(connection));
+        model.clearSnapshot();
+        assertThat(builder.changed(), is(true));
+        builder.reset()
+                .pair("firstName", "Wilma")
+                .primary("id", 42L);
+        assertThat(builder.changed(), is(true));
+    }
+
+    @Test
+    public void updateReturningPostgreSql() throws Exception {
+        UpdateBuilder builder = new UpdateBuilder(MY_TABLE)
+                .dialect(SqlDialect.POSTGRESQL)
+                .pair("firstName", "Pebbles")
+                .pairLiteral("updated", "now()")
+                .primary("id", 42L)
+                .returning("updated");
+        builder.build(connection);
+        System.out.println("updateReturningPostgreSql: " + builder.toString());
+        assertThat(builder.sql,
+                is("UPDATE " + MY_TABLE + " SET firstName = ?, updated = now()" +
+                        " WHERE (id = 42) RETURNING updated"));
+    }
+
+    @Test
+    public void updateReturningSqlServer() throws Exception {
+        UpdateBuilder builder = new UpdateBuilder(MY_TABLE)
+                .dialect(SqlDialect.SQLSERVER)
+                .pair("firstName", "Pebbles")
+                .primary("id", 42L)
+                .returning("updated");
+        builder.build(connection);
+        System.out.println("updateReturningSqlServer: " + builder.toString());
+        assertThat(builder.sql,
+                is("UPDATE " + MY_TABLE + " SET firstName = ?" +
+                        " OUTPUT INSERTED.updated WHERE (id = 42)"));
+    }
+
     @Test
     public void updateWithAll() throws Exception {
         UpdateBuilder builder = new UpdateBuilder(MY_TABLE)
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.sql;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThrows;
+
+public class UpsertBuilderUnitTest extends AbstractUnitTest {
+
+    @Test
+    public void upsertBatch() throws Exception {
+        String sql = "INSERT INTO " + MY_TABLE + " (code, firstName) VALUES (?, ?)" +
+                " ON CONFLICT (code) DO UPDATE SET firstName = EXCLUDED.firstName";
+        Connection connection = Mockito.mock(Connection.class);
+        PreparedStatement statement = Mockito.mock(PreparedStatement.class);
+        Mockito.when(connection.prepareStatement(sql)).thenReturn(statement);
+        UpsertBuilder builder = new UpsertBuilder(MY_TABLE)
+                .dialect(SqlDialect.POSTGRESQL)
+                .key("code")
+                .pair("code", null)
+                .pair("firstName", null)
+                .batchSize(2)
+                .row("FRED", "Fred")
+                .row("WILMA", "Wilma")
+                .row("BARNEY", "Barney");
+        builder.executeBatch(connection);
+        assertThat(builder.rows.isEmpty(), is(true));
+        Mockito.verify(statement, Mockito.times(3)).addBatch();
+        Mockito.verify(statement, Mockito.times(2)).executeBatch();
+        Mockito.verify(statement).setString(1, "BARNEY");
+        Mockito.verify(statement).close();
+    }
+
+    @Test
+    public void upsertDialectOf() throws Exception {
+        Connection connection = Mockito.mock(Connection.class);
+        DatabaseMetaData metaData = Mockito.mock(DatabaseMetaData.class);
+        Mockito.when(connection.getMetaData()).thenReturn(metaData);
+        Mockito.when(metaData.getDatabaseProductName()).thenReturn("PostgreSQL");
+        assertThat(SqlDialect.of(connection), is(SqlDialect.POSTGRESQL));
+        assertThat(SqlDialect.of("H2"), is(SqlDialect.H2));
+        assertThat(SqlDialect.of("MariaDB"), is(SqlDialect.MYSQL));
+        assertThat(SqlDialect.of("Microsoft SQL Server"), is(SqlDialect.SQLSERVER));
+        assertThat(SqlDialect.of("SQLite"), is(SqlDialect.POSTGRESQL));
+        assertThat(SqlDialect.of("DB2/LINUXX8664"), is(SqlDialect.STANDARD));
+        assertThat(SqlDialect.of((String) null), is(SqlDialect.STANDARD));
+    }
+
+    @Test
+    public void upsertH2() throws Exception {
+        UpsertBuilder builder = builder(SqlDialect.H2);
+        builder.build(connection);
+        System.out.println("upsertH2: " + builder.toString());
+        assertThat(builder.sql,
+                is("MERGE INTO " + MY_TABLE + " (code, firstName, points)" +
+                        " KEY (code) VALUES (?, ?, ?)"));
+        assertThat(builder.params.size(), is(3));
+    }
+
+    @Test
+    public void upsertH2Database() throws Exception {
+        upsertDatabase(SqlDialect.H2);
+    }
+
+    @Test
+    public void upsertH2WithNoUpdate() throws Exception {
+        UpsertBuilder builder = builder(SqlDialect.H2)
+                .noUpdate("points");
+        assertThrows(IllegalStateException.class,
+                () -> builder.build(connection));
+    }
+
+    @Test
+    public void upsertMySql() throws Exception {
+        UpsertBuilder builder = builder(SqlDialect.MYSQL);
+        builder.build(connection);
+        System.out.println("upsertMySql: " + builder.toString());
+        assertThat(builder.sql,
+                is("INSERT INTO " + MY_TABLE + " (code, firstName, points) VALUES (?, ?, ?)" +
+                        " ON DUPLICATE KEY UPDATE firstName = VALUES(firstName)," +
+                        " points = VALUES(points)"));
+    }
+
+    @Test
+    public void upsertMySqlWithOnlyKeys() throws Exception {
+        UpsertBuilder builder = new UpsertBuilder(MY_TABLE)
+                .dialect(SqlDialect.MYSQL)
+                .key("code")
+                .pair("code", "FRED");
+        builder.build(connection);
+        System.out.println("upsertMySqlWithOnlyKeys: " + builder.toString());
+        assertThat(builder.sql,
+                is("INSERT INTO " + MY_TABLE + " (code) VALUES (?)" +
+                        " ON DUPLICATE KEY UPDATE code = code"));
+    }
+
+    @Test
+    public void upsertPostgreSql() throws Exception {
+        UpsertBuilder builder = builder(SqlDialect.POSTGRESQL)
+                .noUpdate("points");
+        builder.build(connection);
+        System.out.println("upsertPostgreSql: " + builder.toString());
+        assertThat(builder.sql,
+                is("INSERT INTO " + MY_TABLE + " (code, firstName, points) VALUES (?, ?, ?)" +
+                        " ON CONFLICT (code) DO UPDATE SET firstName = EXCLUDED.firstName"));
+    }
+
+    @Test
+    public void upsertPostgreSqlWithOnlyKeys() throws Exception {
+        UpsertBuilder builder = new UpsertBuilder(MY_TABLE)
+                .dialect(SqlDialect.POSTGRESQL)
+                .key("code")
+                .pair("code", "FRED");
+        builder.build(connection);
+        System.out.println("upsertPostgreSqlWithOnlyKeys: " + builder.toString());
+        assertThat(builder.sql,
+                is("INSERT INTO " + MY_TABLE + " (code) VALUES (?)" +
+                        " ON CONFLICT (code) DO NOTHING"));
+    }
+
+    @Test
+    public void upsertReturning() throws Exception {
+        UpsertBuilder builder = builder(SqlDialect.POSTGRESQL)
+                .returning("id");
+        builder.build(connection);
+        System.out.println("upsertReturning: " + builder.toString());
+        assertThat(builder.sql.endsWith(" ON CONFLICT (code) DO UPDATE SET" +
+                " firstName = EXCLUDED.firstName, points = EXCLUDED.points RETURNING id"), is(true));
+    }
+
+    @Test
+    public void upsertStandard() throws Exception {
+        UpsertBuilder builder = builder(SqlDialect.STANDARD);
+        builder.build(connection);
+        System.out.println("upsertStandard: " + builder.toString());
+        assertThat(builder.sql,
+                is("MERGE INTO " + MY_TABLE + " USING (VALUES (?, ?, ?)) AS s" +
+                        " (code, firstName, points) ON (" + MY_TABLE + ".code = s.code)" +
+                        " WHEN MATCHED THEN UPDATE SET firstName = s.firstName, points = s.points" +
+                        " WHEN NOT MATCHED THEN INSERT (code, firstName, points)" +
+                        " VALUES (s.code, s.firstName, s.points)"));
+    }
+
+    @Test
+    public void upsertStandardDatabase() throws Exception {
+        upsertDatabase(SqlDialect.STANDARD);
+    }
+
+    @Test
+    public void upsertSqlServer() throws Exception {
+        UpsertBuilder builder = builder(SqlDialect.SQLSERVER);
+        builder.build(connection);
+        System.out.println("upsertSqlServer: " + builder.toString());
+        assertThat(builder.sql.startsWith("MERGE INTO " + MY_TABLE + " USING (VALUES"), is(true));
+        assertThat(builder.sql.endsWith(";"), is(true));
+    }
+
+    @Test
+    public void upsertWithMissingKey() throws Exception {
+        UpsertBuilder builder = new UpsertBuilder(MY_TABLE)
+                .pair("code", "FRED");
+        assertThrows(IllegalStateException.class,
+                () -> builder.build(connection));
+    }
+
+    @Test
+    public void upsertWithModel() throws Exception {
+        ConcreteModel model = new ConcreteModel("Fred", "Flintstone", 123);
+        model.setId(456L);
+        UpsertBuilder builder = new UpsertBuilder(MY_TABLE)
+                .dialect(SqlDialect.POSTGRESQL)
+                .pairModel(model)
+                .pair("firstName", model.getFirstName());
+        builder.build(connection);
+        System.out.println("upsertWithModel: " + builder.toString());
+        assertThat(builder.sql,
+                is("INSERT INTO " + MY_TABLE + " (id, published, updated, firstName)" +
+                        " VALUES (?, NULL, NULL, ?) ON CONFLICT (id) DO UPDATE SET" +
+                        " published = EXCLUDED.published, updated = EXCLUDED.updated," +
+                        " firstName = EXCLUDED.firstName"));
+        assertThat(builder.params.get(0), is(456L));
+    }
+
+    @Test
+    public void upsertWithNewModel() throws Exception {
+        ConcreteModel model = new ConcreteModel("Fred", "Flintstone", 123);
+        UpsertBuilder builder = new UpsertBuilder(MY_TABLE)
+                .dialect(SqlDialect.POSTGRESQL)
+                .pairModel(model)
+                .key("lastName")
+                .pair("lastName", model.getLastName());
+        builder.build(connection);
+        System.out.println("upsertWithNewModel: " + builder.toString());
+        assertThat(builder.sql.startsWith("INSERT INTO " + MY_TABLE +
+                " (published, updated, lastName) VALUES"), is(true));
+    }
+
+    @Test
+    public void upsertWithReset() throws Exception {
+        UpsertBuilder builder = builder(SqlDialect.MYSQL)
+                .noUpdate("points");
+        builder.build(connection);
+        builder.reset()
+                .key("code")
+                .pair("code", "WILMA")
+                .build(connection);
+        System.out.println("upsertWithReset: " + builder.toString());
+        assertThat(builder.dialect, is(SqlDialect.STANDARD));
+        assertThat(builder.keys.size(), is(1));
+        assertThat(builder.noUpdates.size(), is(0));
+    }
+
+    @Test
+    public void upsertWithUnknownKey() throws Exception {
+        UpsertBuilder builder = builder(SqlDialect.POSTGRESQL)
+                .key("lastName");
+        assertThrows(IllegalStateException.class,
+                () -> builder.build(connection));
+    }
+
+    // Private Methods -------------------------------------------------------
+
+    private UpsertBuilder builder(SqlDialect dialect) {
+        return new UpsertBuilder(MY_TABLE)
+                .dialect(dialect)
+                .key("code")
+                .pair("code", "FRED")
+                .pair("firstName", "Fred")
+                .pair("points", 123);
+    }
+
+    private void upsertDatabase(SqlDialect dialect) throws Exception {
+        try (Connection connection = DriverManager.getConnection(H2_URL)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP TABLE IF EXISTS " + MY_TABLE);
+                statement.execute("CREATE TABLE " + MY_TABLE + " (code VARCHAR(10) PRIMARY KEY," +
+                        " firstName VARCHAR(20), points INTEGER)");
+            }
+            assertThat(SqlDialect.of(connection), is(SqlDialect.H2));
+            try (PreparedStatement statement = builder(dialect).build(connection)) {
+                statement.executeUpdate();
+            }
+            try (PreparedStatement statement = new UpsertBuilder(MY_TABLE)
+                    .dialect(dialect)
+                    .key("code")
+                    .pair("code", "FRED")
+                    .pair("firstName", "Freddie")
+                    .pair("points", 456)
+                    .build(connection)) {
+                statement.executeUpdate();
+            }
+            new UpsertBuilder(MY_TABLE)
+                    .dialect(dialect)
+                    .key("code")
+                    .pair("code", null)
+                    .pair("firstName", null)
+                    .pair("points", null)
+                    .row("FRED", "Fred", 789)
+                    .row("BARNEY", "Barney", 321)
+                    .executeBatch(connection);
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT code, firstName, points FROM " +
+                         MY_TABLE + " ORDER BY code")) {
+                assertThat(resultSet.next(), is(true));
+                assertThat(resultSet.getString(2), is("Barney"));
+                assertThat(resultSet.next(), is(true));
+                assertThat(resultSet.getString(2), is("Fred"));
+                assertThat(resultSet.getInt(3), is(789));
+                assertThat(resultSet.next(), is(false));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2020 craigmcc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.craigmcc.library.sql;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.craigmcc.library.sql.SqlOperator.EQ;
+import static org.craigmcc.library.sql.SqlOperator.IN;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThrows;
+
+public class WhereClauseBuilderUnitTest {
+
+    @Test
+    public void whereWithEquals() {
+        WhereClauseBuilder builder = new WhereClauseBuilder()
+                .where("firstName", EQ, "Fred");
+        System.out.println("whereWithEquals: " + builder.toString());
+        assertThat(builder.build(), is(" WHERE (firstName = ?)"));
+        assertThat(builder.params(), contains("Fred"));
+    }
+
+    @Test
+    public void whereWithIn() {
+        WhereClauseBuilder builder = new WhereClauseBuilder()
+                .where("firstName", EQ, "Fred")
+                .where("id", IN, Arrays.asList(1L, 2L, 3L, 4L, 5L));
+        System.out.println("whereWithIn: " + builder.toString());
+        assertThat(builder.build(),
+                is(" WHERE (firstName = ?) AND (id IN (?, ?, ?, ?, ?, ?, ?, ?))"));
+        assertThat(builder.params(), contains("Fred", 1L, 2L, 3L, 4L, 5L, 5L, 5L, 5L));
+    }
+
+    @Test
+    public void whereWithInNotCollection() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new WhereClauseBuilder().where("id", IN, 123L));
+    }
+
+}